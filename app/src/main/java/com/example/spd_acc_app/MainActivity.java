@@ -5,9 +5,9 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.constraintlayout.widget.ConstraintLayout;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import androidx.core.os.TraceCompat;
 
 import android.Manifest;
-import android.annotation.SuppressLint;
 import android.app.PendingIntent;
 import android.content.BroadcastReceiver;
 import android.content.Context;
@@ -16,34 +16,64 @@ import android.content.pm.PackageManager;
 import android.location.Location;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
 
+import com.example.spd_acc_app.geofence.GeofenceCatalog;
+import com.example.spd_acc_app.geofence.GeofenceClient;
 import com.example.spd_acc_app.geofence.GeofenceHelper;
+import com.example.spd_acc_app.geofence.GeofenceNames;
+import com.example.spd_acc_app.geofence.TransitionQueue;
+import com.example.spd_acc_app.geofence.GeofenceWindowManager;
+import com.example.spd_acc_app.location.FixBatch;
+import com.example.spd_acc_app.location.FixRingBuffer;
+import com.example.spd_acc_app.location.SamplingPolicy;
+import com.example.spd_acc_app.metrics.Metrics;
 import com.example.spd_acc_app.notification.NotificationHelper;
+import com.example.spd_acc_app.notification.NotificationThrottle;
+import com.example.spd_acc_app.pipeline.DrivingPipeline;
+import com.example.spd_acc_app.rules.LimitRules;
+import com.example.spd_acc_app.state.DrivingState;
+import com.example.spd_acc_app.state.DrivingStateStore;
+import com.example.spd_acc_app.state.MonitoringSession;
+import com.example.spd_acc_app.trip.TripRecorder;
+import com.example.spd_acc_app.ui.DisplaySnapshot;
+import com.example.spd_acc_app.ui.SnapshotExchange;
+import com.example.spd_acc_app.ui.TelemetryRenderer;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.Geofence;
 import com.google.android.gms.location.GeofencingClient;
 import com.google.android.gms.location.GeofencingEvent;
-import com.google.android.gms.location.GeofencingRequest;
 import com.google.android.gms.location.LocationCallback;
 import com.google.android.gms.location.LocationRequest;
 import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.location.LocationSettingsRequest;
 import com.google.android.gms.location.SettingsClient;
-import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.material.snackbar.Snackbar;
 
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
 
 /**
  * MainActivity
@@ -69,27 +99,49 @@ import java.util.List;
  *      !> mTxtTitleInsideLoc                   - Inside Location Title Display
  *      !> mTxtDirection                        - Direction Display
  *      !> mTxtTitleDirection                   - Direction Title Display
+ *      !> mTxtDebugMetrics                     - Hidden debug overlay with the Metrics report; long-press the button to toggle, tap to dump
+ *      !> mTelemetryViews                      - Telemetry TextViews indexed by TelemetryRenderer.SLOT_*
  *
  *  !> mBtnStartMonitoring                      - Start/Stop Button
  *
  *  !> Location Objects/Primitives
  *      !> mLocationRequest                     - Location Request Object
+ *      !> mSamplingPolicy                      - Adapts the request interval and priority to speed and fence distance (pipeline thread)
+ *      !> mFixBatch                            - Fixes of the LocationResult being processed, in time order (pipeline thread)
  *      !> mFusedLocationClient                 - Fused Location Object
  *      !> mLocationCallback                    - Location Callback Object
- *      !> mPreviousLocation                    - Previous Location Object for comparison of speed (acceleration) and determination of trajectory (northbound/southbound)
+ *      !> mPipeline                            - Per-fix logic: speed/acceleration, trajectory, geofence evaluation, limits and turn alerts
+ *      !> mTripRecorder                        - Crash-safe log of every raw fix while monitoring (null if unavailable)
+ *      !> mPipelineThread                      - Background thread receiving the fixes and running all per-fix work
+ *      !> mPipelineHandler / mPipelineExecutor - Posting to the pipeline thread
+ *      !> mPipelineSession                     - Token of the current monitoring session; bumped on every start and stop
+ *      !> mSession / mSessionFile              - Monitoring session saved for a restarted process to resume from, see saveSession()
+ *      !> mLastSessionSave                     - Fix time of the last session save
+ *      !> mMonitorStartNanos                   - System.nanoTime() of the last monitoring start until its first fix is processed, 0 after
+ *
+ *  !> Threading: location callbacks, mPipeline, mTripRecorder, mGeofenceWindow and the back snapshot of mSnapshots
+ *     are only used on mPipelineThread. The UI thread only binds the latest DisplaySnapshot.
  *
  *  !> Geofencing Objects/Primitives
- *      !> mGeofencingClient                    - Main Geofencing Client
+ *      !> mGeofencingClient                    - Main Geofencing Client, created on first use by getGeofencingClient()
  *      !> mGeofenceHelper                      - GeofenceHelper reference object
- *      !> mTrajectory                          - Current Trajectory
- *      !> mIsGefencePushNeeded                 - Determines if Geofences are to be pushed
+ *      !> mGeofenceCatalog                     - Pre-parsed geofence and turn definitions
+ *      !> mGeofenceWindow                      - Sliding window of OS-registered geofences ahead of the vehicle
  *
  *  !> Activity Objects/Primitives
- *      !> mNumberFormat                        - Number format for displaying double values in two decimal places
- *      !> mNotificationHelper                  - Reference to NotificationHelper Object
- *      !> mCurrentGeofence                     - Current Geofence ID
- *      !> mIsWithinGeofece                     - Flag to check if user is currently on set geofence
- *      !> mMainActivity                        - MainActivity reference for static operations
+ *      !> mChoreographer                       - Main thread Choreographer, paces binding to display frames
+ *      !> mRenderer                            - Writes only the telemetry texts/colours that changed since the last frame
+ *      !> mSnapshots                           - Reused DisplaySnapshots passed from the pipeline thread to the UI thread
+ *      !> mBindSnapshot                        - Binds the latest snapshot on the next frame; at most one bind per frame
+ *      !> mStateListener                       - Shows geofence transitions as snackbars while this activity exists
+ *      !> mMainHandler / mRefreshMetrics       - Refreshes the debug overlay every METRICS_REFRESH_INTERVAL while it is shown
+ *
+ *  !> Process-wide Objects (shared with GeofenceBroadcastReceiver; no reference to an activity)
+ *      !> mDrivingState                        - Current DrivingState: engine running, last geofence, inside or not
+ *      !> mNotificationHelper                  - Reference to NotificationHelper Object, see getNotificationHelper()
+ *      !> mTransitionQueue                     - Hands OS geofence transitions to a worker thread, see getTransitionQueue()
+ *      !> mSharedCatalog                       - Process-wide GeofenceCatalog, see getGeofenceCatalog()
+ *      !> mMetrics                             - Per-stage latency histograms and event counters
  *
  *  !> Constants
  *      !> TAG                                  - Debug Purposes
@@ -98,10 +150,24 @@ import java.util.List;
  *      !> ACCESS_COARSE_LOCATION_CODE          - Access Course Location Code
  *      !> BUTTON_TAG_INIT                      - Determination of Initialization state for Button
  *      !> BUTTON_TAG_END                       - Determination of Termination state for Button
- *      !> LOCATION_UPDATE_INTERVAL             - Update Interval in ms
- *      !> DIRECTION_SOUTHBOUND                 - Flag for Southbound
- *      !> DIRECTION_NORTHBOUND                 - Flag for Northbound
  *      !> NOTIFICATION_ID_RIGHT_TURN           - Notification channel id for turns
+ *      !> NOTIFICATION_ID_GEOFENCE_TRANSITION  - Notification channel id for geofence transitions
+ *      !> TRANSITION_QUEUE_CAPACITY            - Maximum number of OS geofence transitions waiting for the worker thread
+ *      !> TRANSITION_COLLAPSE_WINDOW           - Window in milliseconds within which a repeated OS transition of a geofence is collapsed
+ *      !> METRICS_REFRESH_INTERVAL             - Milliseconds between debug overlay refreshes
+ *      !> METRICS_DIRECTORY                    - Metrics dump directory under the app files directory
+ *      !> TURN_NOTIFICATION_RADIUS             - Along-route distance in metres before a turn at which the turn notification is sent
+ *      !> *_ALERT_INTERVAL / *_DUPLICATE_WINDOW - Notification rate limits in ms, see NotificationThrottle
+ *      !> GEOFENCE_WINDOW_SIZE                 - Number of nearest geofences ahead kept registered with the OS
+ *      !> GEOFENCE_WINDOW_INTERVAL             - Minimum time in ms between two OS geofence window updates
+ *      !> TRIP_LOG_DIRECTORY                   - Trip log directory under the app files directory
+ *      !> SESSION_FILE                         - Monitoring session file under the app files directory
+ *      !> SESSION_SAVE_INTERVAL                - Minimum fix time in ms between two session saves
+ *      !> SESSION_RESUME_WINDOW                - Age in ms beyond which a saved session is not resumed
+ *      !> SUSPEND_TIMEOUT                      - Longest wait in ms for the pipeline thread to save the session on a configuration change
+ *      !> TRACE_COOKIE_FIRST_FIX               - Cookie of the "first fix" async trace section
+ *      !> PIPELINE_THREAD_NAME                 - Name of the location pipeline thread
+ *      !> RULES_THREAD_NAME                    - Name of the thread compiling the limit rules
  */
 public class MainActivity extends AppCompatActivity implements View.OnClickListener {
 
@@ -122,36 +188,105 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
     TextView mTxtTitleLat;
     TextView mTxtTitleLon;
     TextView mTxtTurnStatus;
+    TextView mTxtDebugMetrics;
 
     // Location Objects
     FusedLocationProviderClient mFusedLocationClient;
-    Location mPreviousLocation;
     LocationCallback mLocationCallback;
     LocationRequest mLocationRequest;
+    final SamplingPolicy mSamplingPolicy = new SamplingPolicy();
+    final FixBatch mFixBatch = new FixBatch();
+    DrivingPipeline mPipeline;
+    TripRecorder mTripRecorder;
+    HandlerThread mPipelineThread;
+    Handler mPipelineHandler;
+    Executor mPipelineExecutor;
+    volatile int mPipelineSession;
+    final MonitoringSession mSession = new MonitoringSession();
+    File mSessionFile;
+    long mLastSessionSave;
+    volatile long mMonitorStartNanos;
 
     // Geofencing Objects
     GeofenceHelper mGeofenceHelper;
     GeofencingClient mGeofencingClient;
-    String mTrajectory;
-    boolean mIsGefencePushNeeded;
+    GeofenceCatalog mGeofenceCatalog;
+    GeofenceWindowManager mGeofenceWindow;
 
     // Activity variables
-    NumberFormat mNumberFormat;
-    private static String mCurrentGeofence;
-    public static MainActivity mMainActivity;
-    static NotificationHelper mNotificationHelper;
-    static boolean mIsWithinGeofence;
+    Choreographer mChoreographer;
+    TelemetryRenderer mRenderer;
+    TextView[] mTelemetryViews;
+    final SnapshotExchange mSnapshots = new SnapshotExchange();
+    final Choreographer.FrameCallback mBindSnapshot = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            DisplaySnapshot snapshot = mSnapshots.acquire();
+            if (snapshot != null && mDrivingState.get().isEngineRunning()) {
+                long start = System.nanoTime();
+                mRenderer.render(snapshot);
+                mMetrics.recordSince(Metrics.STAGE_BIND, start);
+                mMetrics.recordSince(Metrics.STAGE_FIX_TO_FRAME, snapshot.getReceivedNanos());
+            }
+        }
+    };
+    final DrivingStateStore.Listener mStateListener = new DrivingStateStore.Listener() {
+        @Override
+        public void onStateChanged(DrivingState previous, final DrivingState current) {
+            if (current.getTransitionCount() == previous.getTransitionCount()) {
+                return;
+            }
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    popSnackbar(describeTransition(current.getLastTransition(), current.getCurrentGeofenceName()));
+                }
+            });
+        }
+    };
+
+    final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    final Runnable mRefreshMetrics = new Runnable() {
+        @Override
+        public void run() {
+            mTxtDebugMetrics.setText(mMetrics.format(new StringBuilder()));
+            mMainHandler.postDelayed(this, METRICS_REFRESH_INTERVAL);
+        }
+    };
+
+    static final DrivingStateStore mDrivingState = new DrivingStateStore();
+    static final Metrics mMetrics = new Metrics();
+    private static NotificationHelper mNotificationHelper;
+    private static TransitionQueue mTransitionQueue;
+    private static GeofenceCatalog mSharedCatalog;
 
     private final String BUTTON_TAG_END = "END";
     private final String BUTTON_TAG_INIT = "INIT";
-    private final String DIRECTION_NORTHBOUND = "NORTHBOUND";
-    private final String DIRECTION_SOUTHBOUND = "SOUTHBOUND";
     private final String TAG = "MAIN-ACT";
     private final int ACCESS_BACKGROUND_LOCATION_CODE = 1002;
     private final int ACCESS_COARSE_LOCATION_CODE = 1003;
     private final int ACCESS_FINE_LOCATION_CODE = 1001;
-    private final int LOCATION_UPDATE_INTERVAL = 1000;
-    private final int NOTIFICATION_ID_RIGHT_TURN = 2002;
+    private static final int NOTIFICATION_ID_RIGHT_TURN = 2002;
+    private static final int NOTIFICATION_ID_GEOFENCE_TRANSITION = 2001;
+    private static final int TURN_ALERT_INTERVAL = 30000;
+    private static final int TURN_DUPLICATE_WINDOW = 120000;
+    private static final int GEOFENCE_ALERT_INTERVAL = 10000;
+    private static final int GEOFENCE_DUPLICATE_WINDOW = 60000;
+    private static final int TRANSITION_QUEUE_CAPACITY = 64;
+    private static final int TRANSITION_COLLAPSE_WINDOW = 5000;
+    private final int TURN_NOTIFICATION_RADIUS = 50;
+    private final int GEOFENCE_WINDOW_SIZE = 20;
+    private final int GEOFENCE_WINDOW_INTERVAL = 10000;
+    private static final String TRIP_LOG_DIRECTORY = "trips";
+    private static final String SESSION_FILE = "session.bin";
+    private static final int SESSION_SAVE_INTERVAL = 15000;
+    private static final int SESSION_RESUME_WINDOW = 15 * 60 * 1000;
+    private static final int SUSPEND_TIMEOUT = 2000;
+    private static final int TRACE_COOKIE_FIRST_FIX = 1;
+    private static final String PIPELINE_THREAD_NAME = "LocationPipeline";
+    private static final String RULES_THREAD_NAME = "LimitRulesLoader";
+    private static final int METRICS_REFRESH_INTERVAL = 1000;
+    private static final String METRICS_DIRECTORY = "metrics";
 
 
     /**
@@ -160,17 +295,130 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
      */
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        TraceCompat.beginSection("MainActivity.onCreate");
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        mSessionFile = new File(getFilesDir(), SESSION_FILE);
 
-        mIsGefencePushNeeded = true;
-        mMainActivity = this;
+        // Parse all geofence and turn definitions once
+        mGeofenceHelper = new GeofenceHelper(this);
+        mGeofenceCatalog = getGeofenceCatalog(this);
+        mPipeline = new DrivingPipeline(mGeofenceCatalog, GeofenceHelper.DWELL_TIME_MS, TURN_NOTIFICATION_RADIUS, new DrivingPipeline.Listener() {
+            @Override
+            public void onDirectionChanged(int direction, long timeMillis) {
+                pushGeofences(direction);
+            }
+
+            @Override
+            public void onGeofenceTransition(int fence, int transition, long timeMillis) {
+                handleGeofenceTransition(MainActivity.this, mGeofenceCatalog.getId(fence), mGeofenceCatalog.getDisplayName(fence), transition, timeMillis);
+            }
+
+            @Override
+            public void onLimitChanged(int limitFlags, long timeMillis) {
+                // Displayed with the other values by mRenderer
+            }
+
+            @Override
+            public void onTurnAlert(String label, long timeMillis) {
+                // Raised on every fix near the turn; the helper posts it once and drops the repeats
+                postNotification(MainActivity.this, "NEARING TURN", label, NOTIFICATION_ID_RIGHT_TURN);
+            }
+        });
 
         // Initialize UI Elements
         initializeUi();
+        mDrivingState.addListener(mStateListener);
 
-        // Request location permissions
-        requestPermissions();
+        if (canResumeSession()) {
+            // The process was restarted while monitoring: carry on without asking again
+            monitorStart(mBtnStartMonitoring, true);
+        } else {
+            // Request location permissions
+            requestPermissions();
+        }
+        TraceCompat.endSection();
+    }
+
+    /**
+     * canResumeSession(): Whether a recent session was left by a process that did not stop monitoring, and the
+     * location permission is still granted
+     */
+    private boolean canResumeSession() {
+        if (mDrivingState.get().isEngineRunning()) {
+            return false;
+        }
+
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            return false;
+        }
+
+        // The content is only read on the pipeline thread
+        return mSessionFile.isFile() && System.currentTimeMillis() - mSessionFile.lastModified() < SESSION_RESUME_WINDOW;
+    }
+
+    /**
+     * onDestroy(): Unsubscribes from the shared DrivingState so the process-wide store does not keep this activity
+     * alive. Destroyed for a configuration change (e.g. rotation) while monitoring, it hands the session over to the
+     * activity created next, which resumes it like a restarted process would.
+     */
+    @Override
+    protected void onDestroy() {
+        mMainHandler.removeCallbacks(mRefreshMetrics);
+        mDrivingState.removeListener(mStateListener);
+        if (!isFinishing() && mDrivingState.get().isEngineRunning()) {
+            suspendMonitoring();
+        }
+        super.onDestroy();
+    }
+
+    /**
+     * suspendMonitoring(): Stops this activity's location updates and pipeline thread without ending monitoring: the
+     * session is saved (registered OS geofences included) and the engine marked stopped, so that the next activity's
+     * canResumeSession() picks it up. Waits for the pipeline thread, as the next activity reads the session right away.
+     */
+    private void suspendMonitoring() {
+        if (mFusedLocationClient != null && mLocationCallback != null) {
+            mFusedLocationClient.removeLocationUpdates(mLocationCallback);
+        }
+
+        final HandlerThread thread = mPipelineThread;
+        if (mPipelineHandler != null) {
+            mPipelineHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    // A pending batch leaves the registrations uncertain: remove them all, the next activity adds its window
+                    if (mGeofenceWindow.isInFlight()) {
+                        removeGeofences();
+                        mGeofenceWindow.clear();
+                    }
+                    writeSession();
+
+                    if (mTripRecorder != null) {
+                        mTripRecorder.close();
+                        mTripRecorder = null;
+                    }
+
+                    Looper.myLooper().quit();
+                }
+            });
+
+            // Callbacks still pending for this session are dropped by its executor
+            mPipelineSession++;
+            mPipelineThread = null;
+            mPipelineHandler = null;
+            mPipelineExecutor = null;
+        }
+
+        if (thread != null) {
+            try {
+                thread.join(SUSPEND_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        mDrivingState.setEngineRunning(false);
     }
 
     /**
@@ -195,6 +443,36 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         mTxtTitleInsideLoc = findViewById(R.id.txt_title_inside_loc);
         mTxtDirection = findViewById(R.id.txt_direction);
         mTxtTitleDirection = findViewById(R.id.txt_title_direction);
+        mTxtDebugMetrics = findViewById(R.id.txt_debug_metrics);
+
+        // Frame-paced, diff-based telemetry rendering
+        mTelemetryViews = new TextView[TelemetryRenderer.SLOT_COUNT];
+        mTelemetryViews[TelemetryRenderer.SLOT_SPEED] = mTxtSpeed;
+        mTelemetryViews[TelemetryRenderer.SLOT_LATITUDE] = mTxtLat;
+        mTelemetryViews[TelemetryRenderer.SLOT_LONGITUDE] = mTxtLong;
+        mTelemetryViews[TelemetryRenderer.SLOT_ACCELERATION] = mTxtAcceleration;
+        mTelemetryViews[TelemetryRenderer.SLOT_DIRECTION] = mTxtDirection;
+        mTelemetryViews[TelemetryRenderer.SLOT_LAST_GEOFENCE] = mTxtLastGeofence;
+        mTelemetryViews[TelemetryRenderer.SLOT_IN_GEOFENCE] = mTxtIsInGeofence;
+        mTelemetryViews[TelemetryRenderer.SLOT_STATUS] = mTxtSpdStatus;
+
+        mChoreographer = Choreographer.getInstance();
+        mRenderer = new TelemetryRenderer(new TelemetryRenderer.Target() {
+            @Override
+            public void setText(int slot, char[] text, int length) {
+                mTelemetryViews[slot].setText(text, 0, length);
+            }
+
+            @Override
+            public void setTextColor(int slot, int color) {
+                mTelemetryViews[slot].setTextColor(color);
+            }
+        }, new String[] {
+                getString(R.string.SPD_ACC_NORMAL),     // LimitStatus.NORMAL
+                getString(R.string.SPD_LIMIT),          // LimitStatus.SPEED
+                getString(R.string.ACC_LIMIT),          // LimitStatus.ACCELERATION
+                getString(R.string.SPD_ACC_LIMIT)       // LimitStatus.SPEED_AND_ACCELERATION
+        }, getResources().getColor(android.R.color.secondary_text_light), getResources().getColor(R.color.pastel_red));
 
         // TextView visibility
         mTxtSpeed.setVisibility(View.GONE);
@@ -216,6 +494,76 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         mBtnStartMonitoring = findViewById(R.id.btn_start_monitoring);
         mBtnStartMonitoring.setTag(BUTTON_TAG_INIT);
         mBtnStartMonitoring.setOnClickListener(this);
+
+        // Hidden debug overlay
+        mBtnStartMonitoring.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                toggleMetricsOverlay();
+                return true;
+            }
+        });
+        mTxtDebugMetrics.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                dumpMetrics();
+            }
+        });
+    }
+
+    /**
+     * toggleMetricsOverlay(): Shows or hides the debug overlay; it refreshes itself while shown
+     */
+    private void toggleMetricsOverlay() {
+        mMainHandler.removeCallbacks(mRefreshMetrics);
+
+        if (mTxtDebugMetrics.getVisibility() == View.VISIBLE) {
+            mTxtDebugMetrics.setVisibility(View.GONE);
+        } else {
+            mTxtDebugMetrics.setVisibility(View.VISIBLE);
+            mRefreshMetrics.run();
+        }
+    }
+
+    /**
+     * dumpMetrics(): Writes the Metrics report to a new file in the metrics directory, off the main thread
+     */
+    private void dumpMetrics() {
+        final File file = new File(new File(getFilesDir(), METRICS_DIRECTORY), "metrics-" + System.currentTimeMillis() + ".txt");
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                file.getParentFile().mkdirs();
+
+                Writer writer = null;
+                String result;
+                try {
+                    writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+                    mMetrics.writeTo(writer);
+                    result = "Metrics written to " + file.getName();
+                } catch (IOException e) {
+                    Log.d(TAG, "dumpMetrics() :: " + e.getMessage());
+                    result = "Metrics dump failed";
+                } finally {
+                    if (writer != null) {
+                        try {
+                            writer.close();
+                        } catch (IOException e) {
+                            Log.d(TAG, "dumpMetrics() :: " + e.getMessage());
+                        }
+                    }
+                }
+
+                final String message = result;
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        popSnackbar(message);
+                    }
+                });
+            }
+        }).start();
     }
 
     /**
@@ -280,7 +628,7 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         Log.d(TAG, "onClick() :: init");
 
         if (BUTTON_TAG_INIT.equals(v.getTag())) {
-            monitorStart(v);
+            monitorStart(v, false);
         } else if (BUTTON_TAG_END.equals(v.getTag())) {
             monitorEnd(v);
         }
@@ -289,18 +637,240 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
     /**
      * monitorStart(): Start all location monitoring process and initiates dependent processes
      * @param v - the view object for reference to the Application UI
+     * @param resume - Whether to resume the saved session of a previous process
      */
-    protected void monitorStart(View v) {
+    protected void monitorStart(View v, boolean resume) {
+        TraceCompat.beginSection("monitorStart");
+        mMonitorStartNanos = System.nanoTime();
+        TraceCompat.beginAsyncSection("firstFix", TRACE_COOKIE_FIRST_FIX);
         v.animate().translationY(500).start();
 
         // Initialize UI Strings
         setUiElements();
 
-        // Initialize Location services
-        initializeLocation();
+        // Pick up edited limit rules; the pipeline keeps checking the current ones until the new table is swapped in
+        loadLimitRules();
+
+        // All location processing runs on the pipeline thread; sampling starts fast until the first fixes place the vehicle
+        mSamplingPolicy.reset();
+        startPipelineThread();
 
         // Initialize Geofencing services
         initializeGeofence();
+        mDrivingState.setEngineRunning(true);
+
+        // Restored on the pipeline thread ahead of the first fix
+        if (resume) {
+            restoreSession();
+        }
+
+        // Initialize Location services
+        initializeLocation();
+        TraceCompat.endSection();
+    }
+
+    /**
+     * restoreSession(): Resumes the pipeline, the OS geofence window and the last geofence from the saved session,
+     * on the pipeline thread before any fix. Fences still registered from the previous process are taken over instead
+     * of registered again, unless the device rebooted since (the OS dropped them). A missing, corrupt or outdated
+     * session leaves a fresh start.
+     */
+    private void restoreSession() {
+        final File file = mSessionFile;
+        mPipelineHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                TraceCompat.beginSection("restoreSession");
+                try {
+                    MonitoringSession session = MonitoringSession.readFrom(file);
+                    if (session == null || System.currentTimeMillis() - session.getSavedAtMillis() > SESSION_RESUME_WINDOW) {
+                        Log.d(TAG, "restoreSession() :: No session to resume");
+                        return;
+                    }
+
+                    if (session.isSameBoot(bootMillis())) {
+                        mGeofenceWindow.restore(session.getRegisteredIds());
+                    }
+
+                    String geofenceId = session.getGeofenceId();
+                    int fence = geofenceId != null ? mGeofenceCatalog.indexOf(geofenceId) : -1;
+                    if (session.hasFix()) {
+                        mPipeline.restore(session.getDirection(), session.isWithinGeofence() ? fence : -1, session.getFixTime(),
+                                session.getLatitude(), session.getLongitude(), session.getSpeed(), session.getBearing(), session.getAccuracy());
+                        mLastSessionSave = session.getFixTime();
+                    }
+                    if (fence >= 0) {
+                        mDrivingState.restoreGeofence(geofenceId, mGeofenceCatalog.getDisplayName(fence), session.isWithinGeofence(),
+                                session.getTransition(), session.getTransitionTimeMillis());
+                    }
+
+                    Log.d(TAG, "restoreSession() :: Direction " + session.getDirection() + ", "
+                            + mGeofenceWindow.getRegisteredCount() + " geofences still registered");
+                } catch (IOException e) {
+                    Log.d(TAG, "restoreSession() :: " + e.getMessage());
+                } finally {
+                    TraceCompat.endSection();
+                }
+            }
+        });
+    }
+
+    /**
+     * saveSession(): Saves what a restarted process needs to resume monitoring (pipeline thread), from the pipeline's
+     * last fix. Called periodically and whenever a geofence batch completes; skipped while one is pending, as its
+     * registrations are not certain yet.
+     */
+    private void saveSession() {
+        if (mGeofenceWindow.isInFlight() || mPipeline.getFixHistory().isEmpty()) {
+            return;
+        }
+
+        writeSession();
+    }
+
+    /**
+     * writeSession(): Writes the session file unconditionally (pipeline thread); without a fix yet, the session
+     * resumes the geofence state and registrations only
+     */
+    private void writeSession() {
+        FixRingBuffer fixes = mPipeline.getFixHistory();
+        DrivingState state = mDrivingState.get();
+        MonitoringSession session = mSession;
+        session.setSavedAt(System.currentTimeMillis(), bootMillis());
+        session.setDirection(mPipeline.getDirection());
+        if (!fixes.isEmpty()) {
+            session.setLastFix(fixes.getTime(0), fixes.getLatitude(0), fixes.getLongitude(0), fixes.getSpeed(0), fixes.getBearing(0), fixes.getAccuracy(0));
+        }
+        session.setGeofence(state.getCurrentGeofence(), state.isWithinGeofence(), state.getLastTransition(), state.getTransitionTimeMillis());
+        session.setRegisteredIds(mGeofenceWindow.getRegisteredIds());
+
+        try {
+            session.writeTo(mSessionFile);
+            if (!fixes.isEmpty()) {
+                mLastSessionSave = fixes.getTime(0);
+            }
+        } catch (IOException e) {
+            Log.d(TAG, "writeSession() :: " + e.getMessage());
+        }
+    }
+
+    /**
+     * bootMillis(): Wall time of the last boot, to tell whether registered OS geofences survived
+     */
+    private static long bootMillis() {
+        return System.currentTimeMillis() - SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * loadLimitRules(): Compiles the limit rules on a background thread and swaps them into the pipeline. A rule file
+     * in the files directory replaces the one shipped in the assets; a malformed file keeps the current rules.
+     */
+    private void loadLimitRules() {
+        final File override = new File(getFilesDir(), LimitRules.ASSET_NAME);
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                InputStream in = null;
+                try {
+                    in = override.isFile() ? new FileInputStream(override) : getAssets().open(LimitRules.ASSET_NAME);
+                    LimitRules rules = LimitRules.parse(new InputStreamReader(in, "UTF-8"), mGeofenceCatalog, TimeZone.getDefault());
+                    mPipeline.setRules(rules);
+                    Log.d(TAG, "loadLimitRules() :: " + rules.getRuleCount() + " rules, " + rules.getIgnoredCount() + " for unknown geofences");
+                } catch (IOException | IllegalArgumentException e) {
+                    Log.d(TAG, "loadLimitRules() :: Keeping current rules: " + e.getMessage());
+                } finally {
+                    if (in != null) {
+                        try {
+                            in.close();
+                        } catch (IOException e) {
+                            Log.d(TAG, "loadLimitRules() :: " + e.getMessage());
+                        }
+                    }
+                }
+            }
+        }, RULES_THREAD_NAME).start();
+    }
+
+    /**
+     * startPipelineThread(): Starts the background thread that receives and processes location fixes. The executor
+     * handed to asynchronous APIs is bound to this thread and session: callbacks arriving after the session stopped
+     * or was restarted are dropped instead of running against the state of another session.
+     */
+    private void startPipelineThread() {
+        mPipelineThread = new HandlerThread(PIPELINE_THREAD_NAME, Process.THREAD_PRIORITY_DEFAULT);
+        mPipelineThread.start();
+        final Handler handler = new Handler(mPipelineThread.getLooper());
+        final int session = ++mPipelineSession;
+        mPipelineHandler = handler;
+        mPipelineExecutor = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (session != mPipelineSession) {
+                            Log.d(TAG, "execute() :: Dropping a callback of stopped session " + session);
+                            return;
+                        }
+                        command.run();
+                    }
+                });
+            }
+        };
+
+        final File tripLogDirectory = new File(getFilesDir(), TRIP_LOG_DIRECTORY);
+        mPipelineHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // Record raw fixes for later review of warnings
+                try {
+                    mTripRecorder = TripRecorder.open(tripLogDirectory, TripRecorder.DEFAULT_SEGMENT_BYTES);
+                } catch (IOException e) {
+                    Log.d(TAG, "Trip log unavailable: " + e.getMessage());
+                    mTripRecorder = null;
+                }
+            }
+        });
+    }
+
+    /**
+     * stopPipelineThread(): Resets the pipeline state on the pipeline thread, then ends the thread once every fix already queued is processed
+     */
+    private void stopPipelineThread() {
+        if (mPipelineHandler == null) {
+            return;
+        }
+
+        final File sessionFile = mSessionFile;
+        mPipelineHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Log.d(TAG, "stopPipelineThread() :: Direction changes: " + mPipeline.getDirectionChangeCount()
+                        + ", geofence add/remove calls: " + mGeofenceWindow.getCallCount());
+                Log.d(TAG, "stopPipelineThread() :: Metrics\n" + mMetrics.format(new StringBuilder()));
+
+                mPipeline.reset();
+                mGeofenceWindow.clear();
+
+                // Stopped on purpose: nothing to resume
+                sessionFile.delete();
+                mLastSessionSave = 0;
+
+                if (mTripRecorder != null) {
+                    mTripRecorder.close();
+                    mTripRecorder = null;
+                }
+
+                Looper.myLooper().quit();
+            }
+        });
+
+        // Callbacks still pending for this session are dropped by its executor
+        mPipelineSession++;
+        mPipelineThread = null;
+        mPipelineHandler = null;
+        mPipelineExecutor = null;
     }
 
     /**
@@ -330,11 +900,21 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
 
         mBtnStartMonitoring.setTag(BUTTON_TAG_INIT);
 
+        mDrivingState.setEngineRunning(false);
+
+        // Stopped before any fix arrived
+        if (mMonitorStartNanos != 0) {
+            mMonitorStartNanos = 0;
+            TraceCompat.endAsyncSection("firstFix", TRACE_COOKIE_FIRST_FIX);
+        }
+
         if (mFusedLocationClient != null && mLocationCallback != null) {
             mFusedLocationClient.removeLocationUpdates(mLocationCallback);
             Log.d(TAG, "Stopping Process");
             removeGeofences();
         }
+
+        stopPipelineThread();
     }
 
 
@@ -352,6 +932,9 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         mTxtTurnStatus.setText("-");
         mTxtDirection.setText("-");
 
+        // Texts were written behind the renderer's back
+        mRenderer.reset();
+
         mTxtSpeed.setVisibility(View.VISIBLE);
         mTxtLong.setVisibility(View.VISIBLE);
         mTxtLat.setVisibility(View.VISIBLE);
@@ -377,19 +960,7 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
      */
     protected void initializeLocation() {
         // Create the location request to start receiving updates
-        mLocationRequest = new LocationRequest();
-        mLocationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
-        mLocationRequest.setInterval(LOCATION_UPDATE_INTERVAL);
-        mLocationRequest.setFastestInterval(LOCATION_UPDATE_INTERVAL);
-
-        // Create LocationSettingsRequest object using location request
-        LocationSettingsRequest.Builder builder = new LocationSettingsRequest.Builder();
-        builder.addLocationRequest(mLocationRequest);
-        LocationSettingsRequest locationSettingsRequest = builder.build();
-
-        // Check whether location settings are satisfied
-        SettingsClient settingsClient = LocationServices.getSettingsClient(this);
-        settingsClient.checkLocationSettings(locationSettingsRequest);
+        mLocationRequest = createLocationRequest();
 
         // FusedLocationClient for interfacing with actual location details
         mFusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
@@ -398,7 +969,9 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         mLocationCallback = new LocationCallback() {
             @Override
             public void onLocationResult(LocationResult locationResult) {
-                onLocationChanged(locationResult.getLastLocation());
+                long start = System.nanoTime();
+                onLocationBatch(locationResult.getLocations(), start);
+                mMetrics.recordSince(Metrics.STAGE_LOCATION_RESULT, start);
             }
         };
 
@@ -408,408 +981,264 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
             return;
         }
 
-        mFusedLocationClient.requestLocationUpdates(mLocationRequest, mLocationCallback, Looper.myLooper());
+        // Fixes are delivered to, and processed on, the pipeline thread
+        mFusedLocationClient.requestLocationUpdates(mLocationRequest, mLocationCallback, mPipelineThread.getLooper());
+
+        // Not needed for the first fix: the settings check follows the request instead of delaying it
+        LocationSettingsRequest.Builder builder = new LocationSettingsRequest.Builder();
+        builder.addLocationRequest(mLocationRequest);
+        SettingsClient settingsClient = LocationServices.getSettingsClient(this);
+        settingsClient.checkLocationSettings(builder.build());
     }
 
     /**
-     * initializeGeofence(): Initializes geofencing client and other assets from the GeofenceHelper class
+     * createLocationRequest(): Location request for the current mode of mSamplingPolicy
      */
-    public void initializeGeofence() {
-        mGeofencingClient = LocationServices.getGeofencingClient(this);
-        mGeofenceHelper = new GeofenceHelper(this);
+    private LocationRequest createLocationRequest() {
+        LocationRequest request = new LocationRequest();
+        request.setPriority(mSamplingPolicy.getPriority() == SamplingPolicy.PRIORITY_HIGH_ACCURACY ? LocationRequest.PRIORITY_HIGH_ACCURACY : LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY);
+        request.setInterval(mSamplingPolicy.getIntervalMillis());
+        request.setFastestInterval(mSamplingPolicy.getFastestIntervalMillis());
+        request.setMaxWaitTime(mSamplingPolicy.getMaxWaitMillis());
+        return request;
     }
 
     /**
-     * onLocationChanged(): Triggered when there is a change in location based on FusedLocationClient
-     * @param location - Location object
+     * applySamplingPolicy(): Re-issues the location request after a sampling mode change (pipeline thread). Requesting
+     * again with the same callback replaces the previous request.
      */
-    protected void onLocationChanged(Location location) {
-        double kmPerHour = location.getSpeed() * 18 / 5;
-        double longitude = location.getLongitude();
-        double latitude = location.getLatitude();
+    private void applySamplingPolicy() {
+        Log.d(TAG, "Sampling mode " + mSamplingPolicy.getMode() + ": every " + mSamplingPolicy.getIntervalMillis() + " ms");
 
-        if (mPreviousLocation == null) {
-            mPreviousLocation = location;
+        if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED && ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
             return;
         }
 
-        double distanceDelta = mPreviousLocation.distanceTo(location);
+        mFusedLocationClient.requestLocationUpdates(createLocationRequest(), mLocationCallback, Looper.myLooper());
+    }
 
-        // User changed position
-        if (distanceDelta != 0) {
+    /**
+     * initializeGeofence(): Initializes the registration window; the geofencing client is only created by its first call
+     */
+    public void initializeGeofence() {
+        final Executor executor = mPipelineExecutor;
+        GeofenceClient client = new GeofenceClient() {
+            GeofenceClient mClient;
 
-            // Check if northbound or southbound
+            private GeofenceClient client() {
+                if (mClient == null) {
+                    mClient = mGeofenceHelper.getGeofenceClient(getGeofencingClient(), mGeofenceCatalog, executor);
+                }
+                return mClient;
+            }
 
-            double latDelta = location.getLatitude() - mPreviousLocation.getLatitude();
+            @Override
+            public void addGeofences(List<String> ids, Callback callback) {
+                client().addGeofences(ids, callback);
+            }
 
-            Log.d(TAG, "latDelta: " + latDelta);
+            @Override
+            public void removeGeofences(List<String> ids, Callback callback) {
+                client().removeGeofences(ids, callback);
+            }
+        };
+        mGeofenceWindow = new GeofenceWindowManager(mGeofenceCatalog, timed(client), GEOFENCE_WINDOW_SIZE, GEOFENCE_WINDOW_INTERVAL, new GeofenceWindowManager.Listener() {
+            @Override
+            public void onBatchComplete() {
+                // The registered set changed (or was rolled back): a process restarted now must see it
+                saveSession();
+            }
+        });
+    }
 
-            if (latDelta < 0) {
-                // Southbound
+    /**
+     * getGeofencingClient(): The geofencing client, created on first use off the start-up path
+     */
+    synchronized GeofencingClient getGeofencingClient() {
+        if (mGeofencingClient == null) {
+            mGeofencingClient = LocationServices.getGeofencingClient(this);
+        }
+        return mGeofencingClient;
+    }
 
-                Log.d(TAG, "SOUTHBOUND");
+    /**
+     * timed(): Wraps a GeofenceClient so that every call is counted and timed from the call to its completion
+     * @param client - Client doing the calls
+     */
+    private static GeofenceClient timed(final GeofenceClient client) {
+        return new GeofenceClient() {
+            @Override
+            public void addGeofences(List<String> ids, Callback callback) {
+                mMetrics.increment(Metrics.COUNTER_GEOFENCE_IPC_CALLS);
+                client.addGeofences(ids, timed(callback, System.nanoTime()));
+            }
 
-                if (mIsGefencePushNeeded) {
-                    pushGeofencesSouth();
-                    mIsGefencePushNeeded = false;
-                } else {
-                    if (!mTrajectory.equals(DIRECTION_SOUTHBOUND)) {
-                        removeGeofences();
-                        mIsGefencePushNeeded = true;
-                        return;
-                    }
-                }
+            @Override
+            public void removeGeofences(List<String> ids, Callback callback) {
+                mMetrics.increment(Metrics.COUNTER_GEOFENCE_IPC_CALLS);
+                client.removeGeofences(ids, timed(callback, System.nanoTime()));
+            }
+        };
+    }
 
-                mTrajectory = DIRECTION_SOUTHBOUND;
-            } else {
-                // Northbound
+    private static GeofenceClient.Callback timed(final GeofenceClient.Callback callback, final long startNanos) {
+        return new GeofenceClient.Callback() {
+            @Override
+            public void onComplete(boolean success) {
+                mMetrics.recordSince(Metrics.STAGE_GEOFENCE_IPC, startNanos);
+                callback.onComplete(success);
+            }
+        };
+    }
 
-                Log.d(TAG, "NORTHBOUND");
+    /**
+     * onLocationBatch(): Triggered on the pipeline thread with the fixes of one FusedLocationClient delivery. Batched
+     * deliveries (see SamplingPolicy.getMaxWaitMillis()) carry several fixes; all of them go through the pipeline in
+     * time order, and the display and the OS geofence window are updated once for the whole batch.
+     * @param locations - Fixes of the delivery, oldest first as delivered
+     * @param receivedNanos - System.nanoTime() when the delivery arrived
+     */
+    protected void onLocationBatch(List<Location> locations, long receivedNanos) {
+        // Fixes still queued when monitoring stopped
+        if (!mDrivingState.get().isEngineRunning()) {
+            mMetrics.add(Metrics.COUNTER_FIXES_DROPPED, locations.size());
+            return;
+        }
 
-                if (mIsGefencePushNeeded) {
-                    pushGeofencesNorth();
-                    mIsGefencePushNeeded = false;
-                } else {
-                    if (!mTrajectory.equals(DIRECTION_NORTHBOUND)) {
-                        removeGeofences();
-                        mIsGefencePushNeeded = true;
-                        return;
-                    }
-                }
+        FixBatch batch = mFixBatch;
+        batch.clear();
+        for (int i = 0, count = locations.size(); i < count; i++) {
+            Location location = locations.get(i);
+            batch.add(location.getTime(), location.getLatitude(), location.getLongitude(), location.getSpeed(), location.hasSpeed(), location.getBearing(), location.hasBearing(), location.getAccuracy());
+        }
+        batch.sortByTime();
+
+        int lastMoved = -1;
+        boolean resample = false;
+        for (int i = 0; i < batch.size(); i++) {
+            // Fixes repeated from a previous delivery
+            if (batch.getTime(i) <= mPipeline.getLastFixMillis()) {
+                mMetrics.increment(Metrics.COUNTER_FIXES_DROPPED);
+                continue;
+            }
 
-                mTrajectory = DIRECTION_NORTHBOUND;
+            long start = System.nanoTime();
+            if (mPipeline.onFix(batch.getTime(i), batch.getLatitude(i), batch.getLongitude(i), batch.getSpeed(i), batch.hasSpeed(i), batch.getBearing(i), batch.hasBearing(i), batch.getAccuracy(i))) {
+                lastMoved = i;
             }
+            mMetrics.recordSince(Metrics.STAGE_FIX, start);
+            mMetrics.increment(Metrics.COUNTER_FIXES_PROCESSED);
 
-            // Acceleration with constant time
-            double acceleration = (location.getSpeed() - mPreviousLocation.getSpeed()) / 1;
+            if (mMonitorStartNanos != 0) {
+                onFirstFix();
+            }
 
-            // Acceleration with time delta
-            double accelerationTd = (location.getSpeed() - mPreviousLocation.getSpeed()) / ((location.getTime() - mPreviousLocation.getTime()) / 1000.0);
+            recordTrip(batch, i);
 
-            // Set TextView values
-            setTextViewValues(kmPerHour, new LatLng(latitude, longitude), acceleration, accelerationTd, mTrajectory);
+            // Sample faster on approach to the fences and slower away from them or while parked
+            resample |= mSamplingPolicy.update(batch.getTime(i), mPipeline.getSpeedKmh() / 3.6, mPipeline.getNearestFenceDistance());
+        }
 
-            // Modify TextViews for warnings when speed & acceleration thresholds are reached
-            checkNextTurnLocation(mCurrentGeofence, location);
+        if (resample) {
+            applySamplingPolicy();
+        }
+
+        // User changed position
+        if (lastMoved >= 0) {
+            // Keep the OS backup fences ahead of the vehicle
+            updateGeofenceWindow(batch, lastMoved);
+
+            // Per-fix logging allocates; only when enabled with "adb shell setprop log.tag.MAIN-ACT DEBUG"
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, batch.size() + " fixes, " + mPipeline.getAcceleration() + " m/s\u00B2");
+            }
 
-            mPreviousLocation = location;
+            // Format here, into a reused snapshot; the UI thread only binds the latest one
+            String currentGeofence = mDrivingState.get().getCurrentGeofence();
+            DisplaySnapshot snapshot = mSnapshots.getBack();
+            snapshot.set(mPipeline, batch.getTime(lastMoved), batch.getLatitude(lastMoved), batch.getLongitude(lastMoved), currentGeofence != null ? mGeofenceCatalog.indexOf(currentGeofence) : -1);
+            snapshot.setReceivedNanos(receivedNanos);
+            postSnapshot();
 
-            // Refresh TextViews
-            invalidateTextViews();
+            if (batch.getTime(lastMoved) - mLastSessionSave >= SESSION_SAVE_INTERVAL) {
+                saveSession();
+            }
         }
     }
 
     /**
-     * invalidateTextViews(): method to refresh TextViews
+     * onFirstFix(): Closes the start-up trace once the first fix after a (re)start went through the pipeline
      */
-    private void invalidateTextViews() {
-        mTxtSpeed.invalidate();
-        mTxtSpeed.requestLayout();
-
-        mTxtLong.invalidate();
-        mTxtLong.requestLayout();
-
-        mTxtLat.invalidate();
-        mTxtLat.requestLayout();
-
-        mTxtLastGeofence.invalidate();
-        mTxtLastGeofence.requestLayout();
-
-        mTxtIsInGeofence.invalidate();
-        mTxtIsInGeofence.requestLayout();
-
-        mTxtSpdStatus.invalidate();
-        mTxtSpdStatus.requestLayout();
-
-        mTxtTurnStatus.invalidate();
-        mTxtTurnStatus.requestLayout();
-
-        mTxtAcceleration.invalidate();
-        mTxtAcceleration.requestLayout();
-
-        mTxtDirection.invalidate();
-        mTxtDirection.requestLayout();
+    private void onFirstFix() {
+        long startNanos = mMonitorStartNanos;
+        mMonitorStartNanos = 0;
+        mMetrics.recordSince(Metrics.STAGE_FIRST_FIX, startNanos);
+        TraceCompat.endAsyncSection("firstFix", TRACE_COOKIE_FIRST_FIX);
+        Log.d(TAG, "onFirstFix() :: " + (System.nanoTime() - startNanos) / 1000000 + " ms after start");
     }
 
     /**
-     * checkNextTurnLocation(): Checks if current location is near on of the turns. If yes, function will send notification
-     * @param geofenceId
-     * @param currrentLocation
+     * postSnapshot(): Publishes the back snapshot to the UI thread, bound on the next display frame. If the previous one
+     * is not bound yet it is replaced, so the UI never falls behind the pipeline and binds at most once per frame.
      */
-    private void checkNextTurnLocation(String geofenceId, Location currrentLocation) {
-        Location nextTurn = new Location("");
-        String trnStatus = "";
+    private void postSnapshot() {
+        if (mSnapshots.publish()) {
+            // Choreographer accepts callbacks from any thread and runs them on its own (main) looper
+            mChoreographer.postFrameCallback(mBindSnapshot);
+        }
+    }
 
-        if (!mIsWithinGeofence) {
+    /**
+     * recordTrip(): Appends a raw fix to the trip log; recording stops on the first write failure
+     * @param batch - Fixes being processed
+     * @param position - Position of the fix in the batch
+     */
+    private void recordTrip(FixBatch batch, int position) {
+        if (mTripRecorder == null) {
             return;
         }
 
-        if (geofenceId.equals(getString(R.string.SB_SAN_SIMON_ID))) {
-            nextTurn.setLatitude(Double.parseDouble(getString(R.string.SB_SAN_SIMON_TRN_LAT)));
-            nextTurn.setLongitude(Double.parseDouble(getString(R.string.SB_SAN_SIMON_TRN_LON)));
-            trnStatus = "Nearing San Simon right turn";
-        } else if (geofenceId.equals(getString(R.string.SB_DON_ANTONIO_ID))) {
-            nextTurn.setLatitude(Double.parseDouble(getString(R.string.SB_DON_ANTONIO_TRN_LAT)));
-            nextTurn.setLongitude(Double.parseDouble(getString(R.string.SB_DON_ANTONIO_TRN_LON)));
-            trnStatus = "Nearing Don Antonio right turn";
-        } else if (geofenceId.equals(getString(R.string.SB_LUZON_AVE_ID))) {
-            nextTurn.setLatitude(Double.parseDouble(getString(R.string.SB_LUZON_AVE_TRN_LAT)));
-            nextTurn.setLongitude(Double.parseDouble(getString(R.string.SB_LUZON_AVE_TRN_LON)));
-            trnStatus = "Nearing Luzon Ave right turn";
-        } else if (geofenceId.equals(getString(R.string.SB_TANDANG_SORA_ID))) {
-            nextTurn.setLatitude(Double.parseDouble(getString(R.string.SB_TANDANG_SORA_TRN_LAT)));
-            nextTurn.setLongitude(Double.parseDouble(getString(R.string.SB_TANDANG_SORA_TRN_LON)));
-            trnStatus = "Nearing Tandang Sora right turn";
-        } else if (geofenceId.equals(getString(R.string.SB_CENTRAL_AVE_ID))) {
-            nextTurn.setLatitude(Double.parseDouble(getString(R.string.SB_CENTRAL_AVE_TRN_LAT)));
-            nextTurn.setLongitude(Double.parseDouble(getString(R.string.SB_CENTRAL_AVE_TRN_LON)));
-            trnStatus = "Nearing Central Ave right turn";
-        } else if (geofenceId.equals(getString(R.string.NB_UNIVERSITY_AVE_ID))) {
-            nextTurn.setLatitude(Double.parseDouble(getString(R.string.NB_UNIVERSITY_AVE_TRN_LAT)));
-            nextTurn.setLongitude(Double.parseDouble(getString(R.string.NB_UNIVERSITY_AVE_TRN_LON)));
-            trnStatus = "Nearing University Ave right turn";
-        } else if (geofenceId.equals(getString(R.string.NB_TANDANG_SORA_ID))) {
-            nextTurn.setLatitude(Double.parseDouble(getString(R.string.NB_TANDANG_SORA_TRN_LAT)));
-            nextTurn.setLongitude(Double.parseDouble(getString(R.string.NB_TANDANG_SORA_TRN_LON)));
-            trnStatus = "Nearing Tandang Sora right turn";
-        } else if (geofenceId.equals(getString(R.string.NB_ZUZUARREGUI_ST_ID))) {
-            nextTurn.setLatitude(Double.parseDouble(getString(R.string.NB_ZUZUARREGUI_ST_TRN_LAT)));
-            nextTurn.setLongitude(Double.parseDouble(getString(R.string.NB_ZUZUARREGUI_ST_TRN_LON)));
-            trnStatus = "Nearing Zuzuarregui St right turn";
-        } else if (geofenceId.equals(getString(R.string.NB_AMSTERDAM_AVE_ID))) {
-            nextTurn.setLatitude(Double.parseDouble(getString(R.string.NB_AMSTERDAM_AVE_TRN_LAT)));
-            nextTurn.setLongitude(Double.parseDouble(getString(R.string.NB_AMSTERDAM_AVE_TRN_LON)));
-            trnStatus = "Nearing Amsterdam Ave right turn";
-        } else if (geofenceId.equals(getString(R.string.NB_BATASAN_ID))) {
-            nextTurn.setLatitude(Double.parseDouble(getString(R.string.NB_BATASAN_TRN_LAT)));
-            nextTurn.setLongitude(Double.parseDouble(getString(R.string.NB_BATASAN_TRN_LON)));
-            trnStatus = "Nearing Batasan right turn";
-        } else if (geofenceId.equals(getString(R.string.NB_IBP_RD_ID))) {
-            nextTurn.setLatitude(Double.parseDouble(getString(R.string.NB_IBP_RD_TRN_LAT)));
-            nextTurn.setLongitude(Double.parseDouble(getString(R.string.NB_IBP_RD_TRN_LON)));
-            trnStatus = "Nearing IBP Road right turn";
-        }
-
-        if (currrentLocation.distanceTo(nextTurn) <= 50) {
-            mNotificationHelper.sendHighPriorityNotification("NEARING TURN", trnStatus, MainActivity.class, NOTIFICATION_ID_RIGHT_TURN);
-        }
-    }
-
-    /**
-     * checkLimits(): Sets the display if speed and/or acceleration reaches set threshold
-     * @param speed
-     * @param acceleration
-     */
-    private void checkLimits(double speed, double acceleration) {
-        if (mIsWithinGeofence) {
-            if (speed > 40) {
-                if (acceleration > 1.96 || acceleration < -1.96) {
-                    mTxtSpdStatus.setText(getString(R.string.SPD_ACC_LIMIT));
-                    mTxtSpeed.setTextColor(getResources().getColor(R.color.pastel_red));
-                    mTxtAcceleration.setTextColor(getResources().getColor(R.color.pastel_red));
-                } else {
-                    mTxtSpdStatus.setText(getString(R.string.SPD_LIMIT));
-                    mTxtSpeed.setTextColor(getResources().getColor(R.color.pastel_red));
-                    mTxtAcceleration.setTextColor(getResources().getColor(android.R.color.secondary_text_light));
-                }
-            } else {
-                if (acceleration > 1.96 || acceleration < -1.96) {
-                    mTxtSpdStatus.setText(getString(R.string.ACC_LIMIT));
-                    mTxtAcceleration.setTextColor(getResources().getColor(R.color.pastel_red));
-                } else {
-                    mTxtSpdStatus.setText(getString(R.string.SPD_ACC_NORMAL));
-                    mTxtAcceleration.setTextColor(getResources().getColor(android.R.color.secondary_text_light));
-                }
-                mTxtSpeed.setTextColor(getResources().getColor(android.R.color.secondary_text_light));
-            }
-        } else {
-            if (speed > 60) {
-                if (acceleration > 1.47 || acceleration < -1.47) {
-                    mTxtSpdStatus.setText(getString(R.string.SPD_ACC_LIMIT));
-                    mTxtSpeed.setTextColor(getResources().getColor(R.color.pastel_red));
-                    mTxtAcceleration.setTextColor(getResources().getColor(R.color.pastel_red));
-                } else {
-                    mTxtSpdStatus.setText(getString(R.string.SPD_LIMIT));
-                    mTxtSpeed.setTextColor(getResources().getColor(R.color.pastel_red));
-                    mTxtAcceleration.setTextColor(getResources().getColor(android.R.color.secondary_text_light));
-                }
-            } else {
-                if (acceleration > 1.47 || acceleration < -1.47) {
-                    mTxtSpdStatus.setText(getString(R.string.ACC_LIMIT));
-                    mTxtAcceleration.setTextColor(getResources().getColor(R.color.pastel_red));
-                } else {
-                    mTxtSpdStatus.setText(getString(R.string.SPD_ACC_NORMAL));
-                    mTxtAcceleration.setTextColor(getResources().getColor(android.R.color.secondary_text_light));
-                }
-                mTxtSpeed.setTextColor(getResources().getColor(android.R.color.secondary_text_light));
-            }
+        int limitFlags = mPipeline.getLimitFlags();
+        int flags = (mPipeline.isWithinGeofence() ? TripRecorder.FLAG_IN_GEOFENCE : 0)
+                | ((limitFlags & DrivingPipeline.LIMIT_SPEED) != 0 ? TripRecorder.FLAG_SPEED_LIMIT : 0)
+                | ((limitFlags & DrivingPipeline.LIMIT_ACCELERATION) != 0 ? TripRecorder.FLAG_ACCELERATION_LIMIT : 0)
+                | (batch.hasBearing(position) ? 0 : TripRecorder.FLAG_NO_BEARING)
+                | (batch.hasSpeed(position) ? 0 : TripRecorder.FLAG_NO_SPEED);
+
+        try {
+            mTripRecorder.append(batch.getTime(position), batch.getLatitude(position), batch.getLongitude(position), batch.getSpeed(position), batch.getBearing(position), batch.getAccuracy(position), (float) mPipeline.getAcceleration(), flags);
+        } catch (IOException e) {
+            Log.d(TAG, "Trip log write failed: " + e.getMessage());
+            mTripRecorder.close();
+            mTripRecorder = null;
         }
     }
 
     /**
-     * setTextViewValues(): Sets relevant TextViews with corresponding values
-     * @param speed - Speed in km/h
-     * @param latLng - LatLng object for coordinates
-     * @param acceleration - Acceleration in m/s^2 (Constant Time)
-     * @param accelerationTd - Acceleration in m/s^2 (Delta Time)
-     * @param trajectory - Direction of current traffic (Southbound/Northbound)
+     * pushGeofences(): Switch geofence monitoring to the fences of a direction
+     *  - Southbound: San Simon, Don Antonio, Luzon Ave, Tandang Sora, Central
+     *  - Northbound: University Ave, Tandang Sora, Zuzuarregui St, Amsterdam Ave, Batasan Rd, IBP Rd
+     * The pipeline's GeofenceEngine already monitors all of them; with the OS only the nearest fences ahead are registered (see updateGeofenceWindow()).
+     * @param direction - GeofenceCatalog.DIRECTION_SOUTHBOUND or GeofenceCatalog.DIRECTION_NORTHBOUND
      */
-    @SuppressLint({"DefaultLocale", "SetTextI18n"})
-    private void setTextViewValues(double speed, LatLng latLng, double acceleration, double accelerationTd, String trajectory) {
-        mTxtSpeed.setText(String.format("%.2f", speed) + "km/h");
-        mTxtLat.setText(String.valueOf(latLng.latitude));
-        mTxtLong.setText(String.valueOf(latLng.longitude));
-        mTxtDirection.setText(trajectory);
+    private void pushGeofences(int direction) {
+        Log.d(TAG, "Pushing " + (direction == GeofenceCatalog.DIRECTION_SOUTHBOUND ? "South" : "North") + " Geofences");
 
-        if (mNumberFormat == null) {
-            mNumberFormat = new DecimalFormat("#0.00");
-        }
-
-        mTxtAcceleration.setText(mNumberFormat.format(acceleration) + " m/s\u00B2" + " || " + mNumberFormat.format(accelerationTd) + " m/s\u00B2");
-        Log.d(TAG, mNumberFormat.format(acceleration) + " m/s\u00B2");
-
-        if (mCurrentGeofence != null) {
-            String[] currentLocationSplit = mCurrentGeofence.split("_");
+        mGeofenceWindow.setCandidates(mGeofenceCatalog.getStart(direction), mGeofenceCatalog.getEnd(direction));
+    }
 
-            if (currentLocationSplit.length == 3) {
-                String currentLocation = currentLocationSplit[1].substring(0, 1).toUpperCase() + currentLocationSplit[1].substring(1).toLowerCase() + " " + currentLocationSplit[2].substring(0, 1).toUpperCase() + currentLocationSplit[2].substring(1).toLowerCase();
-                mTxtLastGeofence.setText((mCurrentGeofence.equals("")) ? "-" : currentLocation);
-            } else {
-                mTxtLastGeofence.setText("-");
-            }
-        } else {
-            mTxtLastGeofence.setText("-");
-        }
-
-        mTxtIsInGeofence.setText(String.valueOf(mIsWithinGeofence));
-
-        checkLimits(speed, acceleration);
-    }
-
-    /**
-     * pushGeofencesSouth(): Push Southbound geofences
-     *  - San Simon
-     *  - Don Antonio
-     *  - Luzon Ave
-     *  - Tandang Sora
-     *  - Central
-     */
-    private void pushGeofencesSouth() {
-        removeGeofences();
-        Log.d(TAG, "Pushing South Geofences");
-        addGeofence(
-                getString(R.string.SB_SAN_SIMON_ID),
-                new LatLng(Double.parseDouble(getString(R.string.SB_SAN_SIMON_LAT)), Double.parseDouble(getString(R.string.SB_SAN_SIMON_LON))),
-                Float.parseFloat(getString(R.string.SB_SAN_SIMON_RAD))
-        );
-
-        addGeofence(
-                getString(R.string.SB_DON_ANTONIO_ID),
-                new LatLng(Double.parseDouble(getString(R.string.SB_DON_ANTONIO_LAT)), Double.parseDouble(getString(R.string.SB_DON_ANTONIO_LON))),
-                Float.parseFloat(getString(R.string.SB_DON_ANTONIO_RAD))
-        );
-
-        addGeofence(
-                getString(R.string.SB_LUZON_AVE_ID),
-                new LatLng(Double.parseDouble(getString(R.string.SB_LUZON_AVE_LAT)), Double.parseDouble(getString(R.string.SB_LUZON_AVE_LON))),
-                Float.parseFloat(getString(R.string.SB_LUZON_AVE_RAD))
-        );
-
-        addGeofence(
-                getString(R.string.SB_TANDANG_SORA_ID),
-                new LatLng(Double.parseDouble(getString(R.string.SB_TANDANG_SORA_LAT)), Double.parseDouble(getString(R.string.SB_TANDANG_SORA_LON))),
-                Float.parseFloat(getString(R.string.SB_TANDANG_SORA_RAD))
-        );
-
-        addGeofence(
-                getString(R.string.SB_CENTRAL_AVE_ID),
-                new LatLng(Double.parseDouble(getString(R.string.SB_CENTRAL_AVE_LAT)), Double.parseDouble(getString(R.string.SB_CENTRAL_AVE_LON))),
-                Float.parseFloat(getString(R.string.SB_CENTRAL_AVE_RAD))
-        );
-    }
-
-    /**
-     * pushgeofencesNorth(): Push Northbound geofences
-     *  - University Ave
-     *  - Tandang Sora
-     *  - Zuzuarregui St
-     *  - Amsterdam Ave
-     *  - Batasan Rd
-     *  - IBP Rd
-     */
-    private void pushGeofencesNorth() {
-        removeGeofences();
-        Log.d(TAG, "Pushing North Geofences");
-        addGeofence(
-                getString(R.string.NB_UNIVERSITY_AVE_ID),
-                new LatLng(Double.parseDouble(getString(R.string.NB_UNIVERSITY_AVE_LAT)), Double.parseDouble(getString(R.string.NB_UNIVERSITY_AVE_LON))),
-                Float.parseFloat(getString(R.string.NB_UNIVERSITY_AVE_RAD))
-        );
-
-        addGeofence(
-                getString(R.string.NB_TANDANG_SORA_ID),
-                new LatLng(Double.parseDouble(getString(R.string.NB_TANDANG_SORA_LAT)), Double.parseDouble(getString(R.string.NB_TANDANG_SORA_LON))),
-                Float.parseFloat(getString(R.string.NB_TANDANG_SORA_RAD))
-        );
-
-        addGeofence(
-                getString(R.string.NB_ZUZUARREGUI_ST_ID),
-                new LatLng(Double.parseDouble(getString(R.string.NB_ZUZUARREGUI_ST_LAT)), Double.parseDouble(getString(R.string.NB_ZUZUARREGUI_ST_LON))),
-                Float.parseFloat(getString(R.string.NB_ZUZUARREGUI_ST_RAD))
-        );
-
-        addGeofence(
-                getString(R.string.NB_AMSTERDAM_AVE_ID),
-                new LatLng(Double.parseDouble(getString(R.string.NB_AMSTERDAM_AVE_LAT)), Double.parseDouble(getString(R.string.NB_AMSTERDAM_AVE_LON))),
-                Float.parseFloat(getString(R.string.NB_AMSTERDAM_AVE_RAD))
-        );
-
-        addGeofence(
-                getString(R.string.NB_BATASAN_ID),
-                new LatLng(Double.parseDouble(getString(R.string.NB_BATASAN_LAT)), Double.parseDouble(getString(R.string.NB_BATASAN_LON))),
-                Float.parseFloat(getString(R.string.NB_BATASAN_RAD))
-        );
-
-        addGeofence(
-                getString(R.string.NB_IBP_RD_ID),
-                new LatLng(Double.parseDouble(getString(R.string.NB_IBP_RD_LAT)), Double.parseDouble(getString(R.string.NB_IBP_RD_LON))),
-                Float.parseFloat(getString(R.string.NB_IBP_RD_RAD))
-        );
-    }
-
-    /**
-     * addGeofence(): method to add a geofence
-     * @param geofenceId - Geofence Identifier
-     * @param latLng - LatLng object for coordinates
-     * @param radius - Radius of Geofence circle
+    /**
+     * updateGeofenceWindow(): Rolls the registered OS geofence window forward to the current location (rate-limited)
+     * @param batch - Fixes being processed
+     * @param position - Position of the current fix in the batch
      */
-    private void addGeofence(String geofenceId, LatLng latLng, float radius) {
-        Geofence geofence = mGeofenceHelper.getGeofence(geofenceId, latLng, radius, Geofence.GEOFENCE_TRANSITION_ENTER | Geofence.GEOFENCE_TRANSITION_DWELL | Geofence.GEOFENCE_TRANSITION_EXIT);
-
-        PendingIntent pendingIntent = mGeofenceHelper.getPendingIntent();
-
-        GeofencingRequest geofencingRequest = mGeofenceHelper.getGeofencingRequest(geofence);
-
+    private void updateGeofenceWindow(FixBatch batch, int position) {
         if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
             ActivityCompat.requestPermissions(this, new String[]{android.Manifest.permission.ACCESS_FINE_LOCATION}, 101);
             return;
         }
 
-        mGeofencingClient.addGeofences(geofencingRequest, pendingIntent)
-                .addOnSuccessListener(new OnSuccessListener<Void>() {
-                    @Override
-                    public void onSuccess(Void unused) {
-                        Log.d(TAG, "Geofences added");
-                    }
-                })
-                .addOnFailureListener(new OnFailureListener() {
-                    @Override
-                    public void onFailure(@NonNull Exception e) {
-                        String errorMessage = mGeofenceHelper.getErrorString(e);
-
-                        Log.d(TAG, "onFailure " + errorMessage);
-                    }
-                });
+        mGeofenceWindow.update(batch.getLatitude(position), batch.getLongitude(position), batch.getBearing(position), batch.hasBearing(position), batch.getTime(position));
     }
 
     /**
@@ -817,11 +1246,14 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
      */
     public void removeGeofences() {
         PendingIntent pendingIntent = mGeofenceHelper.getPendingIntent();
+        final long start = System.nanoTime();
+        mMetrics.increment(Metrics.COUNTER_GEOFENCE_IPC_CALLS);
 
-        mGeofencingClient.removeGeofences(pendingIntent)
+        getGeofencingClient().removeGeofences(pendingIntent)
                 .addOnSuccessListener(this, new OnSuccessListener<Void>() {
                     @Override
                     public void onSuccess(Void aVoid) {
+                        mMetrics.recordSince(Metrics.STAGE_GEOFENCE_IPC, start);
                         // Geofences removed
                         Log.d(TAG, "GEOFENCES REMOVED");
                     }
@@ -829,12 +1261,131 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
                 .addOnFailureListener(this, new OnFailureListener() {
                     @Override
                     public void onFailure(@NonNull Exception e) {
+                        mMetrics.recordSince(Metrics.STAGE_GEOFENCE_IPC, start);
                         // Failed to remove geofences
                         Log.d(TAG, "FAIL GEOFENCES REMOVED");
                     }
                 });
     }
 
+    /**
+     * handleGeofenceTransition(): Publishes a transition (entry, dwell, exit) to the DrivingState and notifies the user
+     * @param context - Application Context
+     * @param geofenceId - Geofence Identifier
+     * @param displayName - Display name of the geofence
+     * @param transitionType - Geofence.GEOFENCE_TRANSITION_* (same values as GeofenceEngine.TRANSITION_*)
+     * @param timeMillis - Time of the transition
+     */
+    static void handleGeofenceTransition(Context context, String geofenceId, String displayName, int transitionType, long timeMillis) {
+        String title;
+        switch (transitionType) {
+            case Geofence.GEOFENCE_TRANSITION_ENTER:
+                title = "Entering Location";
+                break;
+            case Geofence.GEOFENCE_TRANSITION_DWELL:
+                title = "Dwelling Location";
+                break;
+            default:
+                title = "Exiting Location";
+                break;
+        }
+
+        // Subscribers, e.g. a visible MainActivity, show it as well
+        mDrivingState.onTransition(geofenceId, displayName, transitionType, timeMillis);
+
+        // An ENTER/DWELL burst updates one notification in place instead of alerting twice
+        postNotification(context, title, describeTransition(transitionType, displayName), NOTIFICATION_ID_GEOFENCE_TRANSITION);
+    }
+
+    /**
+     * postNotification(): Sends a notification through the shared NotificationHelper and counts it unless it was dropped
+     * @param context - Application Context
+     * @param title - Title
+     * @param body - Text
+     * @param notificationId - Notification ID
+     */
+    static void postNotification(Context context, String title, String body, int notificationId) {
+        int decision = getNotificationHelper(context).sendHighPriorityNotification(title, body, MainActivity.class, notificationId);
+        if (decision != NotificationThrottle.DECISION_SKIP) {
+            mMetrics.increment(Metrics.COUNTER_NOTIFICATIONS_POSTED);
+        }
+    }
+
+    /**
+     * describeTransition(): User-facing text of a transition, e.g. "Entering on: Luzon Ave"
+     * @param transitionType - Geofence.GEOFENCE_TRANSITION_*
+     * @param displayName - Display name of the geofence
+     */
+    static String describeTransition(int transitionType, String displayName) {
+        switch (transitionType) {
+            case Geofence.GEOFENCE_TRANSITION_ENTER:
+                return "Entering on: " + displayName;
+            case Geofence.GEOFENCE_TRANSITION_DWELL:
+                return "Dwelling on: " + displayName;
+            default:
+                return "Exiting: " + displayName;
+        }
+    }
+
+    /**
+     * getNotificationHelper(): The shared NotificationHelper, created with the app's rate limits on first use
+     * @param context - Application Context
+     */
+    static synchronized NotificationHelper getNotificationHelper(Context context) {
+        if (mNotificationHelper == null) {
+            NotificationHelper helper = new NotificationHelper(context.getApplicationContext());
+            helper.setRateLimit(NOTIFICATION_ID_RIGHT_TURN, TURN_ALERT_INTERVAL, TURN_DUPLICATE_WINDOW);
+            helper.setRateLimit(NOTIFICATION_ID_GEOFENCE_TRANSITION, GEOFENCE_ALERT_INTERVAL, GEOFENCE_DUPLICATE_WINDOW);
+            mNotificationHelper = helper;
+        }
+        return mNotificationHelper;
+    }
+
+    /**
+     * getTransitionQueue(): The shared TransitionQueue, whose worker publishes OS geofence transitions via handleGeofenceTransition()
+     * @param context - Application Context
+     */
+    static synchronized TransitionQueue getTransitionQueue(Context context) {
+        if (mTransitionQueue == null) {
+            final Context appContext = context.getApplicationContext();
+            mTransitionQueue = new TransitionQueue(TRANSITION_QUEUE_CAPACITY, TRANSITION_COLLAPSE_WINDOW, new TransitionQueue.Handler() {
+                @Override
+                public void onTransition(String geofenceId, int transition, long timeMillis) {
+                    handleGeofenceTransition(appContext, geofenceId, displayName(getGeofenceCatalog(appContext), geofenceId), transition, timeMillis);
+                }
+            }, mMetrics.getHistogram(Metrics.STAGE_TRANSITION));
+        }
+        return mTransitionQueue;
+    }
+
+    /**
+     * getGeofenceCatalog(): The process-wide GeofenceCatalog, loaded on first use, so the receiver path names fences
+     * exactly like the activity even when no activity exists
+     * @param context - Any Context
+     */
+    static synchronized GeofenceCatalog getGeofenceCatalog(Context context) {
+        if (mSharedCatalog == null) {
+            mSharedCatalog = new GeofenceHelper(context.getApplicationContext()).loadCatalog();
+        }
+        return mSharedCatalog;
+    }
+
+    /**
+     * displayName(): Display name of a geofence reported by the OS
+     * @param catalog - Fence definitions
+     * @param geofenceId - Geofence Identifier
+     * @return the catalog's name, or a name formatted from the ID for a fence the catalog no longer has
+     */
+    static String displayName(GeofenceCatalog catalog, String geofenceId) {
+        int fence = catalog.indexOf(geofenceId);
+        if (fence >= 0) {
+            return catalog.getDisplayName(fence);
+        }
+
+        String displayName = GeofenceNames.displayName(geofenceId);
+        return displayName != null ? displayName : geofenceId;
+    }
+
     /**
      * GeofenceBroadcastReceiver
      *
@@ -847,15 +1398,10 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
      *      - Type: String
      *      - Modifier: Final
      *      - Value: "BROADCAST"
-     *  !> NOTIFICATION_ID_GEOFENCE_TRANSITION: Constant for Notification ID, as required by notification channel
-     *      - Type: Int
-     *      - Modifier: Final
-     *      - Value: 2001
      */
     public static class GeofenceBroadcastReceiver extends BroadcastReceiver {
 
         protected final String TAG = "BROADCAST";
-        private final int NOTIFICATION_ID_GEOFENCE_TRANSITION = 2001;
 
         /**
          * onReceive(): invoked when geofences are triggered (entry, dwell, exit)
@@ -864,6 +1410,7 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
          */
         @Override
         public void onReceive(Context context, Intent intent) {
+            long start = System.nanoTime();
             GeofencingEvent geofencingEvent = GeofencingEvent.fromIntent(intent);
 
             if (geofencingEvent.hasError()) {
@@ -871,45 +1418,34 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
                 return;
             }
 
-            if (mNotificationHelper == null) {
-                mNotificationHelper = new NotificationHelper(context);
+            // The in-process GeofenceEngine reports transitions while monitoring; OS geofences are the backup for when the app is killed
+            if (mDrivingState.get().isEngineRunning()) {
+                Log.d(TAG, "onReceive() :: Superseded by GeofenceEngine");
+                return;
             }
 
             List<Geofence> geofenceList = geofencingEvent.getTriggeringGeofences();
-            for (Geofence geofence: geofenceList) {
-                Log.d(TAG, "onReceive() :: " + geofence.getRequestId());
-
-                int transitionType = geofencingEvent.getGeofenceTransition();
-
-                String[] currentLocationSplit = geofence.getRequestId().split("_");
-                String currentLocation = currentLocationSplit[1].substring(0, 1).toUpperCase() + currentLocationSplit[1].substring(1).toLowerCase() + " " + currentLocationSplit[2].substring(0, 1).toUpperCase() + currentLocationSplit[2].substring(1).toLowerCase();
-
-                String title = "";
-                String description = "";
-
-                mCurrentGeofence = geofence.getRequestId();
-
-                switch (transitionType) {
-                    case Geofence.GEOFENCE_TRANSITION_ENTER:
-                        title = "Entering Location";
-                        description = "Entering on: " + currentLocation;
-                        mIsWithinGeofence = true;
-                        break;
-                    case Geofence.GEOFENCE_TRANSITION_DWELL:
-                        title = "Dwelling Location";
-                        description = "Dwelling on: " + currentLocation;
-                        mIsWithinGeofence = true;
-                        break;
-                    case Geofence.GEOFENCE_TRANSITION_EXIT:
-                        title = "Exiting Location";
-                        description = "Exiting: " + currentLocation;
-                        mIsWithinGeofence = false;
-                        break;
-                }
-
-                mMainActivity.popSnackbar(description);
-                mNotificationHelper.sendHighPriorityNotification(title, description, MainActivity.class, NOTIFICATION_ID_GEOFENCE_TRANSITION);
+            String[] geofenceIds = new String[geofenceList.size()];
+            for (int i = 0; i < geofenceIds.length; i++) {
+                geofenceIds[i] = geofenceList.get(i).getRequestId();
             }
+
+            // Name lookup, state publishing and notifications run on the queue's worker; the broadcast stays alive until they are done
+            final PendingResult result = goAsync();
+            final TransitionQueue queue = getTransitionQueue(context);
+            int queued = queue.offer(geofenceIds, geofencingEvent.getGeofenceTransition(), System.currentTimeMillis(), new TransitionQueue.Completion() {
+                @Override
+                public void onComplete() {
+                    Log.d(TAG, "onReceive() :: Handled: " + queue.getHandledCount()
+                            + ", collapsed: " + queue.getCollapsedCount()
+                            + ", dropped: " + queue.getDroppedCount()
+                            + ", mean latency (us): " + queue.getMeanLatencyNanos() / 1000
+                            + ", max latency (us): " + queue.getMaxLatencyNanos() / 1000);
+                    result.finish();
+                }
+            });
+            Log.d(TAG, "onReceive() :: Queued " + queued + " of " + geofenceIds.length + " transitions");
+            mMetrics.recordSince(Metrics.STAGE_RECEIVER, start);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,242 @@
+package com.example.spd_acc_app.geofence;
+
+import java.nio.ByteBuffer;
+
+/**
+ * GeofenceCatalog
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Immutable table of every monitored geofence and its turn point, read by the geofence push paths and the route
+ * corridors. It is a view over a GeofenceDatabase, normally the memory-mapped asset: coordinates are read from the mapped
+ * records on every call and nothing is copied at load, so only the pages of the fences actually used are read from
+ * storage. The *_ID / *_LAT / *_LON / *_RAD / *_TRN_LAT / *_TRN_LON values, the fallback when the asset is missing,
+ * are compiled into an in-memory database first. The fences of one direction occupy the contiguous range
+ * [getStart(direction), getEnd(direction)); findNear() finds the fences around a position without visiting the rest.
+ *
+ * IDs, names and turn labels are decoded on first read and kept. Safe to read from any thread, except findNear(),
+ * which is for the thread processing fixes.
+ *
+ * Properties:
+ *  !> mDatabase                                - Fence records
+ *  !> mIds                                     - Geofence IDs, null until first read
+ *  !> mDisplayNames                            - Display name per fence, e.g. "IBP Road": the fence's name in its source; null until first read
+ *  !> mTurnLabels                              - Turn status text, null until first read
+ *
+ *  !> Constants
+ *      !> DIRECTION_SOUTHBOUND                 - Direction key for Southbound fences
+ *      !> DIRECTION_NORTHBOUND                 - Direction key for Northbound fences
+ *      !> SOUTHBOUND_FENCES / NORTHBOUND_FENCES - Resource key prefix and turn name of every fence
+ */
+public final class GeofenceCatalog {
+
+    public static final int DIRECTION_SOUTHBOUND = 0;
+    public static final int DIRECTION_NORTHBOUND = 1;
+
+    static final String[][] SOUTHBOUND_FENCES = {
+            {"SB_SAN_SIMON", "San Simon"},
+            {"SB_DON_ANTONIO", "Don Antonio"},
+            {"SB_LUZON_AVE", "Luzon Ave"},
+            {"SB_TANDANG_SORA", "Tandang Sora"},
+            {"SB_CENTRAL_AVE", "Central Ave"},
+    };
+
+    static final String[][] NORTHBOUND_FENCES = {
+            {"NB_UNIVERSITY_AVE", "University Ave"},
+            {"NB_TANDANG_SORA", "Tandang Sora"},
+            {"NB_ZUZUARREGUI_ST", "Zuzuarregui St"},
+            {"NB_AMSTERDAM_AVE", "Amsterdam Ave"},
+            {"NB_BATASAN", "Batasan"},
+            {"NB_IBP_RD", "IBP Road"},
+    };
+
+    /**
+     * ValueSource: Resolves a value by its string resource name (e.g. "SB_SAN_SIMON_LAT")
+     */
+    public interface ValueSource {
+        String get(String name);
+    }
+
+    private final GeofenceDatabase mDatabase;
+    private final String[] mIds;
+    private final String[] mDisplayNames;
+    private final String[] mTurnLabels;
+
+    private GeofenceCatalog(GeofenceDatabase database) {
+        mDatabase = database;
+        mIds = new String[database.size()];
+        mDisplayNames = new String[database.size()];
+        mTurnLabels = new String[database.size()];
+    }
+
+    /**
+     * load(): Parses every Commonwealth Ave fence definition from the given source
+     * @param source - Resource value lookup
+     */
+    public static GeofenceCatalog load(ValueSource source) {
+        return load(source, SOUTHBOUND_FENCES, NORTHBOUND_FENCES);
+    }
+
+    /**
+     * load(): Parses the given fences from the given source and compiles them into an in-memory database
+     * @param source - Value lookup
+     * @param southbound - {key prefix, turn name} of every Southbound fence, in travel order
+     * @param northbound - {key prefix, turn name} of every Northbound fence, in travel order
+     */
+    public static GeofenceCatalog load(ValueSource source, String[][] southbound, String[][] northbound) {
+        GeofenceDatabaseBuilder builder = new GeofenceDatabaseBuilder();
+        read(source, builder, DIRECTION_SOUTHBOUND, southbound);
+        read(source, builder, DIRECTION_NORTHBOUND, northbound);
+        return new GeofenceCatalog(new GeofenceDatabase(ByteBuffer.wrap(builder.build(GeofenceDatabaseBuilder.DEFAULT_TILE_DEGREES))));
+    }
+
+    /**
+     * load(): Catalog over a compiled geofence database. Nothing is read but the header; records are read as used.
+     * @param database - Geofence database
+     */
+    public static GeofenceCatalog load(GeofenceDatabase database) {
+        return new GeofenceCatalog(database);
+    }
+
+    private static void read(ValueSource source, GeofenceDatabaseBuilder builder, int direction, String[][] fences) {
+        for (int i = 0; i < fences.length; i++) {
+            String key = fences[i][0];
+
+            builder.add(source.get(key + "_ID"), direction, i, fences[i][1],
+                    Double.parseDouble(source.get(key + "_LAT")),
+                    Double.parseDouble(source.get(key + "_LON")),
+                    Float.parseFloat(source.get(key + "_RAD")),
+                    Double.parseDouble(source.get(key + "_TRN_LAT")),
+                    Double.parseDouble(source.get(key + "_TRN_LON")));
+        }
+    }
+
+    /**
+     * size(): Total number of fences across all directions
+     */
+    public int size() {
+        return mIds.length;
+    }
+
+    /**
+     * getStart(): First fence index of a direction
+     * @param direction - DIRECTION_SOUTHBOUND or DIRECTION_NORTHBOUND
+     */
+    public int getStart(int direction) {
+        return direction == DIRECTION_SOUTHBOUND ? 0 : mDatabase.getDirectionCount(DIRECTION_SOUTHBOUND);
+    }
+
+    /**
+     * getEnd(): One past the last fence index of a direction
+     * @param direction - DIRECTION_SOUTHBOUND or DIRECTION_NORTHBOUND
+     */
+    public int getEnd(int direction) {
+        return direction == DIRECTION_SOUTHBOUND ? mDatabase.getDirectionCount(DIRECTION_SOUTHBOUND) : mIds.length;
+    }
+
+    /**
+     * createCorridor(): New route corridor of a direction, running through its turn points in fence order (travel
+     * order). Turn i of the corridor is fence getStart(direction) + i. Each caller gets its own instance, as a
+     * corridor keeps the matched position of one vehicle.
+     * @param direction - DIRECTION_SOUTHBOUND or DIRECTION_NORTHBOUND; must have at least one fence
+     * @param halfWidth - Largest distance in metres from the road at which a fix is still on it
+     */
+    public RouteCorridor createCorridor(int direction, double halfWidth) {
+        double[] latitudes = getTurnLatitudes(direction);
+        double[] longitudes = getTurnLongitudes(direction);
+        return new RouteCorridor(latitudes, longitudes, latitudes, longitudes, halfWidth);
+    }
+
+    /**
+     * findNear(): Fences whose circle comes within a distance of a point, in no particular order; only the database
+     * tiles around the point are read (see GeofenceDatabase.findNear())
+     * @param latitude - Latitude in degrees
+     * @param longitude - Longitude in degrees
+     * @param distance - Largest distance in metres from the point to a fence boundary
+     * @param out - Receives fence indexes; fences beyond its length are counted but not stored
+     * @return number of fences found
+     */
+    public int findNear(double latitude, double longitude, double distance, int[] out) {
+        return mDatabase.findNear(latitude, longitude, distance, out);
+    }
+
+    /**
+     * indexOf(): Fence index for a geofence ID, or -1 if the ID is unknown
+     * @param id - Geofence ID
+     */
+    public int indexOf(String id) {
+        return mDatabase.indexOf(id);
+    }
+
+    public String getId(int index) {
+        String id = mIds[index];
+        if (id == null) {
+            // Racing readers decode the same immutable String; either copy may stay
+            id = mDatabase.getId(index);
+            mIds[index] = id;
+        }
+        return id;
+    }
+
+    /**
+     * getDisplayName(): Human readable fence name, e.g. "San Simon"; the same name the turn label uses
+     * @param index - Fence index
+     */
+    public String getDisplayName(int index) {
+        String displayName = mDisplayNames[index];
+        if (displayName == null) {
+            displayName = mDatabase.getName(index);
+            mDisplayNames[index] = displayName;
+        }
+        return displayName;
+    }
+
+    public double getLatitude(int index) {
+        return mDatabase.getLatitude(index);
+    }
+
+    public double getLongitude(int index) {
+        return mDatabase.getLongitude(index);
+    }
+
+    public float getRadius(int index) {
+        return mDatabase.getRadius(index);
+    }
+
+    public double getTurnLatitude(int index) {
+        return mDatabase.getTurnLatitude(index);
+    }
+
+    public double getTurnLongitude(int index) {
+        return mDatabase.getTurnLongitude(index);
+    }
+
+    public String getTurnLabel(int index) {
+        String label = mTurnLabels[index];
+        if (label == null) {
+            label = "Nearing " + getDisplayName(index) + " right turn";
+            mTurnLabels[index] = label;
+        }
+        return label;
+    }
+
+    private double[] getTurnLatitudes(int direction) {
+        int start = getStart(direction);
+        double[] latitudes = new double[getEnd(direction) - start];
+        for (int i = 0; i < latitudes.length; i++) {
+            latitudes[i] = getTurnLatitude(start + i);
+        }
+        return latitudes;
+    }
+
+    private double[] getTurnLongitudes(int direction) {
+        int start = getStart(direction);
+        double[] longitudes = new double[getEnd(direction) - start];
+        for (int i = 0; i < longitudes.length; i++) {
+            longitudes[i] = getTurnLongitude(start + i);
+        }
+        return longitudes;
+    }
+}
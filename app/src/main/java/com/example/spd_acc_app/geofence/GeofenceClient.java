@@ -0,0 +1,35 @@
+package com.example.spd_acc_app.geofence;
+
+import java.util.List;
+
+/**
+ * GeofenceClient
+ *
+ * Type: Interface
+ *
+ * The part of the Play Services GeofencingClient the registration logic needs, by geofence ID. Implemented over
+ * the real client in GeofenceHelper.getGeofenceClient() and by fakes in local unit tests.
+ */
+public interface GeofenceClient {
+
+    /**
+     * Callback: Completion of one add or remove batch
+     */
+    interface Callback {
+        void onComplete(boolean success);
+    }
+
+    /**
+     * addGeofences(): Registers all given catalog fences in one call
+     * @param ids - Geofence IDs, all known to the GeofenceCatalog
+     * @param callback - Invoked once the batch completed or failed
+     */
+    void addGeofences(List<String> ids, Callback callback);
+
+    /**
+     * removeGeofences(): Unregisters all given fences in one call
+     * @param ids - Geofence IDs
+     * @param callback - Invoked once the batch completed or failed
+     */
+    void removeGeofences(List<String> ids, Callback callback);
+}
@@ -0,0 +1,359 @@
+package com.example.spd_acc_app.geofence;
+
+import com.example.spd_acc_app.location.GeoMath;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * GeofenceDatabase
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Read-only view of a compiled geofence database (see GeofenceDatabaseBuilder), normally a memory-mapped asset.
+ * Nothing is parsed or copied up front: every accessor reads the mapped bytes at a computed offset, so only the
+ * pages actually touched are read from storage. Layout, little-endian:
+ *
+ *  Header (HEADER_SIZE bytes)
+ *  offset  size  field
+ *       0     4  MAGIC
+ *       4     2  VERSION
+ *       6     2  RECORD_SIZE
+ *       8     4  number of fences
+ *      12     4  number of DIRECTION_SOUTHBOUND fences (they come first)
+ *      16     4  tile size (1e-7 degrees)
+ *      20     4  latitude of the south edge of the tile grid (1e-7 degrees)
+ *      24     4  longitude of the west edge of the tile grid (1e-7 degrees)
+ *      28     4  tile rows
+ *      32     4  tile columns
+ *      36     4  largest fence radius (m, float)
+ *      40     4  offset of the tile index
+ *      44     4  offset of the tile entries
+ *      48     4  offset of the string table
+ *      52     4  offset of the ID index
+ *
+ *  Fence records (RECORD_SIZE bytes each, in catalog order: per direction, in travel order)
+ *       0     4  latitude (1e-7 degrees)
+ *       4     4  longitude (1e-7 degrees)
+ *       8     4  turn latitude (1e-7 degrees)
+ *      12     4  turn longitude (1e-7 degrees)
+ *      16     4  radius (m, float)
+ *      20     4  offset of the ID in the string table
+ *      24     4  offset of the turn name in the string table
+ *      28     4  direction (GeofenceCatalog.DIRECTION_*)
+ *
+ *  Tile index: rows * columns + 1 ints; the fences whose centre lies in tile t (row-major from the south-west
+ *  corner) are tile entries [index[t], index[t + 1]).
+ *  Tile entries: fence indexes, grouped by tile.
+ *  ID index: fence indexes sorted by the unsigned bytes of their UTF-8 ID.
+ *  String table: UTF-8 strings, each preceded by its length as an unsigned short.
+ *
+ * findNear() only reads the tile index and entries of the tiles overlapping the search circle and the records they
+ * point to, so its cost depends on the fence density around the vehicle, not on the size of the database. indexOf()
+ * is a binary search of the ID index comparing the mapped bytes, so no ID is decoded to look one up.
+ *
+ * findNear() keeps the statistics of the last query, so it must be called from one thread at a time; every other
+ * accessor only reads the buffer with absolute gets and may be called from any thread. The underlying buffer is never
+ * modified; several instances may share it.
+ *
+ * Properties:
+ *  !> mBuffer                                  - Database bytes
+ *  !> mCount / mSouthboundCount                - Number of fences, of which DIRECTION_SOUTHBOUND
+ *  !> mTileE7 / mOriginLatE7 / mOriginLonE7    - Tile grid size and south-west corner (1e-7 degrees)
+ *  !> mRows / mColumns                         - Tile grid dimensions
+ *  !> mMaxRadius                               - Largest fence radius, added to every search radius
+ *  !> mTileIndexOffset / mTileEntriesOffset / mIdIndexOffset / mStringsOffset - Section offsets
+ *  !> mTilesVisited                            - Tiles read by the last findNear()
+ *
+ *  !> Constants
+ *      !> ASSET_NAME                           - Name of the database asset (stored uncompressed, see app/build.gradle)
+ *      !> MAGIC / VERSION                      - File identification
+ *      !> HEADER_SIZE / RECORD_SIZE            - Section sizes
+ *      !> E7                                   - Fixed-point scale of coordinates
+ */
+public final class GeofenceDatabase {
+
+    public static final String ASSET_NAME = "geofences.gfdb";
+
+    static final int MAGIC = 0x42444647; // "GFDB" little-endian
+    static final short VERSION = 2;
+    static final int HEADER_SIZE = 56;
+    static final int RECORD_SIZE = 32;
+    static final double E7 = 1e7;
+
+    static final int OFFSET_LATITUDE = 0;
+    static final int OFFSET_LONGITUDE = 4;
+    static final int OFFSET_TURN_LATITUDE = 8;
+    static final int OFFSET_TURN_LONGITUDE = 12;
+    static final int OFFSET_RADIUS = 16;
+    static final int OFFSET_ID = 20;
+    static final int OFFSET_NAME = 24;
+    static final int OFFSET_DIRECTION = 28;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer mBuffer;
+    private final int mCount;
+    private final int mSouthboundCount;
+    private final int mTileE7;
+    private final int mOriginLatE7;
+    private final int mOriginLonE7;
+    private final int mRows;
+    private final int mColumns;
+    private final float mMaxRadius;
+    private final int mTileIndexOffset;
+    private final int mTileEntriesOffset;
+    private final int mIdIndexOffset;
+    private final int mStringsOffset;
+
+    private int mTilesVisited;
+
+    /**
+     * GeofenceDatabase(): Wraps database bytes after checking the header and the section bounds
+     * @param buffer - Database bytes, e.g. a mapped asset; its position and byte order are not used
+     * @throws IllegalArgumentException if the bytes are not a database of this version
+     */
+    public GeofenceDatabase(ByteBuffer buffer) {
+        mBuffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int limit = mBuffer.limit();
+
+        if (limit < HEADER_SIZE || mBuffer.getInt(0) != MAGIC || mBuffer.getShort(4) != VERSION || mBuffer.getShort(6) != RECORD_SIZE) {
+            throw new IllegalArgumentException("Not a geofence database of version " + VERSION);
+        }
+
+        mCount = mBuffer.getInt(8);
+        mSouthboundCount = mBuffer.getInt(12);
+        mTileE7 = mBuffer.getInt(16);
+        mOriginLatE7 = mBuffer.getInt(20);
+        mOriginLonE7 = mBuffer.getInt(24);
+        mRows = mBuffer.getInt(28);
+        mColumns = mBuffer.getInt(32);
+        mMaxRadius = mBuffer.getFloat(36);
+        mTileIndexOffset = mBuffer.getInt(40);
+        mTileEntriesOffset = mBuffer.getInt(44);
+        mStringsOffset = mBuffer.getInt(48);
+        mIdIndexOffset = mBuffer.getInt(52);
+
+        long tiles = (long) mRows * mColumns;
+        if (mCount < 0 || mSouthboundCount < 0 || mSouthboundCount > mCount || mTileE7 <= 0 || mRows <= 0 || mColumns <= 0
+                || mTileIndexOffset != HEADER_SIZE + (long) mCount * RECORD_SIZE
+                || mTileEntriesOffset != mTileIndexOffset + (tiles + 1) * 4
+                || mIdIndexOffset != mTileEntriesOffset + (long) mCount * 4
+                || mStringsOffset != mIdIndexOffset + (long) mCount * 4
+                || mStringsOffset > limit) {
+            throw new IllegalArgumentException("Corrupt geofence database header");
+        }
+    }
+
+    /**
+     * map(): Maps a database file read-only
+     * @param file - Database file
+     */
+    public static GeofenceDatabase map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            // The mapping stays valid after the file is closed
+            return new GeofenceDatabase(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * size(): Number of fences
+     */
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * getDirectionCount(): Number of fences of a direction; DIRECTION_SOUTHBOUND fences come first
+     * @param direction - GeofenceCatalog.DIRECTION_*
+     */
+    public int getDirectionCount(int direction) {
+        return direction == GeofenceCatalog.DIRECTION_SOUTHBOUND ? mSouthboundCount : mCount - mSouthboundCount;
+    }
+
+    public int getTileCount() {
+        return mRows * mColumns;
+    }
+
+    /**
+     * getTileDegrees(): Edge length of a tile in degrees
+     */
+    public double getTileDegrees() {
+        return mTileE7 / E7;
+    }
+
+    public double getLatitude(int fence) {
+        return mBuffer.getInt(record(fence) + OFFSET_LATITUDE) / E7;
+    }
+
+    public double getLongitude(int fence) {
+        return mBuffer.getInt(record(fence) + OFFSET_LONGITUDE) / E7;
+    }
+
+    public double getTurnLatitude(int fence) {
+        return mBuffer.getInt(record(fence) + OFFSET_TURN_LATITUDE) / E7;
+    }
+
+    public double getTurnLongitude(int fence) {
+        return mBuffer.getInt(record(fence) + OFFSET_TURN_LONGITUDE) / E7;
+    }
+
+    public float getRadius(int fence) {
+        return mBuffer.getFloat(record(fence) + OFFSET_RADIUS);
+    }
+
+    public int getDirection(int fence) {
+        return mBuffer.getInt(record(fence) + OFFSET_DIRECTION);
+    }
+
+    /**
+     * getId(): Geofence ID; decoded on every call
+     */
+    public String getId(int fence) {
+        return readString(mBuffer.getInt(record(fence) + OFFSET_ID));
+    }
+
+    /**
+     * getName(): Turn name, e.g. "San Simon"; decoded on every call
+     */
+    public String getName(int fence) {
+        return readString(mBuffer.getInt(record(fence) + OFFSET_NAME));
+    }
+
+    /**
+     * indexOf(): Fence index of a geofence ID, by binary search of the ID index
+     * @param id - Geofence ID
+     * @return the fence index, or -1 if no fence has that ID
+     */
+    public int indexOf(String id) {
+        byte[] key = id.getBytes(UTF_8);
+        int low = 0;
+        int high = mCount - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int fence = mBuffer.getInt(mIdIndexOffset + 4 * middle);
+            int comparison = compareString(mBuffer.getInt(record(fence) + OFFSET_ID), key);
+
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return fence;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * findNear(): Fences whose circle comes within a distance of a point, in no particular order. Allocates nothing.
+     * @param latitude - Latitude in degrees
+     * @param longitude - Longitude in degrees
+     * @param distance - Largest distance in metres from the point to a fence boundary
+     * @param out - Receives fence indexes; fences beyond its length are counted but not stored
+     * @return number of fences found
+     */
+    public int findNear(double latitude, double longitude, double distance, int[] out) {
+        double cosLatitude = GeoMath.cosLatitude(latitude);
+        double reach = distance + mMaxRadius;
+        double latitudeReach = reach / GeoMath.METRES_PER_DEGREE;
+        double longitudeReach = reach / (GeoMath.METRES_PER_DEGREE * Math.max(cosLatitude, 1e-6));
+
+        int firstRow = Math.max(0, rowOf(latitude - latitudeReach));
+        int lastRow = Math.min(mRows - 1, rowOf(latitude + latitudeReach));
+        int firstColumn = Math.max(0, columnOf(longitude - longitudeReach));
+        int lastColumn = Math.min(mColumns - 1, columnOf(longitude + longitudeReach));
+
+        int found = 0;
+        int visited = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int tile = row * mColumns + column;
+                int start = mBuffer.getInt(mTileIndexOffset + 4 * tile);
+                int end = mBuffer.getInt(mTileIndexOffset + 4 * (tile + 1));
+                visited++;
+
+                for (int entry = start; entry < end; entry++) {
+                    int fence = mBuffer.getInt(mTileEntriesOffset + 4 * entry);
+                    int position = record(fence);
+                    double fenceLatitude = mBuffer.getInt(position + OFFSET_LATITUDE) / E7;
+                    double fenceLongitude = mBuffer.getInt(position + OFFSET_LONGITUDE) / E7;
+                    double limit = distance + mBuffer.getFloat(position + OFFSET_RADIUS);
+
+                    if (GeoMath.isWithin(latitude, longitude, cosLatitude, fenceLatitude, fenceLongitude, limit)) {
+                        if (found < out.length) {
+                            out[found] = fence;
+                        }
+                        found++;
+                    }
+                }
+            }
+        }
+
+        mTilesVisited = visited;
+        return found;
+    }
+
+    /**
+     * getTilesVisited(): Number of tiles the last findNear() read, for diagnostics
+     */
+    public int getTilesVisited() {
+        return mTilesVisited;
+    }
+
+    private int record(int fence) {
+        if (fence < 0 || fence >= mCount) {
+            throw new IndexOutOfBoundsException("Fence " + fence + " of " + mCount);
+        }
+        return HEADER_SIZE + fence * RECORD_SIZE;
+    }
+
+    private int rowOf(double latitude) {
+        return (int) Math.floor((latitude * E7 - mOriginLatE7) / mTileE7);
+    }
+
+    private int columnOf(double longitude) {
+        return (int) Math.floor((longitude * E7 - mOriginLonE7) / mTileE7);
+    }
+
+    /**
+     * compareString(): Compares a string of the string table with UTF-8 bytes, unsigned byte by byte
+     * @param offset - Offset in the string table
+     * @param key - UTF-8 bytes
+     * @return negative, zero or positive as the stored string sorts before, equal to or after the key
+     */
+    private int compareString(int offset, byte[] key) {
+        int position = mStringsOffset + offset;
+        int length = mBuffer.getShort(position) & 0xFFFF;
+        int common = Math.min(length, key.length);
+
+        for (int i = 0; i < common; i++) {
+            int difference = (mBuffer.get(position + 2 + i) & 0xFF) - (key[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - key.length;
+    }
+
+    private String readString(int offset) {
+        int position = mStringsOffset + offset;
+        int length = mBuffer.getShort(position) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = mBuffer.get(position + 2 + i);
+        }
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,388 @@
+package com.example.spd_acc_app.geofence;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * GeofenceDatabaseBuilder
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Compiler of geofence definitions into the GeofenceDatabase format. The asset is compiled offline through the tools
+ * module; at runtime the app only uses it to compile the string resource fallback (see GeofenceCatalog.load()):
+ *
+ *   ./gradlew :tools:run [--args="<csv> <output> [tile degrees]"]
+ *
+ * The source is CSV, one fence per line:
+ *
+ *   id,direction,sequence,name,latitude,longitude,radius,turn_latitude,turn_longitude
+ *   SB_SAN_SIMON,SB,1,San Simon,14.690555,121.087172,98,14.690555,121.087172
+ *
+ * direction is SB or NB, sequence orders the fences of a direction in travel order, name is the turn name shown
+ * in "Nearing <name> right turn", radius is in metres. Blank lines, lines starting with # and a header line
+ * starting with "id," are skipped. Fences are written Southbound first, each direction sorted by sequence, so
+ * record indexes match GeofenceCatalog fence indexes; each fence is filed in the tile containing its centre.
+ *
+ * Properties:
+ *  !> mFences                                  - Fences added so far
+ *  !> mIds                                     - Their IDs, to reject duplicates
+ *
+ *  !> Constants
+ *      !> DEFAULT_TILE_DEGREES                 - Tile edge used when none is given (about 1.1 km)
+ *      !> MAX_TILES                            - Largest tile grid, to keep the index small
+ */
+public final class GeofenceDatabaseBuilder {
+
+    public static final double DEFAULT_TILE_DEGREES = 0.01;
+    static final int MAX_TILES = 1 << 22;
+
+    private static final int FIELD_COUNT = 9;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Fence: One parsed fence; coordinates already in 1e-7 degrees
+     */
+    private static final class Fence {
+        String id;
+        int direction;
+        int sequence;
+        String name;
+        int latitude;
+        int longitude;
+        float radius;
+        int turnLatitude;
+        int turnLongitude;
+    }
+
+    private final List<Fence> mFences = new ArrayList<>();
+    private final Set<String> mIds = new HashSet<>();
+
+    /**
+     * add(): Adds one fence
+     * @param id - Geofence ID, unique
+     * @param direction - GeofenceCatalog.DIRECTION_*
+     * @param sequence - Travel order within the direction, unique per direction
+     * @param name - Turn name
+     * @param latitude - Fence centre latitude in degrees
+     * @param longitude - Fence centre longitude in degrees
+     * @param radius - Fence radius in metres
+     * @param turnLatitude - Turn point latitude in degrees
+     * @param turnLongitude - Turn point longitude in degrees
+     * @throws IllegalArgumentException if a value is out of range or the ID is already used
+     */
+    public void add(String id, int direction, int sequence, String name, double latitude, double longitude, float radius,
+                    double turnLatitude, double turnLongitude) {
+        if (direction != GeofenceCatalog.DIRECTION_SOUTHBOUND && direction != GeofenceCatalog.DIRECTION_NORTHBOUND) {
+            throw new IllegalArgumentException("Unknown direction: " + direction);
+        }
+        if (!(radius > 0) || Float.isInfinite(radius)) {
+            throw new IllegalArgumentException("Radius must be positive: " + radius);
+        }
+
+        Fence fence = new Fence();
+        fence.latitude = toE7(latitude, 90);
+        fence.longitude = toE7(longitude, 180);
+        fence.turnLatitude = toE7(turnLatitude, 90);
+        fence.turnLongitude = toE7(turnLongitude, 180);
+
+        if (id.isEmpty() || !mIds.add(id)) {
+            throw new IllegalArgumentException("Duplicate or empty ID: " + id);
+        }
+        fence.id = id;
+        fence.direction = direction;
+        fence.sequence = sequence;
+        fence.name = name;
+        fence.radius = radius;
+        mFences.add(fence);
+    }
+
+    /**
+     * parse(): Adds every fence of a CSV source
+     * @param reader - CSV text; not closed
+     * @throws IllegalArgumentException if a line is malformed, naming the line
+     */
+    public void parse(Reader reader) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        int number = 0;
+
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            number++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("id,")) {
+                continue;
+            }
+
+            String[] fields = line.split(",", -1);
+            if (fields.length != FIELD_COUNT) {
+                throw new IllegalArgumentException("Line " + number + ": expected " + FIELD_COUNT + " fields, got " + fields.length);
+            }
+
+            try {
+                add(fields[0].trim(),
+                        parseDirection(fields[1].trim()),
+                        Integer.parseInt(fields[2].trim()),
+                        fields[3].trim(),
+                        Double.parseDouble(fields[4].trim()),
+                        Double.parseDouble(fields[5].trim()),
+                        Float.parseFloat(fields[6].trim()),
+                        Double.parseDouble(fields[7].trim()),
+                        Double.parseDouble(fields[8].trim()));
+            } catch (IllegalArgumentException e) {
+                // NumberFormatException included
+                throw new IllegalArgumentException("Line " + number + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static int parseDirection(String field) {
+        if ("SB".equals(field)) {
+            return GeofenceCatalog.DIRECTION_SOUTHBOUND;
+        }
+        if ("NB".equals(field)) {
+            return GeofenceCatalog.DIRECTION_NORTHBOUND;
+        }
+        throw new IllegalArgumentException("Unknown direction: " + field);
+    }
+
+    private static int toE7(double degrees, double limit) {
+        if (!(Math.abs(degrees) <= limit)) {
+            throw new IllegalArgumentException("Coordinate out of range: " + degrees);
+        }
+        return (int) Math.round(degrees * GeofenceDatabase.E7);
+    }
+
+    public int size() {
+        return mFences.size();
+    }
+
+    /**
+     * build(): Compiles the fences added so far
+     * @param tileDegrees - Tile edge in degrees; a search visits about ((2 * reach) / tile edge + 1)^2 tiles
+     * @return the database bytes
+     * @throws IllegalArgumentException if the tile size is out of range, a sequence number repeats within a
+     * direction, or the grid would exceed MAX_TILES
+     */
+    public byte[] build(double tileDegrees) {
+        int tileE7 = (int) Math.round(tileDegrees * GeofenceDatabase.E7);
+        if (!(tileDegrees > 0) || tileE7 <= 0 || tileDegrees > 360) {
+            throw new IllegalArgumentException("Tile size out of range: " + tileDegrees);
+        }
+
+        List<Fence> fences = new ArrayList<>(mFences);
+        Collections.sort(fences, new Comparator<Fence>() {
+            @Override
+            public int compare(Fence a, Fence b) {
+                if (a.direction != b.direction) {
+                    return a.direction < b.direction ? -1 : 1;
+                }
+                return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+            }
+        });
+
+        int count = fences.size();
+        int southbound = 0;
+        float maxRadius = 0;
+        long minLatitude = 0;
+        long minLongitude = 0;
+        long maxLatitude = 0;
+        long maxLongitude = 0;
+
+        for (int i = 0; i < count; i++) {
+            Fence fence = fences.get(i);
+            if (i > 0 && fence.direction == fences.get(i - 1).direction && fence.sequence == fences.get(i - 1).sequence) {
+                throw new IllegalArgumentException("Sequence " + fence.sequence + " repeats: " + fences.get(i - 1).id + ", " + fence.id);
+            }
+            if (fence.direction == GeofenceCatalog.DIRECTION_SOUTHBOUND) {
+                southbound++;
+            }
+            maxRadius = Math.max(maxRadius, fence.radius);
+            minLatitude = i == 0 ? fence.latitude : Math.min(minLatitude, fence.latitude);
+            minLongitude = i == 0 ? fence.longitude : Math.min(minLongitude, fence.longitude);
+            maxLatitude = i == 0 ? fence.latitude : Math.max(maxLatitude, fence.latitude);
+            maxLongitude = i == 0 ? fence.longitude : Math.max(maxLongitude, fence.longitude);
+        }
+
+        int originLatitude = (int) (Math.floor((double) minLatitude / tileE7) * tileE7);
+        int originLongitude = (int) (Math.floor((double) minLongitude / tileE7) * tileE7);
+        long rows = (maxLatitude - originLatitude) / tileE7 + 1;
+        long columns = (maxLongitude - originLongitude) / tileE7 + 1;
+        if (rows * columns > MAX_TILES) {
+            throw new IllegalArgumentException("Tile size " + tileDegrees + " needs " + rows * columns + " tiles, over " + MAX_TILES);
+        }
+        int tiles = (int) (rows * columns);
+
+        // Counting sort of the fences by tile: index[t + 1] counts tile t, then becomes the prefix sum
+        int[] tileOf = new int[count];
+        int[] index = new int[tiles + 1];
+        for (int i = 0; i < count; i++) {
+            Fence fence = fences.get(i);
+            int row = (fence.latitude - originLatitude) / tileE7;
+            int column = (fence.longitude - originLongitude) / tileE7;
+            tileOf[i] = row * (int) columns + column;
+            index[tileOf[i] + 1]++;
+        }
+        for (int t = 0; t < tiles; t++) {
+            index[t + 1] += index[t];
+        }
+        int[] entries = new int[count];
+        int[] next = new int[tiles];
+        System.arraycopy(index, 0, next, 0, tiles);
+        for (int i = 0; i < count; i++) {
+            entries[next[tileOf[i]]++] = i;
+        }
+
+        // ID index: fence indexes in the unsigned byte order of their UTF-8 IDs, as GeofenceDatabase.indexOf() compares
+        final byte[][] idBytes = new byte[count][];
+        Integer[] byId = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            idBytes[i] = fences.get(i).id.getBytes(UTF_8);
+            byId[i] = i;
+        }
+        Arrays.sort(byId, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return compareBytes(idBytes[a], idBytes[b]);
+            }
+        });
+
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        Map<String, Integer> stringOffsets = new HashMap<>();
+        int[] idOffsets = new int[count];
+        int[] nameOffsets = new int[count];
+        for (int i = 0; i < count; i++) {
+            idOffsets[i] = intern(fences.get(i).id, strings, stringOffsets);
+            nameOffsets[i] = intern(fences.get(i).name, strings, stringOffsets);
+        }
+
+        int tileIndexOffset = GeofenceDatabase.HEADER_SIZE + count * GeofenceDatabase.RECORD_SIZE;
+        int tileEntriesOffset = tileIndexOffset + (tiles + 1) * 4;
+        int idIndexOffset = tileEntriesOffset + count * 4;
+        int stringsOffset = idIndexOffset + count * 4;
+        ByteBuffer buffer = ByteBuffer.allocate(stringsOffset + strings.size()).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(GeofenceDatabase.MAGIC);
+        buffer.putShort(GeofenceDatabase.VERSION);
+        buffer.putShort((short) GeofenceDatabase.RECORD_SIZE);
+        buffer.putInt(count);
+        buffer.putInt(southbound);
+        buffer.putInt(tileE7);
+        buffer.putInt(originLatitude);
+        buffer.putInt(originLongitude);
+        buffer.putInt((int) rows);
+        buffer.putInt((int) columns);
+        buffer.putFloat(maxRadius);
+        buffer.putInt(tileIndexOffset);
+        buffer.putInt(tileEntriesOffset);
+        buffer.putInt(stringsOffset);
+        buffer.putInt(idIndexOffset);
+
+        for (int i = 0; i < count; i++) {
+            Fence fence = fences.get(i);
+            buffer.putInt(fence.latitude);
+            buffer.putInt(fence.longitude);
+            buffer.putInt(fence.turnLatitude);
+            buffer.putInt(fence.turnLongitude);
+            buffer.putFloat(fence.radius);
+            buffer.putInt(idOffsets[i]);
+            buffer.putInt(nameOffsets[i]);
+            buffer.putInt(fence.direction);
+        }
+        for (int value : index) {
+            buffer.putInt(value);
+        }
+        for (int value : entries) {
+            buffer.putInt(value);
+        }
+        for (int value : byId) {
+            buffer.putInt(value);
+        }
+        buffer.put(strings.toByteArray());
+
+        return buffer.array();
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        int common = Math.min(a.length, b.length);
+        for (int i = 0; i < common; i++) {
+            int difference = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    private static int intern(String value, ByteArrayOutputStream strings, Map<String, Integer> offsets) {
+        Integer known = offsets.get(value);
+        if (known != null) {
+            return known;
+        }
+
+        byte[] bytes = value.getBytes(UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("String too long: " + value.substring(0, 32) + "...");
+        }
+
+        int offset = strings.size();
+        strings.write(bytes.length & 0xFF);
+        strings.write(bytes.length >>> 8);
+        strings.write(bytes, 0, bytes.length);
+        offsets.put(value, offset);
+        return offset;
+    }
+
+    /**
+     * main(): Compiles a CSV file into a database file
+     * @param args - CSV path, output path, optional tile edge in degrees
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: GeofenceDatabaseBuilder <csv> <output> [tile degrees, default " + DEFAULT_TILE_DEGREES + "]");
+            System.exit(2);
+        }
+
+        GeofenceDatabaseBuilder builder = new GeofenceDatabaseBuilder();
+        Reader reader = new InputStreamReader(new FileInputStream(args[0]), UTF_8);
+        try {
+            builder.parse(reader);
+        } finally {
+            reader.close();
+        }
+
+        byte[] database = builder.build(args.length == 3 ? Double.parseDouble(args[2]) : DEFAULT_TILE_DEGREES);
+
+        File output = new File(args[1]);
+        File directory = output.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        FileOutputStream stream = new FileOutputStream(output);
+        try {
+            stream.write(database);
+        } finally {
+            stream.close();
+        }
+
+        System.out.println("Wrote " + builder.size() + " fences, " + database.length + " bytes to " + output);
+    }
+}
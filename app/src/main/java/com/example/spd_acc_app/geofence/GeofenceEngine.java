@@ -0,0 +1,314 @@
+package com.example.spd_acc_app.geofence;
+
+import com.example.spd_acc_app.location.GeoMath;
+
+import java.util.Arrays;
+
+/**
+ * GeofenceEngine
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * In-process geofence evaluation fed directly by the location stream. Every fix is tested for point-in-circle
+ * membership against the active fences near it, and a small state machine per fence produces the same
+ * enter / dwell / exit transitions Play Services would broadcast, without the broadcast latency and without the
+ * 100-fence platform cap. OS geofences remain registered only as a backup for when the app is killed.
+ *
+ * The fences evaluated are those of the active range (one direction's fences) that GeofenceCatalog.findNear() returns
+ * within SEARCH_DISTANCE + REFRESH_DISTANCE of the position of the last query. The query is repeated once the vehicle
+ * has moved REFRESH_DISTANCE from that position, so every fence whose boundary is within SEARCH_DISTANCE of a fix is
+ * evaluated, and the cost per fix depends on the fences around the vehicle, not on the size of the catalog.
+ *
+ * Not thread-safe; evaluate() and setActiveRange() must be called from the thread delivering location fixes.
+ *
+ * Properties:
+ *  !> mCatalog                                 - Fence definitions
+ *  !> mNear / mSpare                           - Fences near the last query position with their state; mSpare is
+ *                                                the previous list, reused by the next query
+ *  !> mFound                                   - Scratch output of findNear()
+ *  !> mActiveStart / mActiveEnd                - Fence range currently monitored
+ *  !> mQueryLatitude / mQueryLongitude         - Position of the last query, NaN when the next fix must query again
+ *  !> mNearestDistance                         - Distance in metres from the last fix to the nearest active fence boundary
+ *  !> mDwellMillis                             - Time inside a fence before DWELL is reported
+ *  !> mListener                                - Transition callback
+ *
+ *  !> Constants
+ *      !> TRANSITION_ENTER / _EXIT / _DWELL    - Same values as Geofence.GEOFENCE_TRANSITION_*
+ *      !> SEARCH_DISTANCE                      - Fences farther than this are not evaluated; beyond SamplingPolicy's
+ *                                                remote threshold, so that getNearestDistance() decides it as before
+ *      !> REFRESH_DISTANCE                     - Movement after which the fences near the vehicle are queried again
+ */
+public final class GeofenceEngine {
+
+    public static final int TRANSITION_ENTER = 1;
+    public static final int TRANSITION_EXIT = 2;
+    public static final int TRANSITION_DWELL = 4;
+
+    public static final double SEARCH_DISTANCE = 6000;
+    static final double REFRESH_DISTANCE = 500;
+
+    private static final byte STATE_OUTSIDE = 0;
+    private static final byte STATE_INSIDE = 1;
+    private static final byte STATE_DWELLING = 2;
+
+    /**
+     * Listener: Receives transitions in the order they happen
+     */
+    public interface Listener {
+        /**
+         * onGeofenceTransition(): Called for every transition
+         * @param fence - Fence index in the GeofenceCatalog
+         * @param transition - TRANSITION_ENTER, TRANSITION_DWELL or TRANSITION_EXIT
+         * @param timeMillis - Time of the fix that caused the transition
+         */
+        void onGeofenceTransition(int fence, int transition, long timeMillis);
+    }
+
+    /**
+     * NearFences: Fences near the vehicle with their projection factor and state, in parallel arrays
+     */
+    private static final class NearFences {
+        int[] mFences = new int[16];
+        double[] mCosLat = new double[16];
+        byte[] mState = new byte[16];
+        long[] mEnteredAt = new long[16];
+        int mCount;
+
+        void add(int fence, double cosLat, byte state, long enteredAt) {
+            if (mCount == mFences.length) {
+                int capacity = mCount * 2;
+                mFences = Arrays.copyOf(mFences, capacity);
+                mCosLat = Arrays.copyOf(mCosLat, capacity);
+                mState = Arrays.copyOf(mState, capacity);
+                mEnteredAt = Arrays.copyOf(mEnteredAt, capacity);
+            }
+            mFences[mCount] = fence;
+            mCosLat[mCount] = cosLat;
+            mState[mCount] = state;
+            mEnteredAt[mCount] = enteredAt;
+            mCount++;
+        }
+
+        int find(int fence) {
+            for (int i = 0; i < mCount; i++) {
+                if (mFences[i] == fence) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private final GeofenceCatalog mCatalog;
+    private final long mDwellMillis;
+    private final Listener mListener;
+
+    private NearFences mNear = new NearFences();
+    private NearFences mSpare = new NearFences();
+    private int[] mFound = new int[64];
+    private int mActiveStart;
+    private int mActiveEnd;
+    private double mQueryLatitude = Double.NaN;
+    private double mQueryLongitude = Double.NaN;
+    private double mNearestDistance = Double.POSITIVE_INFINITY;
+
+    /**
+     * GeofenceEngine(): Creates an engine over the fences of a catalog, initially none active
+     * @param catalog - Fence definitions
+     * @param dwellMillis - Time inside a fence before DWELL is reported
+     * @param listener - Transition callback
+     */
+    public GeofenceEngine(GeofenceCatalog catalog, long dwellMillis, Listener listener) {
+        mCatalog = catalog;
+        mDwellMillis = dwellMillis;
+        mListener = listener;
+    }
+
+    /**
+     * setActiveRange(): Selects the catalog fences to monitor. Fences leaving the range while inside report EXIT.
+     * @param start - First fence index (inclusive)
+     * @param end - Last fence index (exclusive)
+     * @param timeMillis - Time reported with any resulting EXIT
+     */
+    public void setActiveRange(int start, int end, long timeMillis) {
+        for (int i = 0; i < mNear.mCount; i++) {
+            int fence = mNear.mFences[i];
+            if ((fence < start || fence >= end) && mNear.mState[i] != STATE_OUTSIDE) {
+                mNear.mState[i] = STATE_OUTSIDE;
+                mListener.onGeofenceTransition(fence, TRANSITION_EXIT, timeMillis);
+            }
+        }
+
+        mActiveStart = start;
+        mActiveEnd = end;
+        mQueryLatitude = Double.NaN;
+    }
+
+    /**
+     * evaluate(): Advances the state machine of every active fence near a new fix
+     * @param latitude - Fix latitude in degrees
+     * @param longitude - Fix longitude in degrees
+     * @param timeMillis - Fix time
+     */
+    public void evaluate(double latitude, double longitude, long timeMillis) {
+        if (Double.isNaN(mQueryLatitude)
+                || !GeoMath.isWithin(mQueryLatitude, mQueryLongitude, GeoMath.cosLatitude(mQueryLatitude), latitude, longitude, REFRESH_DISTANCE)) {
+            query(latitude, longitude, timeMillis);
+        }
+
+        NearFences near = mNear;
+        double nearest = Double.POSITIVE_INFINITY;
+
+        for (int k = 0; k < near.mCount; k++) {
+            int i = near.mFences[k];
+            double radius = mCatalog.getRadius(i);
+            double distanceSquared = GeoMath.distanceSquared(mCatalog.getLatitude(i), mCatalog.getLongitude(i), near.mCosLat[k], latitude, longitude);
+            boolean inside = distanceSquared <= radius * radius;
+
+            double toBoundary = inside ? 0 : Math.sqrt(distanceSquared) - radius;
+            if (toBoundary < nearest) {
+                nearest = toBoundary;
+            }
+
+            switch (near.mState[k]) {
+                case STATE_OUTSIDE:
+                    if (inside) {
+                        near.mState[k] = STATE_INSIDE;
+                        near.mEnteredAt[k] = timeMillis;
+                        mListener.onGeofenceTransition(i, TRANSITION_ENTER, timeMillis);
+                        if (mDwellMillis <= 0) {
+                            near.mState[k] = STATE_DWELLING;
+                            mListener.onGeofenceTransition(i, TRANSITION_DWELL, timeMillis);
+                        }
+                    }
+                    break;
+                case STATE_INSIDE:
+                    if (!inside) {
+                        near.mState[k] = STATE_OUTSIDE;
+                        mListener.onGeofenceTransition(i, TRANSITION_EXIT, timeMillis);
+                    } else if (timeMillis - near.mEnteredAt[k] >= mDwellMillis) {
+                        near.mState[k] = STATE_DWELLING;
+                        mListener.onGeofenceTransition(i, TRANSITION_DWELL, timeMillis);
+                    }
+                    break;
+                case STATE_DWELLING:
+                    if (!inside) {
+                        near.mState[k] = STATE_OUTSIDE;
+                        mListener.onGeofenceTransition(i, TRANSITION_EXIT, timeMillis);
+                    }
+                    break;
+            }
+        }
+
+        // Fences beyond SEARCH_DISTANCE are not looked at: past it, the distance is only known to be at least that
+        mNearestDistance = mActiveStart < mActiveEnd ? Math.min(nearest, SEARCH_DISTANCE) : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * query(): Replaces the fences near the vehicle by those of the active range around a position. Fences inside
+     * keep their state; one no longer near (the fix jumped away) reports EXIT.
+     */
+    private void query(double latitude, double longitude, long timeMillis) {
+        int count = 0;
+        if (mActiveStart < mActiveEnd) {
+            count = mCatalog.findNear(latitude, longitude, SEARCH_DISTANCE + REFRESH_DISTANCE, mFound);
+            if (count > mFound.length) {
+                mFound = new int[Integer.highestOneBit(count) * 2];
+                count = mCatalog.findNear(latitude, longitude, SEARCH_DISTANCE + REFRESH_DISTANCE, mFound);
+            }
+        }
+
+        NearFences previous = mNear;
+        NearFences next = mSpare;
+        next.mCount = 0;
+        for (int k = 0; k < count; k++) {
+            int fence = mFound[k];
+            if (fence >= mActiveStart && fence < mActiveEnd) {
+                next.add(fence, GeoMath.cosLatitude(mCatalog.getLatitude(fence)), STATE_OUTSIDE, 0);
+            }
+        }
+
+        for (int k = 0; k < previous.mCount; k++) {
+            if (previous.mState[k] == STATE_OUTSIDE) {
+                continue;
+            }
+            int slot = next.find(previous.mFences[k]);
+            if (slot >= 0) {
+                next.mState[slot] = previous.mState[k];
+                next.mEnteredAt[slot] = previous.mEnteredAt[k];
+            } else {
+                previous.mState[k] = STATE_OUTSIDE;
+                mListener.onGeofenceTransition(previous.mFences[k], TRANSITION_EXIT, timeMillis);
+            }
+        }
+
+        mNear = next;
+        mSpare = previous;
+        mQueryLatitude = latitude;
+        mQueryLongitude = longitude;
+    }
+
+    /**
+     * getNearestDistance(): Distance in metres from the last evaluated fix to the boundary of the nearest active fence
+     * @return 0 inside a fence, at most SEARCH_DISTANCE (no active fence nearer), POSITIVE_INFINITY if no fence is
+     * active or nothing was evaluated
+     */
+    public double getNearestDistance() {
+        return mNearestDistance;
+    }
+
+    /**
+     * isInside(): Whether the last fix was inside a fence (entered or dwelling)
+     * @param fence - Fence index in the GeofenceCatalog
+     */
+    public boolean isInside(int fence) {
+        int slot = mNear.find(fence);
+        return slot >= 0 && mNear.mState[slot] != STATE_OUTSIDE;
+    }
+
+    /**
+     * getInsideFence(): A fence the last fix was inside, or -1 if none
+     */
+    public int getInsideFence() {
+        for (int k = 0; k < mNear.mCount; k++) {
+            if (mNear.mState[k] != STATE_OUTSIDE) {
+                return mNear.mFences[k];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * restoreInside(): Marks an active fence as dwelt in without reporting it, e.g. when resuming a session that was
+     * inside it. A following fix outside reports EXIT as usual.
+     * @param fence - Fence index in the GeofenceCatalog, within the active range
+     * @param timeMillis - Time the fence was entered
+     */
+    public void restoreInside(int fence, long timeMillis) {
+        if (fence < mActiveStart || fence >= mActiveEnd) {
+            throw new IllegalArgumentException("Fence " + fence + " is not active");
+        }
+
+        int slot = mNear.find(fence);
+        if (slot < 0) {
+            // Kept until the next fix queries the fences around it
+            mNear.add(fence, GeoMath.cosLatitude(mCatalog.getLatitude(fence)), STATE_DWELLING, timeMillis);
+        } else {
+            mNear.mState[slot] = STATE_DWELLING;
+            mNear.mEnteredAt[slot] = timeMillis;
+        }
+    }
+
+    /**
+     * reset(): Forgets all fence states without reporting transitions
+     */
+    public void reset() {
+        mNear.mCount = 0;
+        mActiveStart = 0;
+        mActiveEnd = 0;
+        mQueryLatitude = Double.NaN;
+        mNearestDistance = Double.POSITIVE_INFINITY;
+    }
+}
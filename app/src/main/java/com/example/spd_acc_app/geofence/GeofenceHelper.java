@@ -1,28 +1,47 @@
 package com.example.spd_acc_app.geofence;
 
+import android.annotation.SuppressLint;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.ContextWrapper;
 import android.content.Intent;
+import android.content.res.AssetFileDescriptor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
 
 import com.example.spd_acc_app.MainActivity;
 import com.google.android.gms.common.api.ApiException;
 import com.google.android.gms.location.Geofence;
 import com.google.android.gms.location.GeofenceStatusCodes;
+import com.google.android.gms.location.GeofencingClient;
 import com.google.android.gms.location.GeofencingRequest;
 import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 public class GeofenceHelper extends ContextWrapper {
 
+    private static final String TAG = "GeofenceHelper";
+    public static final int DWELL_TIME_MS = 3000;
+    public static final int TRANSITION_TYPES = Geofence.GEOFENCE_TRANSITION_ENTER | Geofence.GEOFENCE_TRANSITION_DWELL | Geofence.GEOFENCE_TRANSITION_EXIT;
+
     PendingIntent pendingIntent;
 
     public GeofenceHelper(Context base) {
         super(base);
     }
 
-    public GeofencingRequest getGeofencingRequest(Geofence geofence) {
+    public GeofencingRequest getGeofencingRequest(List<Geofence> geofences) {
         return new GeofencingRequest.Builder()
-                .addGeofence(geofence)
+                .addGeofences(geofences)
                 .setInitialTrigger(GeofencingRequest.INITIAL_TRIGGER_ENTER)
                 .build();
     }
@@ -32,11 +51,109 @@ public class GeofenceHelper extends ContextWrapper {
                 .setCircularRegion(latLng.latitude, latLng.longitude, radius)
                 .setRequestId(ID)
                 .setTransitionTypes(transitionTypes)
-                .setLoiteringDelay(3000)
+                .setLoiteringDelay(DWELL_TIME_MS)
                 .setExpirationDuration(Geofence.NEVER_EXPIRE)
                 .build();
     }
 
+    /**
+     * loadCatalog(): Reads the fence definitions from the memory-mapped GeofenceDatabase.ASSET_NAME asset, which the
+     * catalog reads in place as fences are looked up, or from the string resources (compiled to an in-memory
+     * database) if the asset is missing or unreadable
+     */
+    public GeofenceCatalog loadCatalog() {
+        GeofenceDatabase database = mapDatabase();
+        if (database != null) {
+            Log.d(TAG, "loadCatalog() :: " + database.size() + " fences in " + database.getTileCount() + " tiles");
+            return GeofenceCatalog.load(database);
+        }
+
+        return GeofenceCatalog.load(new GeofenceCatalog.ValueSource() {
+            @Override
+            public String get(String name) {
+                return getString(getResources().getIdentifier(name, "string", getPackageName()));
+            }
+        });
+    }
+
+    /**
+     * mapDatabase(): Maps the geofence database asset read-only, so only the pages actually read are loaded.
+     * The asset must be stored uncompressed (see noCompress in app/build.gradle) to have a file descriptor.
+     * @return the database, or null if the asset is missing or unreadable
+     */
+    public GeofenceDatabase mapDatabase() {
+        try {
+            AssetFileDescriptor descriptor = getAssets().openFd(GeofenceDatabase.ASSET_NAME);
+            FileInputStream stream = descriptor.createInputStream();
+            try {
+                // The mapping stays valid after the descriptor is closed
+                return new GeofenceDatabase(stream.getChannel().map(FileChannel.MapMode.READ_ONLY, descriptor.getStartOffset(), descriptor.getDeclaredLength()));
+            } finally {
+                stream.close();
+                descriptor.close();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            Log.d(TAG, "mapDatabase() :: " + GeofenceDatabase.ASSET_NAME + " unavailable, using resources: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * getGeofenceClient(): Adapts the Play Services client to GeofenceClient. Each call is a single binder
+     * round trip carrying the whole batch. Location permission must have been checked by the caller.
+     * @param client - Play Services geofencing client
+     * @param catalog - Fence definitions the IDs refer to
+     * @param executor - Executor running the callbacks (the thread that owns the caller's state)
+     */
+    public GeofenceClient getGeofenceClient(final GeofencingClient client, final GeofenceCatalog catalog, final Executor executor) {
+        return new GeofenceClient() {
+            @SuppressLint("MissingPermission")
+            @Override
+            public void addGeofences(final List<String> ids, final Callback callback) {
+                List<Geofence> geofences = new ArrayList<>(ids.size());
+                for (String id : ids) {
+                    int index = catalog.indexOf(id);
+                    geofences.add(getGeofence(id, new LatLng(catalog.getLatitude(index), catalog.getLongitude(index)), catalog.getRadius(index), TRANSITION_TYPES));
+                }
+
+                client.addGeofences(getGeofencingRequest(geofences), getPendingIntent())
+                        .addOnSuccessListener(executor, new OnSuccessListener<Void>() {
+                            @Override
+                            public void onSuccess(Void unused) {
+                                Log.d(TAG, "Geofences added: " + ids);
+                                callback.onComplete(true);
+                            }
+                        })
+                        .addOnFailureListener(executor, new OnFailureListener() {
+                            @Override
+                            public void onFailure(@NonNull Exception e) {
+                                Log.d(TAG, "onFailure add " + getErrorString(e));
+                                callback.onComplete(false);
+                            }
+                        });
+            }
+
+            @Override
+            public void removeGeofences(final List<String> ids, final Callback callback) {
+                client.removeGeofences(ids)
+                        .addOnSuccessListener(executor, new OnSuccessListener<Void>() {
+                            @Override
+                            public void onSuccess(Void unused) {
+                                Log.d(TAG, "Geofences removed: " + ids);
+                                callback.onComplete(true);
+                            }
+                        })
+                        .addOnFailureListener(executor, new OnFailureListener() {
+                            @Override
+                            public void onFailure(@NonNull Exception e) {
+                                Log.d(TAG, "onFailure remove " + getErrorString(e));
+                                callback.onComplete(false);
+                            }
+                        });
+            }
+        };
+    }
+
     public PendingIntent getPendingIntent() {
 
         if (pendingIntent != null) {
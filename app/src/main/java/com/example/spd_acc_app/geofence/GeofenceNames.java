@@ -0,0 +1,30 @@
+package com.example.spd_acc_app.geofence;
+
+/**
+ * GeofenceNames
+ *
+ * Type: Class (static helpers only)
+ *
+ * Display formatting of geofence IDs, e.g. "SB_SAN_SIMON" -> "San Simon". Kept free of Android dependencies so it
+ * can be benchmarked on the JVM.
+ */
+public final class GeofenceNames {
+
+    private GeofenceNames() {
+    }
+
+    /**
+     * displayName(): Formats a geofence ID of the form DIRECTION_WORD_WORD
+     * @param geofenceId - Geofence ID
+     * @return the two words capitalised, or null if the ID is not of that form
+     */
+    public static String displayName(String geofenceId) {
+        String[] split = geofenceId.split("_");
+
+        if (split.length != 3 || split[1].isEmpty() || split[2].isEmpty()) {
+            return null;
+        }
+
+        return split[1].substring(0, 1).toUpperCase() + split[1].substring(1).toLowerCase() + " " + split[2].substring(0, 1).toUpperCase() + split[2].substring(1).toLowerCase();
+    }
+}
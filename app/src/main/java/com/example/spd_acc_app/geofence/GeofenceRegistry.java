@@ -0,0 +1,88 @@
+package com.example.spd_acc_app.geofence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * GeofenceRegistry
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Book-keeping of the geofence IDs currently registered with Play Services, so a new fence set can be pushed
+ * as a diff (one add batch, one remove batch) instead of a remove-all followed by one add per fence.
+ * IDs are marked optimistically when a batch is submitted and rolled back if the batch fails.
+ *
+ * Properties:
+ *  !> mRegistered                              - IDs believed to be registered
+ */
+public final class GeofenceRegistry {
+
+    /**
+     * Diff: IDs to add and IDs to remove to go from the registered set to a desired set
+     */
+    public static final class Diff {
+        public final List<String> added = new ArrayList<>();
+        public final List<String> removed = new ArrayList<>();
+
+        public boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty();
+        }
+    }
+
+    private final Set<String> mRegistered = new HashSet<>();
+
+    /**
+     * diff(): Computes what has to cross the binder to make the desired set the registered one
+     * @param desired - IDs that should be registered afterwards
+     */
+    public Diff diff(Collection<String> desired) {
+        Diff diff = new Diff();
+
+        for (String id : desired) {
+            if (!mRegistered.contains(id)) {
+                diff.added.add(id);
+            }
+        }
+
+        Set<String> desiredSet = desired instanceof Set ? (Set<String>) desired : new HashSet<>(desired);
+        for (String id : mRegistered) {
+            if (!desiredSet.contains(id)) {
+                diff.removed.add(id);
+            }
+        }
+
+        return diff;
+    }
+
+    public void markAdded(Collection<String> ids) {
+        mRegistered.addAll(ids);
+    }
+
+    public void markRemoved(Collection<String> ids) {
+        mRegistered.removeAll(ids);
+    }
+
+    public void clear() {
+        mRegistered.clear();
+    }
+
+    public boolean isRegistered(String id) {
+        return mRegistered.contains(id);
+    }
+
+    public int size() {
+        return mRegistered.size();
+    }
+
+    /**
+     * getIds(): Copy of the IDs believed to be registered
+     */
+    public List<String> getIds() {
+        return new ArrayList<>(mRegistered);
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.spd_acc_app.geofence;
+
+import com.example.spd_acc_app.location.GeoMath;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GeofenceWindowManager
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Sliding-window geofence registration. Instead of registering every fence of a direction, only the K fences
+ * nearest to the vehicle and ahead of it (by bearing) are kept registered with Play Services, so the catalog can
+ * grow past the 100-fence platform limit. As the vehicle moves the window rolls forward; changes are rate-limited
+ * and applied as one remove batch followed by one add batch, so the registered count never exceeds K + in-flight.
+ *
+ * Not thread-safe; update() and the client callbacks must run on the same thread.
+ *
+ * Properties:
+ *  !> mCatalog                                 - Fence definitions
+ *  !> mClient                                  - Geofence registration client
+ *  !> mListener                                - Told when a batch completes, or null
+ *  !> mRegistry                                - IDs currently registered
+ *  !> mWindowSize                              - K, the number of fences kept registered
+ *  !> mMinIntervalMillis                       - Minimum time between two window updates
+ *  !> mFound                                   - Scratch output of GeofenceCatalog.findNear()
+ *  !> mWindow / mWindowDistance                - Scratch top-K selection (fence index, squared distance)
+ *  !> mCandidateStart / mCandidateEnd          - Catalog range the window is chosen from
+ *  !> mIsDirty                                 - Candidates changed; next update() ignores the rate limit
+ *  !> mIsInFlight                              - A batch is pending; no new batch is started
+ *  !> mGeneration                              - Bumped by clear(); callbacks of batches started before are ignored
+ *  !> mLastUpdate                              - Time of the last applied window
+ *  !> mCallCount                               - Number of add/remove calls issued
+ *
+ *  !> Constants
+ *      !> PLATFORM_FENCE_LIMIT                 - Play Services per-app geofence limit
+ *      !> SEARCH_DISTANCE                      - Radius the window is first chosen from; doubled up to
+ *                                                MAX_SEARCH_DISTANCE while it yields fewer than K fences
+ */
+public final class GeofenceWindowManager {
+
+    public static final int PLATFORM_FENCE_LIMIT = 100;
+    public static final double SEARCH_DISTANCE = 5000;
+    public static final double MAX_SEARCH_DISTANCE = 160000;
+
+    /**
+     * Listener: Told when the registered set is certain again
+     */
+    public interface Listener {
+        /**
+         * onBatchComplete(): A remove/add batch completed, successfully or not; getRegisteredIds() now matches what
+         * Play Services holds, e.g. to persist it
+         */
+        void onBatchComplete();
+    }
+
+    private final GeofenceCatalog mCatalog;
+    private final GeofenceClient mClient;
+    private final Listener mListener;
+    private final GeofenceRegistry mRegistry = new GeofenceRegistry();
+    private final int mWindowSize;
+    private final long mMinIntervalMillis;
+    private final int[] mWindow;
+    private final double[] mWindowDistance;
+
+    private int[] mFound = new int[64];
+    private int mCandidateStart;
+    private int mCandidateEnd;
+    private boolean mIsDirty = true;
+    private boolean mIsInFlight;
+    private int mGeneration;
+    private long mLastUpdate;
+    private int mCallCount;
+
+    /**
+     * GeofenceWindowManager(): Creates a manager with no candidates
+     * @param catalog - Fence definitions
+     * @param client - Geofence registration client
+     * @param windowSize - K, at most PLATFORM_FENCE_LIMIT
+     * @param minIntervalMillis - Minimum time between two window updates
+     */
+    public GeofenceWindowManager(GeofenceCatalog catalog, GeofenceClient client, int windowSize, long minIntervalMillis) {
+        this(catalog, client, windowSize, minIntervalMillis, null);
+    }
+
+    /**
+     * GeofenceWindowManager(): Creates a manager with no candidates that reports every completed batch
+     * @param catalog - Fence definitions
+     * @param client - Geofence registration client
+     * @param windowSize - K, at most PLATFORM_FENCE_LIMIT
+     * @param minIntervalMillis - Minimum time between two window updates
+     * @param listener - Batch completion callback, run on the client callback thread; may be null
+     */
+    public GeofenceWindowManager(GeofenceCatalog catalog, GeofenceClient client, int windowSize, long minIntervalMillis, Listener listener) {
+        if (windowSize < 1 || windowSize > PLATFORM_FENCE_LIMIT) {
+            throw new IllegalArgumentException("Window size must be within 1.." + PLATFORM_FENCE_LIMIT);
+        }
+
+        mCatalog = catalog;
+        mClient = client;
+        mListener = listener;
+        mWindowSize = windowSize;
+        mMinIntervalMillis = minIntervalMillis;
+        mWindow = new int[windowSize];
+        mWindowDistance = new double[windowSize];
+    }
+
+    /**
+     * setCandidates(): Selects the catalog range the window is chosen from (e.g. one direction's fences)
+     * @param start - First fence index (inclusive)
+     * @param end - Last fence index (exclusive)
+     */
+    public void setCandidates(int start, int end) {
+        if (start != mCandidateStart || end != mCandidateEnd) {
+            mCandidateStart = start;
+            mCandidateEnd = end;
+            mIsDirty = true;
+        }
+    }
+
+    /**
+     * update(): Rolls the window to the vehicle position, unless rate-limited or a batch is still pending
+     * @param latitude - Vehicle latitude in degrees
+     * @param longitude - Vehicle longitude in degrees
+     * @param bearing - Vehicle bearing in degrees, used only if hasBearing
+     * @param hasBearing - Whether bearing is valid; without it the K nearest fences are chosen regardless of heading
+     * @param timeMillis - Fix time
+     * @return true if a registration change was issued
+     */
+    public boolean update(double latitude, double longitude, float bearing, boolean hasBearing, long timeMillis) {
+        if (mIsInFlight) {
+            return false;
+        }
+
+        if (!mIsDirty && timeMillis - mLastUpdate < mMinIntervalMillis) {
+            return false;
+        }
+
+        mIsDirty = false;
+        mLastUpdate = timeMillis;
+
+        int count = select(latitude, longitude, bearing, hasBearing);
+        List<String> desired = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            desired.add(mCatalog.getId(mWindow[i]));
+        }
+
+        GeofenceRegistry.Diff diff = mRegistry.diff(desired);
+        if (diff.isEmpty()) {
+            return false;
+        }
+
+        mIsInFlight = true;
+        remove(diff.removed, diff.added);
+        return true;
+    }
+
+    /**
+     * clear(): Forgets the registered set, after all fences were removed through the PendingIntent. A batch still
+     * pending is abandoned: its callbacks neither touch the registry nor issue its remaining add.
+     */
+    public void clear() {
+        mRegistry.clear();
+        mIsDirty = true;
+        mIsInFlight = false;
+        mGeneration++;
+    }
+
+    /**
+     * restore(): Takes over fences still registered with Play Services by a previous process, so the next update()
+     * only issues the difference to the window. IDs no longer in the catalog are taken over too, so that the next
+     * update() removes them: they are never part of a window.
+     * @param ids - IDs registered when the previous process last saved its session
+     */
+    public void restore(List<String> ids) {
+        mRegistry.markAdded(ids);
+        mIsDirty = true;
+    }
+
+    /**
+     * getRegisteredIds(): IDs currently believed to be registered (copy)
+     */
+    public List<String> getRegisteredIds() {
+        return mRegistry.getIds();
+    }
+
+    /**
+     * isInFlight(): True while a remove/add batch is pending; the registered set may still be rolled back
+     */
+    public boolean isInFlight() {
+        return mIsInFlight;
+    }
+
+    public boolean isRegistered(String id) {
+        return mRegistry.isRegistered(id);
+    }
+
+    public int getRegisteredCount() {
+        return mRegistry.size();
+    }
+
+    public int getCallCount() {
+        return mCallCount;
+    }
+
+    private void remove(final List<String> removed, final List<String> added) {
+        if (removed.isEmpty()) {
+            add(added);
+            return;
+        }
+
+        final int generation = mGeneration;
+        mRegistry.markRemoved(removed);
+        mCallCount++;
+        mClient.removeGeofences(removed, new GeofenceClient.Callback() {
+            @Override
+            public void onComplete(boolean success) {
+                if (generation != mGeneration) {
+                    return;
+                }
+                if (!success) {
+                    // Still registered; retried on the next update after the rate limit
+                    mRegistry.markAdded(removed);
+                    finish();
+                    return;
+                }
+                add(added);
+            }
+        });
+    }
+
+    private void add(final List<String> added) {
+        if (added.isEmpty()) {
+            // Only reached from the remove callback: update() never issues an empty batch
+            finish();
+            return;
+        }
+
+        final int generation = mGeneration;
+        mRegistry.markAdded(added);
+        mCallCount++;
+        mClient.addGeofences(added, new GeofenceClient.Callback() {
+            @Override
+            public void onComplete(boolean success) {
+                if (generation != mGeneration) {
+                    return;
+                }
+                if (!success) {
+                    // Not registered; retried on the next update after the rate limit
+                    mRegistry.markRemoved(added);
+                }
+                finish();
+            }
+        });
+    }
+
+    private void finish() {
+        mIsInFlight = false;
+        if (mListener != null) {
+            mListener.onBatchComplete();
+        }
+    }
+
+    /**
+     * select(): Fills mWindow with the (at most K) candidate fences nearest to the position and ahead of it, among
+     * those GeofenceCatalog.findNear() returns within SEARCH_DISTANCE, or a wider radius if that holds fewer than K
+     * @return number of fences selected
+     */
+    private int select(double latitude, double longitude, float bearing, boolean hasBearing) {
+        double headingX = hasBearing ? Math.sin(Math.toRadians(bearing)) : 0;
+        double headingY = hasBearing ? Math.cos(Math.toRadians(bearing)) : 0;
+        int count = 0;
+
+        for (double distance = SEARCH_DISTANCE; count < mWindowSize && distance <= MAX_SEARCH_DISTANCE; distance *= 2) {
+            int found = mCatalog.findNear(latitude, longitude, distance, mFound);
+            if (found > mFound.length) {
+                mFound = new int[Integer.highestOneBit(found) * 2];
+                found = mCatalog.findNear(latitude, longitude, distance, mFound);
+            }
+
+            count = 0;
+            for (int k = 0; k < found; k++) {
+                int i = mFound[k];
+                if (i < mCandidateStart || i >= mCandidateEnd) {
+                    continue;
+                }
+
+                double dx = (mCatalog.getLongitude(i) - longitude) * GeoMath.cosLatitude(mCatalog.getLatitude(i)) * GeoMath.METRES_PER_DEGREE;
+                double dy = (mCatalog.getLatitude(i) - latitude) * GeoMath.METRES_PER_DEGREE;
+
+                // Behind the vehicle and no longer overlapping it
+                if (hasBearing && dx * headingX + dy * headingY < -mCatalog.getRadius(i)) {
+                    continue;
+                }
+
+                double d2 = dx * dx + dy * dy;
+                if (count == mWindowSize && d2 >= mWindowDistance[count - 1]) {
+                    continue;
+                }
+
+                // Insertion into the sorted top-K
+                int slot = count < mWindowSize ? count++ : count - 1;
+                while (slot > 0 && mWindowDistance[slot - 1] > d2) {
+                    mWindow[slot] = mWindow[slot - 1];
+                    mWindowDistance[slot] = mWindowDistance[slot - 1];
+                    slot--;
+                }
+                mWindow[slot] = i;
+                mWindowDistance[slot] = d2;
+            }
+        }
+
+        return count;
+    }
+}
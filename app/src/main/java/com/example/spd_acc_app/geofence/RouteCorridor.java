@@ -0,0 +1,337 @@
+package com.example.spd_acc_app.geofence;
+
+import com.example.spd_acc_app.location.GeoMath;
+
+/**
+ * RouteCorridor
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * One direction of the road as a polyline in travel order, with its turns placed at their distance along the route.
+ * match() snaps a fix to the polyline (map matching) and answers how far ahead every turn is along the road, so a
+ * turn already passed is never announced again, however close it still is in a straight line.
+ *
+ * Vertices are projected once into a local equirectangular plane (metres) and the cumulative length up to every
+ * vertex is precomputed. Matching is incremental: the search starts at the segment matched by the previous fix and
+ * walks forward or backward only while the neighbouring segment is closer, so a fix costs O(1) amortised, as a
+ * vehicle moves across a bounded number of segments per fix. Only the first fix, and a fix after the vehicle left
+ * the corridor, scan every segment. The first and last segments extend beyond the ends of the polyline, so the
+ * approach to the first turn matches with a negative along-route distance.
+ *
+ * Instances are not thread-safe: match() keeps the matched position between calls.
+ *
+ * Properties:
+ *  !> mX / mY                                  - Projected vertex coordinates (metres), in travel order
+ *  !> mCumulative                              - Along-route distance of every vertex from the first one
+ *  !> mTurnAlong                               - Along-route distance of every turn (caller order)
+ *  !> mTurnOrder                               - Turns sorted by along-route distance
+ *  !> mRefLat / mRefLon / mCosRefLat           - Projection origin
+ *  !> mHalfWidth                               - Largest distance from the polyline still matched to it
+ *  !> mSegment                                 - Segment of the last match, -1 before the first match or off the corridor
+ *  !> mNextTurn                                - Position in mTurnOrder of the first turn not passed yet
+ *  !> mAlong / mCrossTrack                     - Along-route and cross-track distance of the last matched fix
+ *  !> mFullScans / mSteps                      - Full scans and incremental segment steps taken, for diagnostics
+ */
+public final class RouteCorridor {
+
+    private final double[] mX;
+    private final double[] mY;
+    private final double[] mCumulative;
+    private final double[] mTurnAlong;
+    private final int[] mTurnOrder;
+    private final double mRefLat;
+    private final double mRefLon;
+    private final double mCosRefLat;
+    private final double mHalfWidth;
+
+    private int mSegment = -1;
+    private int mNextTurn;
+    private double mAlong = Double.NaN;
+    private double mCrossTrack = Double.NaN;
+    private long mFullScans;
+    private long mSteps;
+
+    // Result of the last project() call, kept in fields so that matching allocates nothing
+    private double mProjectedAlong;
+    private double mProjectedDistance2;
+
+    /**
+     * RouteCorridor(): Builds the corridor. Arrays are copied; turn i of the inputs is what queries take and return.
+     * @param latitudes - Vertex latitudes in degrees, in travel order (at least one vertex)
+     * @param longitudes - Vertex longitudes in degrees, in travel order
+     * @param turnLatitudes - Turn latitudes in degrees; each turn is placed at the nearest point of the polyline
+     * @param turnLongitudes - Turn longitudes in degrees
+     * @param halfWidth - Largest distance in metres from the polyline at which a fix is still on the route
+     */
+    public RouteCorridor(double[] latitudes, double[] longitudes, double[] turnLatitudes, double[] turnLongitudes, double halfWidth) {
+        if (latitudes.length != longitudes.length || turnLatitudes.length != turnLongitudes.length) {
+            throw new IllegalArgumentException("Corridor arrays differ in length");
+        }
+        if (latitudes.length == 0) {
+            throw new IllegalArgumentException("Corridor without vertices");
+        }
+
+        int count = latitudes.length;
+        double latSum = 0;
+        double lonSum = 0;
+        for (int i = 0; i < count; i++) {
+            latSum += latitudes[i];
+            lonSum += longitudes[i];
+        }
+
+        mRefLat = latSum / count;
+        mRefLon = lonSum / count;
+        mCosRefLat = GeoMath.cosLatitude(mRefLat);
+        mHalfWidth = halfWidth;
+
+        // A single vertex becomes a zero-length segment, so that every corridor has at least one segment
+        int vertices = Math.max(count, 2);
+        mX = new double[vertices];
+        mY = new double[vertices];
+        mCumulative = new double[vertices];
+        for (int i = 0; i < vertices; i++) {
+            int source = Math.min(i, count - 1);
+            mX[i] = projectX(longitudes[source]);
+            mY[i] = projectY(latitudes[source]);
+            if (i > 0) {
+                mCumulative[i] = mCumulative[i - 1] + Math.hypot(mX[i] - mX[i - 1], mY[i] - mY[i - 1]);
+            }
+        }
+
+        int turns = turnLatitudes.length;
+        mTurnAlong = new double[turns];
+        mTurnOrder = new int[turns];
+        for (int i = 0; i < turns; i++) {
+            scan(projectX(turnLongitudes[i]), projectY(turnLatitudes[i]));
+            mTurnAlong[i] = mProjectedAlong;
+            mTurnOrder[i] = i;
+        }
+
+        // Insertion sort by along-route distance; turns arrive nearly in order
+        for (int i = 1; i < turns; i++) {
+            int turn = mTurnOrder[i];
+            int j = i - 1;
+            while (j >= 0 && mTurnAlong[mTurnOrder[j]] > mTurnAlong[turn]) {
+                mTurnOrder[j + 1] = mTurnOrder[j];
+                j--;
+            }
+            mTurnOrder[j + 1] = turn;
+        }
+
+        // Scanning for the turns is setup, not matching
+        mSteps = 0;
+    }
+
+    /**
+     * match(): Snaps a fix to the corridor and updates the along-route position
+     * @param latitude - Fix latitude in degrees
+     * @param longitude - Fix longitude in degrees
+     * @return true if the fix lies within the corridor; false leaves the along-route position unchanged
+     */
+    public boolean match(double latitude, double longitude) {
+        double x = projectX(longitude);
+        double y = projectY(latitude);
+
+        int segment;
+        if (mSegment < 0) {
+            segment = scan(x, y);
+            mFullScans++;
+        } else {
+            segment = climb(x, y, mSegment);
+        }
+
+        if (mProjectedDistance2 > mHalfWidth * mHalfWidth) {
+            mSegment = -1;
+            return false;
+        }
+
+        mSegment = segment;
+        mAlong = mProjectedAlong;
+        mCrossTrack = Math.sqrt(mProjectedDistance2);
+
+        // Turns only move ahead or behind by the few metres driven since the last fix
+        int[] order = mTurnOrder;
+        while (mNextTurn < order.length && mTurnAlong[order[mNextTurn]] < mAlong) {
+            mNextTurn++;
+        }
+        while (mNextTurn > 0 && mTurnAlong[order[mNextTurn - 1]] >= mAlong) {
+            mNextTurn--;
+        }
+        return true;
+    }
+
+    /**
+     * reset(): Forgets the matched position, e.g. when the vehicle starts using this corridor again
+     */
+    public void reset() {
+        mSegment = -1;
+        mNextTurn = 0;
+        mAlong = Double.NaN;
+        mCrossTrack = Double.NaN;
+    }
+
+    /**
+     * isMatched(): True if the last call to match() found the fix within the corridor
+     */
+    public boolean isMatched() {
+        return mSegment >= 0;
+    }
+
+    /**
+     * getNextTurn(): First turn at or ahead of the matched position
+     * @return turn index as given to the constructor, or -1 if every turn is behind or nothing is matched
+     */
+    public int getNextTurn() {
+        return mSegment < 0 || mNextTurn == mTurnOrder.length ? -1 : mTurnOrder[mNextTurn];
+    }
+
+    /**
+     * getDistanceToTurn(): Along-route distance in metres from the matched position to a turn; negative once passed
+     * @param turn - Turn index as given to the constructor
+     */
+    public double getDistanceToTurn(int turn) {
+        return mTurnAlong[turn] - mAlong;
+    }
+
+    /**
+     * getAlongDistance(): Distance in metres along the route from the first vertex to the last matched position
+     */
+    public double getAlongDistance() {
+        return mAlong;
+    }
+
+    /**
+     * getCrossTrackDistance(): Distance in metres from the last matched fix to the polyline
+     */
+    public double getCrossTrackDistance() {
+        return mCrossTrack;
+    }
+
+    /**
+     * getLength(): Length in metres of the polyline
+     */
+    public double getLength() {
+        return mCumulative[mCumulative.length - 1];
+    }
+
+    public int getSegmentCount() {
+        return mX.length - 1;
+    }
+
+    /**
+     * getSegment(): Segment of the last match, -1 if none
+     */
+    public int getSegment() {
+        return mSegment;
+    }
+
+    public int getTurnCount() {
+        return mTurnAlong.length;
+    }
+
+    /**
+     * getFullScans(): Number of matches that scanned every segment (first fix, or re-entering the corridor)
+     */
+    public long getFullScans() {
+        return mFullScans;
+    }
+
+    /**
+     * getSteps(): Number of segments the incremental search moved across in total
+     */
+    public long getSteps() {
+        return mSteps;
+    }
+
+    /**
+     * climb(): Walks from a segment towards the closest one while a neighbour is closer
+     */
+    private int climb(double x, double y, int segment) {
+        project(x, y, segment);
+        double best = mProjectedDistance2;
+        double bestAlong = mProjectedAlong;
+
+        int last = mX.length - 2;
+        int step = 0;
+        while (segment + step < last) {
+            project(x, y, segment + step + 1);
+            if (mProjectedDistance2 >= best) {
+                break;
+            }
+            step++;
+            best = mProjectedDistance2;
+            bestAlong = mProjectedAlong;
+        }
+        if (step == 0) {
+            while (segment + step > 0) {
+                project(x, y, segment + step - 1);
+                if (mProjectedDistance2 >= best) {
+                    break;
+                }
+                step--;
+                best = mProjectedDistance2;
+                bestAlong = mProjectedAlong;
+            }
+        }
+
+        mSteps += Math.abs(step);
+        mProjectedDistance2 = best;
+        mProjectedAlong = bestAlong;
+        return segment + step;
+    }
+
+    /**
+     * scan(): Finds the closest segment by looking at all of them
+     */
+    private int scan(double x, double y) {
+        double best = Double.POSITIVE_INFINITY;
+        double bestAlong = 0;
+        int bestSegment = 0;
+        for (int i = 0; i < mX.length - 1; i++) {
+            project(x, y, i);
+            if (mProjectedDistance2 < best) {
+                best = mProjectedDistance2;
+                bestAlong = mProjectedAlong;
+                bestSegment = i;
+            }
+        }
+
+        mProjectedDistance2 = best;
+        mProjectedAlong = bestAlong;
+        return bestSegment;
+    }
+
+    /**
+     * project(): Projects a point onto a segment; sets mProjectedAlong and mProjectedDistance2
+     */
+    private void project(double x, double y, int segment) {
+        double ax = mX[segment];
+        double ay = mY[segment];
+        double dx = mX[segment + 1] - ax;
+        double dy = mY[segment + 1] - ay;
+        double length2 = dx * dx + dy * dy;
+
+        double t = length2 == 0 ? 0 : ((x - ax) * dx + (y - ay) * dy) / length2;
+        // Only the end segments extend beyond their outer vertex
+        if (t < 0 && segment > 0) {
+            t = 0;
+        } else if (t > 1 && segment < mX.length - 2) {
+            t = 1;
+        }
+
+        double px = ax + t * dx - x;
+        double py = ay + t * dy - y;
+        mProjectedDistance2 = px * px + py * py;
+        mProjectedAlong = mCumulative[segment] + t * Math.sqrt(length2);
+    }
+
+    private double projectX(double longitude) {
+        return (longitude - mRefLon) * mCosRefLat * GeoMath.METRES_PER_DEGREE;
+    }
+
+    private double projectY(double latitude) {
+        return (latitude - mRefLat) * GeoMath.METRES_PER_DEGREE;
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.spd_acc_app.geofence;
+
+import com.example.spd_acc_app.metrics.LatencyHistogram;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * TransitionQueue
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Moves OS geofence transitions off the main thread. The broadcast receiver offers the transitions of an event and
+ * returns; a single worker thread hands them to the Handler in order. Between the two:
+ *  !> The queue is bounded; transitions offered while it is full are dropped and counted.
+ *  !> A transition of a fence repeating the previous transition of that fence within the collapse window (the OS
+ *     re-delivers events, e.g. after a geofence re-registration) is collapsed into the first one. A dropped
+ *     transition collapses nothing, so its re-delivery is queued.
+ *  !> The latency from offer() to the end of the Handler call is recorded for every handled transition.
+ *  !> A Completion per offer() runs once all its transitions are handled, collapsed or dropped, e.g. to finish the
+ *     receiver's goAsync() PendingResult.
+ *  !> A RuntimeException thrown by the Handler is logged and counted; it fails that transition only, and the worker
+ *     goes on with the next one.
+ *
+ * Thread-safe; the worker thread starts with the first offer() and then lives as long as the process.
+ *
+ * Properties:
+ *  !> mQueue                                   - Pending transitions
+ *  !> mHandler                                 - Transition consumer, called on the worker thread
+ *  !> mCollapseWindowMillis                    - Window within which a repeated transition is collapsed
+ *  !> mLastTransitions / mLastTransitionTimes  - Last queued transition type and time per geofence ID, guarded by this
+ *  !> mWorker                                  - Worker thread, null until started
+ *  !> mHandledCount / mCollapsedCount / mDroppedCount / mFailedCount - Transition counts
+ *  !> mTotalLatencyNanos / mMaxLatencyNanos    - Offer-to-handled latency sum and maximum
+ *  !> mLatency                                 - Offer-to-handled latency distribution, or null
+ *
+ *  !> Constants
+ *      !> TAG                                  - Logger name
+ *      !> WORKER_THREAD_NAME                   - Name of the worker thread
+ */
+public final class TransitionQueue {
+
+    private static final String TAG = "TransitionQueue";
+    private static final String WORKER_THREAD_NAME = "GeofenceTransitions";
+
+    /**
+     * Handler: Consumes transitions, one at a time, on the worker thread
+     */
+    public interface Handler {
+        /**
+         * onTransition(): Handles one transition
+         * @param geofenceId - Geofence ID
+         * @param transition - Geofence.GEOFENCE_TRANSITION_*
+         * @param timeMillis - Time of the event
+         */
+        void onTransition(String geofenceId, int transition, long timeMillis);
+    }
+
+    /**
+     * Completion: Told when every transition of one offer() is done with
+     */
+    public interface Completion {
+        void onComplete();
+    }
+
+    /**
+     * Batch: The transitions of one offer() still pending
+     */
+    private static final class Batch {
+        final AtomicInteger mPending;
+        final Completion mCompletion;
+
+        Batch(int pending, Completion completion) {
+            mPending = new AtomicInteger(pending);
+            mCompletion = completion;
+        }
+
+        void done() {
+            if (mPending.decrementAndGet() == 0 && mCompletion != null) {
+                mCompletion.onComplete();
+            }
+        }
+    }
+
+    /**
+     * Item: One queued transition
+     */
+    private static final class Item {
+        final String mGeofenceId;
+        final int mTransition;
+        final long mTimeMillis;
+        final long mOfferedNanos;
+        final Batch mBatch;
+
+        Item(String geofenceId, int transition, long timeMillis, long offeredNanos, Batch batch) {
+            mGeofenceId = geofenceId;
+            mTransition = transition;
+            mTimeMillis = timeMillis;
+            mOfferedNanos = offeredNanos;
+            mBatch = batch;
+        }
+    }
+
+    private final BlockingQueue<Item> mQueue;
+    private final Handler mHandler;
+    private final long mCollapseWindowMillis;
+    private final Map<String, Integer> mLastTransitions = new HashMap<>();
+    private final Map<String, Long> mLastTransitionTimes = new HashMap<>();
+    private Thread mWorker;
+
+    private final AtomicInteger mHandledCount = new AtomicInteger();
+    private final AtomicInteger mCollapsedCount = new AtomicInteger();
+    private final AtomicInteger mDroppedCount = new AtomicInteger();
+    private final AtomicInteger mFailedCount = new AtomicInteger();
+    private final AtomicLong mTotalLatencyNanos = new AtomicLong();
+    private final AtomicLong mMaxLatencyNanos = new AtomicLong();
+    private final LatencyHistogram mLatency;
+
+    /**
+     * TransitionQueue(): Creates an idle queue
+     * @param capacity - Maximum number of pending transitions
+     * @param collapseWindowMillis - Window within which a repeated transition of a fence is collapsed
+     * @param handler - Transition consumer
+     */
+    public TransitionQueue(int capacity, long collapseWindowMillis, Handler handler) {
+        this(capacity, collapseWindowMillis, handler, null);
+    }
+
+    /**
+     * TransitionQueue(): Creates an idle queue that also records every offer-to-handled latency into a histogram
+     * @param capacity - Maximum number of pending transitions
+     * @param collapseWindowMillis - Window within which a repeated transition of a fence is collapsed
+     * @param handler - Transition consumer
+     * @param latency - Latency destination; may be null
+     */
+    public TransitionQueue(int capacity, long collapseWindowMillis, Handler handler, LatencyHistogram latency) {
+        mQueue = new ArrayBlockingQueue<>(capacity);
+        mCollapseWindowMillis = collapseWindowMillis;
+        mHandler = handler;
+        mLatency = latency;
+    }
+
+    /**
+     * offer(): Queues the transitions of one event without blocking
+     * @param geofenceIds - IDs of the triggering geofences
+     * @param transition - Geofence.GEOFENCE_TRANSITION_*
+     * @param timeMillis - Time of the event
+     * @param completion - Run once every transition is handled, collapsed or dropped (possibly before offer() returns); may be null
+     * @return number of transitions queued
+     */
+    public int offer(String[] geofenceIds, int transition, long timeMillis, Completion completion) {
+        long now = System.nanoTime();
+        Batch batch = new Batch(geofenceIds.length + 1, completion);
+        int queued = 0;
+
+        synchronized (this) {
+            startWorker();
+
+            for (String geofenceId : geofenceIds) {
+                if (isRepeat(geofenceId, transition, timeMillis)) {
+                    mCollapsedCount.incrementAndGet();
+                    batch.done();
+                } else if (mQueue.offer(new Item(geofenceId, transition, timeMillis, now, batch))) {
+                    // Only a queued transition collapses its repeats: a dropped one must get through when re-delivered
+                    mLastTransitions.put(geofenceId, transition);
+                    mLastTransitionTimes.put(geofenceId, timeMillis);
+                    queued++;
+                } else {
+                    mDroppedCount.incrementAndGet();
+                    batch.done();
+                }
+            }
+        }
+
+        // Balances the extra count, so that the completion cannot run before every ID was looked at
+        batch.done();
+        return queued;
+    }
+
+    private boolean isRepeat(String geofenceId, int transition, long timeMillis) {
+        Integer lastTransition = mLastTransitions.get(geofenceId);
+        Long lastTime = mLastTransitionTimes.get(geofenceId);
+        return lastTransition != null && lastTransition == transition
+                && timeMillis - lastTime < mCollapseWindowMillis;
+    }
+
+    private void startWorker() {
+        if (mWorker != null) {
+            return;
+        }
+
+        mWorker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    Item item;
+                    try {
+                        item = mQueue.take();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    try {
+                        handle(item);
+                    } catch (RuntimeException e) {
+                        // handle() has already completed the item; a failing transition must not stop the worker
+                        mFailedCount.incrementAndGet();
+                        Logger.getLogger(TAG).log(Level.WARNING, "run() :: " + item.mGeofenceId + " transition " + item.mTransition + " failed", e);
+                    }
+                }
+            }
+        }, WORKER_THREAD_NAME);
+        mWorker.setDaemon(true);
+        mWorker.start();
+    }
+
+    private void handle(Item item) {
+        try {
+            mHandler.onTransition(item.mGeofenceId, item.mTransition, item.mTimeMillis);
+        } finally {
+            long latency = System.nanoTime() - item.mOfferedNanos;
+            mTotalLatencyNanos.addAndGet(latency);
+            if (mLatency != null) {
+                mLatency.record(latency);
+            }
+            long max = mMaxLatencyNanos.get();
+            while (latency > max && !mMaxLatencyNanos.compareAndSet(max, latency)) {
+                max = mMaxLatencyNanos.get();
+            }
+            mHandledCount.incrementAndGet();
+            item.mBatch.done();
+        }
+    }
+
+    public int getHandledCount() {
+        return mHandledCount.get();
+    }
+
+    public int getCollapsedCount() {
+        return mCollapsedCount.get();
+    }
+
+    public int getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    /**
+     * getFailedCount(): Number of transitions whose Handler call threw; they are included in getHandledCount()
+     */
+    public int getFailedCount() {
+        return mFailedCount.get();
+    }
+
+    /**
+     * getMeanLatencyNanos(): Mean offer-to-handled latency, 0 before the first transition is handled
+     */
+    public long getMeanLatencyNanos() {
+        int handled = mHandledCount.get();
+        return handled == 0 ? 0 : mTotalLatencyNanos.get() / handled;
+    }
+
+    public long getMaxLatencyNanos() {
+        return mMaxLatencyNanos.get();
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.spd_acc_app.location;
+
+import java.util.Arrays;
+
+/**
+ * FixBatch
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Reusable buffer for the fixes of one batched location delivery, stored in parallel primitive arrays. After
+ * sortByTime() the fixes are read in timestamp order; the order is kept in an index array and sorted by insertion,
+ * which is linear for the already ordered batches the provider normally delivers. The arrays only grow, so a
+ * steady stream of batches allocates nothing.
+ *
+ * Not thread-safe.
+ *
+ * Properties:
+ *  !> mTimes / mLatitudes / mLongitudes / mSpeeds / mHasSpeeds / mBearings / mHasBearings / mAccuracies - Fix columns, in arrival order
+ *  !> mOrder                                   - Arrival index of the fix at each sorted position
+ *  !> mSize                                    - Number of fixes
+ *
+ *  !> Constants
+ *      !> INITIAL_CAPACITY                     - Initial number of fixes
+ */
+public final class FixBatch {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private long[] mTimes = new long[INITIAL_CAPACITY];
+    private double[] mLatitudes = new double[INITIAL_CAPACITY];
+    private double[] mLongitudes = new double[INITIAL_CAPACITY];
+    private float[] mSpeeds = new float[INITIAL_CAPACITY];
+    private boolean[] mHasSpeeds = new boolean[INITIAL_CAPACITY];
+    private float[] mBearings = new float[INITIAL_CAPACITY];
+    private boolean[] mHasBearings = new boolean[INITIAL_CAPACITY];
+    private float[] mAccuracies = new float[INITIAL_CAPACITY];
+    private int[] mOrder = new int[INITIAL_CAPACITY];
+    private int mSize;
+
+    /**
+     * add(): Appends a fix; it is read back in arrival order until sortByTime()
+     */
+    public void add(long timeMillis, double latitude, double longitude, float speed, boolean hasSpeed, float bearing, boolean hasBearing, float accuracy) {
+        if (mSize == mTimes.length) {
+            grow();
+        }
+
+        int i = mSize++;
+        mTimes[i] = timeMillis;
+        mLatitudes[i] = latitude;
+        mLongitudes[i] = longitude;
+        mSpeeds[i] = speed;
+        mHasSpeeds[i] = hasSpeed;
+        mBearings[i] = bearing;
+        mHasBearings[i] = hasBearing;
+        mAccuracies[i] = accuracy;
+        mOrder[i] = i;
+    }
+
+    /**
+     * sortByTime(): Orders the fixes by time; fixes with equal times keep their arrival order
+     */
+    public void sortByTime() {
+        for (int i = 1; i < mSize; i++) {
+            int index = mOrder[i];
+            long time = mTimes[index];
+            int j = i - 1;
+            while (j >= 0 && mTimes[mOrder[j]] > time) {
+                mOrder[j + 1] = mOrder[j];
+                j--;
+            }
+            mOrder[j + 1] = index;
+        }
+    }
+
+    public void clear() {
+        mSize = 0;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public long getTime(int position) {
+        return mTimes[mOrder[position]];
+    }
+
+    public double getLatitude(int position) {
+        return mLatitudes[mOrder[position]];
+    }
+
+    public double getLongitude(int position) {
+        return mLongitudes[mOrder[position]];
+    }
+
+    public float getSpeed(int position) {
+        return mSpeeds[mOrder[position]];
+    }
+
+    public boolean hasSpeed(int position) {
+        return mHasSpeeds[mOrder[position]];
+    }
+
+    public float getBearing(int position) {
+        return mBearings[mOrder[position]];
+    }
+
+    public boolean hasBearing(int position) {
+        return mHasBearings[mOrder[position]];
+    }
+
+    public float getAccuracy(int position) {
+        return mAccuracies[mOrder[position]];
+    }
+
+    private void grow() {
+        int capacity = mTimes.length * 2;
+        mTimes = Arrays.copyOf(mTimes, capacity);
+        mLatitudes = Arrays.copyOf(mLatitudes, capacity);
+        mLongitudes = Arrays.copyOf(mLongitudes, capacity);
+        mSpeeds = Arrays.copyOf(mSpeeds, capacity);
+        mHasSpeeds = Arrays.copyOf(mHasSpeeds, capacity);
+        mBearings = Arrays.copyOf(mBearings, capacity);
+        mHasBearings = Arrays.copyOf(mHasBearings, capacity);
+        mAccuracies = Arrays.copyOf(mAccuracies, capacity);
+        mOrder = Arrays.copyOf(mOrder, capacity);
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.spd_acc_app.location;
+
+/**
+ * FixRingBuffer
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Fixed-capacity history of recent fixes stored in parallel primitive arrays, so no Location objects are retained.
+ * Besides O(1) append and random access by age, it keeps O(1) (amortised) sum, mean, min and max of speed and
+ * acceleration over the fixes of the last windowMillis, using a running sum and monotonic deques of sequence
+ * numbers. Nothing is allocated after construction.
+ *
+ * Not thread-safe.
+ *
+ * Properties:
+ *  !> mTimes / mLatitudes / mLongitudes / mSpeeds / mBearings / mAccuracies / mAccelerations - Fix columns, by slot
+ *  !> mCapacity                               - Number of slots
+ *  !> mWindowMillis                           - Length of the statistics window
+ *  !> mNext                                   - Sequence number of the next append (= total fixes appended)
+ *  !> mWindowStart                            - Sequence number of the oldest fix inside the window
+ *  !> mSpeedSum / mAccelerationSum            - Running sums over the window
+ *  !> mSpeedMin / mSpeedMax / mAccelerationMin / mAccelerationMax - Monotonic deques over the window
+ */
+public final class FixRingBuffer {
+
+    private final int mCapacity;
+    private final long mWindowMillis;
+
+    private final long[] mTimes;
+    private final double[] mLatitudes;
+    private final double[] mLongitudes;
+    private final float[] mSpeeds;
+    private final float[] mBearings;
+    private final float[] mAccuracies;
+    private final double[] mAccelerations;
+
+    private final MonotonicDeque mSpeedMin;
+    private final MonotonicDeque mSpeedMax;
+    private final MonotonicDeque mAccelerationMin;
+    private final MonotonicDeque mAccelerationMax;
+
+    private long mNext;
+    private long mWindowStart;
+    private double mSpeedSum;
+    private double mAccelerationSum;
+
+    /**
+     * FixRingBuffer(): Creates an empty buffer
+     * @param capacity - Number of fixes kept; also bounds the statistics window
+     * @param windowMillis - Length of the statistics window
+     */
+    public FixRingBuffer(int capacity, long windowMillis) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+
+        mCapacity = capacity;
+        mWindowMillis = windowMillis;
+        mTimes = new long[capacity];
+        mLatitudes = new double[capacity];
+        mLongitudes = new double[capacity];
+        mSpeeds = new float[capacity];
+        mBearings = new float[capacity];
+        mAccuracies = new float[capacity];
+        mAccelerations = new double[capacity];
+
+        mSpeedMin = new MonotonicDeque(capacity, false);
+        mSpeedMax = new MonotonicDeque(capacity, true);
+        mAccelerationMin = new MonotonicDeque(capacity, false);
+        mAccelerationMax = new MonotonicDeque(capacity, true);
+    }
+
+    /**
+     * append(): Adds the newest fix, overwriting the oldest one when full
+     * @param timeMillis - Fix time; expected not to decrease
+     * @param latitude - Latitude in degrees
+     * @param longitude - Longitude in degrees
+     * @param speed - Speed in m/s
+     * @param bearing - Bearing in degrees
+     * @param accuracy - Horizontal accuracy in metres
+     * @param acceleration - Acceleration in m/s^2 (e.g. from SpeedKalmanFilter)
+     */
+    public void append(long timeMillis, double latitude, double longitude, float speed, float bearing, float accuracy, double acceleration) {
+        // The slot about to be overwritten leaves the window first
+        if (mNext - mWindowStart == mCapacity) {
+            evictOldest();
+        }
+
+        int slot = slot(mNext);
+        mTimes[slot] = timeMillis;
+        mLatitudes[slot] = latitude;
+        mLongitudes[slot] = longitude;
+        mSpeeds[slot] = speed;
+        mBearings[slot] = bearing;
+        mAccuracies[slot] = accuracy;
+        mAccelerations[slot] = acceleration;
+
+        mSpeedSum += speed;
+        mAccelerationSum += acceleration;
+        mSpeedMin.push(mNext, speed, mSpeeds);
+        mSpeedMax.push(mNext, speed, mSpeeds);
+        mAccelerationMin.push(mNext, acceleration, mAccelerations);
+        mAccelerationMax.push(mNext, acceleration, mAccelerations);
+        mNext++;
+
+        while (mWindowStart < mNext && timeMillis - mTimes[slot(mWindowStart)] > mWindowMillis) {
+            evictOldest();
+        }
+    }
+
+    /**
+     * clear(): Drops all fixes
+     */
+    public void clear() {
+        mNext = 0;
+        mWindowStart = 0;
+        mSpeedSum = 0;
+        mAccelerationSum = 0;
+        mSpeedMin.clear();
+        mSpeedMax.clear();
+        mAccelerationMin.clear();
+        mAccelerationMax.clear();
+    }
+
+    /**
+     * size(): Number of fixes retrievable by age
+     */
+    public int size() {
+        return (int) Math.min(mNext, mCapacity);
+    }
+
+    /**
+     * getWindowCount(): Number of fixes inside the statistics window
+     */
+    public int getWindowCount() {
+        return (int) (mNext - mWindowStart);
+    }
+
+    public boolean isEmpty() {
+        return mNext == 0;
+    }
+
+    // Accessors by age: 0 is the newest fix, size() - 1 the oldest
+
+    public long getTime(int age) {
+        return mTimes[slotOfAge(age)];
+    }
+
+    public double getLatitude(int age) {
+        return mLatitudes[slotOfAge(age)];
+    }
+
+    public double getLongitude(int age) {
+        return mLongitudes[slotOfAge(age)];
+    }
+
+    public float getSpeed(int age) {
+        return mSpeeds[slotOfAge(age)];
+    }
+
+    public float getBearing(int age) {
+        return mBearings[slotOfAge(age)];
+    }
+
+    public float getAccuracy(int age) {
+        return mAccuracies[slotOfAge(age)];
+    }
+
+    public double getAcceleration(int age) {
+        return mAccelerations[slotOfAge(age)];
+    }
+
+    // Window statistics; NaN when the window is empty
+
+    public double getSpeedSum() {
+        return mSpeedSum;
+    }
+
+    public double getSpeedMean() {
+        return getWindowCount() == 0 ? Double.NaN : mSpeedSum / getWindowCount();
+    }
+
+    public double getSpeedMin() {
+        return mSpeedMin.isEmpty() ? Double.NaN : mSpeeds[slot(mSpeedMin.peek())];
+    }
+
+    public double getSpeedMax() {
+        return mSpeedMax.isEmpty() ? Double.NaN : mSpeeds[slot(mSpeedMax.peek())];
+    }
+
+    public double getAccelerationSum() {
+        return mAccelerationSum;
+    }
+
+    public double getAccelerationMean() {
+        return getWindowCount() == 0 ? Double.NaN : mAccelerationSum / getWindowCount();
+    }
+
+    public double getAccelerationMin() {
+        return mAccelerationMin.isEmpty() ? Double.NaN : mAccelerations[slot(mAccelerationMin.peek())];
+    }
+
+    public double getAccelerationMax() {
+        return mAccelerationMax.isEmpty() ? Double.NaN : mAccelerations[slot(mAccelerationMax.peek())];
+    }
+
+    private void evictOldest() {
+        int slot = slot(mWindowStart);
+        mSpeedSum -= mSpeeds[slot];
+        mAccelerationSum -= mAccelerations[slot];
+        mSpeedMin.evict(mWindowStart);
+        mSpeedMax.evict(mWindowStart);
+        mAccelerationMin.evict(mWindowStart);
+        mAccelerationMax.evict(mWindowStart);
+        mWindowStart++;
+
+        // Re-anchor the running sums on an empty window so rounding error cannot build up over hours
+        if (mWindowStart == mNext) {
+            mSpeedSum = 0;
+            mAccelerationSum = 0;
+        }
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % mCapacity);
+    }
+
+    private int slotOfAge(int age) {
+        if (age < 0 || age >= size()) {
+            throw new IndexOutOfBoundsException("age " + age + ", size " + size());
+        }
+        return slot(mNext - 1 - age);
+    }
+
+    /**
+     * MonotonicDeque: Ring of sequence numbers whose values are monotonic, so the front is the window min (or max)
+     */
+    private final class MonotonicDeque {
+        private final long[] mSequences;
+        private final boolean mIsMax;
+        private int mHead;
+        private int mSize;
+
+        MonotonicDeque(int capacity, boolean isMax) {
+            mSequences = new long[capacity];
+            mIsMax = isMax;
+        }
+
+        void push(long sequence, double value, float[] values) {
+            while (mSize > 0 && dominated(values[slot(back())], value)) {
+                mSize--;
+            }
+            add(sequence);
+        }
+
+        void push(long sequence, double value, double[] values) {
+            while (mSize > 0 && dominated(values[slot(back())], value)) {
+                mSize--;
+            }
+            add(sequence);
+        }
+
+        void evict(long sequence) {
+            if (mSize > 0 && mSequences[mHead] == sequence) {
+                mHead = (mHead + 1) % mSequences.length;
+                mSize--;
+            }
+        }
+
+        long peek() {
+            return mSequences[mHead];
+        }
+
+        boolean isEmpty() {
+            return mSize == 0;
+        }
+
+        void clear() {
+            mHead = 0;
+            mSize = 0;
+        }
+
+        private boolean dominated(double existing, double value) {
+            return mIsMax ? existing <= value : existing >= value;
+        }
+
+        private long back() {
+            return mSequences[(mHead + mSize - 1) % mSequences.length];
+        }
+
+        private void add(long sequence) {
+            mSequences[(mHead + mSize) % mSequences.length] = sequence;
+            mSize++;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.spd_acc_app.location;
+
+/**
+ * SamplingPolicy
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Chooses how often, and how precisely, locations are requested. A fixed 1 s high-accuracy request keeps the GPS
+ * awake even while parked or kilometres away from any monitored intersection; instead every fix selects a mode from
+ * the current speed, the distance to the nearest fence and how long the vehicle has been standing still:
+ *  !> MODE_APPROACH                            - Close to a fence, or about to reach one: 1 s, high accuracy
+ *  !> MODE_CRUISE                              - Moving along the corridor between fences: 3 s, high accuracy
+ *  !> MODE_REMOTE                              - Far from every fence: 10 s, balanced power, delivered in 30 s batches
+ *  !> MODE_PARKED                              - Standing still for a while away from fences: 30 s, balanced power, delivered at once
+ * An unknown fence distance (before the trajectory is known) never selects MODE_REMOTE or MODE_PARKED: the vehicle
+ * may well be on the corridor, and the trajectory is only found with frequent fixes. Switching to a faster mode happens immediately. Every threshold has separate enter and leave values, and a switch
+ * to a slower mode must be wanted for DOWNGRADE_DELAY_MILLIS first, so that the request is not re-issued on every
+ * noisy fix.
+ *
+ * Leaving MODE_PARKED is only noticed on the first fix after driving off, up to SLOWEST_INTERVAL_MILLIS later, so it
+ * is not batched and is only entered beyond PARKED_ENTER_M of every fence: more than the distance covered in that
+ * time in city traffic, so the fixes that follow at a faster mode cannot step across a fence.
+ *
+ * Not thread-safe; called from the thread delivering location fixes.
+ *
+ * Properties:
+ *  !> mMode                                    - Current mode
+ *  !> mCandidate / mCandidateSince             - Slower mode wanted since the given time, or -1
+ *  !> mLastMovingMillis                        - Time of the last fix at moving speed (last significant change)
+ *  !> mChangeCount                             - Number of mode changes, for diagnostics
+ *
+ *  !> Constants
+ *      !> MODE_*                               - Modes, from fastest to slowest sampling
+ *      !> PRIORITY_*                           - Request priority, mapped to LocationRequest.PRIORITY_* by the caller
+ *      !> APPROACH_ENTER_M / APPROACH_LEAVE_M  - Fence distance entering / leaving MODE_APPROACH
+ *      !> APPROACH_ENTER_S / APPROACH_LEAVE_S  - Time to reach a fence at the current speed entering / leaving MODE_APPROACH
+ *      !> REMOTE_ENTER_M / REMOTE_LEAVE_M      - Fence distance entering / leaving MODE_REMOTE
+ *      !> PARKED_SPEED / MOVING_SPEED          - Speeds (m/s) below which the vehicle stands and above which it moves
+ *      !> PARKED_DELAY_MILLIS                  - Time standing before MODE_PARKED
+ *      !> PARKED_ENTER_M                       - Fence distance beyond which MODE_PARKED may be entered
+ *      !> SLOWEST_INTERVAL_MILLIS              - Interval of MODE_PARKED, the longest between two requested fixes
+ *      !> DOWNGRADE_DELAY_MILLIS               - Time a slower mode must be wanted before switching to it
+ */
+public final class SamplingPolicy {
+
+    public static final int MODE_APPROACH = 0;
+    public static final int MODE_CRUISE = 1;
+    public static final int MODE_REMOTE = 2;
+    public static final int MODE_PARKED = 3;
+
+    public static final int PRIORITY_HIGH_ACCURACY = 0;
+    public static final int PRIORITY_BALANCED = 1;
+
+    static final double APPROACH_ENTER_M = 800;
+    static final double APPROACH_LEAVE_M = 1200;
+    static final double APPROACH_ENTER_S = 60;
+    static final double APPROACH_LEAVE_S = 90;
+    static final double REMOTE_ENTER_M = 5000;
+    static final double REMOTE_LEAVE_M = 4000;
+    static final double PARKED_SPEED = 0.5;
+    static final double MOVING_SPEED = 2;
+    static final long PARKED_DELAY_MILLIS = 60000;
+    static final double PARKED_ENTER_M = 1500;
+    public static final long SLOWEST_INTERVAL_MILLIS = 30000;
+    static final long DOWNGRADE_DELAY_MILLIS = 20000;
+
+    private static final long[] INTERVAL_MILLIS = {1000, 3000, 10000, SLOWEST_INTERVAL_MILLIS};
+    private static final long[] FASTEST_INTERVAL_MILLIS = {1000, 1000, 5000, 10000};
+    private static final long[] MAX_WAIT_MILLIS = {0, 0, 30000, 0};
+    private static final int[] PRIORITIES = {PRIORITY_HIGH_ACCURACY, PRIORITY_HIGH_ACCURACY, PRIORITY_BALANCED, PRIORITY_BALANCED};
+
+    private int mMode = MODE_APPROACH;
+    private int mCandidate = -1;
+    private long mCandidateSince;
+    private long mLastMovingMillis = -1;
+    private int mChangeCount;
+
+    /**
+     * update(): Feeds a fix and switches mode if needed
+     * @param timeMillis - Fix time
+     * @param speed - Current (filtered) speed in m/s
+     * @param fenceDistance - Metres to the nearest fence boundary ahead; POSITIVE_INFINITY if unknown (not taken as far)
+     * @return true if the mode changed and the location request has to be re-issued
+     */
+    public boolean update(long timeMillis, double speed, double fenceDistance) {
+        if (mLastMovingMillis < 0 || speed >= MOVING_SPEED) {
+            mLastMovingMillis = timeMillis;
+        }
+
+        int target = target(timeMillis, speed, fenceDistance);
+
+        if (target == mMode) {
+            mCandidate = -1;
+            return false;
+        }
+
+        if (target > mMode) {
+            // Slower sampling only once it has been wanted for a while
+            if (target != mCandidate) {
+                mCandidate = target;
+                mCandidateSince = timeMillis;
+            }
+            if (timeMillis - mCandidateSince < DOWNGRADE_DELAY_MILLIS) {
+                return false;
+            }
+        }
+
+        mMode = target;
+        mCandidate = -1;
+        mChangeCount++;
+        return true;
+    }
+
+    /**
+     * reset(): Back to MODE_APPROACH, e.g. when monitoring restarts
+     */
+    public void reset() {
+        mMode = MODE_APPROACH;
+        mCandidate = -1;
+        mLastMovingMillis = -1;
+    }
+
+    private int target(long timeMillis, double speed, double fenceDistance) {
+        boolean approaching = mMode == MODE_APPROACH
+                ? fenceDistance <= APPROACH_LEAVE_M || fenceDistance <= speed * APPROACH_LEAVE_S
+                : fenceDistance <= APPROACH_ENTER_M || fenceDistance <= speed * APPROACH_ENTER_S;
+        if (approaching) {
+            return MODE_APPROACH;
+        }
+
+        // Trajectory not known yet: the vehicle may be on the corridor, e.g. waiting at a light
+        if (Double.isInfinite(fenceDistance)) {
+            return MODE_CRUISE;
+        }
+
+        boolean parked = mMode == MODE_PARKED
+                ? speed < MOVING_SPEED
+                : speed < PARKED_SPEED && timeMillis - mLastMovingMillis >= PARKED_DELAY_MILLIS && fenceDistance > PARKED_ENTER_M;
+        if (parked) {
+            return MODE_PARKED;
+        }
+
+        boolean remote = mMode == MODE_REMOTE ? fenceDistance > REMOTE_LEAVE_M : fenceDistance > REMOTE_ENTER_M;
+        return remote ? MODE_REMOTE : MODE_CRUISE;
+    }
+
+    public int getMode() {
+        return mMode;
+    }
+
+    public long getIntervalMillis() {
+        return INTERVAL_MILLIS[mMode];
+    }
+
+    public long getFastestIntervalMillis() {
+        return FASTEST_INTERVAL_MILLIS[mMode];
+    }
+
+    /**
+     * getMaxWaitMillis(): Longest time fixes may be held back and delivered together; 0 for immediate delivery
+     */
+    public long getMaxWaitMillis() {
+        return MAX_WAIT_MILLIS[mMode];
+    }
+
+    /**
+     * getPriority(): PRIORITY_HIGH_ACCURACY or PRIORITY_BALANCED
+     */
+    public int getPriority() {
+        return PRIORITIES[mMode];
+    }
+
+    public int getChangeCount() {
+        return mChangeCount;
+    }
+}
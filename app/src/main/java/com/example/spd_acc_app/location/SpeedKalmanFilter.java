@@ -0,0 +1,196 @@
+package com.example.spd_acc_app.location;
+
+/**
+ * SpeedKalmanFilter
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Constant-acceleration Kalman filter over the state [speed, acceleration], replacing the raw two-sample speed
+ * deltas. Each fix contributes up to two scalar measurements of speed:
+ *  - the reported (Doppler) speed, with a fixed variance
+ *  - the speed implied by the distance between this and the previous position, with a variance derived from
+ *    getAccuracy() of both fixes
+ * Process noise is white jerk. All state is held in primitive fields; update() allocates nothing.
+ *
+ * Not thread-safe.
+ *
+ * Properties:
+ *  !> mSpeed / mAcceleration                   - State estimate (m/s, m/s^2)
+ *  !> mP00 / mP01 / mP11                       - State covariance (symmetric 2x2)
+ *  !> mJerkNoise                               - Jerk power spectral density (m^2/s^5)
+ *  !> mSpeedVariance                           - Variance of the reported speed ((m/s)^2)
+ *  !> mLastTime / mLastLatitude / mLastLongitude / mLastAccuracy - Previous fix
+ *  !> mIsInitialized                           - Whether a first fix has been seen
+ *
+ *  !> Constants
+ *      !> DEFAULT_JERK_NOISE / DEFAULT_SPEED_VARIANCE - Tuned for 1 Hz phone GPS in city driving
+ *      !> MAX_GAP_MILLIS                       - Gap after which the filter restarts from the new fix. Twice the slowest
+ *                                                SamplingPolicy interval: at any sampling mode, even with a fix missed,
+ *                                                the state carries on and the acceleration is the mean over the gap
+ */
+public final class SpeedKalmanFilter {
+
+    public static final double DEFAULT_JERK_NOISE = 0.05;
+    public static final double DEFAULT_SPEED_VARIANCE = 0.25;
+    public static final long MAX_GAP_MILLIS = 2 * SamplingPolicy.SLOWEST_INTERVAL_MILLIS;
+
+    private static final double INITIAL_ACCELERATION_VARIANCE = 1.0;
+
+    private final double mJerkNoise;
+    private final double mSpeedVariance;
+
+    private double mSpeed;
+    private double mAcceleration;
+    private double mP00;
+    private double mP01;
+    private double mP11;
+
+    private long mLastTime;
+    private double mLastLatitude;
+    private double mLastLongitude;
+    private double mLastAccuracy;
+    private boolean mIsInitialized;
+
+    public SpeedKalmanFilter() {
+        this(DEFAULT_JERK_NOISE, DEFAULT_SPEED_VARIANCE);
+    }
+
+    /**
+     * SpeedKalmanFilter(): Creates a filter with explicit tuning
+     * @param jerkNoise - Jerk power spectral density (m^2/s^5); higher follows changes faster but noisier
+     * @param speedVariance - Variance of the reported speed ((m/s)^2)
+     */
+    public SpeedKalmanFilter(double jerkNoise, double speedVariance) {
+        mJerkNoise = jerkNoise;
+        mSpeedVariance = speedVariance;
+    }
+
+    /**
+     * update(): Folds one fix into the estimate
+     * @param timeMillis - Fix time
+     * @param latitude - Fix latitude in degrees
+     * @param longitude - Fix longitude in degrees
+     * @param speed - Reported speed in m/s
+     * @param hasSpeed - Whether speed is valid
+     * @param accuracy - Horizontal accuracy in metres (getAccuracy()), 0 if unknown
+     */
+    public void update(long timeMillis, double latitude, double longitude, float speed, boolean hasSpeed, float accuracy) {
+        if (!mIsInitialized || timeMillis - mLastTime > MAX_GAP_MILLIS) {
+            reset();
+            mSpeed = hasSpeed ? speed : 0;
+            mP00 = hasSpeed ? mSpeedVariance : 100;
+            mP11 = INITIAL_ACCELERATION_VARIANCE;
+            remember(timeMillis, latitude, longitude, accuracy);
+            mIsInitialized = true;
+            return;
+        }
+
+        long deltaMillis = timeMillis - mLastTime;
+        if (deltaMillis <= 0) {
+            return;
+        }
+
+        double dt = deltaMillis / 1000.0;
+        predict(dt);
+
+        if (hasSpeed) {
+            correct(speed, mSpeedVariance);
+        }
+
+        // Speed implied by displacement; its noise comes from both fixes' position error
+        if (accuracy > 0 && mLastAccuracy > 0) {
+            double displacement = Math.sqrt(GeoMath.distanceSquared(mLastLatitude, mLastLongitude, GeoMath.cosLatitude(latitude), latitude, longitude));
+            double displacementSpeed = displacement / dt;
+            double variance = ((double) accuracy * accuracy + mLastAccuracy * mLastAccuracy) / (dt * dt);
+            correct(displacementSpeed, variance);
+        }
+
+        remember(timeMillis, latitude, longitude, accuracy);
+    }
+
+    /**
+     * reset(): Forgets all state; the next fix restarts the filter
+     */
+    public void reset() {
+        mSpeed = 0;
+        mAcceleration = 0;
+        mP00 = 0;
+        mP01 = 0;
+        mP11 = 0;
+        mIsInitialized = false;
+    }
+
+    public boolean isInitialized() {
+        return mIsInitialized;
+    }
+
+    /**
+     * getSpeed(): Estimated speed in m/s, never negative
+     */
+    public double getSpeed() {
+        return mSpeed < 0 ? 0 : mSpeed;
+    }
+
+    /**
+     * getAcceleration(): Estimated acceleration in m/s^2
+     */
+    public double getAcceleration() {
+        return mAcceleration;
+    }
+
+    /**
+     * getSpeedVariance(): Variance of the speed estimate ((m/s)^2)
+     */
+    public double getSpeedVariance() {
+        return mP00;
+    }
+
+    /**
+     * getAccelerationVariance(): Variance of the acceleration estimate ((m/s^2)^2)
+     */
+    public double getAccelerationVariance() {
+        return mP11;
+    }
+
+    private void predict(double dt) {
+        double dt2 = dt * dt;
+        double q = mJerkNoise;
+
+        mSpeed += mAcceleration * dt;
+
+        double p00 = mP00 + 2 * dt * mP01 + dt2 * mP11 + q * dt2 * dt / 3;
+        double p01 = mP01 + dt * mP11 + q * dt2 / 2;
+        double p11 = mP11 + q * dt;
+
+        mP00 = p00;
+        mP01 = p01;
+        mP11 = p11;
+    }
+
+    private void correct(double measuredSpeed, double variance) {
+        double innovation = measuredSpeed - mSpeed;
+        double s = mP00 + variance;
+        double k0 = mP00 / s;
+        double k1 = mP01 / s;
+
+        mSpeed += k0 * innovation;
+        mAcceleration += k1 * innovation;
+
+        double p00 = (1 - k0) * mP00;
+        double p01 = (1 - k0) * mP01;
+        double p11 = mP11 - k1 * mP01;
+
+        mP00 = p00;
+        mP01 = p01;
+        mP11 = p11;
+    }
+
+    private void remember(long timeMillis, double latitude, double longitude, float accuracy) {
+        mLastTime = timeMillis;
+        mLastLatitude = latitude;
+        mLastLongitude = longitude;
+        mLastAccuracy = accuracy;
+    }
+}
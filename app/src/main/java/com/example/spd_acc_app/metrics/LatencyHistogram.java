@@ -0,0 +1,132 @@
+package com.example.spd_acc_app.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Fixed-memory histogram of durations in nanoseconds. Values below SUB_BUCKETS get a bucket each; above, every
+ * power of two is split into SUB_BUCKETS equal buckets, so any value from 1 ns to Long.MAX_VALUE lands in one of
+ * BUCKET_COUNT buckets with at most 1 / SUB_BUCKETS (12.5%) relative error. Recording is a leading-zero count, a
+ * shift and three uncontended atomic updates: no locks, no allocation, safe from any thread.
+ *
+ * Reads are not atomic with respect to concurrent records; a percentile read while recording may be off by the
+ * values recorded meanwhile.
+ *
+ * Properties:
+ *  !> mBuckets                                 - Count per bucket
+ *  !> mCount / mSum / mMax                     - Number, sum and largest of the recorded values
+ *
+ *  !> Constants
+ *      !> SUB_BUCKET_BITS / SUB_BUCKETS        - Buckets per power of two, as bits and as count
+ *      !> BUCKET_COUNT                         - Number of buckets
+ */
+public final class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * record(): Adds one duration
+     * @param nanos - Duration in nanoseconds; negative values (clock steps) count as 0
+     */
+    public void record(long nanos) {
+        long value = nanos < 0 ? 0 : nanos;
+        mBuckets.incrementAndGet(bucketOf(value));
+        mCount.incrementAndGet();
+        mSum.addAndGet(value);
+
+        long max = mMax.get();
+        while (value > max && !mMax.compareAndSet(max, value)) {
+            max = mMax.get();
+        }
+    }
+
+    /**
+     * reset(): Forgets every recorded value
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets.set(i, 0);
+        }
+        mCount.set(0);
+        mSum.set(0);
+        mMax.set(0);
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    /**
+     * getMean(): Mean of the recorded values in nanoseconds, 0 if none
+     */
+    public long getMean() {
+        long count = mCount.get();
+        return count == 0 ? 0 : mSum.get() / count;
+    }
+
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /**
+     * getPercentile(): Upper bound of the bucket holding the given percentile, capped at the maximum
+     * @param percentile - 0 to 100
+     * @return value in nanoseconds, 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mBuckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), mMax.get());
+            }
+        }
+        return mMax.get();
+    }
+
+    /**
+     * bucketOf(): Bucket of a non-negative value
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * upperBoundOf(): Largest value of a bucket
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        long upper = lower + (1L << shift) - 1;
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.spd_acc_app.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Latency histograms of the stages between a GPS fix arriving and its warning being shown, plus event counters.
+ * Stages and counters are fixed int keys so that recording is an array index and a LatencyHistogram.record() or an
+ * atomic increment: no lookup, no allocation, safe from any thread. Reports (format(), writeTo()) allocate and are
+ * meant for the debug overlay and dumps.
+ *
+ * Properties:
+ *  !> mHistograms                              - One histogram per STAGE_*
+ *  !> mCounters                                - One count per COUNTER_*
+ *
+ *  !> Constants
+ *      !> STAGE_*                              - Timed stages
+ *      !> COUNTER_*                            - Counted events
+ *      !> STAGE_NAMES / COUNTER_NAMES          - Report names, indexed by key
+ *      !> REPORT_PERCENTILES                   - Percentiles shown per stage
+ */
+public final class Metrics {
+
+    public static final int STAGE_LOCATION_RESULT = 0;
+    public static final int STAGE_FIX = 1;
+    public static final int STAGE_FIX_TO_FRAME = 2;
+    public static final int STAGE_BIND = 3;
+    public static final int STAGE_GEOFENCE_IPC = 4;
+    public static final int STAGE_RECEIVER = 5;
+    public static final int STAGE_TRANSITION = 6;
+    public static final int STAGE_FIRST_FIX = 7;
+    public static final int STAGE_COUNT = 8;
+
+    public static final int COUNTER_FIXES_PROCESSED = 0;
+    public static final int COUNTER_FIXES_DROPPED = 1;
+    public static final int COUNTER_GEOFENCE_IPC_CALLS = 2;
+    public static final int COUNTER_NOTIFICATIONS_POSTED = 3;
+    public static final int COUNTER_COUNT = 4;
+
+    static final String[] STAGE_NAMES = {
+            "location result",      // LocationCallback.onLocationResult(), whole batch
+            "fix",                  // DrivingPipeline.onFix(): filter, trajectory, fences, limits, turns
+            "fix to frame",         // Batch arrival to its snapshot bound on screen
+            "bind",                 // TelemetryRenderer.render() on the UI thread
+            "geofence ipc",         // add/remove geofences call to task completion
+            "receiver",             // GeofenceBroadcastReceiver.onReceive() on the main thread
+            "transition",           // OS transition offered to handled by the TransitionQueue worker
+            "first fix",            // Monitoring started (or resumed) to its first fix processed
+    };
+
+    static final String[] COUNTER_NAMES = {
+            "fixes processed",
+            "fixes dropped",
+            "geofence ipc calls",
+            "notifications posted",
+    };
+
+    private static final double[] REPORT_PERCENTILES = {50, 90, 99};
+
+    private final LatencyHistogram[] mHistograms = new LatencyHistogram[STAGE_COUNT];
+    private final AtomicLongArray mCounters = new AtomicLongArray(COUNTER_COUNT);
+
+    public Metrics() {
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            mHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * record(): Adds one duration to a stage
+     * @param stage - STAGE_*
+     * @param nanos - Duration in nanoseconds
+     */
+    public void record(int stage, long nanos) {
+        mHistograms[stage].record(nanos);
+    }
+
+    /**
+     * recordSince(): Adds the time elapsed since a System.nanoTime() reading to a stage
+     * @param stage - STAGE_*
+     * @param startNanos - System.nanoTime() at the start of the stage
+     */
+    public void recordSince(int stage, long startNanos) {
+        mHistograms[stage].record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * increment(): Counts one event
+     * @param counter - COUNTER_*
+     */
+    public void increment(int counter) {
+        mCounters.incrementAndGet(counter);
+    }
+
+    /**
+     * add(): Counts several events
+     * @param counter - COUNTER_*
+     * @param count - Number of events
+     */
+    public void add(int counter, long count) {
+        mCounters.addAndGet(counter, count);
+    }
+
+    public LatencyHistogram getHistogram(int stage) {
+        return mHistograms[stage];
+    }
+
+    public long getCount(int counter) {
+        return mCounters.get(counter);
+    }
+
+    /**
+     * reset(): Clears every histogram and counter
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : mHistograms) {
+            histogram.reset();
+        }
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            mCounters.set(i, 0);
+        }
+    }
+
+    /**
+     * format(): Appends a plain-text report, one line per stage (count, mean, percentiles and max in microseconds)
+     * and per counter
+     * @param out - Report destination
+     */
+    public StringBuilder format(StringBuilder out) {
+        out.append("stage: n mean");
+        for (double percentile : REPORT_PERCENTILES) {
+            out.append(" p").append((int) percentile);
+        }
+        out.append(" max (us)\n");
+
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            LatencyHistogram histogram = mHistograms[i];
+            out.append(STAGE_NAMES[i]).append(": ").append(histogram.getCount());
+            appendMicros(out, histogram.getMean());
+            for (double percentile : REPORT_PERCENTILES) {
+                appendMicros(out, histogram.getPercentile(percentile));
+            }
+            appendMicros(out, histogram.getMax());
+            out.append('\n');
+        }
+
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            out.append(COUNTER_NAMES[i]).append(": ").append(mCounters.get(i)).append('\n');
+        }
+        return out;
+    }
+
+    /**
+     * writeTo(): Writes the report of format()
+     * @param writer - Destination; not closed
+     */
+    public void writeTo(Writer writer) throws IOException {
+        writer.write(format(new StringBuilder()).toString());
+        writer.flush();
+    }
+
+    private static void appendMicros(StringBuilder out, long nanos) {
+        // One decimal without going through floating point formatting
+        long tenths = (nanos + 50) / 100;
+        out.append(' ').append(tenths / 10).append('.').append(tenths % 10);
+    }
+}
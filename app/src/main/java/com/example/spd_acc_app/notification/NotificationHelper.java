@@ -9,6 +9,8 @@ import android.content.ContextWrapper;
 import android.content.Intent;
 import android.graphics.Color;
 import android.os.Build;
+import android.os.SystemClock;
+import android.util.SparseArray;
 
 import androidx.annotation.RequiresApi;
 import androidx.core.app.NotificationCompat;
@@ -16,14 +18,40 @@ import androidx.core.app.NotificationManagerCompat;
 
 import com.example.spd_acc_app.R;
 
-import java.util.Random;
-
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * NotificationHelper
+ *
+ * Type: Class
+ * Superclass: ContextWrapper
+ * Interfaces: N/A
+ *
+ * Posts the app's high priority notifications through a NotificationThrottle: repeated requests with unchanged
+ * content are dropped, new content shortly after an alert updates the shown notification in place without another
+ * heads-up, and only the rest alert. The PendingIntent per activity and the builder per notification ID are created
+ * once and reused. Safe to call from any thread.
+ *
+ * Properties:
+ *  !> mThrottle                                - Dispatch decisions, guarded by this
+ *  !> mBuilders / mStyles                      - Reused builder and text style per notification ID
+ *  !> mPendingIntents                          - Reused content intent per activity class
+ *  !> mNotificationManager                     - Notification manager
+ */
 public class NotificationHelper extends ContextWrapper {
 
     private static final String TAG = "NotificationHelper";
 
+    private final NotificationThrottle mThrottle = new NotificationThrottle();
+    private final SparseArray<NotificationCompat.Builder> mBuilders = new SparseArray<>();
+    private final SparseArray<NotificationCompat.BigTextStyle> mStyles = new SparseArray<>();
+    private final Map<Class, PendingIntent> mPendingIntents = new HashMap<>();
+    private final NotificationManagerCompat mNotificationManager;
+
     public NotificationHelper(Context base) {
         super(base);
+        mNotificationManager = NotificationManagerCompat.from(this);
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             createChannels();
         }
@@ -44,23 +72,67 @@ public class NotificationHelper extends ContextWrapper {
         manager.createNotificationChannel(notificationChannel);
     }
 
-    public void sendHighPriorityNotification(String title, String body, Class activityName, int notificationId) {
+    /**
+     * setRateLimit(): Throttles a notification ID, see NotificationThrottle.setPolicy()
+     * @param notificationId - Notification ID
+     * @param minAlertIntervalMillis - Shortest time between two alerting posts
+     * @param duplicateWindowMillis - Time during which unchanged content is not posted again
+     */
+    public synchronized void setRateLimit(int notificationId, long minAlertIntervalMillis, long duplicateWindowMillis) {
+        mThrottle.setPolicy(notificationId, minAlertIntervalMillis, duplicateWindowMillis);
+    }
 
-        Intent intent = new Intent(this, activityName);
-        PendingIntent pendingIntent = PendingIntent.getActivity(this, 267, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    /**
+     * sendHighPriorityNotification(): Posts, updates in place or drops a notification as its rate limit decides
+     * @param title - Title
+     * @param body - Text
+     * @param activityName - Activity opened by tapping the notification
+     * @param notificationId - Notification ID; one notification is shown per ID
+     * @return NotificationThrottle.DECISION_*
+     */
+    public synchronized int sendHighPriorityNotification(String title, String body, Class activityName, int notificationId) {
+        int decision = mThrottle.decide(notificationId, title, body, SystemClock.elapsedRealtime());
+        if (decision == NotificationThrottle.DECISION_SKIP) {
+            return decision;
+        }
 
-        Notification notification = new NotificationCompat.Builder(this, CHANNEL_ID)
-//                .setContentTitle(title)
-//                .setContentText(body)
-                .setSmallIcon(R.drawable.ic_launcher_foreground)
-                .setPriority(NotificationCompat.PRIORITY_HIGH)
-                .setStyle(new NotificationCompat.BigTextStyle().setSummaryText("summary").setBigContentTitle(title).bigText(body))
-                .setAutoCancel(true)
-                .build();
+        NotificationCompat.Builder builder = mBuilders.get(notificationId);
+        NotificationCompat.BigTextStyle style = mStyles.get(notificationId);
+        if (builder == null) {
+            style = new NotificationCompat.BigTextStyle().setSummaryText("summary");
+            builder = new NotificationCompat.Builder(this, CHANNEL_ID)
+                    .setSmallIcon(R.drawable.ic_launcher_foreground)
+                    .setPriority(NotificationCompat.PRIORITY_HIGH)
+                    .setContentIntent(getPendingIntent(activityName))
+                    .setAutoCancel(true);
+            mBuilders.put(notificationId, builder);
+            mStyles.put(notificationId, style);
+        }
 
-        NotificationManagerCompat.from(this).notify(notificationId, notification);
-    }
-}
+        // An update replaces the shown notification without sound, vibration or heads-up
+        style.setBigContentTitle(title).bigText(body);
+        builder.setStyle(style)
+                .setOnlyAlertOnce(decision == NotificationThrottle.DECISION_UPDATE);
 
+        mNotificationManager.notify(notificationId, builder.build());
+        return decision;
+    }
 
+    /**
+     * getDispatchCount(): Number of requests decided a given way since creation
+     * @param decision - NotificationThrottle.DECISION_*
+     */
+    public synchronized int getDispatchCount(int decision) {
+        return mThrottle.getCount(decision);
+    }
 
+    private PendingIntent getPendingIntent(Class activityName) {
+        PendingIntent pendingIntent = mPendingIntents.get(activityName);
+        if (pendingIntent == null) {
+            Intent intent = new Intent(this, activityName);
+            pendingIntent = PendingIntent.getActivity(this, 267, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+            mPendingIntents.put(activityName, pendingIntent);
+        }
+        return pendingIntent;
+    }
+}
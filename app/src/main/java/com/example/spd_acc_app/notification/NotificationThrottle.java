@@ -0,0 +1,137 @@
+package com.example.spd_acc_app.notification;
+
+import java.util.Arrays;
+
+/**
+ * NotificationThrottle
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Decides what a notification request turns into. Turn alerts are requested on every fix near a turn and geofence
+ * transitions come in quick ENTER / DWELL bursts; posting each of them costs a system server round trip and, on a
+ * high priority channel, another heads-up animation and sound. Per notification ID:
+ *  !> DECISION_SKIP                            - Same content as the last post within its duplicate window: nothing to do
+ *  !> DECISION_UPDATE                          - New content within the minimum alert interval: update the shown
+ *                                                notification in place, silently
+ *  !> DECISION_ALERT                           - Otherwise: post and alert
+ * IDs without a policy are never throttled.
+ *
+ * Not thread-safe; NotificationHelper serializes access.
+ *
+ * Properties:
+ *  !> mIds                                     - Notification IDs with a policy
+ *  !> mMinAlertIntervals / mDuplicateWindows   - Policy per ID, in ms
+ *  !> mTitles / mBodies                        - Last posted content per ID (null = nothing posted)
+ *  !> mPostedAt / mAlertedAt                   - Time of the last post / last alerting post per ID
+ *  !> mPolicyCount                             - Number of IDs with a policy
+ *  !> mCounts                                  - Number of decisions per DECISION_*, for diagnostics
+ *
+ *  !> Constants
+ *      !> DECISION_*                           - Outcomes of decide()
+ */
+public final class NotificationThrottle {
+
+    public static final int DECISION_SKIP = 0;
+    public static final int DECISION_UPDATE = 1;
+    public static final int DECISION_ALERT = 2;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] mIds = new int[INITIAL_CAPACITY];
+    private long[] mMinAlertIntervals = new long[INITIAL_CAPACITY];
+    private long[] mDuplicateWindows = new long[INITIAL_CAPACITY];
+    private String[] mTitles = new String[INITIAL_CAPACITY];
+    private String[] mBodies = new String[INITIAL_CAPACITY];
+    private long[] mPostedAt = new long[INITIAL_CAPACITY];
+    private long[] mAlertedAt = new long[INITIAL_CAPACITY];
+    private int mPolicyCount;
+    private final int[] mCounts = new int[3];
+
+    /**
+     * setPolicy(): Throttles a notification ID
+     * @param notificationId - Notification ID
+     * @param minAlertIntervalMillis - Shortest time between two alerting posts; new content in between updates silently
+     * @param duplicateWindowMillis - Time during which a post with unchanged content is skipped
+     */
+    public void setPolicy(int notificationId, long minAlertIntervalMillis, long duplicateWindowMillis) {
+        int slot = slotOf(notificationId);
+        if (slot < 0) {
+            if (mPolicyCount == mIds.length) {
+                grow();
+            }
+            slot = mPolicyCount++;
+            mIds[slot] = notificationId;
+        }
+
+        mMinAlertIntervals[slot] = minAlertIntervalMillis;
+        mDuplicateWindows[slot] = duplicateWindowMillis;
+    }
+
+    /**
+     * decide(): Decides on a notification request and, unless skipped, records it as posted
+     * @param notificationId - Notification ID
+     * @param title - Title
+     * @param body - Text
+     * @param nowMillis - Current time on a monotonic clock
+     * @return DECISION_*
+     */
+    public int decide(int notificationId, String title, String body, long nowMillis) {
+        int slot = slotOf(notificationId);
+        if (slot < 0) {
+            mCounts[DECISION_ALERT]++;
+            return DECISION_ALERT;
+        }
+
+        int decision;
+        if (mTitles[slot] == null) {
+            decision = DECISION_ALERT;
+        } else if (mTitles[slot].equals(title) && mBodies[slot].equals(body) && nowMillis - mPostedAt[slot] < mDuplicateWindows[slot]) {
+            decision = DECISION_SKIP;
+        } else if (nowMillis - mAlertedAt[slot] < mMinAlertIntervals[slot]) {
+            decision = DECISION_UPDATE;
+        } else {
+            decision = DECISION_ALERT;
+        }
+
+        if (decision != DECISION_SKIP) {
+            mTitles[slot] = title;
+            mBodies[slot] = body;
+            mPostedAt[slot] = nowMillis;
+            if (decision == DECISION_ALERT) {
+                mAlertedAt[slot] = nowMillis;
+            }
+        }
+        mCounts[decision]++;
+        return decision;
+    }
+
+    /**
+     * getCount(): Number of requests decided a given way
+     * @param decision - DECISION_*
+     */
+    public int getCount(int decision) {
+        return mCounts[decision];
+    }
+
+    private int slotOf(int notificationId) {
+        for (int i = 0; i < mPolicyCount; i++) {
+            if (mIds[i] == notificationId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void grow() {
+        int capacity = mIds.length * 2;
+        mIds = Arrays.copyOf(mIds, capacity);
+        mMinAlertIntervals = Arrays.copyOf(mMinAlertIntervals, capacity);
+        mDuplicateWindows = Arrays.copyOf(mDuplicateWindows, capacity);
+        mTitles = Arrays.copyOf(mTitles, capacity);
+        mBodies = Arrays.copyOf(mBodies, capacity);
+        mPostedAt = Arrays.copyOf(mPostedAt, capacity);
+        mAlertedAt = Arrays.copyOf(mAlertedAt, capacity);
+    }
+}
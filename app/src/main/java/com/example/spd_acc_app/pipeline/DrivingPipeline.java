@@ -0,0 +1,385 @@
+package com.example.spd_acc_app.pipeline;
+
+import com.example.spd_acc_app.geofence.GeofenceCatalog;
+import com.example.spd_acc_app.geofence.GeofenceEngine;
+import com.example.spd_acc_app.geofence.RouteCorridor;
+import com.example.spd_acc_app.location.FixRingBuffer;
+import com.example.spd_acc_app.location.SpeedKalmanFilter;
+import com.example.spd_acc_app.rules.LimitRules;
+import com.example.spd_acc_app.rules.LimitStatus;
+
+import java.util.TimeZone;
+
+/**
+ * DrivingPipeline
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * The per-fix logic of the app without any Android dependency: speed/acceleration estimation, trajectory
+ * (northbound/southbound) determination, in-process geofence evaluation, speed/acceleration limit checks against
+ * the LimitRules of the current zone and turn alerts by distance along the route. MainActivity feeds it live fixes; TraceReplayer feeds it
+ * recorded or synthetic traces as fast as the JVM runs. Results are reported to a Listener as they happen and the latest values are kept for display.
+ *
+ * Not thread-safe; onFix(), restore() and reset() must be called from one thread. Only setRules() may be called from any thread.
+ *
+ * Properties:
+ *  !> mCatalog                                 - Fence and turn definitions
+ *  !> mEngine                                  - In-process geofence evaluation
+ *  !> mSpeedFilter                             - Kalman filter estimating speed and acceleration
+ *  !> mFixHistory                              - Recent fixes
+ *  !> mTrajectory                              - Northbound/southbound classification with hysteresis
+ *  !> mCorridors                               - Route corridor per direction, matching fixes to the road
+ *  !> mTurnRadius                              - Along-route distance in metres before a turn at which a turn alert is raised
+ *  !> mListener                                - Event callback
+ *  !> mDirection                               - Current trajectory, or NO_DIRECTION before the first movement
+ *  !> mInsideCount                             - Number of fences currently inside (entered and not exited)
+ *  !> mZone                                    - Fence index whose limits apply, or -1 outside every fence
+ *  !> mRules                                   - Limit table; replaced as a whole by setRules(), read once per fix
+ *  !> mVehicleClass                            - LimitRules.VEHICLE_* of the monitored vehicle
+ *  !> mLimitStatus                             - Limit status of the last moving fix
+ *  !> mRawAcceleration                         - Acceleration from the last two Doppler speeds, for comparison
+ *
+ *  !> Constants
+ *      !> NO_DIRECTION                         - Trajectory not known yet
+ *      !> LIMIT_SPEED / LIMIT_ACCELERATION     - Limit bits (see LimitStatus.getFlags())
+ *      !> FIX_HISTORY_CAPACITY                 - Number of fixes kept in the fix history
+ *      !> FIX_HISTORY_WINDOW                   - Length in ms of the fix history statistics window
+ *      !> CORRIDOR_HALF_WIDTH                  - Largest distance in metres from the road at which fixes are matched to it
+ */
+public final class DrivingPipeline {
+
+    public static final int NO_DIRECTION = -1;
+
+    public static final int LIMIT_SPEED = 1;
+    public static final int LIMIT_ACCELERATION = 1 << 1;
+
+    private static final int FIX_HISTORY_CAPACITY = 64;
+    private static final int FIX_HISTORY_WINDOW = 10000;
+    private static final double CORRIDOR_HALF_WIDTH = 100;
+
+    /**
+     * Listener: Receives the events of the pipeline in the order they happen, on the thread calling onFix()
+     */
+    public interface Listener {
+        /**
+         * onDirectionChanged(): The trajectory was determined or reversed
+         * @param direction - GeofenceCatalog.DIRECTION_SOUTHBOUND or GeofenceCatalog.DIRECTION_NORTHBOUND
+         * @param timeMillis - Time of the fix
+         */
+        void onDirectionChanged(int direction, long timeMillis);
+
+        /**
+         * onGeofenceTransition(): A fence was entered, dwelt in or exited
+         * @param fence - Fence index in the GeofenceCatalog
+         * @param transition - GeofenceEngine.TRANSITION_*
+         * @param timeMillis - Time of the fix
+         */
+        void onGeofenceTransition(int fence, int transition, long timeMillis);
+
+        /**
+         * onLimitChanged(): The set of exceeded limits changed
+         * @param limitFlags - LIMIT_* bits, 0 when back to normal
+         * @param timeMillis - Time of the fix
+         */
+        void onLimitChanged(int limitFlags, long timeMillis);
+
+        /**
+         * onTurnAlert(): The next turn of the current trajectory is at most the alert radius ahead along the road (raised on every such fix)
+         * @param label - Display label of the turn
+         * @param timeMillis - Time of the fix
+         */
+        void onTurnAlert(String label, long timeMillis);
+    }
+
+    private final GeofenceCatalog mCatalog;
+    private final GeofenceEngine mEngine;
+    private final SpeedKalmanFilter mSpeedFilter = new SpeedKalmanFilter();
+    private final FixRingBuffer mFixHistory = new FixRingBuffer(FIX_HISTORY_CAPACITY, FIX_HISTORY_WINDOW);
+    private final TrajectoryClassifier mTrajectory = new TrajectoryClassifier();
+    private final RouteCorridor[] mCorridors = new RouteCorridor[2];
+    private final double mTurnRadius;
+    private final Listener mListener;
+
+    private int mDirection = NO_DIRECTION;
+    private int mInsideCount;
+    private int mZone = -1;
+    private volatile LimitRules mRules;
+    private int mVehicleClass = LimitRules.VEHICLE_CAR;
+    private LimitStatus mLimitStatus = LimitStatus.NORMAL;
+    private double mRawAcceleration;
+
+    /**
+     * DrivingPipeline(): Creates a pipeline over a catalog, checking the default limits until setRules() is called
+     * @param catalog - Fence and turn definitions
+     * @param dwellMillis - Time inside a fence before DWELL is reported
+     * @param turnRadius - Along-route distance in metres before a turn at which a turn alert is raised
+     * @param listener - Event callback
+     */
+    public DrivingPipeline(GeofenceCatalog catalog, long dwellMillis, double turnRadius, Listener listener) {
+        mCatalog = catalog;
+        mCorridors[GeofenceCatalog.DIRECTION_SOUTHBOUND] = catalog.createCorridor(GeofenceCatalog.DIRECTION_SOUTHBOUND, CORRIDOR_HALF_WIDTH);
+        mCorridors[GeofenceCatalog.DIRECTION_NORTHBOUND] = catalog.createCorridor(GeofenceCatalog.DIRECTION_NORTHBOUND, CORRIDOR_HALF_WIDTH);
+        mTurnRadius = turnRadius;
+        mListener = listener;
+        mRules = LimitRules.defaults(catalog, TimeZone.getDefault());
+        mEngine = new GeofenceEngine(catalog, dwellMillis, new GeofenceEngine.Listener() {
+            @Override
+            public void onGeofenceTransition(int fence, int transition, long timeMillis) {
+                if (transition == GeofenceEngine.TRANSITION_ENTER) {
+                    mInsideCount++;
+                    mZone = fence;
+                } else if (transition == GeofenceEngine.TRANSITION_EXIT) {
+                    mInsideCount--;
+                    if (fence == mZone) {
+                        mZone = mEngine.getInsideFence();
+                    }
+                }
+                mListener.onGeofenceTransition(fence, transition, timeMillis);
+            }
+        });
+    }
+
+    /**
+     * onFix(): Processes one location fix
+     * @param timeMillis - Fix time
+     * @param latitude - Latitude in degrees
+     * @param longitude - Longitude in degrees
+     * @param speed - Doppler speed in m/s
+     * @param hasSpeed - False if the fix carries no speed
+     * @param bearing - Bearing in degrees
+     * @param hasBearing - False if the fix carries no bearing
+     * @param accuracy - Horizontal accuracy in metres
+     * @return true if the position changed since the previous fix (the display should be refreshed); false for a fix
+     * not newer than the previous one, which is ignored (batched deliveries may repeat or reorder fixes)
+     */
+    public boolean onFix(long timeMillis, double latitude, double longitude, float speed, boolean hasSpeed, float bearing, boolean hasBearing, float accuracy) {
+        if (timeMillis <= getLastFixMillis()) {
+            return false;
+        }
+
+        // Every fix, including stationary ones, feeds the speed/acceleration estimate
+        mSpeedFilter.update(timeMillis, latitude, longitude, speed, hasSpeed, accuracy);
+
+        boolean moved = !mFixHistory.isEmpty()
+                && (latitude != mFixHistory.getLatitude(0) || longitude != mFixHistory.getLongitude(0));
+
+        if (moved) {
+            // Check if northbound or southbound
+            int direction = mTrajectory.update(timeMillis, latitude, longitude, mSpeedFilter.getSpeed(), bearing, hasBearing);
+            if (direction != mDirection) {
+                mDirection = direction;
+                mCorridors[direction].reset();
+                mEngine.setActiveRange(mCatalog.getStart(direction), mCatalog.getEnd(direction), timeMillis);
+                mListener.onDirectionChanged(direction, timeMillis);
+            }
+
+            mEngine.evaluate(latitude, longitude, timeMillis);
+
+            // Raw acceleration with time delta (for comparison only)
+            mRawAcceleration = (speed - mFixHistory.getSpeed(0)) / ((timeMillis - mFixHistory.getTime(0)) / 1000.0);
+
+            LimitStatus limitStatus = mRules.evaluate(mZone, mVehicleClass, timeMillis, getSpeedKmh(), mSpeedFilter.getAcceleration());
+            if (limitStatus != mLimitStatus) {
+                mLimitStatus = limitStatus;
+                mListener.onLimitChanged(limitStatus.getFlags(), timeMillis);
+            }
+
+            // Turns are announced while approaching them on the road, never once passed
+            if (mDirection != NO_DIRECTION) {
+                RouteCorridor corridor = mCorridors[mDirection];
+                int turn = corridor.match(latitude, longitude) ? corridor.getNextTurn() : -1;
+                if (turn >= 0 && corridor.getDistanceToTurn(turn) <= mTurnRadius) {
+                    mListener.onTurnAlert(mCatalog.getTurnLabel(mCatalog.getStart(mDirection) + turn), timeMillis);
+                }
+            }
+        }
+
+        mFixHistory.append(timeMillis, latitude, longitude, speed, bearing, accuracy, mSpeedFilter.getAcceleration());
+        return moved;
+    }
+
+    /**
+     * restore(): Resumes from the state of a previous session instead of from nothing: the direction is taken over
+     * (reported to the Listener like a determined one), the fence the vehicle was inside is not entered again, and the
+     * last fix becomes the reference for the next one. Call after reset() and before the first onFix().
+     * @param direction - GeofenceCatalog.DIRECTION_* of the session, or NO_DIRECTION
+     * @param insideFence - Fence index the vehicle was inside, or -1
+     * @param timeMillis - Time of the last fix
+     * @param latitude - Latitude of the last fix in degrees
+     * @param longitude - Longitude of the last fix in degrees
+     * @param speed - Speed of the last fix in m/s
+     * @param bearing - Bearing of the last fix in degrees
+     * @param accuracy - Accuracy of the last fix in metres
+     */
+    public void restore(int direction, int insideFence, long timeMillis, double latitude, double longitude, float speed, float bearing, float accuracy) {
+        mFixHistory.append(timeMillis, latitude, longitude, speed, bearing, accuracy, 0);
+
+        if (direction == NO_DIRECTION) {
+            return;
+        }
+
+        mTrajectory.restore(direction);
+        mDirection = direction;
+        mCorridors[direction].reset();
+        mEngine.setActiveRange(mCatalog.getStart(direction), mCatalog.getEnd(direction), timeMillis);
+
+        if (insideFence >= mCatalog.getStart(direction) && insideFence < mCatalog.getEnd(direction)) {
+            mEngine.restoreInside(insideFence, timeMillis);
+            mInsideCount = 1;
+            mZone = insideFence;
+        }
+
+        mListener.onDirectionChanged(direction, timeMillis);
+    }
+
+    /**
+     * reset(): Forgets all state, e.g. when monitoring stops; fences inside are not reported as exited
+     */
+    public void reset() {
+        mEngine.reset();
+        mSpeedFilter.reset();
+        mFixHistory.clear();
+        mTrajectory.reset();
+        mCorridors[GeofenceCatalog.DIRECTION_SOUTHBOUND].reset();
+        mCorridors[GeofenceCatalog.DIRECTION_NORTHBOUND].reset();
+        mDirection = NO_DIRECTION;
+        mInsideCount = 0;
+        mZone = -1;
+        mLimitStatus = LimitStatus.NORMAL;
+        mRawAcceleration = 0;
+    }
+
+    /**
+     * getSpeedKmh(): Filtered speed in km/h
+     */
+    public double getSpeedKmh() {
+        return mSpeedFilter.getSpeed() * 18 / 5;
+    }
+
+    /**
+     * getAcceleration(): Filtered acceleration in m/s^2
+     */
+    public double getAcceleration() {
+        return mSpeedFilter.getAcceleration();
+    }
+
+    /**
+     * getRawAcceleration(): Acceleration from the last two Doppler speeds of a moving fix, in m/s^2
+     */
+    public double getRawAcceleration() {
+        return mRawAcceleration;
+    }
+
+    public int getDirection() {
+        return mDirection;
+    }
+
+    /**
+     * directionName(): Display name of a trajectory; "UNKNOWN" for NO_DIRECTION, so no direction is claimed before
+     * the trajectory is known
+     * @param direction - GeofenceCatalog.DIRECTION_* or NO_DIRECTION
+     */
+    public static String directionName(int direction) {
+        switch (direction) {
+            case GeofenceCatalog.DIRECTION_SOUTHBOUND:
+                return "SOUTHBOUND";
+            case GeofenceCatalog.DIRECTION_NORTHBOUND:
+                return "NORTHBOUND";
+            default:
+                return "UNKNOWN";
+        }
+    }
+
+    /**
+     * getDirectionChangeCount(): Number of times the trajectory was determined or reversed since construction
+     */
+    public int getDirectionChangeCount() {
+        return mTrajectory.getChangeCount();
+    }
+
+    /**
+     * getLimitFlags(): LIMIT_* bits of the last moving fix
+     */
+    public int getLimitFlags() {
+        return mLimitStatus.getFlags();
+    }
+
+    public LimitStatus getLimitStatus() {
+        return mLimitStatus;
+    }
+
+    /**
+     * setRules(): Replaces the limit table from any thread; the next fix is checked against it. The location thread
+     * never waits: the table is compiled by the caller and swapped in with a single reference write.
+     * @param rules - Compiled limits for this pipeline's catalog
+     */
+    public void setRules(LimitRules rules) {
+        mRules = rules;
+    }
+
+    public LimitRules getRules() {
+        return mRules;
+    }
+
+    /**
+     * setVehicleClass(): Selects the limits of a vehicle class, from the next fix on
+     * @param vehicleClass - LimitRules.VEHICLE_*
+     */
+    public void setVehicleClass(int vehicleClass) {
+        mVehicleClass = vehicleClass;
+    }
+
+    /**
+     * getZone(): Fence index whose limits apply, or -1 outside every fence
+     */
+    public int getZone() {
+        return mZone;
+    }
+
+    /**
+     * getNextTurnDistance(): Along-route metres from the last moving fix to the next turn of the current direction
+     * @return POSITIVE_INFINITY before the direction is known, off the road or past the last turn
+     */
+    public double getNextTurnDistance() {
+        RouteCorridor corridor = mDirection == NO_DIRECTION ? null : mCorridors[mDirection];
+        int turn = corridor == null ? -1 : corridor.getNextTurn();
+        return turn < 0 ? Double.POSITIVE_INFINITY : corridor.getDistanceToTurn(turn);
+    }
+
+    /**
+     * getCorridor(): Route corridor of a direction, as matched by this pipeline
+     * @param direction - GeofenceCatalog.DIRECTION_*
+     */
+    public RouteCorridor getCorridor(int direction) {
+        return mCorridors[direction];
+    }
+
+    public boolean isWithinGeofence() {
+        return mInsideCount > 0;
+    }
+
+    /**
+     * getNearestFenceDistance(): Metres from the last moving fix to the nearest fence boundary of the current direction
+     * @return 0 inside a fence, POSITIVE_INFINITY before the direction is known
+     */
+    public double getNearestFenceDistance() {
+        return mEngine.getNearestDistance();
+    }
+
+    /**
+     * getLastFixMillis(): Time of the last processed fix, Long.MIN_VALUE if none
+     */
+    public long getLastFixMillis() {
+        return mFixHistory.isEmpty() ? Long.MIN_VALUE : mFixHistory.getTime(0);
+    }
+
+    public GeofenceCatalog getCatalog() {
+        return mCatalog;
+    }
+
+    public FixRingBuffer getFixHistory() {
+        return mFixHistory;
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.spd_acc_app.pipeline;
+
+import com.example.spd_acc_app.geofence.GeofenceCatalog;
+import com.example.spd_acc_app.location.GeoMath;
+
+/**
+ * TrajectoryClassifier
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Decides whether the vehicle travels northbound or southbound from its heading, robust against GPS jitter. The
+ * sign of the latitude change between two fixes flips at random while standing at a light, and every flip switched
+ * the monitored fence set. Instead:
+ *  !> Fixes below MIN_SPEED are ignored; their heading is noise.
+ *  !> The heading is the fix bearing when the fix has one, otherwise the direction of travel since the last fix
+ *     at least MIN_DISPLACEMENT_M away. Headings are smoothed as an exponentially weighted mean of unit vectors.
+ *  !> The smoothed heading only votes for a direction when its north/south component is at least DEAD_ZONE.
+ *  !> The first direction is taken at once; a change is only committed after the opposite direction won
+ *     CHANGE_SAMPLES consecutive votes spanning at least CHANGE_DWELL_MILLIS.
+ *
+ * Not thread-safe.
+ *
+ * Properties:
+ *  !> mDirection                               - Committed direction, or DrivingPipeline.NO_DIRECTION
+ *  !> mEast / mNorth                           - Smoothed heading vector
+ *  !> mHasHeading                              - Whether mEast / mNorth hold a heading
+ *  !> mAnchorLatitude / mAnchorLongitude       - Position the displacement heading is measured from (NaN = none)
+ *  !> mCandidate / mCandidateSince / mCandidateSamples - Opposite direction voted for, since when and how often
+ *  !> mChangeCount                             - Number of committed direction changes, including the first
+ *
+ *  !> Constants
+ *      !> MIN_SPEED                            - Speed in m/s below which fixes are ignored
+ *      !> MIN_DISPLACEMENT_M                   - Travel needed for a displacement heading
+ *      !> SMOOTHING                            - Weight of a new heading in the mean
+ *      !> DEAD_ZONE                            - North/south component of the smoothed heading needed to vote
+ *      !> CHANGE_SAMPLES / CHANGE_DWELL_MILLIS - Hysteresis of a direction change
+ */
+public final class TrajectoryClassifier {
+
+    static final double MIN_SPEED = 2;
+    static final double MIN_DISPLACEMENT_M = 15;
+    static final double SMOOTHING = 0.5;
+    static final double DEAD_ZONE = 0.25;
+    static final int CHANGE_SAMPLES = 3;
+    static final long CHANGE_DWELL_MILLIS = 3000;
+
+    private int mDirection = DrivingPipeline.NO_DIRECTION;
+    private double mEast;
+    private double mNorth;
+    private boolean mHasHeading;
+    private double mAnchorLatitude = Double.NaN;
+    private double mAnchorLongitude = Double.NaN;
+    private int mCandidate = DrivingPipeline.NO_DIRECTION;
+    private long mCandidateSince;
+    private int mCandidateSamples;
+    private int mChangeCount;
+
+    /**
+     * update(): Feeds a fix
+     * @param timeMillis - Fix time
+     * @param latitude - Latitude in degrees
+     * @param longitude - Longitude in degrees
+     * @param speed - Speed in m/s
+     * @param bearing - Bearing in degrees
+     * @param hasBearing - False if bearing carries no information
+     * @return the committed direction after this fix
+     */
+    public int update(long timeMillis, double latitude, double longitude, double speed, float bearing, boolean hasBearing) {
+        double east;
+        double north;
+
+        if (Double.isNaN(mAnchorLatitude)) {
+            mAnchorLatitude = latitude;
+            mAnchorLongitude = longitude;
+        }
+
+        if (speed < MIN_SPEED) {
+            return mDirection;
+        }
+
+        double dx = (longitude - mAnchorLongitude) * GeoMath.cosLatitude(latitude) * GeoMath.METRES_PER_DEGREE;
+        double dy = (latitude - mAnchorLatitude) * GeoMath.METRES_PER_DEGREE;
+        boolean displaced = dx * dx + dy * dy >= MIN_DISPLACEMENT_M * MIN_DISPLACEMENT_M;
+
+        if (hasBearing) {
+            double radians = Math.toRadians(bearing);
+            east = Math.sin(radians);
+            north = Math.cos(radians);
+        } else if (displaced) {
+            double length = Math.sqrt(dx * dx + dy * dy);
+            east = dx / length;
+            north = dy / length;
+        } else {
+            return mDirection;
+        }
+
+        if (displaced) {
+            mAnchorLatitude = latitude;
+            mAnchorLongitude = longitude;
+        }
+
+        if (mHasHeading) {
+            mEast += SMOOTHING * (east - mEast);
+            mNorth += SMOOTHING * (north - mNorth);
+        } else {
+            mEast = east;
+            mNorth = north;
+            mHasHeading = true;
+        }
+
+        vote(timeMillis);
+        return mDirection;
+    }
+
+    private void vote(long timeMillis) {
+        int vote = mNorth >= DEAD_ZONE ? GeofenceCatalog.DIRECTION_NORTHBOUND
+                : mNorth <= -DEAD_ZONE ? GeofenceCatalog.DIRECTION_SOUTHBOUND
+                : DrivingPipeline.NO_DIRECTION;
+
+        if (vote == DrivingPipeline.NO_DIRECTION || vote == mDirection) {
+            // Undecided or confirming: any pending change starts over
+            mCandidate = DrivingPipeline.NO_DIRECTION;
+            return;
+        }
+
+        if (mDirection == DrivingPipeline.NO_DIRECTION) {
+            commit(vote);
+            return;
+        }
+
+        if (vote != mCandidate) {
+            mCandidate = vote;
+            mCandidateSince = timeMillis;
+            mCandidateSamples = 0;
+        }
+        mCandidateSamples++;
+
+        if (mCandidateSamples >= CHANGE_SAMPLES && timeMillis - mCandidateSince >= CHANGE_DWELL_MILLIS) {
+            commit(vote);
+        }
+    }
+
+    private void commit(int direction) {
+        mDirection = direction;
+        mCandidate = DrivingPipeline.NO_DIRECTION;
+        mChangeCount++;
+    }
+
+    /**
+     * reset(): Forgets the direction and heading; the change count is kept
+     */
+    public void reset() {
+        mDirection = DrivingPipeline.NO_DIRECTION;
+        mHasHeading = false;
+        mAnchorLatitude = Double.NaN;
+        mAnchorLongitude = Double.NaN;
+        mCandidate = DrivingPipeline.NO_DIRECTION;
+    }
+
+    /**
+     * restore(): Takes over the direction of a previous session without a heading; not counted as a change
+     * @param direction - GeofenceCatalog.DIRECTION_* or DrivingPipeline.NO_DIRECTION
+     */
+    public void restore(int direction) {
+        reset();
+        mDirection = direction;
+    }
+
+    public int getDirection() {
+        return mDirection;
+    }
+
+    /**
+     * getChangeCount(): Number of committed direction changes (including the first direction) since construction
+     */
+    public int getChangeCount() {
+        return mChangeCount;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.spd_acc_app.replay;
+
+import com.example.spd_acc_app.geofence.GeofenceCatalog;
+import com.example.spd_acc_app.geofence.GeofenceEngine;
+import com.example.spd_acc_app.pipeline.DrivingPipeline;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * EventLog
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: DrivingPipeline.Listener
+ *
+ * Collects the events of a DrivingPipeline as an ordered stream, one line of text per event, e.g.
+ *
+ *  12000 DIRECTION SOUTHBOUND
+ *  47000 ENTER SB_LUZON_AVE
+ *  51000 LIMIT SPEED
+ *  63000 TURN Nearing Luzon Ave right turn
+ *
+ * so a replayed trace can be compared against an expected stream or inspected by hand.
+ *
+ * Properties:
+ *  !> mCatalog                                 - Catalog resolving fence indexes to ids
+ *  !> mEvents                                  - Event lines, in order
+ *  !> mCounts                                  - Number of events per TYPE_*
+ *
+ *  !> Constants
+ *      !> TYPE_DIRECTION / TYPE_TRANSITION / TYPE_LIMIT / TYPE_TURN - Event types
+ */
+public final class EventLog implements DrivingPipeline.Listener {
+
+    public static final int TYPE_DIRECTION = 0;
+    public static final int TYPE_TRANSITION = 1;
+    public static final int TYPE_LIMIT = 2;
+    public static final int TYPE_TURN = 3;
+
+    private final GeofenceCatalog mCatalog;
+    private final List<String> mEvents = new ArrayList<>();
+    private final int[] mCounts = new int[4];
+
+    /**
+     * EventLog(): Creates an empty log
+     * @param catalog - Catalog of the pipeline, to name fences
+     */
+    public EventLog(GeofenceCatalog catalog) {
+        mCatalog = catalog;
+    }
+
+    @Override
+    public void onDirectionChanged(int direction, long timeMillis) {
+        add(TYPE_DIRECTION, timeMillis + " DIRECTION " + DrivingPipeline.directionName(direction));
+    }
+
+    @Override
+    public void onGeofenceTransition(int fence, int transition, long timeMillis) {
+        String name;
+        switch (transition) {
+            case GeofenceEngine.TRANSITION_ENTER:
+                name = "ENTER";
+                break;
+            case GeofenceEngine.TRANSITION_DWELL:
+                name = "DWELL";
+                break;
+            default:
+                name = "EXIT";
+                break;
+        }
+        add(TYPE_TRANSITION, timeMillis + " " + name + " " + mCatalog.getId(fence));
+    }
+
+    @Override
+    public void onLimitChanged(int limitFlags, long timeMillis) {
+        String status;
+        switch (limitFlags) {
+            case DrivingPipeline.LIMIT_SPEED | DrivingPipeline.LIMIT_ACCELERATION:
+                status = "SPEED_ACCELERATION";
+                break;
+            case DrivingPipeline.LIMIT_SPEED:
+                status = "SPEED";
+                break;
+            case DrivingPipeline.LIMIT_ACCELERATION:
+                status = "ACCELERATION";
+                break;
+            default:
+                status = "NORMAL";
+                break;
+        }
+        add(TYPE_LIMIT, timeMillis + " LIMIT " + status);
+    }
+
+    @Override
+    public void onTurnAlert(String label, long timeMillis) {
+        add(TYPE_TURN, timeMillis + " TURN " + label);
+    }
+
+    /**
+     * getEvents(): All event lines, in order
+     */
+    public List<String> getEvents() {
+        return Collections.unmodifiableList(mEvents);
+    }
+
+    /**
+     * count(): Number of events of a type
+     * @param type - TYPE_*
+     */
+    public int count(int type) {
+        return mCounts[type];
+    }
+
+    /**
+     * writeTo(): Writes the event lines, one per line
+     * @param out - Destination
+     */
+    public void writeTo(Appendable out) throws IOException {
+        for (String event : mEvents) {
+            out.append(event).append('\n');
+        }
+    }
+
+    public void clear() {
+        mEvents.clear();
+        for (int i = 0; i < mCounts.length; i++) {
+            mCounts[i] = 0;
+        }
+    }
+
+    private void add(int type, String event) {
+        mEvents.add(event);
+        mCounts[type]++;
+    }
+}
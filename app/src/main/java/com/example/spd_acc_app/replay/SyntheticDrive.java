@@ -0,0 +1,84 @@
+package com.example.spd_acc_app.replay;
+
+import com.example.spd_acc_app.geofence.GeofenceCatalog;
+import com.example.spd_acc_app.location.GeoMath;
+
+import java.util.Random;
+
+/**
+ * SyntheticDrive
+ *
+ * Type: Class (static helpers only)
+ *
+ * Generates Traces of 1 Hz drives along a direction's fences, for replay tests and benchmarks where no recorded drive
+ * is needed: straight legs at constant speed from fence centre to fence centre, starting and ending LEAD_M beyond the
+ * first and last fence. Optionally with GPS-like noise on the positions and the reported speeds.
+ *
+ *  !> Constants
+ *      !> LEAD_M                               - Distance driven before the first and after the last fence
+ *      !> POSITION_NOISE_M                     - Standard deviation of the latitude noise in metres
+ *      !> SPEED_NOISE                          - Standard deviation of the reported speed noise in m/s
+ *      !> ACCURACY                             - Reported accuracy of every fix in metres
+ */
+public final class SyntheticDrive {
+
+    static final double LEAD_M = 300;
+    static final double POSITION_NOISE_M = 3;
+    static final double SPEED_NOISE = 0.7;
+    static final float ACCURACY = 5;
+
+    private SyntheticDrive() {
+    }
+
+    /**
+     * drive(): Appends a drive through the centre of every fence of a direction
+     * @param trace - Receives the fixes
+     * @param catalog - Fence definitions
+     * @param direction - DIRECTION_SOUTHBOUND or DIRECTION_NORTHBOUND
+     * @param startMillis - Time of the first fix
+     * @param speed - Speed in m/s
+     * @param noise - Source of the position and speed noise, or null for exact fixes
+     * @return time of the last fix
+     */
+    public static long drive(Trace trace, GeofenceCatalog catalog, int direction, long startMillis, double speed, Random noise) {
+        int start = catalog.getStart(direction);
+        int end = catalog.getEnd(direction);
+        double sign = direction == GeofenceCatalog.DIRECTION_SOUTHBOUND ? 1 : -1;
+
+        int count = end - start + 2;
+        double[] lats = new double[count];
+        double[] lons = new double[count];
+        lats[0] = catalog.getLatitude(start) + sign * LEAD_M / GeoMath.METRES_PER_DEGREE;
+        lons[0] = catalog.getLongitude(start);
+        for (int i = start; i < end; i++) {
+            lats[i - start + 1] = catalog.getLatitude(i);
+            lons[i - start + 1] = catalog.getLongitude(i);
+        }
+        lats[count - 1] = catalog.getLatitude(end - 1) - sign * LEAD_M / GeoMath.METRES_PER_DEGREE;
+        lons[count - 1] = catalog.getLongitude(end - 1);
+
+        long time = startMillis;
+        double along = 0;
+        for (int leg = 0; leg + 1 < count; leg++) {
+            double dx = (lons[leg + 1] - lons[leg]) * GeoMath.cosLatitude(lats[leg]) * GeoMath.METRES_PER_DEGREE;
+            double dy = (lats[leg + 1] - lats[leg]) * GeoMath.METRES_PER_DEGREE;
+            double length = Math.hypot(dx, dy);
+            float bearing = (float) ((Math.toDegrees(Math.atan2(dx, dy)) + 360) % 360);
+
+            while (along < length) {
+                double f = along / length;
+                double latitude = lats[leg] + f * (lats[leg + 1] - lats[leg]);
+                double fixSpeed = speed;
+                if (noise != null) {
+                    latitude += noise.nextGaussian() * POSITION_NOISE_M / GeoMath.METRES_PER_DEGREE;
+                    fixSpeed = Math.max(0, speed + noise.nextGaussian() * SPEED_NOISE);
+                }
+                trace.add(time, latitude, lons[leg] + f * (lons[leg + 1] - lons[leg]), (float) fixSpeed, true, bearing, true, ACCURACY);
+                time += 1000;
+                along += speed;
+            }
+            along -= length;
+        }
+        return time - 1000;
+    }
+}
@@ -0,0 +1,334 @@
+package com.example.spd_acc_app.replay;
+
+import com.example.spd_acc_app.trip.TripLogReader;
+import com.example.spd_acc_app.trip.TripRecorder;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * Trace
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * A sequence of location fixes held in parallel primitive arrays, to be replayed through a DrivingPipeline.
+ * Traces are built point by point (synthetic traces) or read from:
+ *  - CSV: "time_ms,latitude,longitude[,speed[,bearing[,accuracy]]]" per line; blank lines, '#' comments and a
+ *    non-numeric header line are skipped; an empty speed or bearing field means no speed or bearing
+ *  - GPX: every trkpt (lat/lon attributes, time element, optional speed element), in document order; no bearing
+ *  - a trip log written by TripRecorder
+ *
+ * Properties:
+ *  !> mTimes / mLatitudes / mLongitudes / mSpeeds / mHasSpeed / mBearings / mHasBearing / mAccuracies - Fix columns
+ *  !> mSize                                    - Number of fixes
+ *
+ *  !> Constants
+ *      !> DEFAULT_ACCURACY                     - Accuracy in metres used when a source has none
+ */
+public final class Trace {
+
+    public static final float DEFAULT_ACCURACY = 5;
+
+    private long[] mTimes;
+    private double[] mLatitudes;
+    private double[] mLongitudes;
+    private float[] mSpeeds;
+    private boolean[] mHasSpeed;
+    private float[] mBearings;
+    private boolean[] mHasBearing;
+    private float[] mAccuracies;
+    private int mSize;
+
+    public Trace() {
+        this(256);
+    }
+
+    public Trace(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        mTimes = new long[capacity];
+        mLatitudes = new double[capacity];
+        mLongitudes = new double[capacity];
+        mSpeeds = new float[capacity];
+        mHasSpeed = new boolean[capacity];
+        mBearings = new float[capacity];
+        mHasBearing = new boolean[capacity];
+        mAccuracies = new float[capacity];
+    }
+
+    /**
+     * add(): Appends a fix
+     * @param timeMillis - Fix time
+     * @param latitude - Latitude in degrees
+     * @param longitude - Longitude in degrees
+     * @param speed - Speed in m/s
+     * @param hasSpeed - False if the fix carries no speed
+     * @param bearing - Bearing in degrees
+     * @param hasBearing - False if the fix carries no bearing
+     * @param accuracy - Horizontal accuracy in metres
+     */
+    public void add(long timeMillis, double latitude, double longitude, float speed, boolean hasSpeed, float bearing, boolean hasBearing, float accuracy) {
+        if (mSize == mTimes.length) {
+            int capacity = mSize * 2;
+            mTimes = Arrays.copyOf(mTimes, capacity);
+            mLatitudes = Arrays.copyOf(mLatitudes, capacity);
+            mLongitudes = Arrays.copyOf(mLongitudes, capacity);
+            mSpeeds = Arrays.copyOf(mSpeeds, capacity);
+            mHasSpeed = Arrays.copyOf(mHasSpeed, capacity);
+            mBearings = Arrays.copyOf(mBearings, capacity);
+            mHasBearing = Arrays.copyOf(mHasBearing, capacity);
+            mAccuracies = Arrays.copyOf(mAccuracies, capacity);
+        }
+
+        mTimes[mSize] = timeMillis;
+        mLatitudes[mSize] = latitude;
+        mLongitudes[mSize] = longitude;
+        mSpeeds[mSize] = speed;
+        mHasSpeed[mSize] = hasSpeed;
+        mBearings[mSize] = bearing;
+        mHasBearing[mSize] = hasBearing;
+        mAccuracies[mSize] = accuracy;
+        mSize++;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public long getTime(int i) {
+        checkIndex(i);
+        return mTimes[i];
+    }
+
+    public double getLatitude(int i) {
+        checkIndex(i);
+        return mLatitudes[i];
+    }
+
+    public double getLongitude(int i) {
+        checkIndex(i);
+        return mLongitudes[i];
+    }
+
+    public float getSpeed(int i) {
+        checkIndex(i);
+        return mSpeeds[i];
+    }
+
+    public boolean hasSpeed(int i) {
+        checkIndex(i);
+        return mHasSpeed[i];
+    }
+
+    public float getBearing(int i) {
+        checkIndex(i);
+        return mBearings[i];
+    }
+
+    public boolean hasBearing(int i) {
+        checkIndex(i);
+        return mHasBearing[i];
+    }
+
+    public float getAccuracy(int i) {
+        checkIndex(i);
+        return mAccuracies[i];
+    }
+
+    /**
+     * readCsv(): Reads a CSV trace (see class comment)
+     * @param reader - CSV text; not closed
+     */
+    public static Trace readCsv(Reader reader) throws IOException {
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        Trace trace = new Trace();
+        int lineNumber = 0;
+        String line;
+
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            String[] fields = line.split(",", -1);
+            if (lineNumber == 1 && !isNumber(fields[0])) {
+                continue;
+            }
+            if (fields.length < 3) {
+                throw new IOException("Line " + lineNumber + ": expected time, latitude and longitude");
+            }
+
+            try {
+                boolean hasSpeed = fields.length > 3 && !fields[3].trim().isEmpty();
+                boolean hasBearing = fields.length > 4 && !fields[4].trim().isEmpty();
+                trace.add(Long.parseLong(fields[0].trim()),
+                        Double.parseDouble(fields[1].trim()),
+                        Double.parseDouble(fields[2].trim()),
+                        hasSpeed ? Float.parseFloat(fields[3].trim()) : 0,
+                        hasSpeed,
+                        hasBearing ? Float.parseFloat(fields[4].trim()) : 0,
+                        hasBearing,
+                        fields.length > 5 && !fields[5].trim().isEmpty() ? Float.parseFloat(fields[5].trim()) : DEFAULT_ACCURACY);
+            } catch (NumberFormatException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+        return trace;
+    }
+
+    /**
+     * readGpx(): Reads the track points of a GPX document (see class comment)
+     * @param source - GPX document
+     */
+    public static Trace readGpx(InputSource source) throws IOException {
+        final Trace trace = new Trace();
+
+        DefaultHandler handler = new DefaultHandler() {
+            private final StringBuilder mText = new StringBuilder();
+            private boolean mInPoint;
+            private double mLatitude;
+            private double mLongitude;
+            private long mTime;
+            private float mSpeed;
+            private boolean mHasSpeed;
+
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+                mText.setLength(0);
+                if ("trkpt".equals(localName(qName))) {
+                    try {
+                        mLatitude = Double.parseDouble(attributes.getValue("lat"));
+                        mLongitude = Double.parseDouble(attributes.getValue("lon"));
+                    } catch (RuntimeException e) {
+                        throw new SAXException("trkpt without lat/lon");
+                    }
+                    mTime = 0;
+                    mSpeed = 0;
+                    mHasSpeed = false;
+                    mInPoint = true;
+                }
+            }
+
+            @Override
+            public void characters(char[] ch, int start, int length) {
+                mText.append(ch, start, length);
+            }
+
+            @Override
+            public void endElement(String uri, String localName, String qName) throws SAXException {
+                String name = localName(qName);
+                if (!mInPoint) {
+                    return;
+                }
+
+                if ("time".equals(name)) {
+                    mTime = parseIsoTime(mText.toString().trim());
+                } else if ("speed".equals(name)) {
+                    mSpeed = Float.parseFloat(mText.toString().trim());
+                    mHasSpeed = true;
+                } else if ("trkpt".equals(name)) {
+                    trace.add(mTime, mLatitude, mLongitude, mSpeed, mHasSpeed, 0, false, DEFAULT_ACCURACY);
+                    mInPoint = false;
+                }
+            }
+        };
+
+        try {
+            SAXParserFactory.newInstance().newSAXParser().parse(source, handler);
+        } catch (SAXException | ParserConfigurationException | NumberFormatException e) {
+            throw new IOException("Invalid GPX: " + e.getMessage(), e);
+        }
+        return trace;
+    }
+
+    /**
+     * readTripLog(): Reads every complete record of a trip log written by TripRecorder
+     * @param directory - Trip log directory
+     */
+    public static Trace readTripLog(File directory) throws IOException {
+        Trace trace = new Trace();
+        TripLogReader reader = TripLogReader.open(directory);
+        try {
+            while (reader.next()) {
+                int flags = reader.getFlags();
+                trace.add(reader.getTime(), reader.getLatitude(), reader.getLongitude(),
+                        reader.getSpeed(), (flags & TripRecorder.FLAG_NO_SPEED) == 0,
+                        reader.getBearing(), (flags & TripRecorder.FLAG_NO_BEARING) == 0, reader.getAccuracy());
+            }
+        } finally {
+            reader.close();
+        }
+        return trace;
+    }
+
+    /**
+     * parseIsoTime(): Parses a UTC timestamp "yyyy-MM-ddTHH:mm:ss[.SSS]Z" to ms since epoch
+     */
+    static long parseIsoTime(String text) throws SAXException {
+        try {
+            Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+            calendar.clear();
+            calendar.set(Integer.parseInt(text.substring(0, 4)),
+                    Integer.parseInt(text.substring(5, 7)) - 1,
+                    Integer.parseInt(text.substring(8, 10)),
+                    Integer.parseInt(text.substring(11, 13)),
+                    Integer.parseInt(text.substring(14, 16)),
+                    Integer.parseInt(text.substring(17, 19)));
+
+            long millis = 0;
+            int end = 19;
+            if (text.length() > 20 && text.charAt(19) == '.') {
+                end = 20;
+                int scale = 100;
+                while (end < text.length() && Character.isDigit(text.charAt(end))) {
+                    // Digits below 1 ms are dropped
+                    millis += (text.charAt(end) - '0') * scale;
+                    scale /= 10;
+                    end++;
+                }
+            }
+            if (end != text.length() && !"Z".equals(text.substring(end))) {
+                throw new SAXException("Only UTC times are supported: " + text);
+            }
+            return calendar.getTimeInMillis() + millis;
+        } catch (RuntimeException e) {
+            throw new SAXException("Invalid time: " + text);
+        }
+    }
+
+    private static String localName(String qName) {
+        int colon = qName.indexOf(':');
+        return colon < 0 ? qName : qName.substring(colon + 1);
+    }
+
+    private static boolean isNumber(String field) {
+        try {
+            Double.parseDouble(field.trim());
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= mSize) {
+            throw new IndexOutOfBoundsException("index " + i + ", size " + mSize);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.example.spd_acc_app.rules;
+
+import com.example.spd_acc_app.geofence.GeofenceCatalog;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * LimitRules
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Immutable, compiled table of speed and acceleration limits per zone, vehicle class and hour of day. The rules are
+ * written as text, one per line:
+ *
+ *  # zone, vehicle class, hours, speed limit (km/h), acceleration limit (m/s^2)
+ *  OUTSIDE, *, *, 60, 1.47
+ *  INSIDE, *, *, 40, 1.96
+ *  SB_LUZON_AVE, TRUCK, 6-9, 30, 1.47
+ *
+ * A zone is a geofence ID, INSIDE (every geofence without a rule of its own) or OUTSIDE (no geofence). Vehicle
+ * classes are CAR, MOTORCYCLE and TRUCK, hours a local [from-to) range that may wrap midnight; * matches all. Rules
+ * for a geofence override INSIDE rules, and a later line overrides an earlier one of the same kind. Anything not
+ * covered keeps the default limits. Rules naming a geofence missing from the catalog are ignored.
+ *
+ * Compiling flattens the rules into one limit pair per (zone, vehicle class, hour), so evaluate() is an array lookup
+ * and a local hour calculation, whatever the number of rules. Being immutable, a table can be built on any thread and
+ * handed to the location thread by replacing a reference.
+ *
+ * Properties:
+ *  !> mSpeedLimits / mAccelerationLimits       - Limits per cell; cell = (zone * VEHICLE_CLASS_COUNT + vehicle class) * 24 + hour
+ *  !> mOutsideZone                             - Zone index of OUTSIDE (the catalog size)
+ *  !> mTimeZone                                - Time zone of the rule hours
+ *  !> mRuleCount / mIgnoredCount               - Number of rules applied / ignored
+ *
+ *  !> Constants
+ *      !> VEHICLE_*                            - Vehicle classes
+ *      !> ZONE_INSIDE / ZONE_OUTSIDE / ANY     - Rule keywords
+ *      !> DEFAULT_*                            - Limits where no rule applies
+ *      !> ASSET_NAME                           - Rule file shipped with the app
+ */
+public final class LimitRules {
+
+    public static final int VEHICLE_CAR = 0;
+    public static final int VEHICLE_MOTORCYCLE = 1;
+    public static final int VEHICLE_TRUCK = 2;
+    public static final int VEHICLE_CLASS_COUNT = 3;
+
+    public static final String ZONE_INSIDE = "INSIDE";
+    public static final String ZONE_OUTSIDE = "OUTSIDE";
+    public static final String ANY = "*";
+
+    public static final double DEFAULT_SPEED_LIMIT_KMH = 60;
+    public static final double DEFAULT_SPEED_LIMIT_IN_GEOFENCE_KMH = 40;
+    public static final double DEFAULT_ACCELERATION_LIMIT = 1.47;
+    public static final double DEFAULT_ACCELERATION_LIMIT_IN_GEOFENCE = 1.96;
+
+    public static final String ASSET_NAME = "limit_rules.csv";
+
+    static final String[] VEHICLE_CLASSES = {"CAR", "MOTORCYCLE", "TRUCK"};
+
+    private static final int HOURS = 24;
+    private static final long HOUR_MILLIS = 3600000L;
+    private static final long DAY_MILLIS = HOURS * HOUR_MILLIS;
+
+    private final double[] mSpeedLimits;
+    private final double[] mAccelerationLimits;
+    private final int mOutsideZone;
+    private final TimeZone mTimeZone;
+    private final int mRuleCount;
+    private final int mIgnoredCount;
+
+    /**
+     * Rule: One parsed line; fence is the fence index, or -1 for INSIDE and -2 for OUTSIDE
+     */
+    private static final class Rule {
+        int fence;
+        int vehicleClass;
+        int fromHour;
+        int toHour;
+        double speedLimit;
+        double accelerationLimit;
+    }
+
+    private LimitRules(GeofenceCatalog catalog, TimeZone timeZone, List<Rule> rules, int ignoredCount) {
+        int zones = catalog.size() + 1;
+
+        mOutsideZone = catalog.size();
+        mTimeZone = timeZone;
+        mRuleCount = rules.size();
+        mIgnoredCount = ignoredCount;
+        mSpeedLimits = new double[zones * VEHICLE_CLASS_COUNT * HOURS];
+        mAccelerationLimits = new double[mSpeedLimits.length];
+
+        for (int zone = 0; zone < zones; zone++) {
+            boolean outside = zone == mOutsideZone;
+            fill(zone, -1, 0, HOURS,
+                    outside ? DEFAULT_SPEED_LIMIT_KMH : DEFAULT_SPEED_LIMIT_IN_GEOFENCE_KMH,
+                    outside ? DEFAULT_ACCELERATION_LIMIT : DEFAULT_ACCELERATION_LIMIT_IN_GEOFENCE);
+        }
+
+        // Zone defaults first, so that the rules of a single geofence win regardless of their position in the file
+        for (Rule rule : rules) {
+            if (rule.fence == -2) {
+                fill(mOutsideZone, rule.vehicleClass, rule.fromHour, rule.toHour, rule.speedLimit, rule.accelerationLimit);
+            } else if (rule.fence == -1) {
+                for (int zone = 0; zone < mOutsideZone; zone++) {
+                    fill(zone, rule.vehicleClass, rule.fromHour, rule.toHour, rule.speedLimit, rule.accelerationLimit);
+                }
+            }
+        }
+        for (Rule rule : rules) {
+            if (rule.fence >= 0) {
+                fill(rule.fence, rule.vehicleClass, rule.fromHour, rule.toHour, rule.speedLimit, rule.accelerationLimit);
+            }
+        }
+    }
+
+    /**
+     * defaults(): Table without rules: DEFAULT_* limits everywhere
+     * @param catalog - Geofences the zones refer to
+     * @param timeZone - Time zone of the rule hours
+     */
+    public static LimitRules defaults(GeofenceCatalog catalog, TimeZone timeZone) {
+        return new LimitRules(catalog, timeZone, new ArrayList<Rule>(), 0);
+    }
+
+    /**
+     * parse(): Compiles a rule file
+     * @param reader - Rule text; not closed
+     * @param catalog - Geofences the zones refer to
+     * @param timeZone - Time zone of the rule hours
+     * @throws IllegalArgumentException if a line is malformed, naming the line
+     */
+    public static LimitRules parse(Reader reader, GeofenceCatalog catalog, TimeZone timeZone) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        List<Rule> rules = new ArrayList<>();
+        int ignored = 0;
+        int number = 0;
+
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            number++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            String[] fields = line.split(",");
+            if (fields.length != 5) {
+                throw new IllegalArgumentException("Line " + number + ": expected 5 fields, got " + fields.length);
+            }
+
+            try {
+                Rule rule = new Rule();
+                String zone = fields[0].trim();
+                if (ZONE_OUTSIDE.equals(zone)) {
+                    rule.fence = -2;
+                } else if (ZONE_INSIDE.equals(zone)) {
+                    rule.fence = -1;
+                } else {
+                    rule.fence = catalog.indexOf(zone);
+                    if (rule.fence < 0) {
+                        ignored++;
+                        continue;
+                    }
+                }
+
+                rule.vehicleClass = parseVehicleClass(fields[1].trim());
+                parseHours(fields[2].trim(), rule);
+                rule.speedLimit = parseLimit(fields[3].trim());
+                rule.accelerationLimit = parseLimit(fields[4].trim());
+                rules.add(rule);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + number + ": " + e.getMessage(), e);
+            }
+        }
+
+        return new LimitRules(catalog, timeZone, rules, ignored);
+    }
+
+    private static int parseVehicleClass(String field) {
+        if (ANY.equals(field)) {
+            return -1;
+        }
+        for (int i = 0; i < VEHICLE_CLASSES.length; i++) {
+            if (VEHICLE_CLASSES[i].equals(field)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("unknown vehicle class " + field);
+    }
+
+    private static void parseHours(String field, Rule rule) {
+        if (ANY.equals(field)) {
+            rule.fromHour = 0;
+            rule.toHour = HOURS;
+            return;
+        }
+
+        int dash = field.indexOf('-');
+        if (dash < 0) {
+            throw new IllegalArgumentException("hours must be * or from-to, got " + field);
+        }
+        rule.fromHour = Integer.parseInt(field.substring(0, dash).trim());
+        rule.toHour = Integer.parseInt(field.substring(dash + 1).trim());
+        if (rule.fromHour < 0 || rule.fromHour >= HOURS || rule.toHour < 0 || rule.toHour > HOURS || rule.fromHour == rule.toHour) {
+            throw new IllegalArgumentException("invalid hours " + field);
+        }
+    }
+
+    private static double parseLimit(String field) {
+        double limit = Double.parseDouble(field);
+        if (!(limit > 0) || Double.isInfinite(limit)) {
+            throw new IllegalArgumentException("limit must be positive, got " + field);
+        }
+        return limit;
+    }
+
+    private void fill(int zone, int vehicleClass, int fromHour, int toHour, double speedLimit, double accelerationLimit) {
+        int firstClass = vehicleClass < 0 ? 0 : vehicleClass;
+        int lastClass = vehicleClass < 0 ? VEHICLE_CLASS_COUNT - 1 : vehicleClass;
+
+        // A range such as 22-5 wraps midnight
+        int hours = (toHour - fromHour + HOURS) % HOURS;
+        if (hours == 0) {
+            hours = HOURS;
+        }
+
+        for (int c = firstClass; c <= lastClass; c++) {
+            for (int i = 0; i < hours; i++) {
+                int cell = cell(zone, c, (fromHour + i) % HOURS);
+                mSpeedLimits[cell] = speedLimit;
+                mAccelerationLimits[cell] = accelerationLimit;
+            }
+        }
+    }
+
+    private static int cell(int zone, int vehicleClass, int hour) {
+        return (zone * VEHICLE_CLASS_COUNT + vehicleClass) * HOURS + hour;
+    }
+
+    /**
+     * evaluate(): Limits exceeded by a speed and acceleration; constant time, allocates nothing
+     * @param fence - Fence index of the geofence the vehicle is in, or -1 outside every geofence
+     * @param vehicleClass - VEHICLE_*
+     * @param timeMillis - Fix time, selecting the hour of day
+     * @param speedKmh - Speed in km/h
+     * @param acceleration - Acceleration in m/s^2; braking is checked against the same limit
+     */
+    public LimitStatus evaluate(int fence, int vehicleClass, long timeMillis, double speedKmh, double acceleration) {
+        int cell = cell(fence < 0 ? mOutsideZone : fence, vehicleClass, hourOf(timeMillis));
+        double accelerationLimit = mAccelerationLimits[cell];
+        int flags = 0;
+
+        if (speedKmh > mSpeedLimits[cell]) {
+            flags |= 1;
+        }
+        if (acceleration > accelerationLimit || acceleration < -accelerationLimit) {
+            flags |= 2;
+        }
+        return LimitStatus.fromFlags(flags);
+    }
+
+    /**
+     * getSpeedLimitKmh(): Speed limit in km/h applying to a zone, vehicle class and time
+     * @param fence - Fence index, or -1 outside every geofence
+     * @param vehicleClass - VEHICLE_*
+     * @param timeMillis - Time
+     */
+    public double getSpeedLimitKmh(int fence, int vehicleClass, long timeMillis) {
+        return mSpeedLimits[cell(fence < 0 ? mOutsideZone : fence, vehicleClass, hourOf(timeMillis))];
+    }
+
+    /**
+     * getAccelerationLimit(): Acceleration limit in m/s^2 applying to a zone, vehicle class and time
+     * @param fence - Fence index, or -1 outside every geofence
+     * @param vehicleClass - VEHICLE_*
+     * @param timeMillis - Time
+     */
+    public double getAccelerationLimit(int fence, int vehicleClass, long timeMillis) {
+        return mAccelerationLimits[cell(fence < 0 ? mOutsideZone : fence, vehicleClass, hourOf(timeMillis))];
+    }
+
+    private int hourOf(long timeMillis) {
+        long local = (timeMillis + mTimeZone.getOffset(timeMillis)) % DAY_MILLIS;
+        if (local < 0) {
+            local += DAY_MILLIS;
+        }
+        return (int) (local / HOUR_MILLIS);
+    }
+
+    /**
+     * getRuleCount(): Number of rules compiled into the table
+     */
+    public int getRuleCount() {
+        return mRuleCount;
+    }
+
+    /**
+     * getIgnoredCount(): Number of rules ignored because their geofence is not in the catalog
+     */
+    public int getIgnoredCount() {
+        return mIgnoredCount;
+    }
+}
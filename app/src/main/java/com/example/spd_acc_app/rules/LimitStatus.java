@@ -0,0 +1,43 @@
+package com.example.spd_acc_app.rules;
+
+/**
+ * LimitStatus
+ *
+ * Type: Enum
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Outcome of checking a fix against the LimitRules of its zone; the UI maps it to a status text and colours. The
+ * ordinal of every status is its DrivingPipeline.LIMIT_* bits, so the two convert without a lookup.
+ */
+public enum LimitStatus {
+    NORMAL,
+    SPEED,
+    ACCELERATION,
+    SPEED_AND_ACCELERATION;
+
+    private static final LimitStatus[] BY_FLAGS = values();
+
+    /**
+     * fromFlags(): Status for a combination of DrivingPipeline.LIMIT_* bits; other bits are ignored
+     * @param limitFlags - LIMIT_* bits
+     */
+    public static LimitStatus fromFlags(int limitFlags) {
+        return BY_FLAGS[limitFlags & 3];
+    }
+
+    /**
+     * getFlags(): DrivingPipeline.LIMIT_* bits of this status
+     */
+    public int getFlags() {
+        return ordinal();
+    }
+
+    public boolean isSpeedExceeded() {
+        return (ordinal() & 1) != 0;
+    }
+
+    public boolean isAccelerationExceeded() {
+        return (ordinal() & 2) != 0;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.spd_acc_app.state;
+
+/**
+ * DrivingState
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Immutable snapshot of the monitoring state shared by the location pipeline, the geofence broadcast receiver and
+ * the UI. Never changed in place: every change creates a new snapshot (see the with*() methods), which
+ * DrivingStateStore publishes atomically, so a reader on any thread sees either all or none of a change.
+ *
+ * Properties:
+ *  !> mVersion                                 - Number of changes since the initial state
+ *  !> mEngineRunning                           - True while the in-process GeofenceEngine, not the OS broadcast, reports transitions
+ *  !> mCurrentGeofence / mCurrentGeofenceName  - ID and display name of the geofence of the last transition (null before any)
+ *  !> mWithinGeofence                          - True between an ENTER/DWELL and the following EXIT
+ *  !> mLastTransition / mTransitionTimeMillis  - Type (Geofence.GEOFENCE_TRANSITION_*, 0 = none) and time of the last transition
+ *  !> mTransitionCount                         - Number of transitions since the initial state
+ *
+ *  !> Constants
+ *      !> INITIAL                              - State before monitoring starts
+ */
+public final class DrivingState {
+
+    public static final DrivingState INITIAL = new DrivingState(0, false, null, null, false, 0, 0, 0);
+
+    private static final int TRANSITION_EXIT = 2;
+
+    private final long mVersion;
+    private final boolean mEngineRunning;
+    private final String mCurrentGeofence;
+    private final String mCurrentGeofenceName;
+    private final boolean mWithinGeofence;
+    private final int mLastTransition;
+    private final long mTransitionTimeMillis;
+    private final int mTransitionCount;
+
+    private DrivingState(long version, boolean engineRunning, String currentGeofence, String currentGeofenceName,
+                         boolean withinGeofence, int lastTransition, long transitionTimeMillis, int transitionCount) {
+        mVersion = version;
+        mEngineRunning = engineRunning;
+        mCurrentGeofence = currentGeofence;
+        mCurrentGeofenceName = currentGeofenceName;
+        mWithinGeofence = withinGeofence;
+        mLastTransition = lastTransition;
+        mTransitionTimeMillis = transitionTimeMillis;
+        mTransitionCount = transitionCount;
+    }
+
+    /**
+     * withEngineRunning(): Copy with the engine started or stopped; stopping forgets whether the vehicle is inside a geofence
+     * @param engineRunning - True while the GeofenceEngine reports transitions
+     */
+    public DrivingState withEngineRunning(boolean engineRunning) {
+        return new DrivingState(mVersion + 1, engineRunning, mCurrentGeofence, mCurrentGeofenceName,
+                engineRunning && mWithinGeofence, mLastTransition, mTransitionTimeMillis, mTransitionCount);
+    }
+
+    /**
+     * withTransition(): Copy after a geofence transition
+     * @param geofenceId - Geofence ID
+     * @param displayName - Display name of the geofence
+     * @param transition - Geofence.GEOFENCE_TRANSITION_* (same values as GeofenceEngine.TRANSITION_*)
+     * @param timeMillis - Time of the transition
+     */
+    public DrivingState withTransition(String geofenceId, String displayName, int transition, long timeMillis) {
+        return new DrivingState(mVersion + 1, mEngineRunning, geofenceId, displayName,
+                transition != TRANSITION_EXIT, transition, timeMillis, mTransitionCount + 1);
+    }
+
+    /**
+     * withRestoredGeofence(): Copy taking over the last geofence of a previous session; not counted as a transition
+     * @param geofenceId - Geofence ID
+     * @param displayName - Display name of the geofence
+     * @param withinGeofence - Whether the vehicle was inside it
+     * @param transition - Geofence.GEOFENCE_TRANSITION_* of the last transition
+     * @param timeMillis - Time of the last transition
+     */
+    public DrivingState withRestoredGeofence(String geofenceId, String displayName, boolean withinGeofence, int transition, long timeMillis) {
+        return new DrivingState(mVersion + 1, mEngineRunning, geofenceId, displayName,
+                mEngineRunning && withinGeofence, transition, timeMillis, mTransitionCount);
+    }
+
+    public long getVersion() {
+        return mVersion;
+    }
+
+    public boolean isEngineRunning() {
+        return mEngineRunning;
+    }
+
+    /**
+     * getCurrentGeofence(): ID of the geofence of the last transition, or null
+     */
+    public String getCurrentGeofence() {
+        return mCurrentGeofence;
+    }
+
+    public String getCurrentGeofenceName() {
+        return mCurrentGeofenceName;
+    }
+
+    public boolean isWithinGeofence() {
+        return mWithinGeofence;
+    }
+
+    /**
+     * getLastTransition(): Type of the last transition, 0 if none
+     */
+    public int getLastTransition() {
+        return mLastTransition;
+    }
+
+    public long getTransitionTimeMillis() {
+        return mTransitionTimeMillis;
+    }
+
+    /**
+     * getTransitionCount(): Number of transitions so far; differs between two snapshots if a transition happened in between
+     */
+    public int getTransitionCount() {
+        return mTransitionCount;
+    }
+}
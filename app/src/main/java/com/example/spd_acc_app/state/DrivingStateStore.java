@@ -0,0 +1,117 @@
+package com.example.spd_acc_app.state;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * DrivingStateStore
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Holds the current DrivingState and tells subscribers about changes. Updates are copy-on-write: the new snapshot is
+ * derived from the current one and published with a compare-and-set, retried if another thread changed the state in
+ * between, so concurrent updates from the broadcast receiver and the location pipeline never get lost and readers
+ * never lock. Subscribers are notified on the updating thread, after the change is visible; notifications of
+ * concurrent updates may interleave, so a subscriber that needs the latest state reads get().
+ *
+ * Thread-safe.
+ *
+ * Properties:
+ *  !> mState                                   - Current snapshot
+ *  !> mListeners                               - Subscribers; iterating never blocks adding or removing
+ */
+public final class DrivingStateStore {
+
+    /**
+     * Listener: Receives every published change
+     */
+    public interface Listener {
+        /**
+         * onStateChanged(): Called on the thread that made the change
+         * @param previous - Snapshot replaced by the change
+         * @param current - Snapshot published by the change
+         */
+        void onStateChanged(DrivingState previous, DrivingState current);
+    }
+
+    private final AtomicReference<DrivingState> mState = new AtomicReference<>(DrivingState.INITIAL);
+    private final CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * get(): Current snapshot; safe to keep and read from any thread
+     */
+    public DrivingState get() {
+        return mState.get();
+    }
+
+    /**
+     * setEngineRunning(): Publishes whether the GeofenceEngine reports transitions
+     * @param engineRunning - True when monitoring starts, false when it stops
+     */
+    public DrivingState setEngineRunning(boolean engineRunning) {
+        DrivingState previous;
+        DrivingState current;
+        do {
+            previous = mState.get();
+            current = previous.withEngineRunning(engineRunning);
+        } while (!mState.compareAndSet(previous, current));
+
+        notifyListeners(previous, current);
+        return current;
+    }
+
+    /**
+     * onTransition(): Publishes a geofence transition
+     * @param geofenceId - Geofence ID
+     * @param displayName - Display name of the geofence
+     * @param transition - Geofence.GEOFENCE_TRANSITION_*
+     * @param timeMillis - Time of the transition
+     */
+    public DrivingState onTransition(String geofenceId, String displayName, int transition, long timeMillis) {
+        DrivingState previous;
+        DrivingState current;
+        do {
+            previous = mState.get();
+            current = previous.withTransition(geofenceId, displayName, transition, timeMillis);
+        } while (!mState.compareAndSet(previous, current));
+
+        notifyListeners(previous, current);
+        return current;
+    }
+
+    /**
+     * restoreGeofence(): Publishes the last geofence of a previous session, without it counting as a transition
+     * @param geofenceId - Geofence ID
+     * @param displayName - Display name of the geofence
+     * @param withinGeofence - Whether the vehicle was inside it
+     * @param transition - Geofence.GEOFENCE_TRANSITION_* of the last transition
+     * @param timeMillis - Time of the last transition
+     */
+    public DrivingState restoreGeofence(String geofenceId, String displayName, boolean withinGeofence, int transition, long timeMillis) {
+        DrivingState previous;
+        DrivingState current;
+        do {
+            previous = mState.get();
+            current = previous.withRestoredGeofence(geofenceId, displayName, withinGeofence, transition, timeMillis);
+        } while (!mState.compareAndSet(previous, current));
+
+        notifyListeners(previous, current);
+        return current;
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    private void notifyListeners(DrivingState previous, DrivingState current) {
+        for (Listener listener : mListeners) {
+            listener.onStateChanged(previous, current);
+        }
+    }
+}
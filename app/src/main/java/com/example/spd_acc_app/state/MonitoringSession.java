@@ -0,0 +1,323 @@
+package com.example.spd_acc_app.state;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * MonitoringSession
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * What a restarted process needs to resume monitoring where the previous one stopped: the trajectory, the last fix,
+ * the last geofence and whether the vehicle was inside it, and the geofence IDs registered with Play Services (which
+ * outlive the process, not a reboot). Saved as one small binary file:
+ *
+ *  size  field
+ *     4  MAGIC
+ *     2  VERSION
+ *     8  saved at (ms since epoch)
+ *     8  boot time (ms since epoch) of the saving process
+ *     4  direction (GeofenceCatalog.DIRECTION_*, -1 = none)
+ *     8  last fix time (Long.MIN_VALUE = none)
+ *  8, 8  last fix latitude, longitude (degrees)
+ *  4x3   last fix speed (m/s), bearing (degrees), accuracy (m)
+ *   var  last geofence ID (modified UTF-8, empty = none)
+ *     1  within geofence (0/1)
+ *     4  last transition (Geofence.GEOFENCE_TRANSITION_*, 0 = none)
+ *     8  last transition time
+ *     4  number of registered IDs, followed by the IDs (modified UTF-8)
+ *     4  CRC32 of all preceding bytes
+ *
+ * writeTo() replaces the file atomically (temporary file, sync, rename), so a process killed while saving leaves the
+ * previous session; readFrom() rejects anything truncated or corrupt.
+ *
+ * Mutable and reused between saves; not thread-safe.
+ *
+ * Properties:
+ *  !> mSavedAtMillis / mBootMillis             - Wall time of the save and of the boot before it
+ *  !> mDirection                               - Trajectory, -1 if not known
+ *  !> mFixTime / mLatitude / mLongitude / mSpeed / mBearing / mAccuracy - Last fix, mFixTime Long.MIN_VALUE if none
+ *  !> mGeofenceId                              - Geofence of the last transition, null if none
+ *  !> mWithinGeofence                          - Whether the vehicle was inside mGeofenceId
+ *  !> mTransition / mTransitionTimeMillis      - Type and time of the last transition
+ *  !> mRegisteredIds                           - Geofence IDs registered with Play Services
+ *
+ *  !> Constants
+ *      !> MAGIC / VERSION                      - File identification
+ *      !> MAX_FILE_BYTES                       - Larger files are rejected without being read
+ *      !> BOOT_TOLERANCE                       - Difference in ms between two boot time estimates of the same boot
+ */
+public final class MonitoringSession {
+
+    static final int MAGIC = 0x53455353; // "SESS"
+    static final short VERSION = 1;
+    static final int MAX_FILE_BYTES = 64 * 1024;
+    static final long BOOT_TOLERANCE = 60000;
+
+    private long mSavedAtMillis;
+    private long mBootMillis;
+    private int mDirection = -1;
+    private long mFixTime = Long.MIN_VALUE;
+    private double mLatitude;
+    private double mLongitude;
+    private float mSpeed;
+    private float mBearing;
+    private float mAccuracy;
+    private String mGeofenceId;
+    private boolean mWithinGeofence;
+    private int mTransition;
+    private long mTransitionTimeMillis;
+    private final List<String> mRegisteredIds = new ArrayList<>();
+
+    /**
+     * setSavedAt(): Stamps the session before writing it
+     * @param savedAtMillis - System.currentTimeMillis()
+     * @param bootMillis - System.currentTimeMillis() - SystemClock.elapsedRealtime(), to tell whether the device rebooted since
+     */
+    public void setSavedAt(long savedAtMillis, long bootMillis) {
+        mSavedAtMillis = savedAtMillis;
+        mBootMillis = bootMillis;
+    }
+
+    /**
+     * setDirection(): Stores the trajectory
+     * @param direction - GeofenceCatalog.DIRECTION_* or -1
+     */
+    public void setDirection(int direction) {
+        mDirection = direction;
+    }
+
+    /**
+     * setLastFix(): Stores the last processed fix
+     * @param timeMillis - Fix time
+     * @param latitude - Latitude in degrees
+     * @param longitude - Longitude in degrees
+     * @param speed - Speed in m/s
+     * @param bearing - Bearing in degrees
+     * @param accuracy - Accuracy in metres
+     */
+    public void setLastFix(long timeMillis, double latitude, double longitude, float speed, float bearing, float accuracy) {
+        mFixTime = timeMillis;
+        mLatitude = latitude;
+        mLongitude = longitude;
+        mSpeed = speed;
+        mBearing = bearing;
+        mAccuracy = accuracy;
+    }
+
+    /**
+     * setGeofence(): Stores the last geofence transition
+     * @param geofenceId - Geofence ID, or null before any transition
+     * @param withinGeofence - True between an ENTER/DWELL and the following EXIT
+     * @param transition - Geofence.GEOFENCE_TRANSITION_*, 0 if none
+     * @param timeMillis - Time of the transition
+     */
+    public void setGeofence(String geofenceId, boolean withinGeofence, int transition, long timeMillis) {
+        mGeofenceId = geofenceId;
+        mWithinGeofence = geofenceId != null && withinGeofence;
+        mTransition = transition;
+        mTransitionTimeMillis = timeMillis;
+    }
+
+    /**
+     * setRegisteredIds(): Stores the geofence IDs registered with Play Services
+     * @param ids - Registered IDs
+     */
+    public void setRegisteredIds(Collection<String> ids) {
+        mRegisteredIds.clear();
+        mRegisteredIds.addAll(ids);
+    }
+
+    public long getSavedAtMillis() {
+        return mSavedAtMillis;
+    }
+
+    /**
+     * isSameBoot(): Whether the session was saved since the last boot, i.e. its registered geofences may still exist
+     * @param bootMillis - Boot time of the current process, computed like the one given to setSavedAt()
+     */
+    public boolean isSameBoot(long bootMillis) {
+        return Math.abs(bootMillis - mBootMillis) <= BOOT_TOLERANCE;
+    }
+
+    public int getDirection() {
+        return mDirection;
+    }
+
+    public boolean hasFix() {
+        return mFixTime != Long.MIN_VALUE;
+    }
+
+    public long getFixTime() {
+        return mFixTime;
+    }
+
+    public double getLatitude() {
+        return mLatitude;
+    }
+
+    public double getLongitude() {
+        return mLongitude;
+    }
+
+    public float getSpeed() {
+        return mSpeed;
+    }
+
+    public float getBearing() {
+        return mBearing;
+    }
+
+    public float getAccuracy() {
+        return mAccuracy;
+    }
+
+    /**
+     * getGeofenceId(): Geofence of the last transition, or null
+     */
+    public String getGeofenceId() {
+        return mGeofenceId;
+    }
+
+    public boolean isWithinGeofence() {
+        return mWithinGeofence;
+    }
+
+    public int getTransition() {
+        return mTransition;
+    }
+
+    public long getTransitionTimeMillis() {
+        return mTransitionTimeMillis;
+    }
+
+    /**
+     * getRegisteredIds(): Geofence IDs registered with Play Services when the session was saved (live list)
+     */
+    public List<String> getRegisteredIds() {
+        return mRegisteredIds;
+    }
+
+    /**
+     * writeTo(): Replaces a session file with this session
+     * @param file - Session file; its directory must exist
+     */
+    public void writeTo(File file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(mSavedAtMillis);
+        out.writeLong(mBootMillis);
+        out.writeInt(mDirection);
+        out.writeLong(mFixTime);
+        out.writeDouble(mLatitude);
+        out.writeDouble(mLongitude);
+        out.writeFloat(mSpeed);
+        out.writeFloat(mBearing);
+        out.writeFloat(mAccuracy);
+        out.writeUTF(mGeofenceId != null ? mGeofenceId : "");
+        out.writeBoolean(mWithinGeofence);
+        out.writeInt(mTransition);
+        out.writeLong(mTransitionTimeMillis);
+        out.writeInt(mRegisteredIds.size());
+        for (String id : mRegisteredIds) {
+            out.writeUTF(id);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        out.flush();
+
+        File temporary = new File(file.getPath() + ".tmp");
+        FileOutputStream stream = new FileOutputStream(temporary);
+        try {
+            bytes.writeTo(stream);
+            stream.getFD().sync();
+        } finally {
+            stream.close();
+        }
+
+        if (!temporary.renameTo(file)) {
+            temporary.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    /**
+     * readFrom(): Reads a session file
+     * @param file - Session file
+     * @return the session, or null if the file is missing, truncated, corrupt or of another version
+     */
+    public static MonitoringSession readFrom(File file) throws IOException {
+        long length = file.length();
+        if (!file.isFile() || length < 8 || length > MAX_FILE_BYTES) {
+            return null;
+        }
+
+        byte[] data = new byte[(int) length];
+        DataInputStream stream = new DataInputStream(new FileInputStream(file));
+        try {
+            stream.readFully(data);
+        } catch (EOFException e) {
+            return null;
+        } finally {
+            stream.close();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - 4);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        in.skipBytes(data.length - 4);
+        if (in.readInt() != (int) crc.getValue()) {
+            return null;
+        }
+
+        in = new DataInputStream(new ByteArrayInputStream(data, 0, data.length - 4));
+        try {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                return null;
+            }
+
+            MonitoringSession session = new MonitoringSession();
+            session.mSavedAtMillis = in.readLong();
+            session.mBootMillis = in.readLong();
+            session.mDirection = in.readInt();
+            session.mFixTime = in.readLong();
+            session.mLatitude = in.readDouble();
+            session.mLongitude = in.readDouble();
+            session.mSpeed = in.readFloat();
+            session.mBearing = in.readFloat();
+            session.mAccuracy = in.readFloat();
+            String geofenceId = in.readUTF();
+            session.mGeofenceId = geofenceId.isEmpty() ? null : geofenceId;
+            session.mWithinGeofence = in.readBoolean();
+            session.mTransition = in.readInt();
+            session.mTransitionTimeMillis = in.readLong();
+            int count = in.readInt();
+            if (count < 0 || count > MAX_FILE_BYTES / 2) {
+                return null;
+            }
+            for (int i = 0; i < count; i++) {
+                session.mRegisteredIds.add(in.readUTF());
+            }
+            return session;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+}
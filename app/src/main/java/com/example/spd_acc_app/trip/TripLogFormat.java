@@ -0,0 +1,131 @@
+package com.example.spd_acc_app.trip;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * TripLogFormat
+ *
+ * Type: Class (constants and helpers only)
+ *
+ * On-disk layout shared by TripRecorder and TripLogReader. A trip log is a directory of segment files
+ * (trip_00000.seg, trip_00001.seg, ...). Each segment is pre-sized, starts with a HEADER_SIZE byte header and
+ * is followed by fixed-width little-endian records:
+ *
+ *  offset  size  field
+ *       0     8  time (ms since epoch)
+ *       8     8  latitude (degrees)
+ *      16     8  longitude (degrees)
+ *      24     4  speed (m/s)
+ *      28     4  bearing (degrees)
+ *      32     4  accuracy (m)
+ *      36     4  acceleration (m/s^2)
+ *      40     4  flags (see TripRecorder.FLAG_*)
+ *      44     4  checksum over bytes 0..43, written last
+ *
+ * A record is complete only if its checksum matches, so a record torn by a process kill (or the zero fill after
+ * the last record) ends the segment.
+ */
+final class TripLogFormat {
+
+    static final int MAGIC = 0x50495254; // "TRIP" little-endian
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 48;
+
+    static final int OFFSET_TIME = 0;
+    static final int OFFSET_LATITUDE = 8;
+    static final int OFFSET_LONGITUDE = 16;
+    static final int OFFSET_SPEED = 24;
+    static final int OFFSET_BEARING = 28;
+    static final int OFFSET_ACCURACY = 32;
+    static final int OFFSET_ACCELERATION = 36;
+    static final int OFFSET_FLAGS = 40;
+    static final int OFFSET_CHECKSUM = 44;
+
+    private static final String SEGMENT_PREFIX = "trip_";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int CHECKSUM_SEED = 0x2607_2002;
+
+    private TripLogFormat() {
+    }
+
+    /**
+     * checksum(): Cheap 32-bit mix over the 44 payload bytes of the record at position. Never 0 for an all-zero record.
+     */
+    static int checksum(ByteBuffer buffer, int position) {
+        int hash = CHECKSUM_SEED;
+        for (int offset = 0; offset < OFFSET_CHECKSUM; offset += 4) {
+            hash = (hash ^ buffer.getInt(position + offset)) * 0x01000193;
+            hash ^= hash >>> 15;
+        }
+        return hash;
+    }
+
+    static File segmentFile(File directory, int index) {
+        return new File(directory, String.format(Locale.US, "%s%05d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * segmentIndexes(): Indexes of the existing segments of a directory, ascending
+     */
+    static int[] segmentIndexes(File directory) {
+        String[] names = directory.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+
+        if (names == null) {
+            return new int[0];
+        }
+
+        int[] indexes = new int[names.length];
+        int count = 0;
+        for (String name : names) {
+            try {
+                indexes[count] = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                count++;
+            } catch (NumberFormatException e) {
+                // Not one of ours
+            }
+        }
+
+        int[] result = Arrays.copyOf(indexes, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * countRecords(): Number of complete records at the start of a segment
+     */
+    static int countRecords(ByteBuffer buffer) {
+        int capacity = (buffer.limit() - HEADER_SIZE) / RECORD_SIZE;
+        int count = 0;
+        while (count < capacity) {
+            int position = HEADER_SIZE + count * RECORD_SIZE;
+            if (buffer.getInt(position + OFFSET_CHECKSUM) != checksum(buffer, position)) {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    static boolean hasValidHeader(ByteBuffer buffer) {
+        return buffer.limit() >= HEADER_SIZE
+                && buffer.getInt(0) == MAGIC
+                && buffer.getShort(4) == VERSION
+                && buffer.getShort(6) == RECORD_SIZE;
+    }
+
+    static void writeHeader(ByteBuffer buffer) {
+        buffer.putInt(0, MAGIC);
+        buffer.putShort(4, VERSION);
+        buffer.putShort(6, (short) RECORD_SIZE);
+    }
+}
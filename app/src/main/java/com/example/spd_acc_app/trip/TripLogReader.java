@@ -0,0 +1,144 @@
+package com.example.spd_acc_app.trip;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * TripLogReader
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: Closeable
+ *
+ * Forward cursor over the complete records of a trip log written by TripRecorder. Segments are mapped read-only
+ * one at a time and fields are read in place, so iterating millions of records allocates nothing per record.
+ * Unreadable segments are skipped; within a segment, reading stops at the first incomplete record.
+ *
+ *  TripLogReader reader = TripLogReader.open(dir);
+ *  while (reader.next()) { use(reader.getTime(), reader.getSpeed(), ...); }
+ *  reader.close();
+ *
+ * Properties:
+ *  !> mDirectory                               - Trip log directory
+ *  !> mSegments                                - Segment indexes, ascending
+ *  !> mSegmentCursor                           - Position in mSegments of the mapped segment
+ *  !> mBuffer                                  - Mapping of the current segment
+ *  !> mRecordCount                             - Complete records in the current segment
+ *  !> mRecord                                  - Index of the current record in its segment (-1 before the first)
+ *  !> mPosition                                - Byte offset of the current record
+ */
+public final class TripLogReader implements Closeable {
+
+    private final File mDirectory;
+    private final int[] mSegments;
+
+    private int mSegmentCursor = -1;
+    private MappedByteBuffer mBuffer;
+    private int mRecordCount;
+    private int mRecord = -1;
+    private int mPosition;
+
+    private TripLogReader(File directory, int[] segments) {
+        mDirectory = directory;
+        mSegments = segments;
+    }
+
+    /**
+     * open(): Positions a cursor before the first record of a trip log; an empty or missing directory has no records
+     * @param directory - Trip log directory
+     */
+    public static TripLogReader open(File directory) {
+        return new TripLogReader(directory, TripLogFormat.segmentIndexes(directory));
+    }
+
+    /**
+     * next(): Advances to the next complete record
+     * @return false once all records have been read
+     */
+    public boolean next() throws IOException {
+        while (mRecord + 1 >= mRecordCount) {
+            if (mSegmentCursor + 1 >= mSegments.length) {
+                mBuffer = null;
+                return false;
+            }
+            mapSegment(mSegments[++mSegmentCursor]);
+        }
+
+        mRecord++;
+        mPosition = TripLogFormat.HEADER_SIZE + mRecord * TripLogFormat.RECORD_SIZE;
+        return true;
+    }
+
+    /**
+     * getSegmentIndex(): Segment holding the current record
+     */
+    public int getSegmentIndex() {
+        return mSegments[mSegmentCursor];
+    }
+
+    // Fields of the current record
+
+    public long getTime() {
+        return mBuffer.getLong(mPosition + TripLogFormat.OFFSET_TIME);
+    }
+
+    public double getLatitude() {
+        return mBuffer.getDouble(mPosition + TripLogFormat.OFFSET_LATITUDE);
+    }
+
+    public double getLongitude() {
+        return mBuffer.getDouble(mPosition + TripLogFormat.OFFSET_LONGITUDE);
+    }
+
+    public float getSpeed() {
+        return mBuffer.getFloat(mPosition + TripLogFormat.OFFSET_SPEED);
+    }
+
+    public float getBearing() {
+        return mBuffer.getFloat(mPosition + TripLogFormat.OFFSET_BEARING);
+    }
+
+    public float getAccuracy() {
+        return mBuffer.getFloat(mPosition + TripLogFormat.OFFSET_ACCURACY);
+    }
+
+    public float getAcceleration() {
+        return mBuffer.getFloat(mPosition + TripLogFormat.OFFSET_ACCELERATION);
+    }
+
+    public int getFlags() {
+        return mBuffer.getInt(mPosition + TripLogFormat.OFFSET_FLAGS);
+    }
+
+    @Override
+    public void close() {
+        mBuffer = null;
+        mSegmentCursor = mSegments.length;
+        mRecordCount = 0;
+        mRecord = -1;
+    }
+
+    private void mapSegment(int index) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(TripLogFormat.segmentFile(mDirectory, index), "r");
+        try {
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            mRecord = -1;
+            if (TripLogFormat.hasValidHeader(buffer)) {
+                mBuffer = buffer;
+                mRecordCount = TripLogFormat.countRecords(buffer);
+            } else {
+                mBuffer = null;
+                mRecordCount = 0;
+            }
+        } finally {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.spd_acc_app.trip;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * TripRecorder
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: Closeable
+ *
+ * Crash-safe trip log of raw location samples, so disputed SPD_LIMIT / ACC_LIMIT warnings can be reviewed.
+ * Each fix is written as one fixed-width record (see TripLogFormat) into a memory-mapped segment through
+ * absolute puts, so append() allocates nothing and a killed process loses at most the record being written.
+ * Opening a directory resumes after the last complete record of its newest segment. A new segment is started
+ * once the current one is full.
+ *
+ * Not thread-safe.
+ *
+ * Properties:
+ *  !> mDirectory                               - Trip log directory
+ *  !> mSegmentBytes                            - Size of each segment file
+ *  !> mSegmentIndex                            - Index of the segment being written
+ *  !> mBuffer                                  - Mapping of the segment being written
+ *  !> mRecordCount / mRecordCapacity           - Records written to / fitting in the current segment
+ *
+ *  !> Constants
+ *      !> FLAG_IN_GEOFENCE                     - Fix was inside a monitored geofence
+ *      !> FLAG_SPEED_LIMIT                     - Speed threshold was exceeded
+ *      !> FLAG_ACCELERATION_LIMIT              - Acceleration threshold was exceeded
+ *      !> FLAG_NO_BEARING                      - Fix carried no bearing (the recorded bearing is meaningless)
+ *      !> FLAG_NO_SPEED                        - Fix carried no Doppler speed (the recorded speed is meaningless)
+ *      !> DEFAULT_SEGMENT_BYTES                - 4 MiB, about a day of 1 Hz fixes
+ */
+public final class TripRecorder implements Closeable {
+
+    public static final int FLAG_IN_GEOFENCE = 1;
+    public static final int FLAG_SPEED_LIMIT = 1 << 1;
+    public static final int FLAG_ACCELERATION_LIMIT = 1 << 2;
+    public static final int FLAG_NO_BEARING = 1 << 3;
+    public static final int FLAG_NO_SPEED = 1 << 4;
+    public static final int DEFAULT_SEGMENT_BYTES = 4 * 1024 * 1024;
+
+    private final File mDirectory;
+    private final int mSegmentBytes;
+
+    private int mSegmentIndex;
+    private MappedByteBuffer mBuffer;
+    private int mRecordCount;
+    private int mRecordCapacity;
+
+    private TripRecorder(File directory, int segmentBytes) {
+        mDirectory = directory;
+        mSegmentBytes = segmentBytes;
+    }
+
+    /**
+     * open(): Opens (or creates) a trip log and positions after its last complete record
+     * @param directory - Trip log directory, created if missing
+     * @param segmentBytes - Size of each segment file; must fit the header and at least one record
+     */
+    public static TripRecorder open(File directory, int segmentBytes) throws IOException {
+        if (segmentBytes < TripLogFormat.HEADER_SIZE + TripLogFormat.RECORD_SIZE) {
+            throw new IllegalArgumentException("Segment too small: " + segmentBytes);
+        }
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+
+        TripRecorder recorder = new TripRecorder(directory, segmentBytes);
+        int[] segments = TripLogFormat.segmentIndexes(directory);
+        recorder.mapSegment(segments.length == 0 ? 0 : segments[segments.length - 1]);
+        return recorder;
+    }
+
+    /**
+     * append(): Writes one fix
+     * @param timeMillis - Fix time
+     * @param latitude - Latitude in degrees
+     * @param longitude - Longitude in degrees
+     * @param speed - Speed in m/s
+     * @param bearing - Bearing in degrees
+     * @param accuracy - Horizontal accuracy in metres
+     * @param acceleration - Acceleration in m/s^2
+     * @param flags - FLAG_* bits
+     */
+    public void append(long timeMillis, double latitude, double longitude, float speed, float bearing, float accuracy, float acceleration, int flags) throws IOException {
+        if (mBuffer == null) {
+            throw new IOException("Trip recorder closed");
+        }
+
+        if (mRecordCount == mRecordCapacity) {
+            mBuffer.force();
+            mapSegment(mSegmentIndex + 1);
+        }
+
+        MappedByteBuffer buffer = mBuffer;
+        int position = TripLogFormat.HEADER_SIZE + mRecordCount * TripLogFormat.RECORD_SIZE;
+
+        buffer.putLong(position + TripLogFormat.OFFSET_TIME, timeMillis);
+        buffer.putDouble(position + TripLogFormat.OFFSET_LATITUDE, latitude);
+        buffer.putDouble(position + TripLogFormat.OFFSET_LONGITUDE, longitude);
+        buffer.putFloat(position + TripLogFormat.OFFSET_SPEED, speed);
+        buffer.putFloat(position + TripLogFormat.OFFSET_BEARING, bearing);
+        buffer.putFloat(position + TripLogFormat.OFFSET_ACCURACY, accuracy);
+        buffer.putFloat(position + TripLogFormat.OFFSET_ACCELERATION, acceleration);
+        buffer.putInt(position + TripLogFormat.OFFSET_FLAGS, flags);
+
+        // Checksum last: it is what marks the record complete
+        buffer.putInt(position + TripLogFormat.OFFSET_CHECKSUM, TripLogFormat.checksum(buffer, position));
+        mRecordCount++;
+    }
+
+    /**
+     * flush(): Forces the current segment to storage (survives power loss, not only a process kill)
+     */
+    public void flush() {
+        if (mBuffer != null) {
+            mBuffer.force();
+        }
+    }
+
+    /**
+     * getSegmentIndex(): Index of the segment being written
+     */
+    public int getSegmentIndex() {
+        return mSegmentIndex;
+    }
+
+    /**
+     * getRecordCount(): Complete records in the segment being written
+     */
+    public int getRecordCount() {
+        return mRecordCount;
+    }
+
+    @Override
+    public void close() {
+        flush();
+        mBuffer = null;
+    }
+
+    private void mapSegment(int index) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(TripLogFormat.segmentFile(mDirectory, index), "rw");
+        try {
+            long length = file.length();
+            int size = length == 0 ? mSegmentBytes : (int) length;
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (length == 0 || !TripLogFormat.hasValidHeader(buffer)) {
+                if (length != 0) {
+                    // Unreadable segment: keep it for inspection and start the next one
+                    file.close();
+                    mapSegment(index + 1);
+                    return;
+                }
+                TripLogFormat.writeHeader(buffer);
+            }
+
+            mSegmentIndex = index;
+            mBuffer = buffer;
+            mRecordCapacity = (size - TripLogFormat.HEADER_SIZE) / TripLogFormat.RECORD_SIZE;
+            mRecordCount = TripLogFormat.countRecords(buffer);
+        } finally {
+            // The mapping stays valid after the channel is closed
+            file.close();
+        }
+    }
+}
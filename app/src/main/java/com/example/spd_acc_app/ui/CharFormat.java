@@ -0,0 +1,95 @@
+package com.example.spd_acc_app.ui;
+
+/**
+ * CharFormat
+ *
+ * Type: Class (static helpers only)
+ *
+ * Allocation-free formatting into caller-owned char[] buffers, for the per-fix display path where String.format(),
+ * DecimalFormat and string concatenation would create garbage on every fix. Every method writes at the given
+ * offset and returns the offset after the last written char; the caller guarantees the buffer is large enough.
+ *
+ *  !> Constants
+ *      !> MAX_DECIMALS                         - Largest supported number of decimals
+ *      !> MAX_FIXED_LENGTH                     - Longest output of appendFixed()
+ */
+public final class CharFormat {
+
+    public static final int MAX_DECIMALS = 9;
+    public static final int MAX_FIXED_LENGTH = 17;
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L
+    };
+    // Largest scaled magnitude formatted as a number (exact in a double); anything beyond, and NaN, is shown as a dash
+    private static final double MAX_SCALED = 1e15;
+
+    private CharFormat() {
+    }
+
+    /**
+     * appendFixed(): Writes a value with a fixed number of decimals, rounding half away from zero (e.g. -1.005 -> "-1.01")
+     * @param value - Value to write; NaN, infinities and magnitudes of 1e15 / 10^decimals and above are written as "-"
+     * @param decimals - Number of decimals, 0 to MAX_DECIMALS
+     * @param dst - Destination buffer
+     * @param offset - Index of the first char to write
+     * @return index after the last written char
+     */
+    public static int appendFixed(double value, int decimals, char[] dst, int offset) {
+        if (decimals < 0 || decimals > MAX_DECIMALS) {
+            throw new IllegalArgumentException("Unsupported decimals: " + decimals);
+        }
+
+        long scale = POWERS_OF_TEN[decimals];
+        double scaledMagnitude = Math.abs(value) * scale;
+        if (!(scaledMagnitude < MAX_SCALED)) {
+            dst[offset] = '-';
+            return offset + 1;
+        }
+
+        long scaled = Math.round(scaledMagnitude);
+        if (value < 0 && scaled != 0) {
+            dst[offset++] = '-';
+        }
+
+        offset = appendDigits(scaled / scale, 1, dst, offset);
+        if (decimals > 0) {
+            dst[offset++] = '.';
+            offset = appendDigits(scaled % scale, decimals, dst, offset);
+        }
+        return offset;
+    }
+
+    /**
+     * append(): Writes the chars of a string
+     * @param text - Text to write
+     * @param dst - Destination buffer
+     * @param offset - Index of the first char to write
+     * @return index after the last written char
+     */
+    public static int append(String text, char[] dst, int offset) {
+        int length = text.length();
+        text.getChars(0, length, dst, offset);
+        return offset + length;
+    }
+
+    /**
+     * appendDigits(): Writes a non-negative value in decimal, left-padded with zeros to at least minDigits digits
+     */
+    private static int appendDigits(long value, int minDigits, char[] dst, int offset) {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        if (digits < minDigits) {
+            digits = minDigits;
+        }
+
+        int end = offset + digits;
+        for (int i = end - 1; i >= offset; i--) {
+            dst[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.spd_acc_app.ui;
+
+import com.example.spd_acc_app.pipeline.DrivingPipeline;
+import com.example.spd_acc_app.rules.LimitStatus;
+
+/**
+ * DisplaySnapshot
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Everything the monitoring screen shows for one fix, already formatted into reusable char[] buffers so that
+ * formatting a fix allocates nothing. Filled on the location pipeline thread and handed to the UI thread through a
+ * SnapshotExchange, which guarantees that only one thread uses a snapshot at a time.
+ *
+ * Properties:
+ *  !> mTimeMillis                              - Time of the fix
+ *  !> mReceivedNanos                           - System.nanoTime() when the fix was delivered to the app, 0 if unknown
+ *  !> mTexts / mLengths                        - Text buffer and text length per TEXT_* field
+ *  !> mLimitFlags                              - DrivingPipeline.LIMIT_* bits, selecting status text and colours
+ *
+ *  !> Constants
+ *      !> TEXT_*                               - Text fields
+ *      !> TEXT_COUNT                           - Number of text fields
+ *      !> TEXT_CAPACITY                        - Size of every text buffer
+ *      !> COORDINATE_DECIMALS                  - Decimals of latitude/longitude (about 0.1 m)
+ */
+public final class DisplaySnapshot {
+
+    public static final int TEXT_SPEED = 0;
+    public static final int TEXT_LATITUDE = 1;
+    public static final int TEXT_LONGITUDE = 2;
+    public static final int TEXT_ACCELERATION = 3;
+    public static final int TEXT_DIRECTION = 4;
+    public static final int TEXT_LAST_GEOFENCE = 5;
+    public static final int TEXT_IN_GEOFENCE = 6;
+    public static final int TEXT_COUNT = 7;
+    public static final int TEXT_CAPACITY = 64;
+    public static final int COORDINATE_DECIMALS = 6;
+
+    private static final String SPEED_UNIT = "km/h";
+    private static final String ACCELERATION_UNIT = " m/s\u00B2";
+    private static final String ACCELERATION_SEPARATOR = " || ";
+    private static final String NONE = "-";
+
+    private long mTimeMillis;
+    private long mReceivedNanos;
+    private final char[][] mTexts = new char[TEXT_COUNT][TEXT_CAPACITY];
+    private final int[] mLengths = new int[TEXT_COUNT];
+    private int mLimitFlags;
+
+    /**
+     * set(): Formats the current state of a pipeline into this snapshot
+     * @param pipeline - Pipeline that has just processed the fix
+     * @param timeMillis - Time of the fix
+     * @param latitude - Latitude of the fix
+     * @param longitude - Longitude of the fix
+     * @param lastGeofence - Catalog index of the fence of the last geofence transition, or -1
+     */
+    public void set(DrivingPipeline pipeline, long timeMillis, double latitude, double longitude, int lastGeofence) {
+        mTimeMillis = timeMillis;
+
+        char[] text = mTexts[TEXT_SPEED];
+        mLengths[TEXT_SPEED] = CharFormat.append(SPEED_UNIT, text, CharFormat.appendFixed(pipeline.getSpeedKmh(), 2, text, 0));
+
+        mLengths[TEXT_LATITUDE] = CharFormat.appendFixed(latitude, COORDINATE_DECIMALS, mTexts[TEXT_LATITUDE], 0);
+        mLengths[TEXT_LONGITUDE] = CharFormat.appendFixed(longitude, COORDINATE_DECIMALS, mTexts[TEXT_LONGITUDE], 0);
+
+        text = mTexts[TEXT_ACCELERATION];
+        int length = CharFormat.appendFixed(pipeline.getAcceleration(), 2, text, 0);
+        length = CharFormat.append(ACCELERATION_UNIT, text, length);
+        length = CharFormat.append(ACCELERATION_SEPARATOR, text, length);
+        length = CharFormat.appendFixed(pipeline.getRawAcceleration(), 2, text, length);
+        mLengths[TEXT_ACCELERATION] = CharFormat.append(ACCELERATION_UNIT, text, length);
+
+        setText(TEXT_DIRECTION, DrivingPipeline.directionName(pipeline.getDirection()));
+        setText(TEXT_LAST_GEOFENCE, lastGeofence >= 0 ? pipeline.getCatalog().getDisplayName(lastGeofence) : NONE);
+        setText(TEXT_IN_GEOFENCE, pipeline.isWithinGeofence() ? "true" : "false");
+
+        mLimitFlags = pipeline.getLimitFlags();
+    }
+
+    public long getTimeMillis() {
+        return mTimeMillis;
+    }
+
+    /**
+     * setReceivedNanos(): Stamps the snapshot with the delivery time of its fix, for fix-to-frame latency
+     * @param receivedNanos - System.nanoTime() when the fix was delivered
+     */
+    public void setReceivedNanos(long receivedNanos) {
+        mReceivedNanos = receivedNanos;
+    }
+
+    public long getReceivedNanos() {
+        return mReceivedNanos;
+    }
+
+    /**
+     * getText(): Buffer of a text field; only the first getLength(field) chars are valid
+     * @param field - TEXT_* field
+     */
+    public char[] getText(int field) {
+        return mTexts[field];
+    }
+
+    public int getLength(int field) {
+        return mLengths[field];
+    }
+
+    /**
+     * toString(): Copy of a text field as a String (allocates; for tests and logging)
+     * @param field - TEXT_* field
+     */
+    public String toString(int field) {
+        return new String(mTexts[field], 0, mLengths[field]);
+    }
+
+    public int getLimitFlags() {
+        return mLimitFlags;
+    }
+
+    public LimitStatus getLimitStatus() {
+        return LimitStatus.fromFlags(mLimitFlags);
+    }
+
+    void setLimitFlags(int limitFlags) {
+        mLimitFlags = limitFlags;
+    }
+
+    /**
+     * setText(): Copies a text into a field; names longer than the buffer are cut rather than failing the fix
+     * @param field - TEXT_* field
+     * @param text - Text
+     */
+    void setText(int field, String text) {
+        int length = Math.min(text.length(), TEXT_CAPACITY);
+        text.getChars(0, length, mTexts[field], 0);
+        mLengths[field] = length;
+    }
+}
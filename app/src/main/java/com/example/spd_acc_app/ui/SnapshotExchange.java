@@ -0,0 +1,68 @@
+package com.example.spd_acc_app.ui;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SnapshotExchange
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Lock-free triple buffer of DisplaySnapshots between one producer (the pipeline thread) and one consumer (the UI
+ * thread). The producer fills the back snapshot and publishes it; the consumer acquires the most recently published
+ * one. Snapshots that are published but never acquired are overwritten, and no snapshot is ever allocated after
+ * construction. Each side owns one snapshot; the third is the shared middle one, swapped atomically together with a
+ * "published and not yet acquired" bit.
+ *
+ * Properties:
+ *  !> mSnapshots                               - The three snapshots
+ *  !> mMiddle                                  - Index of the shared snapshot, plus FRESH once published
+ *  !> mBack                                    - Index of the producer's snapshot (producer thread only)
+ *  !> mFront                                   - Index of the consumer's snapshot (consumer thread only)
+ *
+ *  !> Constants
+ *      !> FRESH                                - Bit of mMiddle set by publish() and cleared by acquire()
+ *      !> INDEX_MASK                           - Bits of mMiddle holding the index
+ */
+public final class SnapshotExchange {
+
+    private static final int FRESH = 4;
+    private static final int INDEX_MASK = 3;
+
+    private final DisplaySnapshot[] mSnapshots = {new DisplaySnapshot(), new DisplaySnapshot(), new DisplaySnapshot()};
+    private final AtomicInteger mMiddle = new AtomicInteger(1);
+    private int mBack = 0;
+    private int mFront = 2;
+
+    /**
+     * getBack(): Snapshot for the producer to fill (producer thread)
+     */
+    public DisplaySnapshot getBack() {
+        return mSnapshots[mBack];
+    }
+
+    /**
+     * publish(): Makes the back snapshot the latest one and hands the producer a free one (producer thread)
+     * @return true if the consumer had acquired everything published before, i.e. it has to be scheduled again
+     */
+    public boolean publish() {
+        int previous = mMiddle.getAndSet(mBack | FRESH);
+        mBack = previous & INDEX_MASK;
+        return (previous & FRESH) == 0;
+    }
+
+    /**
+     * acquire(): Takes the latest published snapshot (consumer thread). It stays valid until the next acquire().
+     * @return the snapshot, or null if nothing was published since the last acquire()
+     */
+    public DisplaySnapshot acquire() {
+        if ((mMiddle.get() & FRESH) == 0) {
+            return null;
+        }
+
+        // Only the consumer clears FRESH, so it is still set; a concurrent publish() just makes this a newer snapshot
+        mFront = mMiddle.getAndSet(mFront) & INDEX_MASK;
+        return mSnapshots[mFront];
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.spd_acc_app.ui;
+
+import com.example.spd_acc_app.rules.LimitStatus;
+
+/**
+ * TelemetryRenderer
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Diff-based rendering of DisplaySnapshots onto the monitoring screen. The last rendered text and colour of every
+ * view is kept, and only views whose text or colour actually changed are written, so an unchanged value costs no
+ * setText()/setTextColor() and no layout pass. Texts are compared and handed over as char[] ranges, so rendering
+ * allocates nothing. The views are reached through a Target so the diffing runs on the JVM.
+ *
+ * UI thread only.
+ *
+ * Properties:
+ *  !> mTarget                                  - Views being rendered to
+ *  !> mStatusTexts                             - Status text chars per LimitStatus ordinal
+ *  !> mNormalColor / mAlertColor               - Text colours of speed and acceleration
+ *  !> mTexts / mLengths                        - Last rendered text per slot (length -1 = unknown); passed to the views
+ *  !> mColors                                  - Last rendered colour per slot
+ *  !> mHasColor                                - Whether mColors holds the rendered colour of a slot
+ *  !> mWriteCount                              - Number of view writes issued, for diagnostics
+ *
+ *  !> Constants
+ *      !> SLOT_*                               - View slots; text slots equal the DisplaySnapshot.TEXT_* fields
+ *      !> SLOT_COUNT                           - Number of view slots
+ */
+public final class TelemetryRenderer {
+
+    public static final int SLOT_SPEED = DisplaySnapshot.TEXT_SPEED;
+    public static final int SLOT_LATITUDE = DisplaySnapshot.TEXT_LATITUDE;
+    public static final int SLOT_LONGITUDE = DisplaySnapshot.TEXT_LONGITUDE;
+    public static final int SLOT_ACCELERATION = DisplaySnapshot.TEXT_ACCELERATION;
+    public static final int SLOT_DIRECTION = DisplaySnapshot.TEXT_DIRECTION;
+    public static final int SLOT_LAST_GEOFENCE = DisplaySnapshot.TEXT_LAST_GEOFENCE;
+    public static final int SLOT_IN_GEOFENCE = DisplaySnapshot.TEXT_IN_GEOFENCE;
+    public static final int SLOT_STATUS = DisplaySnapshot.TEXT_COUNT;
+    public static final int SLOT_COUNT = DisplaySnapshot.TEXT_COUNT + 1;
+
+    /**
+     * Target: The views, addressed by slot
+     */
+    public interface Target {
+        /**
+         * setText(): Shows text[0, length). The array is owned by the renderer and only changes right before the next
+         * setText() of the same slot (the contract of TextView.setText(char[], int, int)).
+         */
+        void setText(int slot, char[] text, int length);
+
+        void setTextColor(int slot, int color);
+    }
+
+    private final Target mTarget;
+    private final char[][] mStatusTexts;
+    private final int mNormalColor;
+    private final int mAlertColor;
+
+    private final char[][] mTexts = new char[SLOT_COUNT][DisplaySnapshot.TEXT_CAPACITY];
+    private final int[] mLengths = new int[SLOT_COUNT];
+    private final int[] mColors = new int[SLOT_COUNT];
+    private final boolean[] mHasColor = new boolean[SLOT_COUNT];
+    private long mWriteCount;
+
+    /**
+     * TelemetryRenderer(): Creates a renderer that initially knows nothing about the views
+     * @param target - Views being rendered to
+     * @param statusTexts - Status texts in LimitStatus order: normal, speed, acceleration, speed and acceleration
+     * @param normalColor - Text colour of a value within its limit
+     * @param alertColor - Text colour of a value past its limit
+     */
+    public TelemetryRenderer(Target target, String[] statusTexts, int normalColor, int alertColor) {
+        if (statusTexts.length != LimitStatus.values().length) {
+            throw new IllegalArgumentException("Expected 4 status texts");
+        }
+
+        mTarget = target;
+        mStatusTexts = new char[statusTexts.length][];
+        for (int i = 0; i < statusTexts.length; i++) {
+            mStatusTexts[i] = statusTexts[i].toCharArray();
+        }
+        mNormalColor = normalColor;
+        mAlertColor = alertColor;
+        reset();
+    }
+
+    /**
+     * render(): Brings the views up to date with a snapshot, writing only what changed
+     * @param snapshot - Display values
+     */
+    public void render(DisplaySnapshot snapshot) {
+        LimitStatus limitStatus = snapshot.getLimitStatus();
+
+        for (int field = 0; field < DisplaySnapshot.TEXT_COUNT; field++) {
+            setText(field, snapshot.getText(field), snapshot.getLength(field));
+        }
+        char[] status = mStatusTexts[limitStatus.ordinal()];
+        setText(SLOT_STATUS, status, status.length);
+
+        setTextColor(SLOT_SPEED, limitStatus.isSpeedExceeded() ? mAlertColor : mNormalColor);
+        setTextColor(SLOT_ACCELERATION, limitStatus.isAccelerationExceeded() ? mAlertColor : mNormalColor);
+    }
+
+    /**
+     * reset(): Forgets the rendered state, e.g. after the views were written directly; the next render() writes all
+     */
+    public void reset() {
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            mLengths[i] = -1;
+            mHasColor[i] = false;
+        }
+    }
+
+    public long getWriteCount() {
+        return mWriteCount;
+    }
+
+    private void setText(int slot, char[] text, int length) {
+        char[] rendered = mTexts[slot];
+        if (length == mLengths[slot] && regionEquals(rendered, text, length)) {
+            return;
+        }
+
+        if (length > rendered.length) {
+            // Only for status texts longer than a snapshot text
+            rendered = new char[length];
+            mTexts[slot] = rendered;
+        }
+        System.arraycopy(text, 0, rendered, 0, length);
+        mLengths[slot] = length;
+        mTarget.setText(slot, rendered, length);
+        mWriteCount++;
+    }
+
+    private static boolean regionEquals(char[] a, char[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setTextColor(int slot, int color) {
+        if (!mHasColor[slot] || mColors[slot] != color) {
+            mColors[slot] = color;
+            mHasColor[slot] = true;
+            mTarget.setTextColor(slot, color);
+            mWriteCount++;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.spd_acc_app.geofence;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for GeofenceCatalog, checked against the values in res/values/strings.xml.
+ */
+public class GeofenceCatalogTest {
+
+    private static final Map<String, String> sStrings = TestCatalogs.strings();
+    private static final GeofenceCatalog.ValueSource sSource = TestCatalogs.source();
+
+    @Test
+    public void catalog_matchesResourceValues() {
+        GeofenceCatalog catalog = GeofenceCatalog.load(sSource);
+
+        assertEquals(GeofenceCatalog.SOUTHBOUND_FENCES.length + GeofenceCatalog.NORTHBOUND_FENCES.length, catalog.size());
+        assertFence(catalog, GeofenceCatalog.DIRECTION_SOUTHBOUND, GeofenceCatalog.SOUTHBOUND_FENCES);
+        assertFence(catalog, GeofenceCatalog.DIRECTION_NORTHBOUND, GeofenceCatalog.NORTHBOUND_FENCES);
+    }
+
+    @Test
+    public void indexOf_unknownId() {
+        assertEquals(-1, GeofenceCatalog.load(sSource).indexOf("SB_NOWHERE"));
+    }
+
+    @Test
+    public void getDisplayName_isFenceName() {
+        GeofenceCatalog catalog = GeofenceCatalog.load(sSource);
+
+        assertEquals("San Simon", catalog.getDisplayName(catalog.indexOf("SB_SAN_SIMON")));
+        assertEquals("Batasan", catalog.getDisplayName(catalog.indexOf("NB_BATASAN_RD")));
+        assertEquals("IBP Road", catalog.getDisplayName(catalog.indexOf("NB_IBP_RD")));
+    }
+
+    private static void assertFence(GeofenceCatalog catalog, int direction, String[][] fences) {
+        assertEquals(fences.length, catalog.getEnd(direction) - catalog.getStart(direction));
+
+        for (int i = 0; i < fences.length; i++) {
+            String key = fences[i][0];
+            int index = catalog.getStart(direction) + i;
+
+            assertEquals(sStrings.get(key + "_ID"), catalog.getId(index));
+            assertEquals(index, catalog.indexOf(catalog.getId(index)));
+            assertEquals(Double.parseDouble(sStrings.get(key + "_LAT")), catalog.getLatitude(index), 0);
+            assertEquals(Double.parseDouble(sStrings.get(key + "_LON")), catalog.getLongitude(index), 0);
+            assertEquals(Float.parseFloat(sStrings.get(key + "_RAD")), catalog.getRadius(index), 0);
+            assertEquals(Double.parseDouble(sStrings.get(key + "_TRN_LAT")), catalog.getTurnLatitude(index), 0);
+            assertEquals(Double.parseDouble(sStrings.get(key + "_TRN_LON")), catalog.getTurnLongitude(index), 0);
+        }
+    }
+}
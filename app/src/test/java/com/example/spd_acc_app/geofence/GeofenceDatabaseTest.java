@@ -0,0 +1,245 @@
+package com.example.spd_acc_app.geofence;
+
+import com.example.spd_acc_app.location.GeoMath;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for GeofenceDatabase and GeofenceDatabaseBuilder, checked against res/values/strings.xml and the
+ * committed database asset.
+ */
+public class GeofenceDatabaseTest {
+
+    private static final String CSV = "src/main/geofences/geofences.csv";
+    private static final String ASSET = "src/main/assets/" + GeofenceDatabase.ASSET_NAME;
+
+    private static GeofenceDatabase compile(String csv, double tileDegrees) throws Exception {
+        GeofenceDatabaseBuilder builder = new GeofenceDatabaseBuilder();
+        builder.parse(new StringReader(csv));
+        return new GeofenceDatabase(ByteBuffer.wrap(builder.build(tileDegrees)));
+    }
+
+    private static byte[] compileSource() throws Exception {
+        GeofenceDatabaseBuilder builder = new GeofenceDatabaseBuilder();
+        Reader reader = new InputStreamReader(new FileInputStream(CSV), "UTF-8");
+        try {
+            builder.parse(reader);
+        } finally {
+            reader.close();
+        }
+        return builder.build(GeofenceDatabaseBuilder.DEFAULT_TILE_DEGREES);
+    }
+
+    /**
+     * grid(): Database of count fences on a square grid spaced 200 m apart, all Southbound
+     */
+    private static GeofenceDatabase grid(int count) {
+        GeofenceDatabaseBuilder builder = new GeofenceDatabaseBuilder();
+        int side = (int) Math.ceil(Math.sqrt(count));
+        double step = 200 / GeoMath.METRES_PER_DEGREE;
+
+        for (int i = 0; i < count; i++) {
+            double latitude = 14.6 + (i / side) * step;
+            double longitude = 121.0 + (i % side) * step;
+            builder.add("F" + i, GeofenceCatalog.DIRECTION_SOUTHBOUND, i, "Fence " + i, latitude, longitude, 50, latitude, longitude);
+        }
+
+        return new GeofenceDatabase(ByteBuffer.wrap(builder.build(GeofenceDatabaseBuilder.DEFAULT_TILE_DEGREES)));
+    }
+
+    @Test
+    public void asset_isUpToDateWithSource() throws Exception {
+        assertArrayEquals(compileSource(), Files.readAllBytes(new File(ASSET).toPath()));
+    }
+
+    @Test
+    public void catalog_fromDatabaseMatchesResourceValues() throws Exception {
+        GeofenceCatalog expected = TestCatalogs.load();
+        GeofenceCatalog actual = GeofenceCatalog.load(GeofenceDatabase.map(new File(ASSET)));
+
+        assertEquals(expected.size(), actual.size());
+        for (int direction = 0; direction < 2; direction++) {
+            assertEquals(expected.getStart(direction), actual.getStart(direction));
+            assertEquals(expected.getEnd(direction), actual.getEnd(direction));
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getId(i), actual.getId(i));
+            assertEquals(expected.getDisplayName(i), actual.getDisplayName(i));
+            assertEquals(expected.getTurnLabel(i), actual.getTurnLabel(i));
+            assertEquals(expected.getLatitude(i), actual.getLatitude(i), 1e-7);
+            assertEquals(expected.getLongitude(i), actual.getLongitude(i), 1e-7);
+            assertEquals(expected.getRadius(i), actual.getRadius(i), 0);
+            assertEquals(expected.getTurnLatitude(i), actual.getTurnLatitude(i), 1e-7);
+            assertEquals(expected.getTurnLongitude(i), actual.getTurnLongitude(i), 1e-7);
+            assertEquals(i, actual.indexOf(expected.getId(i)));
+        }
+    }
+
+    @Test
+    public void build_ordersByDirectionThenSequence() throws Exception {
+        GeofenceDatabase database = compile(
+                "# comment\n"
+                        + "id,direction,sequence,name,latitude,longitude,radius,turn_latitude,turn_longitude\n"
+                        + "NB_B,NB,2,Bravo,14.61,121.01,80,14.611,121.011\n"
+                        + "\n"
+                        + "SB_A,SB,1,Alpha \u00c9,14.60,121.00,98.5,14.601,121.001\n"
+                        + "NB_A,NB,1,Alpha,14.62,121.02,70,14.621,121.021\n",
+                0.01);
+
+        assertEquals(3, database.size());
+        assertEquals(1, database.getDirectionCount(GeofenceCatalog.DIRECTION_SOUTHBOUND));
+        assertEquals(2, database.getDirectionCount(GeofenceCatalog.DIRECTION_NORTHBOUND));
+        assertEquals("SB_A", database.getId(0));
+        assertEquals("Alpha \u00c9", database.getName(0));
+        assertEquals(98.5f, database.getRadius(0), 0);
+        assertEquals(14.601, database.getTurnLatitude(0), 1e-7);
+        assertEquals(121.001, database.getTurnLongitude(0), 1e-7);
+        assertEquals("NB_A", database.getId(1));
+        assertEquals("NB_B", database.getId(2));
+        assertEquals(GeofenceCatalog.DIRECTION_NORTHBOUND, database.getDirection(2));
+        assertEquals(14.61, database.getLatitude(2), 1e-7);
+        assertEquals(121.01, database.getLongitude(2), 1e-7);
+    }
+
+    @Test
+    public void indexOf_findsEveryId() throws Exception {
+        GeofenceDatabase database = grid(2500);
+        for (int i = 0; i < database.size(); i++) {
+            assertEquals(i, database.indexOf("F" + i));
+        }
+        assertEquals(-1, database.indexOf("F2500"));
+        assertEquals(-1, database.indexOf("F"));
+        assertEquals(-1, database.indexOf(""));
+
+        // IDs are ordered by their UTF-8 bytes, so non-ASCII IDs sort after ASCII ones
+        GeofenceDatabase accented = compile(
+                "\u00c9A,SB,1,Alpha,14.60,121.00,98,14.60,121.00\n"
+                        + "ZA,SB,2,Bravo,14.61,121.01,98,14.61,121.01\n"
+                        + "AA,SB,3,Charlie,14.62,121.02,98,14.62,121.02\n",
+                0.01);
+        assertEquals(0, accented.indexOf("\u00c9A"));
+        assertEquals(1, accented.indexOf("ZA"));
+        assertEquals(2, accented.indexOf("AA"));
+        assertEquals(-1, accented.indexOf("\u00c9"));
+    }
+
+    @Test
+    public void findNear_matchesLinearScan() {
+        GeofenceDatabase database = grid(2500);
+        Random random = new Random(7);
+        int[] found = new int[database.size()];
+
+        for (int query = 0; query < 200; query++) {
+            double latitude = 14.59 + random.nextDouble() * 0.1;
+            double longitude = 120.99 + random.nextDouble() * 0.1;
+            double distance = random.nextDouble() * 1500;
+
+            int count = database.findNear(latitude, longitude, distance, found);
+            int[] actual = Arrays.copyOf(found, count);
+            Arrays.sort(actual);
+
+            double cosLatitude = GeoMath.cosLatitude(latitude);
+            int[] expected = new int[database.size()];
+            int expectedCount = 0;
+            for (int i = 0; i < database.size(); i++) {
+                if (GeoMath.isWithin(latitude, longitude, cosLatitude, database.getLatitude(i), database.getLongitude(i), distance + database.getRadius(i))) {
+                    expected[expectedCount++] = i;
+                }
+            }
+
+            assertArrayEquals(Arrays.copyOf(expected, expectedCount), actual);
+        }
+    }
+
+    @Test
+    public void findNear_countsBeyondOutput() {
+        GeofenceDatabase database = grid(100);
+        int[] found = new int[2];
+
+        int count = database.findNear(database.getLatitude(55), database.getLongitude(55), 500, found);
+
+        assertTrue(count > found.length);
+    }
+
+    @Test
+    public void findNear_tilesVisitedDoNotGrowWithDatabase() {
+        int[] found = new int[64];
+        int visitedSmall;
+        int visitedLarge;
+
+        GeofenceDatabase small = grid(100);
+        small.findNear(small.getLatitude(45), small.getLongitude(45), 300, found);
+        visitedSmall = small.getTilesVisited();
+
+        GeofenceDatabase large = grid(40000);
+        large.findNear(large.getLatitude(20100), large.getLongitude(20100), 300, found);
+        visitedLarge = large.getTilesVisited();
+
+        // 700 m across is under a tile edge, so at most 2 x 2 tiles whatever the grid size
+        assertTrue(large.getTileCount() > 1000);
+        assertTrue(visitedSmall <= 4);
+        assertTrue(visitedLarge <= 4);
+    }
+
+    @Test
+    public void findNear_outsideGridVisitsNothing() {
+        GeofenceDatabase database = grid(100);
+
+        assertEquals(0, database.findNear(-33.9, 18.4, 1000, new int[4]));
+        assertEquals(0, database.getTilesVisited());
+    }
+
+    @Test
+    public void database_rejectsForeignBytes() {
+        try {
+            new GeofenceDatabase(ByteBuffer.wrap(new byte[64]));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void parse_rejectsMalformedLines() throws Exception {
+        String[] malformed = {
+                "A,SB,1,Alpha,14.6,121.0,98,14.6\n",
+                "A,EB,1,Alpha,14.6,121.0,98,14.6,121.0\n",
+                "A,SB,x,Alpha,14.6,121.0,98,14.6,121.0\n",
+                "A,SB,1,Alpha,94.6,121.0,98,14.6,121.0\n",
+                "A,SB,1,Alpha,14.6,121.0,0,14.6,121.0\n",
+                "A,SB,1,Alpha,14.6,121.0,98,14.6,121.0\nA,NB,1,Alpha,14.6,121.0,98,14.6,121.0\n",
+        };
+
+        for (String csv : malformed) {
+            try {
+                new GeofenceDatabaseBuilder().parse(new StringReader("# header\n" + csv));
+                fail(csv);
+            } catch (IllegalArgumentException expected) {
+                assertTrue(expected.getMessage(), expected.getMessage().startsWith("Line "));
+            }
+        }
+    }
+
+    @Test
+    public void build_rejectsRepeatedSequence() throws Exception {
+        GeofenceDatabaseBuilder builder = new GeofenceDatabaseBuilder();
+        builder.parse(new StringReader("A,SB,1,Alpha,14.6,121.0,98,14.6,121.0\nB,SB,1,Bravo,14.7,121.1,98,14.7,121.1\n"));
+
+        try {
+            builder.build(0.01);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.spd_acc_app.geofence;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for GeofenceEngine on the Commonwealth Ave fences.
+ */
+public class GeofenceEngineTest {
+
+    private static final double METRES_PER_DEGREE = 6371008.8 * Math.PI / 180.0;
+
+    private GeofenceCatalog mCatalog;
+    private GeofenceEngine mEngine;
+    private final List<String> mEvents = new ArrayList<>();
+    private int mFence;
+
+    @Before
+    public void setUp() {
+        mCatalog = TestCatalogs.load();
+        mEngine = new GeofenceEngine(mCatalog, 3000, new GeofenceEngine.Listener() {
+            @Override
+            public void onGeofenceTransition(int fence, int transition, long timeMillis) {
+                mEvents.add(mCatalog.getId(fence) + ":" + transition + "@" + timeMillis);
+            }
+        });
+        mEngine.setActiveRange(mCatalog.getStart(GeofenceCatalog.DIRECTION_SOUTHBOUND), mCatalog.getEnd(GeofenceCatalog.DIRECTION_SOUTHBOUND), 0);
+        mFence = mCatalog.indexOf("SB_LUZON_AVE");
+    }
+
+    @Test
+    public void driveThrough_entersDwellsAndExits() {
+        // 1 Hz fixes walking south through Luzon Ave at ~10 m/s, starting 150 m north
+        for (int t = 0; t <= 30; t++) {
+            evaluateMetresNorth(150 - 10 * t, t * 1000L);
+        }
+
+        String id = mCatalog.getId(mFence);
+        assertEquals(Arrays.asList(
+                id + ":" + GeofenceEngine.TRANSITION_ENTER + "@6000",
+                id + ":" + GeofenceEngine.TRANSITION_DWELL + "@9000",
+                id + ":" + GeofenceEngine.TRANSITION_EXIT + "@25000"), mEvents);
+        assertFalse(mEngine.isInside(mFence));
+    }
+
+    @Test
+    public void shortVisit_noDwell() {
+        evaluateMetresNorth(0, 0);
+        evaluateMetresNorth(200, 2000);
+
+        assertEquals(2, mEvents.size());
+        assertTrue(mEvents.get(1).contains(":" + GeofenceEngine.TRANSITION_EXIT + "@"));
+    }
+
+    @Test
+    public void inactiveDirection_isIgnored() {
+        int northbound = mCatalog.indexOf("NB_IBP_RD");
+
+        mEngine.evaluate(mCatalog.getLatitude(northbound), mCatalog.getLongitude(northbound), 0);
+
+        assertTrue(mEvents.isEmpty());
+    }
+
+    @Test
+    public void leavingActiveRange_whileInside_reportsExit() {
+        evaluateMetresNorth(0, 0);
+
+        mEngine.setActiveRange(mCatalog.getStart(GeofenceCatalog.DIRECTION_NORTHBOUND), mCatalog.getEnd(GeofenceCatalog.DIRECTION_NORTHBOUND), 500);
+
+        assertEquals(mCatalog.getId(mFence) + ":" + GeofenceEngine.TRANSITION_EXIT + "@500", mEvents.get(mEvents.size() - 1));
+        assertFalse(mEngine.isInside(mFence));
+    }
+
+    @Test
+    public void nearestDistance_toClosestActiveBoundary() {
+        assertEquals(Double.POSITIVE_INFINITY, mEngine.getNearestDistance(), 0);
+
+        evaluateMetresNorth(0, 0);
+        assertEquals(0, mEngine.getNearestDistance(), 0);
+
+        double latitude = mCatalog.getLatitude(mFence) + 3000 / METRES_PER_DEGREE;
+        double longitude = mCatalog.getLongitude(mFence) + 0.01;
+        mEngine.evaluate(latitude, longitude, 1000);
+
+        double expected = Double.POSITIVE_INFINITY;
+        for (int i = mCatalog.getStart(GeofenceCatalog.DIRECTION_SOUTHBOUND); i < mCatalog.getEnd(GeofenceCatalog.DIRECTION_SOUTHBOUND); i++) {
+            double dx = (longitude - mCatalog.getLongitude(i)) * Math.cos(Math.toRadians(mCatalog.getLatitude(i))) * METRES_PER_DEGREE;
+            double dy = (latitude - mCatalog.getLatitude(i)) * METRES_PER_DEGREE;
+            expected = Math.min(expected, Math.hypot(dx, dy) - mCatalog.getRadius(i));
+        }
+        assertTrue(expected > 0);
+        assertEquals(expected, mEngine.getNearestDistance(), 1e-6);
+
+        mEngine.reset();
+        assertEquals(Double.POSITIVE_INFINITY, mEngine.getNearestDistance(), 0);
+    }
+
+    @Test
+    public void farFromEveryFence_reportsSearchDistance() {
+        evaluateMetresNorth(20000, 0);
+
+        assertEquals(GeofenceEngine.SEARCH_DISTANCE, mEngine.getNearestDistance(), 0);
+        assertTrue(mEvents.isEmpty());
+    }
+
+    @Test
+    public void jumpAwayWhileInside_reportsExit() {
+        evaluateMetresNorth(0, 0);
+        assertTrue(mEngine.isInside(mFence));
+        assertEquals(mFence, mEngine.getInsideFence());
+
+        // A fix far from the last query: the fence is no longer among those evaluated, but still left
+        evaluateMetresNorth(20000, 1000);
+
+        assertEquals(mCatalog.getId(mFence) + ":" + GeofenceEngine.TRANSITION_EXIT + "@1000", mEvents.get(mEvents.size() - 1));
+        assertFalse(mEngine.isInside(mFence));
+        assertEquals(-1, mEngine.getInsideFence());
+    }
+
+    @Test
+    public void approachFromFar_entersOnceNear() {
+        // Driving south from 10 km out: the fences are queried again as the vehicle moves
+        for (int t = 0; t <= 1000; t++) {
+            evaluateMetresNorth(10000 - 10 * t, t * 1000L);
+        }
+
+        assertEquals(mCatalog.getId(mFence) + ":" + GeofenceEngine.TRANSITION_ENTER + "@991000", mEvents.get(0));
+        assertTrue(mEngine.isInside(mFence));
+    }
+
+    private void evaluateMetresNorth(double metres, long timeMillis) {
+        mEngine.evaluate(mCatalog.getLatitude(mFence) + metres / METRES_PER_DEGREE, mCatalog.getLongitude(mFence), timeMillis);
+    }
+}
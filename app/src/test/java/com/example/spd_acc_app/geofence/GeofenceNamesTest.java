@@ -0,0 +1,25 @@
+package com.example.spd_acc_app.geofence;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for GeofenceNames.
+ */
+public class GeofenceNamesTest {
+
+    @Test
+    public void displayName_capitalisesBothWords() {
+        assertEquals("San Simon", GeofenceNames.displayName("SB_SAN_SIMON"));
+        assertEquals("Batasan Rd", GeofenceNames.displayName("NB_BATASAN_RD"));
+    }
+
+    @Test
+    public void displayName_rejectsOtherForms() {
+        assertNull(GeofenceNames.displayName(""));
+        assertNull(GeofenceNames.displayName("SB_CENTRAL"));
+        assertNull(GeofenceNames.displayName("SB_A_B_C"));
+        assertNull(GeofenceNames.displayName("SB__SIMON"));
+    }
+}
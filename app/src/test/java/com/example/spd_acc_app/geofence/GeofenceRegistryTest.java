@@ -0,0 +1,53 @@
+package com.example.spd_acc_app.geofence;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for GeofenceRegistry.
+ */
+public class GeofenceRegistryTest {
+
+    @Test
+    public void firstPush_addsEverything() {
+        GeofenceRegistry registry = new GeofenceRegistry();
+
+        GeofenceRegistry.Diff diff = registry.diff(Arrays.asList("SB_SAN_SIMON", "SB_DON_ANTONIO"));
+
+        assertEquals(Arrays.asList("SB_SAN_SIMON", "SB_DON_ANTONIO"), diff.added);
+        assertTrue(diff.removed.isEmpty());
+    }
+
+    @Test
+    public void samePush_isEmpty() {
+        GeofenceRegistry registry = new GeofenceRegistry();
+        registry.markAdded(Arrays.asList("SB_SAN_SIMON", "SB_DON_ANTONIO"));
+
+        assertTrue(registry.diff(Arrays.asList("SB_DON_ANTONIO", "SB_SAN_SIMON")).isEmpty());
+    }
+
+    @Test
+    public void directionFlip_swapsOnlyChangedIds() {
+        GeofenceRegistry registry = new GeofenceRegistry();
+        registry.markAdded(Arrays.asList("SB_SAN_SIMON", "SB_TANDANG_SORA"));
+
+        GeofenceRegistry.Diff diff = registry.diff(Arrays.asList("SB_TANDANG_SORA", "NB_TANDANG_SORA"));
+
+        assertEquals(Collections.singletonList("NB_TANDANG_SORA"), diff.added);
+        assertEquals(Collections.singletonList("SB_SAN_SIMON"), diff.removed);
+    }
+
+    @Test
+    public void rollback_restoresPreviousState() {
+        GeofenceRegistry registry = new GeofenceRegistry();
+        registry.markAdded(Arrays.asList("NB_IBP_RD"));
+        registry.markRemoved(Arrays.asList("NB_IBP_RD"));
+
+        assertFalse(registry.isRegistered("NB_IBP_RD"));
+        assertEquals(0, registry.size());
+    }
+}
@@ -0,0 +1,301 @@
+package com.example.spd_acc_app.geofence;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for GeofenceWindowManager against a fake client that enforces the platform fence cap.
+ */
+public class GeofenceWindowManagerTest {
+
+    private static final double METRES_PER_DEGREE = 6371008.8 * Math.PI / 180.0;
+    private static final int FENCES = 1000;
+    private static final double SPACING_M = 200;
+    private static final double START_LAT = 14.70;
+    private static final double LON = 121.08;
+
+    /**
+     * Synchronous fake of the Play Services client; rejects adds beyond the 100-fence cap like
+     * GEOFENCE_TOO_MANY_GEOFENCES.
+     */
+    static class FakeClient implements GeofenceClient {
+        final Set<String> registered = new HashSet<>();
+        int calls;
+        int rejected;
+        int maxRegistered;
+
+        @Override
+        public void addGeofences(List<String> ids, Callback callback) {
+            calls++;
+            Set<String> after = new HashSet<>(registered);
+            after.addAll(ids);
+            if (after.size() > GeofenceWindowManager.PLATFORM_FENCE_LIMIT) {
+                rejected++;
+                callback.onComplete(false);
+                return;
+            }
+            registered.addAll(ids);
+            maxRegistered = Math.max(maxRegistered, registered.size());
+            callback.onComplete(true);
+        }
+
+        @Override
+        public void removeGeofences(List<String> ids, Callback callback) {
+            calls++;
+            registered.removeAll(ids);
+            callback.onComplete(true);
+        }
+    }
+
+    private GeofenceCatalog mCatalog;
+    private FakeClient mClient;
+
+    @Before
+    public void setUp() {
+        // 1000 fences every 200 m down a straight southbound road
+        final Map<String, String> values = new HashMap<>();
+        String[][] southbound = new String[FENCES][];
+        for (int i = 0; i < FENCES; i++) {
+            String key = "F" + i;
+            String lat = String.valueOf(START_LAT - i * SPACING_M / METRES_PER_DEGREE);
+            southbound[i] = new String[]{key, key};
+            values.put(key + "_ID", "SB_" + key);
+            values.put(key + "_LAT", lat);
+            values.put(key + "_LON", String.valueOf(LON));
+            values.put(key + "_RAD", "98f");
+            values.put(key + "_TRN_LAT", lat);
+            values.put(key + "_TRN_LON", String.valueOf(LON));
+        }
+
+        mCatalog = GeofenceCatalog.load(new GeofenceCatalog.ValueSource() {
+            @Override
+            public String get(String name) {
+                return values.get(name);
+            }
+        }, southbound, new String[0][]);
+        mClient = new FakeClient();
+    }
+
+    @Test
+    public void cityScaleCatalog_staysUnderPlatformCap() {
+        GeofenceWindowManager window = new GeofenceWindowManager(mCatalog, mClient, 20, 5000);
+        window.setCandidates(mCatalog.getStart(GeofenceCatalog.DIRECTION_SOUTHBOUND), mCatalog.getEnd(GeofenceCatalog.DIRECTION_SOUTHBOUND));
+
+        // Drive the whole road at 20 m/s with 1 Hz fixes
+        int seconds = (int) ((FENCES - 1) * SPACING_M / 20);
+        for (int t = 0; t < seconds; t++) {
+            double lat = START_LAT - 20.0 * t / METRES_PER_DEGREE;
+            window.update(lat, LON, 180, true, t * 1000L);
+
+            int next = Math.min(FENCES - 1, (int) Math.ceil(20.0 * t / SPACING_M));
+            if (t % 5 == 0) {
+                assertTrue("next fence ahead registered at t=" + t, mClient.registered.contains(mCatalog.getId(next)));
+            }
+        }
+
+        assertEquals(0, mClient.rejected);
+        assertTrue(mClient.maxRegistered <= 20);
+        assertEquals(mClient.registered.size(), window.getRegisteredCount());
+        assertEquals(mClient.calls, window.getCallCount());
+        // One remove + one add per 5 s interval at most
+        assertTrue(mClient.calls <= 2 * (seconds / 5 + 1));
+    }
+
+    @Test
+    public void rateLimit_skipsUpdatesWithinInterval() {
+        GeofenceWindowManager window = new GeofenceWindowManager(mCatalog, mClient, 10, 5000);
+        window.setCandidates(0, FENCES);
+
+        assertTrue(window.update(START_LAT, LON, 180, true, 0));
+        assertFalse(window.update(START_LAT - 1000 / METRES_PER_DEGREE, LON, 180, true, 1000));
+        assertTrue(window.update(START_LAT - 1000 / METRES_PER_DEGREE, LON, 180, true, 5000));
+    }
+
+    @Test
+    public void fencesBehind_areDropped() {
+        GeofenceWindowManager window = new GeofenceWindowManager(mCatalog, mClient, 5, 0);
+        window.setCandidates(0, FENCES);
+
+        // At fence 10 heading south: fences 10..14 ahead (10 still overlaps the vehicle)
+        window.update(mCatalog.getLatitude(10), LON, 180, true, 0);
+
+        for (int i = 10; i < 15; i++) {
+            assertTrue(window.isRegistered(mCatalog.getId(i)));
+        }
+        assertFalse(window.isRegistered(mCatalog.getId(9)));
+    }
+
+    @Test
+    public void farFromCandidates_stillRegistersNearest() {
+        GeofenceWindowManager window = new GeofenceWindowManager(mCatalog, mClient, 5, 0);
+        window.setCandidates(0, FENCES);
+
+        // 30 km north of the road, beyond SEARCH_DISTANCE: the search widens until it finds the window
+        window.update(START_LAT + 30000 / METRES_PER_DEGREE, LON, 180, true, 0);
+
+        assertEquals(5, window.getRegisteredCount());
+        for (int i = 0; i < 5; i++) {
+            assertTrue(window.isRegistered(mCatalog.getId(i)));
+        }
+    }
+
+    @Test
+    public void failedAdd_isRetriedAfterInterval() {
+        final boolean[] fail = {true};
+        FakeClient flaky = new FakeClient() {
+            @Override
+            public void addGeofences(List<String> ids, Callback callback) {
+                if (fail[0]) {
+                    calls++;
+                    callback.onComplete(false);
+                    return;
+                }
+                super.addGeofences(ids, callback);
+            }
+        };
+        GeofenceWindowManager window = new GeofenceWindowManager(mCatalog, flaky, 5, 5000);
+        window.setCandidates(0, FENCES);
+
+        window.update(START_LAT, LON, 180, true, 0);
+        assertEquals(0, window.getRegisteredCount());
+
+        fail[0] = false;
+        window.update(START_LAT, LON, 180, true, 5000);
+        assertEquals(5, window.getRegisteredCount());
+        assertEquals(5, flaky.registered.size());
+    }
+
+    @Test
+    public void restoredFences_areNotRegisteredAgain() {
+        GeofenceWindowManager previous = new GeofenceWindowManager(mCatalog, mClient, 5, 0);
+        previous.setCandidates(0, FENCES);
+        previous.update(mCatalog.getLatitude(10), LON, 180, true, 0);
+
+        // A restarted process takes over what the previous one registered, plus an ID no longer in the catalog
+        List<String> saved = previous.getRegisteredIds();
+        saved.add("SB_REMOVED");
+        mClient.registered.add("SB_REMOVED");
+        int calls = mClient.calls;
+
+        GeofenceWindowManager window = new GeofenceWindowManager(mCatalog, mClient, 5, 0);
+        window.restore(saved);
+        window.setCandidates(0, FENCES);
+        assertEquals(6, window.getRegisteredCount());
+        assertTrue(window.isRegistered("SB_REMOVED"));
+
+        // Same position: only the unknown fence crosses the binder, to be removed
+        assertTrue(window.update(mCatalog.getLatitude(10), LON, 180, true, 1000));
+        assertEquals(calls + 1, mClient.calls);
+        assertFalse(mClient.registered.contains("SB_REMOVED"));
+        assertEquals(5, window.getRegisteredCount());
+
+        // One fence further: one remove and one add of a single fence each
+        assertTrue(window.update(mCatalog.getLatitude(11), LON, 180, true, 2000));
+        assertEquals(calls + 3, mClient.calls);
+        assertEquals(5, mClient.registered.size());
+        assertFalse(window.isInFlight());
+    }
+
+    @Test
+    public void listener_toldWhenEachBatchCompletes() {
+        final List<List<String>> completed = new ArrayList<>();
+        final boolean[] fail = {false};
+        FakeClient flaky = new FakeClient() {
+            @Override
+            public void addGeofences(List<String> ids, Callback callback) {
+                if (fail[0]) {
+                    calls++;
+                    callback.onComplete(false);
+                    return;
+                }
+                super.addGeofences(ids, callback);
+            }
+        };
+        final GeofenceWindowManager[] window = new GeofenceWindowManager[1];
+        window[0] = new GeofenceWindowManager(mCatalog, flaky, 5, 0, new GeofenceWindowManager.Listener() {
+            @Override
+            public void onBatchComplete() {
+                assertFalse(window[0].isInFlight());
+                completed.add(window[0].getRegisteredIds());
+            }
+        });
+        window[0].setCandidates(0, FENCES);
+
+        // Add-only batch, then a remove and add batch
+        window[0].update(mCatalog.getLatitude(10), LON, 180, true, 0);
+        window[0].update(mCatalog.getLatitude(11), LON, 180, true, 1000);
+        assertEquals(2, completed.size());
+        assertEquals(5, completed.get(1).size());
+        assertTrue(completed.get(1).contains("SB_F15"));
+
+        // A failed add is reported too, with the rolled-back set
+        fail[0] = true;
+        window[0].update(mCatalog.getLatitude(12), LON, 180, true, 2000);
+        assertEquals(3, completed.size());
+        assertEquals(4, completed.get(2).size());
+
+        // Nothing to change: no batch, no callback
+        fail[0] = false;
+        window[0].update(mCatalog.getLatitude(12), LON, 180, true, 3000);
+        window[0].update(mCatalog.getLatitude(12), LON, 180, true, 4000);
+        assertEquals(4, completed.size());
+    }
+
+    @Test
+    public void clear_abandonsPendingBatch() {
+        final List<GeofenceClient.Callback> pending = new ArrayList<>();
+        FakeClient deferred = new FakeClient() {
+            @Override
+            public void addGeofences(List<String> ids, Callback callback) {
+                calls++;
+                registered.addAll(ids);
+                pending.add(callback);
+            }
+
+            @Override
+            public void removeGeofences(List<String> ids, Callback callback) {
+                calls++;
+                registered.removeAll(ids);
+                pending.add(callback);
+            }
+        };
+        GeofenceWindowManager window = new GeofenceWindowManager(mCatalog, deferred, 5, 0);
+        window.setCandidates(0, FENCES);
+        window.update(mCatalog.getLatitude(10), LON, 180, true, 0);
+        pending.remove(0).onComplete(true);
+
+        // Remove of the next window in flight when monitoring stops
+        assertTrue(window.update(mCatalog.getLatitude(20), LON, 180, true, 1000));
+        assertEquals(1, pending.size());
+        window.clear();
+        deferred.registered.clear();
+        int calls = deferred.calls;
+
+        // The late remove callback must not go on to add the new window
+        pending.remove(0).onComplete(true);
+        assertEquals(calls, deferred.calls);
+        assertTrue(deferred.registered.isEmpty());
+        assertEquals(0, window.getRegisteredCount());
+        assertFalse(window.isInFlight());
+
+        // The next update starts a fresh batch
+        assertTrue(window.update(mCatalog.getLatitude(20), LON, 180, true, 2000));
+        pending.remove(0).onComplete(true);
+        assertEquals(5, window.getRegisteredCount());
+        assertFalse(window.isInFlight());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void windowAbovePlatformLimit_isRejected() {
+        new GeofenceWindowManager(mCatalog, mClient, GeofenceWindowManager.PLATFORM_FENCE_LIMIT + 1, 0);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.spd_acc_app.geofence;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for RouteCorridor, checked against straight-line geometry and a full scan.
+ */
+public class RouteCorridorTest {
+
+    private static final double METRES_PER_DEGREE = 6371008.8 * Math.PI / 180.0;
+    private static final double LAT = 14.66;
+    private static final double LON = 121.06;
+
+    /**
+     * Straight southbound road along a meridian, a vertex every 100 m, a turn every 300 m (at 100, 400 and 700 m)
+     */
+    private static RouteCorridor straightRoad() {
+        int count = 9;
+        double[] lats = new double[count];
+        double[] lons = new double[count];
+        for (int i = 0; i < count; i++) {
+            lats[i] = LAT - i * 100 / METRES_PER_DEGREE;
+            lons[i] = LON;
+        }
+        double[] turnLats = {LAT - 700 / METRES_PER_DEGREE, LAT - 100 / METRES_PER_DEGREE, LAT - 400 / METRES_PER_DEGREE};
+        // Turns a few metres off the road are placed at their nearest point of it
+        double[] turnLons = {lonEast(5), LON, lonEast(-5)};
+        return new RouteCorridor(lats, lons, turnLats, turnLons, 50);
+    }
+
+    private static double latAt(double alongMetres) {
+        return LAT - alongMetres / METRES_PER_DEGREE;
+    }
+
+    private static double lonEast(double metres) {
+        return LON + metres / (METRES_PER_DEGREE * Math.cos(Math.toRadians(LAT)));
+    }
+
+    @Test
+    public void straightRoad_alongAndTurnDistances() {
+        RouteCorridor corridor = straightRoad();
+
+        assertEquals(800, corridor.getLength(), 0.01);
+        assertTrue(corridor.match(latAt(250), lonEast(10)));
+        assertEquals(250, corridor.getAlongDistance(), 0.01);
+        assertEquals(10, corridor.getCrossTrackDistance(), 0.01);
+
+        // Upcoming and passed turns, in caller order
+        assertEquals(2, corridor.getNextTurn());
+        assertEquals(150, corridor.getDistanceToTurn(2), 0.01);
+        assertEquals(450, corridor.getDistanceToTurn(0), 0.01);
+        assertEquals(-150, corridor.getDistanceToTurn(1), 0.01);
+    }
+
+    @Test
+    public void beyondEnds_extendFirstAndLastSegments() {
+        RouteCorridor corridor = straightRoad();
+
+        assertTrue(corridor.match(latAt(-300), LON));
+        assertEquals(-300, corridor.getAlongDistance(), 0.01);
+        assertEquals(1, corridor.getNextTurn());
+        assertEquals(400, corridor.getDistanceToTurn(1), 0.01);
+
+        assertTrue(corridor.match(latAt(1000), LON));
+        assertEquals(1000, corridor.getAlongDistance(), 0.01);
+        assertEquals(-1, corridor.getNextTurn());
+    }
+
+    @Test
+    public void passedTurn_notNextWhenStillClose() {
+        RouteCorridor corridor = straightRoad();
+
+        corridor.match(latAt(380), LON);
+        assertEquals(2, corridor.getNextTurn());
+        assertEquals(20, corridor.getDistanceToTurn(2), 0.01);
+
+        // 20 m past the turn: as close in a straight line, but behind
+        corridor.match(latAt(420), LON);
+        assertEquals(0, corridor.getNextTurn());
+        assertEquals(-20, corridor.getDistanceToTurn(2), 0.01);
+
+        // Reversing brings it back ahead
+        corridor.match(latAt(395), LON);
+        assertEquals(2, corridor.getNextTurn());
+    }
+
+    @Test
+    public void offCorridor_rescansOnReturn() {
+        RouteCorridor corridor = straightRoad();
+
+        assertTrue(corridor.match(latAt(50), LON));
+        assertFalse(corridor.match(latAt(60), lonEast(80)));
+        assertFalse(corridor.isMatched());
+        assertEquals(-1, corridor.getNextTurn());
+        assertEquals(50, corridor.getAlongDistance(), 0.01);
+
+        assertTrue(corridor.match(latAt(650), LON));
+        assertEquals(650, corridor.getAlongDistance(), 0.01);
+        assertEquals(6, corridor.getSegment());
+        assertEquals(2, corridor.getFullScans());
+    }
+
+    @Test
+    public void singleVertex_isAZeroLengthRoute() {
+        RouteCorridor corridor = new RouteCorridor(new double[]{LAT}, new double[]{LON}, new double[]{LAT}, new double[]{LON}, 50);
+
+        assertEquals(1, corridor.getSegmentCount());
+        assertTrue(corridor.match(latAt(30), LON));
+        assertEquals(0, corridor.getNextTurn());
+        assertEquals(30, corridor.getCrossTrackDistance(), 0.01);
+    }
+
+    @Test
+    public void windingRoad_incrementalMatchesFullScan() {
+        // A gently winding road of 2000 vertices, 20 m apart
+        Random random = new Random(2607);
+        int count = 2000;
+        double[] lats = new double[count];
+        double[] lons = new double[count];
+        double heading = 0;
+        double x = 0;
+        double y = 0;
+        for (int i = 0; i < count; i++) {
+            lats[i] = LAT + y / METRES_PER_DEGREE;
+            lons[i] = LON + x / (METRES_PER_DEGREE * Math.cos(Math.toRadians(LAT)));
+            heading += (random.nextDouble() - 0.5) * 0.1;
+            x += 20 * Math.sin(heading);
+            y += 20 * Math.cos(heading);
+        }
+        RouteCorridor incremental = new RouteCorridor(lats, lons, new double[0], new double[0], 30);
+
+        // Drive along at ~14 m per fix with a few metres of noise; a fresh corridor per fix always scans everything
+        int fixes = 0;
+        for (int i = 0; i + 1 < count; i++) {
+            for (double f = 0; f < 1; f += 0.7) {
+                double lat = lats[i] + f * (lats[i + 1] - lats[i]) + (random.nextDouble() - 0.5) * 4 / METRES_PER_DEGREE;
+                double lon = lons[i] + f * (lons[i + 1] - lons[i]) + (random.nextDouble() - 0.5) * 4 / METRES_PER_DEGREE;
+
+                RouteCorridor scanned = new RouteCorridor(lats, lons, new double[0], new double[0], 30);
+                assertTrue(incremental.match(lat, lon));
+                assertTrue(scanned.match(lat, lon));
+                assertEquals(scanned.getAlongDistance(), incremental.getAlongDistance(), 1e-6);
+                fixes++;
+            }
+        }
+
+        // O(1) amortised: one full scan, then a bounded number of segment steps per fix
+        assertEquals(1, incremental.getFullScans());
+        assertTrue(incremental.getSteps() <= 2 * fixes);
+    }
+}
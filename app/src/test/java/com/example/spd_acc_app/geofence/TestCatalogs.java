@@ -0,0 +1,59 @@
+package com.example.spd_acc_app.geofence;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * Test fixture: the GeofenceCatalog as the app would build it from res/values/strings.xml.
+ */
+public final class TestCatalogs {
+
+    private static Map<String, String> sStrings;
+
+    private TestCatalogs() {
+    }
+
+    public static synchronized Map<String, String> strings() {
+        if (sStrings == null) {
+            Map<String, String> strings = new HashMap<>();
+            try {
+                NodeList nodes = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                        .parse(new File("src/main/res/values/strings.xml"))
+                        .getElementsByTagName("string");
+
+                for (int i = 0; i < nodes.getLength(); i++) {
+                    Element element = (Element) nodes.item(i);
+                    strings.put(element.getAttribute("name"), element.getTextContent());
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException("Cannot read strings.xml", e);
+            }
+            sStrings = strings;
+        }
+        return sStrings;
+    }
+
+    public static GeofenceCatalog.ValueSource source() {
+        final Map<String, String> strings = strings();
+        return new GeofenceCatalog.ValueSource() {
+            @Override
+            public String get(String name) {
+                String value = strings.get(name);
+                if (value == null) {
+                    throw new IllegalArgumentException("No string resource " + name);
+                }
+                return value;
+            }
+        };
+    }
+
+    public static GeofenceCatalog load() {
+        return GeofenceCatalog.load(source());
+    }
+}
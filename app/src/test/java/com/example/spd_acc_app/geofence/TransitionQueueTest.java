@@ -0,0 +1,206 @@
+package com.example.spd_acc_app.geofence;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for TransitionQueue.
+ */
+public class TransitionQueueTest {
+
+    private static final int ENTER = 1;
+    private static final int EXIT = 2;
+    private static final long TIMEOUT_SECONDS = 5;
+
+    /**
+     * Records transitions; optionally blocks the worker until released
+     */
+    private static class RecordingHandler implements TransitionQueue.Handler {
+        final List<String> mTransitions = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch mStarted = new CountDownLatch(1);
+        final CountDownLatch mRelease;
+
+        RecordingHandler(CountDownLatch release) {
+            mRelease = release;
+        }
+
+        @Override
+        public void onTransition(String geofenceId, int transition, long timeMillis) {
+            mStarted.countDown();
+            try {
+                if (mRelease != null) {
+                    mRelease.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            mTransitions.add(geofenceId + ":" + transition + "@" + timeMillis);
+        }
+    }
+
+    /**
+     * Counts completions down on a latch
+     */
+    private static TransitionQueue.Completion countDown(final CountDownLatch latch) {
+        return new TransitionQueue.Completion() {
+            @Override
+            public void onComplete() {
+                latch.countDown();
+            }
+        };
+    }
+
+    @Test
+    public void transitions_handledInOrderOffTheCallingThread() throws InterruptedException {
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        final List<String> handled = Collections.synchronizedList(new ArrayList<String>());
+        TransitionQueue queue = new TransitionQueue(8, 5000, new TransitionQueue.Handler() {
+            @Override
+            public void onTransition(String geofenceId, int transition, long timeMillis) {
+                threads.add(Thread.currentThread());
+                handled.add(geofenceId + ":" + transition);
+            }
+        });
+
+        CountDownLatch done = new CountDownLatch(2);
+        assertEquals(2, queue.offer(new String[] {"SB_LUZON_AVE", "SB_SAN_SIMON"}, ENTER, 1000, countDown(done)));
+        assertEquals(1, queue.offer(new String[] {"SB_LUZON_AVE"}, EXIT, 2000, countDown(done)));
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertEquals(3, handled.size());
+        assertEquals("SB_LUZON_AVE:1", handled.get(0));
+        assertEquals("SB_SAN_SIMON:1", handled.get(1));
+        assertEquals("SB_LUZON_AVE:2", handled.get(2));
+        for (Thread thread : threads) {
+            assertNotSame(Thread.currentThread(), thread);
+        }
+        assertEquals(3, queue.getHandledCount());
+        assertTrue(queue.getMaxLatencyNanos() >= queue.getMeanLatencyNanos());
+        assertTrue(queue.getMeanLatencyNanos() > 0);
+    }
+
+    @Test
+    public void repeatedTransition_collapsedWithinWindow() throws InterruptedException {
+        RecordingHandler handler = new RecordingHandler(null);
+        TransitionQueue queue = new TransitionQueue(8, 5000, handler);
+
+        CountDownLatch done = new CountDownLatch(4);
+        queue.offer(new String[] {"NB_BATASAN"}, ENTER, 1000, countDown(done));
+        // Re-delivered ENTER: collapsed, and its completion runs without waiting for the worker
+        assertEquals(0, queue.offer(new String[] {"NB_BATASAN"}, ENTER, 3000, countDown(done)));
+        // A different transition of the same fence is kept
+        queue.offer(new String[] {"NB_BATASAN"}, EXIT, 4000, countDown(done));
+        // The same transition after the window is kept
+        queue.offer(new String[] {"NB_BATASAN"}, EXIT, 9000, countDown(done));
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertEquals(3, handler.mTransitions.size());
+        assertEquals("NB_BATASAN:1@1000", handler.mTransitions.get(0));
+        assertEquals("NB_BATASAN:2@4000", handler.mTransitions.get(1));
+        assertEquals("NB_BATASAN:2@9000", handler.mTransitions.get(2));
+        assertEquals(1, queue.getCollapsedCount());
+        assertEquals(3, queue.getHandledCount());
+    }
+
+    @Test
+    public void fullQueue_dropsAndCompletes() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingHandler handler = new RecordingHandler(release);
+        TransitionQueue queue = new TransitionQueue(2, 5000, handler);
+
+        // The worker takes the first transition and blocks, so two more fill the queue
+        CountDownLatch first = new CountDownLatch(1);
+        queue.offer(new String[] {"F0"}, ENTER, 0, countDown(first));
+        assertTrue(handler.mStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(2, queue.offer(new String[] {"F1", "F2"}, ENTER, 0, null));
+
+        CountDownLatch dropped = new CountDownLatch(1);
+        assertEquals(0, queue.offer(new String[] {"F3"}, ENTER, 0, countDown(dropped)));
+        assertTrue(dropped.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, queue.getDroppedCount());
+        assertFalse(first.await(0, TimeUnit.SECONDS));
+
+        release.countDown();
+        assertTrue(first.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void droppedTransition_isQueuedWhenRedelivered() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingHandler handler = new RecordingHandler(release);
+        TransitionQueue queue = new TransitionQueue(1, 5000, handler);
+
+        // The worker blocks on F0 and F1 fills the queue: the ENTER of F2 is dropped
+        queue.offer(new String[] {"F0"}, ENTER, 0, null);
+        assertTrue(handler.mStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, queue.offer(new String[] {"F1"}, ENTER, 0, null));
+        assertEquals(0, queue.offer(new String[] {"F2"}, ENTER, 1000, null));
+        assertEquals(1, queue.getDroppedCount());
+
+        release.countDown();
+
+        // Re-delivered by the OS within the collapse window, once there is room: handled, not collapsed. A completion
+        // per attempt, as a dropped attempt completes too.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        CountDownLatch done = new CountDownLatch(1);
+        while (queue.offer(new String[] {"F2"}, ENTER, 2000, countDown(done)) == 0) {
+            assertEquals(0, queue.getCollapsedCount());
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(10);
+            done = new CountDownLatch(1);
+        }
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertTrue(handler.mTransitions.contains("F2:" + ENTER + "@2000"));
+        assertEquals(0, queue.getCollapsedCount());
+    }
+
+    @Test
+    public void failingHandler_completesAndKeepsWorking() throws InterruptedException {
+        final List<String> handled = Collections.synchronizedList(new ArrayList<String>());
+        TransitionQueue queue = new TransitionQueue(8, 5000, new TransitionQueue.Handler() {
+            @Override
+            public void onTransition(String geofenceId, int transition, long timeMillis) {
+                if ("F0".equals(geofenceId)) {
+                    throw new IllegalStateException("unknown fence");
+                }
+                handled.add(geofenceId);
+            }
+        });
+
+        // The expected warning is not printed
+        Logger logger = Logger.getLogger("TransitionQueue");
+        logger.setUseParentHandlers(false);
+        try {
+            CountDownLatch done = new CountDownLatch(2);
+            assertEquals(2, queue.offer(new String[] {"F0", "F1"}, ENTER, 0, countDown(done)));
+            assertEquals(1, queue.offer(new String[] {"F2"}, ENTER, 0, countDown(done)));
+            assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        } finally {
+            logger.setUseParentHandlers(true);
+        }
+
+        assertEquals(Arrays.asList("F1", "F2"), handled);
+        assertEquals(1, queue.getFailedCount());
+        assertEquals(3, queue.getHandledCount());
+    }
+
+    @Test
+    public void emptyEvent_completesImmediately() {
+        TransitionQueue queue = new TransitionQueue(2, 5000, new RecordingHandler(null));
+        CountDownLatch done = new CountDownLatch(1);
+
+        assertEquals(0, queue.offer(new String[0], ENTER, 0, countDown(done)));
+        assertEquals(0, done.getCount());
+        assertEquals(0, queue.getMeanLatencyNanos());
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.spd_acc_app.location;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for FixBatch.
+ */
+public class FixBatchTest {
+
+    @Test
+    public void sortByTime_ordersAllColumns() {
+        FixBatch batch = new FixBatch();
+        batch.add(3000, 3, 30, 3f, true, 30f, false, 3f);
+        batch.add(1000, 1, 10, 1f, false, 10f, true, 1f);
+        batch.add(2000, 2, 20, 2f, true, 20f, true, 2f);
+
+        batch.sortByTime();
+
+        assertEquals(3, batch.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1000 * (i + 1), batch.getTime(i));
+            assertEquals(i + 1, batch.getLatitude(i), 0);
+            assertEquals(10 * (i + 1), batch.getLongitude(i), 0);
+            assertEquals(i + 1, batch.getSpeed(i), 0);
+            assertEquals(10 * (i + 1), batch.getBearing(i), 0);
+            assertEquals(i + 1, batch.getAccuracy(i), 0);
+        }
+        assertFalse(batch.hasSpeed(0));
+        assertTrue(batch.hasBearing(0));
+        assertFalse(batch.hasBearing(2));
+    }
+
+    @Test
+    public void sortByTime_isStableAndGrows() {
+        FixBatch batch = new FixBatch();
+        // More fixes than the initial capacity, in reverse pairs with equal times
+        for (int i = 20; i > 0; i--) {
+            batch.add(i * 1000, i, 0, 0, true, 0, true, 5);
+            batch.add(i * 1000, -i, 0, 0, true, 0, true, 5);
+        }
+
+        batch.sortByTime();
+
+        assertEquals(40, batch.size());
+        for (int i = 0; i < 40; i += 2) {
+            assertEquals(batch.getTime(i), batch.getTime(i + 1));
+            assertTrue(batch.getLatitude(i) > 0);
+            assertTrue(batch.getLatitude(i + 1) < 0);
+            if (i > 0) {
+                assertTrue(batch.getTime(i) > batch.getTime(i - 1));
+            }
+        }
+    }
+
+    @Test
+    public void clear_reusesBuffers() {
+        FixBatch batch = new FixBatch();
+        batch.add(2000, 2, 0, 0, true, 0, true, 5);
+        batch.add(1000, 1, 0, 0, true, 0, true, 5);
+        batch.sortByTime();
+
+        batch.clear();
+        batch.add(5000, 5, 0, 0, true, 0, true, 5);
+
+        assertEquals(1, batch.size());
+        assertEquals(5000, batch.getTime(0));
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.spd_acc_app.location;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for FixRingBuffer, checked against a brute-force scan of the window.
+ */
+public class FixRingBufferTest {
+
+    @Test
+    public void empty_hasNoStatistics() {
+        FixRingBuffer buffer = new FixRingBuffer(8, 5000);
+
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.getWindowCount());
+        assertTrue(Double.isNaN(buffer.getSpeedMean()));
+        assertTrue(Double.isNaN(buffer.getAccelerationMax()));
+    }
+
+    @Test
+    public void accessByAge_wrapsAround() {
+        FixRingBuffer buffer = new FixRingBuffer(4, 60000);
+        for (int i = 0; i < 10; i++) {
+            buffer.append(i * 1000L, i, -i, i, i * 10, 5, 0);
+        }
+
+        assertEquals(4, buffer.size());
+        assertEquals(9000, buffer.getTime(0));
+        assertEquals(6000, buffer.getTime(3));
+        assertEquals(-7, buffer.getLongitude(2), 0);
+        assertEquals(80, buffer.getBearing(1), 0);
+        assertEquals(4, buffer.getWindowCount());
+        assertEquals(6 + 7 + 8 + 9, buffer.getSpeedSum(), 1e-9);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void accessBeyondSize_throws() {
+        FixRingBuffer buffer = new FixRingBuffer(4, 60000);
+        buffer.append(0, 0, 0, 0, 0, 0, 0);
+
+        buffer.getTime(1);
+    }
+
+    @Test
+    public void windowStatistics_matchBruteForce() {
+        Random random = new Random(7);
+        int capacity = 32;
+        long window = 10000;
+        int count = 5000;
+        FixRingBuffer buffer = new FixRingBuffer(capacity, window);
+        long[] times = new long[count];
+        float[] speeds = new float[count];
+        double[] accelerations = new double[count];
+        long time = 0;
+
+        for (int i = 0; i < count; i++) {
+            // Irregular spacing, including bursts and gaps longer than the window
+            time += random.nextInt(10) == 0 ? 12000 : 100 + random.nextInt(1500);
+            times[i] = time;
+            speeds[i] = (float) (random.nextDouble() * 20);
+            accelerations[i] = random.nextGaussian();
+            buffer.append(time, 0, 0, speeds[i], 0, 5, accelerations[i]);
+
+            int inWindow = 0;
+            double speedSum = 0;
+            double accelerationMin = Double.MAX_VALUE;
+            float speedMax = -Float.MAX_VALUE;
+            for (int j = i; j >= 0 && j > i - capacity && time - times[j] <= window; j--) {
+                inWindow++;
+                speedSum += speeds[j];
+                speedMax = Math.max(speedMax, speeds[j]);
+                accelerationMin = Math.min(accelerationMin, accelerations[j]);
+            }
+
+            assertEquals(inWindow, buffer.getWindowCount());
+            assertEquals(speedSum, buffer.getSpeedSum(), 1e-6);
+            assertEquals(speedMax, buffer.getSpeedMax(), 0);
+            assertEquals(accelerationMin, buffer.getAccelerationMin(), 0);
+        }
+    }
+
+    @Test
+    public void clear_resetsEverything() {
+        FixRingBuffer buffer = new FixRingBuffer(4, 60000);
+        buffer.append(0, 1, 1, 10, 0, 5, 2);
+        buffer.clear();
+        buffer.append(1000, 2, 2, 3, 0, 5, -1);
+
+        assertEquals(1, buffer.size());
+        assertEquals(3, buffer.getSpeedMin(), 0);
+        assertEquals(3, buffer.getSpeedMax(), 0);
+        assertEquals(-1, buffer.getAccelerationMean(), 0);
+    }
+}
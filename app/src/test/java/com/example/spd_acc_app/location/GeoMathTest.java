@@ -0,0 +1,70 @@
+package com.example.spd_acc_app.location;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for GeoMath, checked against WGS84 ellipsoidal distances (the Vincenty inverse solution that
+ * Location.distanceTo() computes) between Commonwealth Ave points.
+ */
+public class GeoMathTest {
+
+    /**
+     * {latitude1, longitude1, latitude2, longitude2, ellipsoidal distance in metres}
+     */
+    private static final double[][] REFERENCE = {
+            {14.665477, 121.070501, 14.663925, 121.06815, 305.973},     // Luzon Ave to Tandang Sora (SB)
+            {14.663925, 121.06815, 14.66175, 121.064935, 421.717},      // Tandang Sora to Central Ave (SB)
+            {14.677789, 121.083036, 14.677699, 121.083218, 21.987},     // Don Antonio (SB) to Amsterdam Ave (NB)
+            {14.663925, 121.06815, 14.664013, 121.068848, 75.814},      // Tandang Sora SB to NB
+            {14.686835, 121.087052, 14.690555, 121.087172, 411.805},    // Batasan to San Simon
+            {14.665477, 121.070501, 14.665747, 121.070501, 29.874},     // Due north
+            {14.665477, 121.070501, 14.665477, 121.070601, 10.772},     // Due east
+            {14.654004, 121.053776, 14.66175, 121.064935, 1476.299},    // University Ave to Central Ave
+    };
+
+    // A sphere differs from the ellipsoid by up to ~0.5% north-south at this latitude
+    private static final double RELATIVE_TOLERANCE = 0.006;
+
+    @Test
+    public void equirectangularAndHaversine_matchEllipsoidalReference() {
+        for (double[] row : REFERENCE) {
+            double expected = row[4];
+            double equirectangular = GeoMath.equirectangular(row[0], row[1], row[2], row[3]);
+            double haversine = GeoMath.haversine(row[0], row[1], row[2], row[3]);
+
+            assertEquals(expected, equirectangular, expected * RELATIVE_TOLERANCE);
+            assertEquals(expected, haversine, expected * RELATIVE_TOLERANCE);
+
+            // Below a few kilometres both spherical variants agree to the centimetre
+            assertEquals(haversine, equirectangular, 0.01);
+        }
+    }
+
+    @Test
+    public void cachedCosine_ofFixedPointIsAsAccurate() {
+        for (double[] row : REFERENCE) {
+            double cosLatitude = GeoMath.cosLatitude(row[0]);
+            double distance = Math.sqrt(GeoMath.distanceSquared(row[0], row[1], cosLatitude, row[2], row[3]));
+
+            assertEquals(row[4], distance, row[4] * RELATIVE_TOLERANCE);
+            assertEquals(GeoMath.equirectangular(row[0], row[1], row[2], row[3]), distance, 0.05);
+        }
+    }
+
+    @Test
+    public void isWithin_comparesWithoutSquareRoot() {
+        double cosLatitude = GeoMath.cosLatitude(14.665477);
+
+        assertTrue(GeoMath.isWithin(14.665477, 121.070501, cosLatitude, 14.665747, 121.070501, 30.1));
+        assertFalse(GeoMath.isWithin(14.665477, 121.070501, cosLatitude, 14.665747, 121.070501, 29.9));
+        assertTrue(GeoMath.isWithin(14.665477, 121.070501, cosLatitude, 14.665477, 121.070501, 0));
+    }
+
+    @Test
+    public void samePoint_isZero() {
+        assertEquals(0, GeoMath.equirectangular(14.66, 121.06, 14.66, 121.06), 0);
+        assertEquals(0, GeoMath.haversine(14.66, 121.06, 14.66, 121.06), 0);
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.spd_acc_app.location;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for SamplingPolicy.
+ */
+public class SamplingPolicyTest {
+
+    private static final double UNKNOWN = Double.POSITIVE_INFINITY;
+
+    @Test
+    public void startsFast() {
+        SamplingPolicy policy = new SamplingPolicy();
+
+        assertEquals(SamplingPolicy.MODE_APPROACH, policy.getMode());
+        assertEquals(1000, policy.getIntervalMillis());
+        assertEquals(SamplingPolicy.PRIORITY_HIGH_ACCURACY, policy.getPriority());
+    }
+
+    @Test
+    public void cruise_onlyAfterDowngradeDelay() {
+        SamplingPolicy policy = new SamplingPolicy();
+        long time = 0;
+
+        // 2 km from the next fence at 15 m/s: more than a minute away
+        for (; time < SamplingPolicy.DOWNGRADE_DELAY_MILLIS; time += 1000) {
+            assertFalse(policy.update(time, 15, 2000));
+        }
+        assertTrue(policy.update(time, 15, 2000));
+        assertEquals(SamplingPolicy.MODE_CRUISE, policy.getMode());
+        assertEquals(3000, policy.getIntervalMillis());
+    }
+
+    @Test
+    public void approach_isImmediate() {
+        SamplingPolicy policy = cruising();
+
+        // 60 s away at 20 m/s
+        assertTrue(policy.update(100000, 20, 1200));
+        assertEquals(SamplingPolicy.MODE_APPROACH, policy.getMode());
+    }
+
+    @Test
+    public void approach_hysteresisKeepsRequestStable() {
+        SamplingPolicy policy = new SamplingPolicy();
+
+        // Distance noise around the enter threshold, inside the leave threshold: never re-issued
+        for (long time = 0; time < 120000; time += 1000) {
+            double distance = SamplingPolicy.APPROACH_ENTER_M + ((time / 1000) % 2 == 0 ? -50 : 250);
+            assertFalse(policy.update(time, 5, distance));
+        }
+        assertEquals(0, policy.getChangeCount());
+    }
+
+    @Test
+    public void flappingTarget_doesNotDowngrade() {
+        SamplingPolicy policy = new SamplingPolicy();
+
+        // Alternating near/far every 10 s never holds the slower mode long enough
+        for (long time = 0; time < 300000; time += 1000) {
+            boolean near = (time / 10000) % 2 == 0;
+            policy.update(time, 5, near ? 100 : 2000);
+        }
+        assertEquals(SamplingPolicy.MODE_APPROACH, policy.getMode());
+        assertEquals(0, policy.getChangeCount());
+    }
+
+    @Test
+    public void remote_farFromEveryFence() {
+        SamplingPolicy policy = new SamplingPolicy();
+        long time = 0;
+        for (; time <= SamplingPolicy.DOWNGRADE_DELAY_MILLIS; time += 1000) {
+            policy.update(time, 15, 6000);
+        }
+        assertEquals(SamplingPolicy.MODE_REMOTE, policy.getMode());
+        assertEquals(SamplingPolicy.PRIORITY_BALANCED, policy.getPriority());
+
+        // Between the leave and enter thresholds: stays remote
+        assertFalse(policy.update(time, 15, 4500));
+        // Closer than the leave threshold (and not yet approaching): back to cruise immediately
+        assertTrue(policy.update(time + 1000, 15, 3900));
+        assertEquals(SamplingPolicy.MODE_CRUISE, policy.getMode());
+    }
+
+    @Test
+    public void parked_afterStandingStill_andLeftAtOnce() {
+        SamplingPolicy policy = cruising();
+        long time = 100000;
+
+        // Standing still for the parked delay plus the downgrade delay
+        long until = time + SamplingPolicy.PARKED_DELAY_MILLIS + SamplingPolicy.DOWNGRADE_DELAY_MILLIS;
+        for (; time <= until; time += 1000) {
+            policy.update(time, 0.1, 2000);
+        }
+        assertEquals(SamplingPolicy.MODE_PARKED, policy.getMode());
+        assertEquals(30000, policy.getIntervalMillis());
+
+        // Creeping below moving speed keeps it parked; driving off switches back at once
+        assertFalse(policy.update(time, 1.5, 2000));
+        assertTrue(policy.update(time + 30000, 10, 2000));
+        assertEquals(SamplingPolicy.MODE_CRUISE, policy.getMode());
+    }
+
+    @Test
+    public void parked_notNearFence() {
+        SamplingPolicy policy = new SamplingPolicy();
+
+        // Waiting at the light next to a turn keeps sampling fast
+        for (long time = 0; time < 300000; time += 1000) {
+            assertFalse(policy.update(time, 0, 50));
+        }
+        assertEquals(SamplingPolicy.MODE_APPROACH, policy.getMode());
+    }
+
+    @Test
+    public void parked_onlyBeyondParkedEnterDistance() {
+        SamplingPolicy policy = new SamplingPolicy();
+
+        // Standing for five minutes within reach of a fence: never parked
+        for (long time = 0; time < 300000; time += 1000) {
+            policy.update(time, 0, SamplingPolicy.PARKED_ENTER_M - 100);
+        }
+        assertEquals(SamplingPolicy.MODE_CRUISE, policy.getMode());
+    }
+
+    @Test
+    public void drivingOffFromParked_landsAFixInsideTheFence() {
+        SamplingPolicy policy = new SamplingPolicy();
+        double position = SamplingPolicy.PARKED_ENTER_M + 1;
+        long time = 0;
+        for (; policy.getMode() != SamplingPolicy.MODE_PARKED; time += 1000) {
+            assertTrue(time < 600000);
+            policy.update(time, 0, position);
+        }
+        assertEquals(0, policy.getMaxWaitMillis());
+
+        // Driving off at 60 km/h right after a parked fix, straight through a fence 100 m across. The policy only sees
+        // a fix once its batch is delivered, up to getMaxWaitMillis() after the first fix of the batch.
+        double speed = 60 / 3.6;
+        boolean inside = false;
+        long batchStart = -1;
+        while (position > -100) {
+            long interval = policy.getIntervalMillis();
+            time += interval;
+            position -= speed * interval / 1000.0;
+            inside |= position <= 0;
+
+            if (batchStart < 0) {
+                batchStart = time;
+            }
+            if (time - batchStart >= policy.getMaxWaitMillis()) {
+                policy.update(time, speed, Math.max(0, position));
+                batchStart = -1;
+            }
+        }
+        assertTrue(inside);
+    }
+
+    @Test
+    public void unknownDistance_staysOnHighAccuracy() {
+        SamplingPolicy policy = new SamplingPolicy();
+        long time = 0;
+        for (; time <= SamplingPolicy.DOWNGRADE_DELAY_MILLIS; time += 1000) {
+            policy.update(time, 10, UNKNOWN);
+        }
+        assertEquals(SamplingPolicy.MODE_CRUISE, policy.getMode());
+
+        // Waiting at a light before the trajectory is known: neither remote nor parked
+        long until = time + SamplingPolicy.PARKED_DELAY_MILLIS + SamplingPolicy.DOWNGRADE_DELAY_MILLIS;
+        for (; time <= until; time += 1000) {
+            assertFalse(policy.update(time, 0, UNKNOWN));
+        }
+        assertEquals(SamplingPolicy.MODE_CRUISE, policy.getMode());
+        assertEquals(SamplingPolicy.PRIORITY_HIGH_ACCURACY, policy.getPriority());
+
+        policy.reset();
+        assertEquals(SamplingPolicy.MODE_APPROACH, policy.getMode());
+    }
+
+    private static SamplingPolicy cruising() {
+        SamplingPolicy policy = new SamplingPolicy();
+        for (long time = 0; time <= SamplingPolicy.DOWNGRADE_DELAY_MILLIS; time += 1000) {
+            policy.update(time, 15, 2000);
+        }
+        assertEquals(SamplingPolicy.MODE_CRUISE, policy.getMode());
+        return policy;
+    }
+}
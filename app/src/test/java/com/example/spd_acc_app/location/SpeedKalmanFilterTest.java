@@ -0,0 +1,139 @@
+package com.example.spd_acc_app.location;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for SpeedKalmanFilter on synthetic noisy 1 Hz traces.
+ */
+public class SpeedKalmanFilterTest {
+
+    private static final double METRES_PER_DEGREE = 6371008.8 * Math.PI / 180.0;
+    private static final double START_LAT = 14.70;
+    private static final double LON = 121.08;
+    private static final double SPEED_NOISE = 0.7;
+    private static final double POSITION_NOISE = 4;
+
+    @Test
+    public void constantSpeed_accelerationStaysBelowThreshold() {
+        Random random = new Random(1);
+        SpeedKalmanFilter filter = new SpeedKalmanFilter();
+        int rawFlips = 0;
+        int filteredFlips = 0;
+        double squaredError = 0;
+        double previousRaw = Double.NaN;
+
+        for (int t = 0; t < 600; t++) {
+            double truthSpeed = 11;
+            double noisySpeed = truthSpeed + random.nextGaussian() * SPEED_NOISE;
+            feed(filter, random, t, 11.0 * t, noisySpeed);
+
+            if (!Double.isNaN(previousRaw) && Math.abs(noisySpeed - previousRaw) > 1.47) {
+                rawFlips++;
+            }
+            previousRaw = noisySpeed;
+
+            if (t > 10) {
+                squaredError += (filter.getSpeed() - truthSpeed) * (filter.getSpeed() - truthSpeed);
+                if (Math.abs(filter.getAcceleration()) > 1.47) {
+                    filteredFlips++;
+                }
+            }
+        }
+
+        assertTrue("raw deltas should cross the threshold often, got " + rawFlips, rawFlips > 50);
+        assertEquals(0, filteredFlips);
+        assertTrue(Math.sqrt(squaredError / (600 - 11)) < SPEED_NOISE * 0.75);
+    }
+
+    @Test
+    public void constantAcceleration_isTracked() {
+        Random random = new Random(2);
+        SpeedKalmanFilter filter = new SpeedKalmanFilter();
+        double accel = 2.0;
+
+        for (int t = 0; t <= 12; t++) {
+            double truthSpeed = accel * t;
+            feed(filter, random, t, 0.5 * accel * t * t, truthSpeed + random.nextGaussian() * SPEED_NOISE);
+        }
+
+        assertEquals(24, filter.getSpeed(), 1.5);
+        assertEquals(accel, filter.getAcceleration(), 0.5);
+        assertTrue(filter.getAcceleration() > 1.96 - 0.5);
+    }
+
+    @Test
+    public void hardBrake_isDetectedWithinFewFixes() {
+        Random random = new Random(3);
+        SpeedKalmanFilter filter = new SpeedKalmanFilter();
+        double distance = 0;
+        int detectedAt = -1;
+
+        for (int t = 0; t < 40; t++) {
+            double truthSpeed = t < 20 ? 16 : Math.max(0, 16 - 4.0 * (t - 20));
+            distance += truthSpeed;
+            feed(filter, random, t, distance, truthSpeed + random.nextGaussian() * SPEED_NOISE);
+
+            if (detectedAt < 0 && filter.getAcceleration() < -1.96) {
+                detectedAt = t;
+            }
+        }
+
+        assertTrue("braking detected at t=" + detectedAt, detectedAt >= 20 && detectedAt <= 23);
+        assertEquals(0, filter.getSpeed(), 1.0);
+    }
+
+    @Test
+    public void stoppedWithJitter_settlesAtZero() {
+        Random random = new Random(4);
+        SpeedKalmanFilter filter = new SpeedKalmanFilter();
+
+        for (int t = 0; t < 120; t++) {
+            feed(filter, random, t, 0, Math.abs(random.nextGaussian() * 0.3));
+        }
+
+        assertEquals(0, filter.getSpeed(), 0.8);
+        assertEquals(0, filter.getAcceleration(), 0.3);
+    }
+
+    @Test
+    public void gapAndDuplicate_areHandled() {
+        SpeedKalmanFilter filter = new SpeedKalmanFilter();
+
+        filter.update(0, START_LAT, LON, 10, true, 5);
+        filter.update(0, START_LAT, LON, 50, true, 5);
+        assertEquals(10, filter.getSpeed(), 0);
+
+        filter.update(SpeedKalmanFilter.MAX_GAP_MILLIS + 1, START_LAT, LON, 3, true, 5);
+        assertEquals(3, filter.getSpeed(), 0);
+        assertEquals(0, filter.getAcceleration(), 0);
+    }
+
+    @Test
+    public void slowestSampling_keepsTrackingAcceleration() {
+        Random random = new Random(5);
+        SpeedKalmanFilter filter = new SpeedKalmanFilter();
+        double accel = 0.2;
+        long time = 0;
+
+        // Fixes at the MODE_PARKED interval with delivery jitter: no gap resets the filter
+        for (int fix = 0; fix < 8; fix++) {
+            double t = time / 1000.0;
+            double lat = START_LAT - (0.5 * accel * t * t + random.nextGaussian() * POSITION_NOISE) / METRES_PER_DEGREE;
+            filter.update(time, lat, LON, (float) (accel * t + random.nextGaussian() * SPEED_NOISE), true, (float) POSITION_NOISE);
+            time += SamplingPolicy.SLOWEST_INTERVAL_MILLIS + random.nextInt(5000);
+        }
+
+        assertTrue(SpeedKalmanFilter.MAX_GAP_MILLIS > SamplingPolicy.SLOWEST_INTERVAL_MILLIS + 5000);
+        assertEquals(accel, filter.getAcceleration(), 0.1);
+    }
+
+    private static void feed(SpeedKalmanFilter filter, Random random, int t, double distanceSouth, double speed) {
+        double lat = START_LAT - (distanceSouth + random.nextGaussian() * POSITION_NOISE) / METRES_PER_DEGREE;
+        double lon = LON + random.nextGaussian() * POSITION_NOISE / METRES_PER_DEGREE;
+        filter.update(t * 1000L, lat, lon, (float) Math.max(0, speed), true, (float) POSITION_NOISE);
+    }
+}
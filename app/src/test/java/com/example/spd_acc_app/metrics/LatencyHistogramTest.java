@@ -0,0 +1,116 @@
+package com.example.spd_acc_app.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for LatencyHistogram.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_coverEveryValueWithBoundedError() {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 100, 1000, 123456789, Long.MAX_VALUE / 3, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(bucket >= 0 && bucket < LatencyHistogram.BUCKET_COUNT);
+
+            long upper = LatencyHistogram.upperBoundOf(bucket);
+            assertTrue(upper >= value);
+            assertTrue(upper - value <= value / LatencyHistogram.SUB_BUCKETS);
+            if (bucket > 0) {
+                assertTrue(LatencyHistogram.upperBoundOf(bucket - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void buckets_areContiguous() {
+        for (int bucket = 1; bucket < LatencyHistogram.BUCKET_COUNT - 1; bucket++) {
+            long upper = LatencyHistogram.upperBoundOf(bucket);
+            if (upper == Long.MAX_VALUE) {
+                break;
+            }
+            assertEquals(bucket, LatencyHistogram.bucketOf(upper));
+            assertEquals(bucket + 1, LatencyHistogram.bucketOf(upper + 1));
+        }
+    }
+
+    @Test
+    public void percentiles_fromUniformValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500500, histogram.getMean());
+        assertEquals(1000000, histogram.getMax());
+        assertEquals(500000, histogram.getPercentile(50), 500000 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(990000, histogram.getPercentile(99), 990000 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(1000000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void emptyAndReset_reportZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(0, histogram.getMean());
+
+        histogram.record(-5);
+        histogram.record(42);
+        assertEquals(2, histogram.getCount());
+        assertEquals(21, histogram.getMean());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void concurrentRecords_areAllCounted() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final int perThread = 100000;
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final long value = (t + 1) * 100;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        histogram.record(value);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(threads.length * perThread, histogram.getCount());
+        assertEquals(400, histogram.getMax());
+        assertEquals(250, histogram.getMean());
+    }
+
+    @Test
+    public void record_countsEveryEvent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int events = 100000;
+        long sum = 0;
+
+        for (int i = 0; i < events; i++) {
+            histogram.record(i & 0xFFFF);
+            sum += i & 0xFFFF;
+        }
+        // A clock step backwards counts as a zero duration
+        histogram.record(-5);
+
+        assertEquals(events + 1, histogram.getCount());
+        assertEquals(0xFFFF, histogram.getMax());
+        assertEquals(sum / (events + 1), histogram.getMean());
+        assertEquals(0xFFFF, histogram.getPercentile(100));
+    }
+}
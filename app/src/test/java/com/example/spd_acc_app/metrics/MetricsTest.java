@@ -0,0 +1,50 @@
+package com.example.spd_acc_app.metrics;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for Metrics.
+ */
+public class MetricsTest {
+
+    @Test
+    public void namesCoverEveryKey() {
+        assertEquals(Metrics.STAGE_COUNT, Metrics.STAGE_NAMES.length);
+        assertEquals(Metrics.COUNTER_COUNT, Metrics.COUNTER_NAMES.length);
+    }
+
+    @Test
+    public void format_reportsStagesInMicrosAndCounters() {
+        Metrics metrics = new Metrics();
+        metrics.record(Metrics.STAGE_FIX, 12345);
+        metrics.increment(Metrics.COUNTER_FIXES_PROCESSED);
+        metrics.add(Metrics.COUNTER_FIXES_DROPPED, 3);
+
+        String report = metrics.format(new StringBuilder()).toString();
+
+        assertTrue(report.startsWith("stage: n mean p50 p90 p99 max (us)\n"));
+        assertTrue(report, report.contains("\nfix: 1 12.3 12.3 12.3 12.3 12.3\n"));
+        assertTrue(report, report.contains("\nbind: 0 0.0 0.0 0.0 0.0 0.0\n"));
+        assertTrue(report, report.contains("\nfixes processed: 1\n"));
+        assertTrue(report, report.contains("\nfixes dropped: 3\n"));
+    }
+
+    @Test
+    public void writeTo_matchesFormat_andResetClears() throws Exception {
+        Metrics metrics = new Metrics();
+        metrics.record(Metrics.STAGE_RECEIVER, 5000);
+        metrics.increment(Metrics.COUNTER_NOTIFICATIONS_POSTED);
+
+        StringWriter writer = new StringWriter();
+        metrics.writeTo(writer);
+        assertEquals(metrics.format(new StringBuilder()).toString(), writer.toString());
+
+        metrics.reset();
+        assertEquals(0, metrics.getHistogram(Metrics.STAGE_RECEIVER).getCount());
+        assertEquals(0, metrics.getCount(Metrics.COUNTER_NOTIFICATIONS_POSTED));
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.spd_acc_app.notification;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for NotificationThrottle.
+ */
+public class NotificationThrottleTest {
+
+    private static final int TURN = 2002;
+    private static final int TRANSITION = 2001;
+
+    private NotificationThrottle mThrottle;
+
+    @Before
+    public void setUp() {
+        mThrottle = new NotificationThrottle();
+        mThrottle.setPolicy(TURN, 30000, 120000);
+        mThrottle.setPolicy(TRANSITION, 10000, 60000);
+    }
+
+    @Test
+    public void repeatedTurnAlert_postedOnce() {
+        // One request per fix for 20 s within the turn radius
+        assertEquals(NotificationThrottle.DECISION_ALERT, mThrottle.decide(TURN, "NEARING TURN", "Nearing Luzon Ave right turn", 0));
+        for (long time = 1000; time <= 20000; time += 1000) {
+            assertEquals(NotificationThrottle.DECISION_SKIP, mThrottle.decide(TURN, "NEARING TURN", "Nearing Luzon Ave right turn", time));
+        }
+
+        assertEquals(1, mThrottle.getCount(NotificationThrottle.DECISION_ALERT));
+        assertEquals(20, mThrottle.getCount(NotificationThrottle.DECISION_SKIP));
+    }
+
+    @Test
+    public void newContent_withinInterval_updatesSilently() {
+        assertEquals(NotificationThrottle.DECISION_ALERT, mThrottle.decide(TRANSITION, "Entering Location", "Entering on: Luzon Ave", 0));
+        assertEquals(NotificationThrottle.DECISION_UPDATE, mThrottle.decide(TRANSITION, "Dwelling Location", "Dwelling on: Luzon Ave", 3000));
+        // The interval counts from the last alert, not the last update
+        assertEquals(NotificationThrottle.DECISION_ALERT, mThrottle.decide(TRANSITION, "Exiting Location", "Exiting: Luzon Ave", 10000));
+    }
+
+    @Test
+    public void duplicate_afterWindow_alertsAgain() {
+        mThrottle.decide(TURN, "NEARING TURN", "Nearing Batasan right turn", 0);
+
+        assertEquals(NotificationThrottle.DECISION_SKIP, mThrottle.decide(TURN, "NEARING TURN", "Nearing Batasan right turn", 119999));
+        assertEquals(NotificationThrottle.DECISION_ALERT, mThrottle.decide(TURN, "NEARING TURN", "Nearing Batasan right turn", 120000));
+    }
+
+    @Test
+    public void idsAreIndependent() {
+        mThrottle.decide(TURN, "NEARING TURN", "a", 0);
+
+        assertEquals(NotificationThrottle.DECISION_ALERT, mThrottle.decide(TRANSITION, "NEARING TURN", "a", 0));
+        // No policy: never throttled
+        assertEquals(NotificationThrottle.DECISION_ALERT, mThrottle.decide(1, "t", "b", 0));
+        assertEquals(NotificationThrottle.DECISION_ALERT, mThrottle.decide(1, "t", "b", 0));
+    }
+
+    @Test
+    public void manyPolicies_grow() {
+        for (int id = 0; id < 20; id++) {
+            mThrottle.setPolicy(id, 1000, 1000);
+        }
+        for (int id = 0; id < 20; id++) {
+            assertEquals(NotificationThrottle.DECISION_ALERT, mThrottle.decide(id, "t", "b", 0));
+            assertEquals(NotificationThrottle.DECISION_SKIP, mThrottle.decide(id, "t", "b", 500));
+        }
+    }
+}
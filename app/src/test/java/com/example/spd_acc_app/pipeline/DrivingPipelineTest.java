@@ -0,0 +1,213 @@
+package com.example.spd_acc_app.pipeline;
+
+import com.example.spd_acc_app.geofence.GeofenceCatalog;
+import com.example.spd_acc_app.geofence.GeofenceEngine;
+import com.example.spd_acc_app.geofence.TestCatalogs;
+import com.example.spd_acc_app.rules.LimitRules;
+import com.example.spd_acc_app.rules.LimitStatus;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for DrivingPipeline: zone limits, trajectory, direction reversal and turn alerts.
+ */
+public class DrivingPipelineTest {
+
+    private static final double METRES_PER_DEGREE = 6371008.8 * Math.PI / 180.0;
+
+    private GeofenceCatalog mCatalog;
+    private DrivingPipeline mPipeline;
+    private final List<String> mEvents = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mCatalog = TestCatalogs.load();
+        mPipeline = new DrivingPipeline(mCatalog, 3000, 50, new DrivingPipeline.Listener() {
+            @Override
+            public void onDirectionChanged(int direction, long timeMillis) {
+                mEvents.add("direction:" + direction);
+            }
+
+            @Override
+            public void onGeofenceTransition(int fence, int transition, long timeMillis) {
+                mEvents.add(mCatalog.getId(fence) + ":" + transition);
+            }
+
+            @Override
+            public void onLimitChanged(int limitFlags, long timeMillis) {
+                mEvents.add("limit:" + limitFlags);
+            }
+
+            @Override
+            public void onTurnAlert(String label, long timeMillis) {
+                mEvents.add("turn");
+            }
+        });
+    }
+
+    @Test
+    public void stationaryFixes_doNotMove() {
+        double lat = mCatalog.getLatitude(0) + 0.01;
+        double lon = mCatalog.getLongitude(0);
+
+        assertFalse(mPipeline.onFix(0, lat, lon, 0, true, 0, true, 5));
+        assertFalse(mPipeline.onFix(1000, lat, lon, 0, true, 0, true, 5));
+
+        assertEquals(DrivingPipeline.NO_DIRECTION, mPipeline.getDirection());
+        assertTrue(mEvents.isEmpty());
+    }
+
+    @Test
+    public void fixesWithoutBearing_useDisplacement() {
+        double lat = mCatalog.getLatitude(0) + 0.01;
+        double lon = mCatalog.getLongitude(0);
+
+        // Doppler speed but no bearing (reported as 0, i.e. north): the heading comes from the movement south
+        long time = 0;
+        for (int step = 0; step < 10; step++, time += 1000) {
+            mPipeline.onFix(time, lat - 10 * step / METRES_PER_DEGREE, lon, 10, true, 0, false, 5);
+        }
+
+        assertEquals(GeofenceCatalog.DIRECTION_SOUTHBOUND, mPipeline.getDirection());
+    }
+
+    @Test
+    public void reversal_exitsFencesOfOldDirection() {
+        int fence = mCatalog.indexOf("SB_LUZON_AVE");
+        double lat = mCatalog.getLatitude(fence);
+        double lon = mCatalog.getLongitude(fence);
+
+        mPipeline.onFix(0, lat + 20 / METRES_PER_DEGREE, lon, 5, true, 180, true, 5);
+        assertTrue(mPipeline.onFix(1000, lat + 15 / METRES_PER_DEGREE, lon, 5, true, 180, true, 5));
+        assertTrue(mPipeline.isWithinGeofence());
+
+        // Turning around: the southbound fences stay active until the new heading has held for the dwell
+        long time = 2000;
+        for (int step = 1; mPipeline.getDirection() == GeofenceCatalog.DIRECTION_SOUTHBOUND; step++, time += 1000) {
+            assertTrue(time - 2000 <= TrajectoryClassifier.CHANGE_DWELL_MILLIS + 3000);
+            assertTrue(mPipeline.isWithinGeofence());
+            assertTrue(mPipeline.onFix(time, lat + (15 + 3 * step) / METRES_PER_DEGREE, lon, 5, true, 0, true, 5));
+        }
+
+        assertTrue(time - 2000 > TrajectoryClassifier.CHANGE_DWELL_MILLIS);
+        assertEquals(GeofenceCatalog.DIRECTION_NORTHBOUND, mPipeline.getDirection());
+        assertFalse(mPipeline.isWithinGeofence());
+        assertEquals(2, mPipeline.getDirectionChangeCount());
+        assertEquals(Arrays.asList(
+                "direction:" + GeofenceCatalog.DIRECTION_SOUTHBOUND,
+                "SB_LUZON_AVE:" + GeofenceEngine.TRANSITION_ENTER,
+                "turn"), mEvents.subList(0, 3));
+        assertEquals(Arrays.asList(
+                "SB_LUZON_AVE:" + GeofenceEngine.TRANSITION_EXIT,
+                "direction:" + GeofenceCatalog.DIRECTION_NORTHBOUND), mEvents.subList(mEvents.size() - 2, mEvents.size()));
+    }
+
+    @Test
+    public void zoneRules_applyInsideTheirFence() throws IOException {
+        int fence = mCatalog.indexOf("SB_LUZON_AVE");
+        double lat = mCatalog.getLatitude(fence);
+        double lon = mCatalog.getLongitude(fence);
+
+        mPipeline.setRules(LimitRules.parse(new StringReader("SB_LUZON_AVE, *, *, 10, 1.96\n"), mCatalog, TimeZone.getDefault()));
+
+        // 18 km/h: within the default limits outside, above the Luzon Ave limit inside
+        mPipeline.onFix(0, lat + 400 / METRES_PER_DEGREE, lon, 5, true, 180, true, 5);
+        mPipeline.onFix(1000, lat + 395 / METRES_PER_DEGREE, lon, 5, true, 180, true, 5);
+        assertEquals(-1, mPipeline.getZone());
+        assertEquals(LimitStatus.NORMAL, mPipeline.getLimitStatus());
+
+        mPipeline.onFix(2000, lat + 5 / METRES_PER_DEGREE, lon, 5, true, 180, true, 5);
+        assertEquals(fence, mPipeline.getZone());
+        assertEquals(LimitStatus.SPEED, mPipeline.getLimitStatus());
+        assertTrue(mEvents.contains("limit:" + DrivingPipeline.LIMIT_SPEED));
+
+        // Swapping the table applies from the next fix on
+        mPipeline.setRules(LimitRules.defaults(mCatalog, TimeZone.getDefault()));
+        mPipeline.onFix(3000, lat, lon, 5, true, 180, true, 5);
+        assertEquals(LimitStatus.NORMAL, mPipeline.getLimitStatus());
+    }
+
+    @Test
+    public void turnAlerts_stopOncePassed() {
+        int before = mCatalog.indexOf("SB_DON_ANTONIO");
+        int fence = mCatalog.indexOf("SB_LUZON_AVE");
+        int after = mCatalog.indexOf("SB_TANDANG_SORA");
+
+        // Along the road from Don Antonio through Luzon Ave towards Tandang Sora: alerts from 50 m before the turn on
+        long time = 0;
+        for (int metres = 120; metres >= -60; metres -= 10, time += 1000) {
+            int other = metres >= 0 ? before : after;
+            double f = Math.abs(metres) / distance(fence, other);
+            double lat = mCatalog.getTurnLatitude(fence) + f * (mCatalog.getTurnLatitude(other) - mCatalog.getTurnLatitude(fence));
+            double lon = mCatalog.getTurnLongitude(fence) + f * (mCatalog.getTurnLongitude(other) - mCatalog.getTurnLongitude(fence));
+
+            mEvents.clear();
+            mPipeline.onFix(time, lat, lon, 10, true, 225, true, 5);
+            assertEquals("at " + metres + " m", time > 0 && metres <= 50 && metres >= 0, mEvents.contains("turn"));
+        }
+
+        // Past Luzon Ave the next turn is Tandang Sora, further along the road
+        assertEquals(GeofenceCatalog.DIRECTION_SOUTHBOUND, mPipeline.getDirection());
+        assertTrue(mPipeline.getNextTurnDistance() > 50);
+        assertEquals(1, mPipeline.getCorridor(GeofenceCatalog.DIRECTION_SOUTHBOUND).getFullScans());
+    }
+
+    private double distance(int from, int to) {
+        double dy = (mCatalog.getTurnLatitude(to) - mCatalog.getTurnLatitude(from)) * METRES_PER_DEGREE;
+        double dx = (mCatalog.getTurnLongitude(to) - mCatalog.getTurnLongitude(from)) * METRES_PER_DEGREE
+                * Math.cos(Math.toRadians(mCatalog.getTurnLatitude(from)));
+        return Math.hypot(dx, dy);
+    }
+
+    @Test
+    public void restore_resumesInsideFenceWithoutReentering() {
+        int fence = mCatalog.indexOf("SB_LUZON_AVE");
+        double lat = mCatalog.getLatitude(fence);
+        double lon = mCatalog.getLongitude(fence);
+
+        mPipeline.restore(GeofenceCatalog.DIRECTION_SOUTHBOUND, fence, 10000, lat + 10 / METRES_PER_DEGREE, lon, 5, 180, 5);
+        assertEquals(GeofenceCatalog.DIRECTION_SOUTHBOUND, mPipeline.getDirection());
+        assertEquals(fence, mPipeline.getZone());
+        assertTrue(mPipeline.isWithinGeofence());
+        assertEquals(10000, mPipeline.getLastFixMillis());
+        assertEquals(0, mPipeline.getDirectionChangeCount());
+
+        // Still inside: no second ENTER; a repeated fix of the previous process is ignored
+        assertFalse(mPipeline.onFix(10000, lat + 10 / METRES_PER_DEGREE, lon, 5, true, 180, true, 5));
+        assertTrue(mPipeline.onFix(11000, lat + 5 / METRES_PER_DEGREE, lon, 5, true, 180, true, 5));
+        assertEquals(Arrays.asList("direction:" + GeofenceCatalog.DIRECTION_SOUTHBOUND, "turn"), mEvents);
+
+        // Leaving reports EXIT as usual
+        mPipeline.onFix(20000, lat - 300 / METRES_PER_DEGREE, lon, 5, true, 180, true, 5);
+        assertFalse(mPipeline.isWithinGeofence());
+        assertTrue(mEvents.contains("SB_LUZON_AVE:" + GeofenceEngine.TRANSITION_EXIT));
+        assertEquals(GeofenceCatalog.DIRECTION_SOUTHBOUND, mPipeline.getDirection());
+    }
+
+    @Test
+    public void staleFixes_areIgnored() {
+        double lat = mCatalog.getLatitude(0) + 0.01;
+        double lon = mCatalog.getLongitude(0);
+
+        mPipeline.onFix(1000, lat, lon, 10, true, 180, true, 5);
+        assertTrue(mPipeline.onFix(2000, lat - 10 / METRES_PER_DEGREE, lon, 10, true, 180, true, 5));
+
+        // A repeated and an older fix, as a batched delivery may carry them
+        assertFalse(mPipeline.onFix(2000, lat - 10 / METRES_PER_DEGREE, lon, 10, true, 180, true, 5));
+        assertFalse(mPipeline.onFix(1500, lat + 50 / METRES_PER_DEGREE, lon, 10, true, 0, true, 5));
+
+        assertEquals(2000, mPipeline.getLastFixMillis());
+        assertEquals(GeofenceCatalog.DIRECTION_SOUTHBOUND, mPipeline.getDirection());
+        assertEquals(Arrays.asList("direction:" + GeofenceCatalog.DIRECTION_SOUTHBOUND), mEvents);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.spd_acc_app.pipeline;
+
+import com.example.spd_acc_app.geofence.GeofenceCatalog;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for TrajectoryClassifier.
+ */
+public class TrajectoryClassifierTest {
+
+    private static final double METRES_PER_DEGREE = 6371008.8 * Math.PI / 180.0;
+    private static final double LAT = 14.65;
+    private static final double LON = 121.07;
+
+    @Test
+    public void firstDirection_isImmediate() {
+        TrajectoryClassifier classifier = new TrajectoryClassifier();
+
+        assertEquals(GeofenceCatalog.DIRECTION_SOUTHBOUND, classifier.update(0, LAT, LON, 10, 200, true));
+        assertEquals(1, classifier.getChangeCount());
+    }
+
+    @Test
+    public void jitterWhileStopped_neverFlips() {
+        TrajectoryClassifier classifier = new TrajectoryClassifier();
+        classifier.update(0, LAT, LON, 10, 180, true);
+
+        // Waiting at a light: positions and bearings wander at random
+        Random random = new Random(3);
+        for (long time = 1000; time < 600000; time += 1000) {
+            double lat = LAT + (random.nextDouble() - 0.5) * 20 / METRES_PER_DEGREE;
+            double lon = LON + (random.nextDouble() - 0.5) * 20 / METRES_PER_DEGREE;
+            classifier.update(time, lat, lon, random.nextDouble() * 1.5, random.nextFloat() * 360, random.nextBoolean());
+        }
+
+        assertEquals(GeofenceCatalog.DIRECTION_SOUTHBOUND, classifier.getDirection());
+        assertEquals(1, classifier.getChangeCount());
+    }
+
+    @Test
+    public void singleWrongBearing_isIgnored() {
+        TrajectoryClassifier classifier = new TrajectoryClassifier();
+
+        for (long time = 1000; time < 60000; time += 1000) {
+            // Every fifth bearing points back north
+            float bearing = time % 5000 == 0 ? 10 : 190;
+            classifier.update(time, LAT, LON, 8, bearing, true);
+        }
+
+        assertEquals(GeofenceCatalog.DIRECTION_SOUTHBOUND, classifier.getDirection());
+        assertEquals(1, classifier.getChangeCount());
+    }
+
+    @Test
+    public void reversal_committedAfterDwell() {
+        TrajectoryClassifier classifier = new TrajectoryClassifier();
+        classifier.update(0, LAT, LON, 8, 180, true);
+
+        long time = 1000;
+        for (; classifier.getDirection() == GeofenceCatalog.DIRECTION_SOUTHBOUND; time += 1000) {
+            assertTrue(time < 10000);
+            classifier.update(time, LAT, LON, 8, 0, true);
+        }
+
+        assertTrue(time - 1000 >= TrajectoryClassifier.CHANGE_DWELL_MILLIS);
+        assertEquals(GeofenceCatalog.DIRECTION_NORTHBOUND, classifier.getDirection());
+        assertEquals(2, classifier.getChangeCount());
+    }
+
+    @Test
+    public void noBearing_usesDisplacement() {
+        TrajectoryClassifier classifier = new TrajectoryClassifier();
+
+        // Moving north 5 m per fix: undecided until the minimum displacement is covered
+        assertEquals(DrivingPipeline.NO_DIRECTION, classifier.update(0, LAT, LON, 5, 0, false));
+        assertEquals(DrivingPipeline.NO_DIRECTION, classifier.update(1000, LAT + 5 / METRES_PER_DEGREE, LON, 5, 0, false));
+        assertEquals(DrivingPipeline.NO_DIRECTION, classifier.update(2000, LAT + 10 / METRES_PER_DEGREE, LON, 5, 0, false));
+        assertEquals(GeofenceCatalog.DIRECTION_NORTHBOUND, classifier.update(3000, LAT + 16 / METRES_PER_DEGREE, LON, 5, 180, false));
+    }
+
+    @Test
+    public void eastWest_isUndecided() {
+        TrajectoryClassifier classifier = new TrajectoryClassifier();
+
+        assertEquals(DrivingPipeline.NO_DIRECTION, classifier.update(0, LAT, LON, 10, 85, true));
+        assertEquals(DrivingPipeline.NO_DIRECTION, classifier.update(1000, LAT, LON, 10, 275, true));
+        assertEquals(0, classifier.getChangeCount());
+
+        classifier.update(2000, LAT, LON, 10, 180, true);
+        classifier.reset();
+        assertEquals(DrivingPipeline.NO_DIRECTION, classifier.getDirection());
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.spd_acc_app.replay;
+
+import com.example.spd_acc_app.geofence.GeofenceCatalog;
+import com.example.spd_acc_app.geofence.TestCatalogs;
+import com.example.spd_acc_app.pipeline.DrivingPipeline;
+import com.example.spd_acc_app.trip.TripRecorder;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.InputSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for Trace parsing and for replaying synthetic Commonwealth Ave drives through DrivingPipeline.
+ */
+public class TraceReplayerTest {
+
+    private static final double SPEED_50_KMH = 50 / 3.6;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private GeofenceCatalog mCatalog;
+    private EventLog mLog;
+    private DrivingPipeline mPipeline;
+
+    @Before
+    public void setUp() {
+        mCatalog = TestCatalogs.load();
+        mLog = new EventLog(mCatalog);
+        mPipeline = new DrivingPipeline(mCatalog, 3000, 50, mLog);
+    }
+
+    @Test
+    public void southboundDrive_emitsTransitionsWarningsAndTurns() {
+        Trace trace = new Trace();
+        SyntheticDrive.drive(trace, mCatalog, GeofenceCatalog.DIRECTION_SOUTHBOUND, 0, SPEED_50_KMH, null);
+
+        TraceReplayer.replay(trace, mPipeline);
+
+        List<String> expected = new ArrayList<>();
+        expected.add("DIRECTION SOUTHBOUND");
+        for (int fence = mCatalog.getStart(GeofenceCatalog.DIRECTION_SOUTHBOUND); fence < mCatalog.getEnd(GeofenceCatalog.DIRECTION_SOUTHBOUND); fence++) {
+            // 50 km/h is only over the limit inside a geofence
+            expected.add("ENTER " + mCatalog.getId(fence));
+            expected.add("LIMIT SPEED");
+            expected.add("DWELL " + mCatalog.getId(fence));
+            expected.add("TURN " + mCatalog.getTurnLabel(fence));
+            expected.add("EXIT " + mCatalog.getId(fence));
+            expected.add("LIMIT NORMAL");
+        }
+
+        assertEquals(expected, withoutTimesAndRepeats(mLog.getEvents()));
+        assertEquals(1, mLog.count(EventLog.TYPE_DIRECTION));
+        assertFalse(mPipeline.isWithinGeofence());
+    }
+
+    @Test
+    public void hoursOfDriving_replayEveryTrip() {
+        Trace trace = new Trace();
+        long time = 0;
+        int trips = 0;
+        int transitions = 0;
+        while (time < 10 * 3600 * 1000L) {
+            int direction = trips % 2 == 0 ? GeofenceCatalog.DIRECTION_SOUTHBOUND : GeofenceCatalog.DIRECTION_NORTHBOUND;
+            time = SyntheticDrive.drive(trace, mCatalog, direction, time, SPEED_50_KMH, null) + 60000;
+            transitions += 3 * (mCatalog.getEnd(direction) - mCatalog.getStart(direction));
+            trips++;
+        }
+
+        int moved = TraceReplayer.replay(trace, mPipeline);
+
+        assertEquals(trace.size() - 1, moved);
+        assertEquals(transitions, mLog.count(EventLog.TYPE_TRANSITION));
+        assertEquals(trips, mLog.count(EventLog.TYPE_DIRECTION));
+    }
+
+    @Test
+    public void readCsv_skipsHeaderAndComments() throws IOException {
+        Trace trace = Trace.readCsv(new StringReader(
+                "time_ms,latitude,longitude,speed,bearing,accuracy\n"
+                        + "# parked\n"
+                        + "\n"
+                        + "1000,14.69,121.08,,,\n"
+                        + "2000,14.6899,121.08,11.5,180,4\n"));
+
+        assertEquals(2, trace.size());
+        assertFalse(trace.hasSpeed(0));
+        assertFalse(trace.hasBearing(0));
+        assertEquals(Trace.DEFAULT_ACCURACY, trace.getAccuracy(0), 0);
+        assertEquals(2000, trace.getTime(1));
+        assertEquals(14.6899, trace.getLatitude(1), 0);
+        assertTrue(trace.hasSpeed(1));
+        assertEquals(11.5, trace.getSpeed(1), 0);
+        assertTrue(trace.hasBearing(1));
+        assertEquals(180, trace.getBearing(1), 0);
+        assertEquals(4, trace.getAccuracy(1), 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void readCsv_rejectsBadNumbers() throws IOException {
+        Trace.readCsv(new StringReader("1000,14.69,121.08\n2000,north,121.08\n"));
+    }
+
+    @Test
+    public void readGpx_readsTrackPoints() throws IOException {
+        String gpx = "<?xml version=\"1.0\"?>"
+                + "<gpx version=\"1.1\" xmlns=\"http://www.topografix.com/GPX/1/1\"><trk><trkseg>"
+                + "<trkpt lat=\"14.69\" lon=\"121.087\"><time>2020-06-01T08:00:00Z</time></trkpt>"
+                + "<trkpt lat=\"14.6899\" lon=\"121.087\"><time>2020-06-01T08:00:01.250Z</time><speed>11.1</speed></trkpt>"
+                + "</trkseg></trk></gpx>";
+
+        Trace trace = Trace.readGpx(new InputSource(new StringReader(gpx)));
+
+        assertEquals(2, trace.size());
+        assertEquals(1590998400000L, trace.getTime(0));
+        assertEquals(1590998401250L, trace.getTime(1));
+        assertEquals(14.6899, trace.getLatitude(1), 0);
+        assertFalse(trace.hasSpeed(0));
+        assertFalse(trace.hasBearing(1));
+        assertEquals(11.1, trace.getSpeed(1), 1e-6);
+    }
+
+    @Test
+    public void tripLog_replaysLikeTheLiveDrive() throws IOException {
+        Trace trace = new Trace();
+        SyntheticDrive.drive(trace, mCatalog, GeofenceCatalog.DIRECTION_NORTHBOUND, 0, SPEED_50_KMH, null);
+        TraceReplayer.replay(trace, mPipeline);
+        List<String> live = new ArrayList<>(mLog.getEvents());
+
+        File dir = record(trace);
+
+        mPipeline.reset();
+        mLog.clear();
+        TraceReplayer.replay(Trace.readTripLog(dir), mPipeline);
+
+        assertEquals(live, mLog.getEvents());
+    }
+
+    @Test
+    public void tripLog_keepsFixesWithoutSpeed() throws IOException {
+        // Every other fix without Doppler speed, recorded as 0 like Location.getSpeed() reports it
+        Trace drive = new Trace();
+        SyntheticDrive.drive(drive, mCatalog, GeofenceCatalog.DIRECTION_NORTHBOUND, 0, SPEED_50_KMH, null);
+        Trace trace = new Trace();
+        for (int i = 0; i < drive.size(); i++) {
+            boolean hasSpeed = i % 2 == 0;
+            trace.add(drive.getTime(i), drive.getLatitude(i), drive.getLongitude(i), hasSpeed ? drive.getSpeed(i) : 0, hasSpeed,
+                    drive.getBearing(i), drive.hasBearing(i), drive.getAccuracy(i));
+        }
+        double[] live = accelerations(trace);
+
+        Trace replayed = Trace.readTripLog(record(trace));
+        for (int i = 0; i < trace.size(); i++) {
+            assertEquals(trace.hasSpeed(i), replayed.hasSpeed(i));
+        }
+
+        mPipeline.reset();
+        assertArrayEquals(live, accelerations(replayed), 0);
+    }
+
+    /**
+     * record(): Writes a trace to a new trip log the way MainActivity.recordTrip() does
+     */
+    private File record(Trace trace) throws IOException {
+        File dir = mFolder.newFolder();
+        TripRecorder recorder = TripRecorder.open(dir, TripRecorder.DEFAULT_SEGMENT_BYTES);
+        for (int i = 0; i < trace.size(); i++) {
+            recorder.append(trace.getTime(i), trace.getLatitude(i), trace.getLongitude(i), trace.getSpeed(i), trace.getBearing(i), trace.getAccuracy(i), 0,
+                    (trace.hasBearing(i) ? 0 : TripRecorder.FLAG_NO_BEARING) | (trace.hasSpeed(i) ? 0 : TripRecorder.FLAG_NO_SPEED));
+        }
+        recorder.close();
+        return dir;
+    }
+
+    /**
+     * accelerations(): Filtered acceleration of the pipeline after each fix of a trace
+     */
+    private double[] accelerations(Trace trace) {
+        double[] accelerations = new double[trace.size()];
+        for (int i = 0; i < trace.size(); i++) {
+            mPipeline.onFix(trace.getTime(i), trace.getLatitude(i), trace.getLongitude(i), trace.getSpeed(i), trace.hasSpeed(i),
+                    trace.getBearing(i), trace.hasBearing(i), trace.getAccuracy(i));
+            accelerations[i] = mPipeline.getAcceleration();
+        }
+        return accelerations;
+    }
+
+    private static List<String> withoutTimesAndRepeats(List<String> events) {
+        List<String> result = new ArrayList<>();
+        for (String event : events) {
+            String text = event.substring(event.indexOf(' ') + 1);
+            if (result.isEmpty() || !result.get(result.size() - 1).equals(text)) {
+                result.add(text);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.spd_acc_app.rules;
+
+import com.example.spd_acc_app.geofence.GeofenceCatalog;
+import com.example.spd_acc_app.geofence.TestCatalogs;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for LimitRules and LimitStatus.
+ */
+public class LimitRulesTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final long HOUR = 3600000L;
+
+    private GeofenceCatalog mCatalog;
+    private int mFence;
+
+    @Before
+    public void setUp() {
+        mCatalog = TestCatalogs.load();
+        mFence = mCatalog.indexOf("SB_LUZON_AVE");
+    }
+
+    @Test
+    public void defaults_dependOnGeofence() {
+        LimitRules rules = LimitRules.defaults(mCatalog, UTC);
+
+        // Inside a geofence the speed limit is lower but the acceleration limit is higher
+        assertEquals(LimitStatus.NORMAL, rules.evaluate(-1, LimitRules.VEHICLE_CAR, 0, 55, 1.4));
+        assertEquals(LimitStatus.SPEED, rules.evaluate(mFence, LimitRules.VEHICLE_CAR, 0, 55, 1.4));
+        assertEquals(LimitStatus.ACCELERATION, rules.evaluate(-1, LimitRules.VEHICLE_CAR, 0, 30, -1.5));
+        assertEquals(LimitStatus.NORMAL, rules.evaluate(mFence, LimitRules.VEHICLE_CAR, 0, 30, -1.5));
+        assertEquals(LimitStatus.SPEED_AND_ACCELERATION, rules.evaluate(-1, LimitRules.VEHICLE_CAR, 0, 61, 2));
+        assertEquals(LimitStatus.NORMAL, rules.evaluate(mFence, LimitRules.VEHICLE_CAR, 0, 40, 1.96));
+    }
+
+    @Test
+    public void shippedAsset_matchesDefaults() throws IOException {
+        LimitRules rules;
+        try (Reader reader = new FileReader("src/main/assets/" + LimitRules.ASSET_NAME)) {
+            rules = LimitRules.parse(reader, mCatalog, UTC);
+        }
+        LimitRules defaults = LimitRules.defaults(mCatalog, UTC);
+
+        assertEquals(0, rules.getIgnoredCount());
+        for (int fence = -1; fence < mCatalog.size(); fence++) {
+            for (int vehicle = 0; vehicle < LimitRules.VEHICLE_CLASS_COUNT; vehicle++) {
+                for (long time = 0; time < 24 * HOUR; time += HOUR) {
+                    assertEquals(defaults.getSpeedLimitKmh(fence, vehicle, time), rules.getSpeedLimitKmh(fence, vehicle, time), 0);
+                    assertEquals(defaults.getAccelerationLimit(fence, vehicle, time), rules.getAccelerationLimit(fence, vehicle, time), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void fenceRules_overrideInside_whateverTheOrder() throws IOException {
+        LimitRules rules = parse(
+                "SB_LUZON_AVE, *, *, 30, 1.5\n" +
+                "INSIDE, *, *, 35, 1.8\n" +
+                "OUTSIDE, *, *, 80, 2\n");
+
+        assertEquals(30, rules.getSpeedLimitKmh(mFence, LimitRules.VEHICLE_CAR, 0), 0);
+        assertEquals(1.5, rules.getAccelerationLimit(mFence, LimitRules.VEHICLE_CAR, 0), 0);
+        assertEquals(35, rules.getSpeedLimitKmh(mCatalog.indexOf("SB_SAN_SIMON"), LimitRules.VEHICLE_CAR, 0), 0);
+        assertEquals(80, rules.getSpeedLimitKmh(-1, LimitRules.VEHICLE_TRUCK, 0), 0);
+        assertEquals(3, rules.getRuleCount());
+    }
+
+    @Test
+    public void vehicleClassAndHours_selectCells() throws IOException {
+        LimitRules rules = parse(
+                "# Trucks slower through Luzon Ave at rush hour and overnight\n" +
+                "\n" +
+                "SB_LUZON_AVE, TRUCK, 6-9, 20, 1\n" +
+                "SB_LUZON_AVE, TRUCK, 22-5, 25, 1\n");
+
+        assertEquals(40, rules.getSpeedLimitKmh(mFence, LimitRules.VEHICLE_TRUCK, 5 * HOUR + HOUR / 2), 0);
+        assertEquals(20, rules.getSpeedLimitKmh(mFence, LimitRules.VEHICLE_TRUCK, 6 * HOUR), 0);
+        assertEquals(20, rules.getSpeedLimitKmh(mFence, LimitRules.VEHICLE_TRUCK, 9 * HOUR - 1), 0);
+        assertEquals(40, rules.getSpeedLimitKmh(mFence, LimitRules.VEHICLE_TRUCK, 9 * HOUR), 0);
+        assertEquals(25, rules.getSpeedLimitKmh(mFence, LimitRules.VEHICLE_TRUCK, 23 * HOUR), 0);
+        assertEquals(25, rules.getSpeedLimitKmh(mFence, LimitRules.VEHICLE_TRUCK, 24 * HOUR + 4 * HOUR), 0);
+        assertEquals(40, rules.getSpeedLimitKmh(mFence, LimitRules.VEHICLE_CAR, 7 * HOUR), 0);
+
+        assertEquals(LimitStatus.SPEED_AND_ACCELERATION, rules.evaluate(mFence, LimitRules.VEHICLE_TRUCK, 7 * HOUR, 30, -1.2));
+        assertEquals(LimitStatus.NORMAL, rules.evaluate(mFence, LimitRules.VEHICLE_CAR, 7 * HOUR, 30, -1.2));
+    }
+
+    @Test
+    public void hours_areLocal() throws IOException {
+        LimitRules rules = LimitRules.parse(new StringReader("OUTSIDE, *, 6-9, 50, 1.47\n"), mCatalog, TimeZone.getTimeZone("GMT+08:00"));
+
+        // 23:00 UTC is 07:00 in UTC+8
+        assertEquals(50, rules.getSpeedLimitKmh(-1, LimitRules.VEHICLE_CAR, 23 * HOUR), 0);
+        assertEquals(60, rules.getSpeedLimitKmh(-1, LimitRules.VEHICLE_CAR, 7 * HOUR), 0);
+    }
+
+    @Test
+    public void unknownFence_isIgnored() throws IOException {
+        LimitRules rules = parse("SB_NOWHERE, *, *, 10, 1\n");
+
+        assertEquals(0, rules.getRuleCount());
+        assertEquals(1, rules.getIgnoredCount());
+    }
+
+    @Test
+    public void malformedLines_nameTheLine() throws IOException {
+        String[] lines = {
+                "OUTSIDE, *, *, 60",
+                "OUTSIDE, BUS, *, 60, 1.47",
+                "OUTSIDE, *, 9, 60, 1.47",
+                "OUTSIDE, *, 5-5, 60, 1.47",
+                "OUTSIDE, *, 0-25, 60, 1.47",
+                "OUTSIDE, *, *, fast, 1.47",
+                "OUTSIDE, *, *, 60, -1",
+        };
+        for (String line : lines) {
+            try {
+                parse("# header\n" + line + "\n");
+                fail(line);
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Line 2: "));
+            }
+        }
+    }
+
+    @Test
+    public void limitStatus_flagsRoundTrip() {
+        for (LimitStatus status : LimitStatus.values()) {
+            assertSame(status, LimitStatus.fromFlags(status.getFlags()));
+        }
+        assertTrue(LimitStatus.SPEED_AND_ACCELERATION.isSpeedExceeded());
+        assertTrue(LimitStatus.SPEED_AND_ACCELERATION.isAccelerationExceeded());
+        assertFalse(LimitStatus.SPEED.isAccelerationExceeded());
+        assertFalse(LimitStatus.NORMAL.isSpeedExceeded());
+    }
+
+    private LimitRules parse(String text) throws IOException {
+        return LimitRules.parse(new StringReader(text), mCatalog, UTC);
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.spd_acc_app.state;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for DrivingState and DrivingStateStore.
+ */
+public class DrivingStateStoreTest {
+
+    private static final int ENTER = 1;
+    private static final int EXIT = 2;
+    private static final int DWELL = 4;
+
+    @Test
+    public void transitions_copyOnWrite() {
+        DrivingState initial = DrivingState.INITIAL;
+        DrivingState entered = initial.withEngineRunning(true).withTransition("SB_LUZON_AVE", "Luzon Ave", ENTER, 1000);
+
+        // The original snapshots are unchanged
+        assertNull(initial.getCurrentGeofence());
+        assertFalse(initial.isEngineRunning());
+
+        assertEquals("SB_LUZON_AVE", entered.getCurrentGeofence());
+        assertEquals("Luzon Ave", entered.getCurrentGeofenceName());
+        assertTrue(entered.isWithinGeofence());
+        assertTrue(entered.withTransition("SB_LUZON_AVE", "Luzon Ave", DWELL, 4000).isWithinGeofence());
+        assertEquals(2, entered.getVersion());
+        assertEquals(1, entered.getTransitionCount());
+
+        DrivingState exited = entered.withTransition("SB_LUZON_AVE", "Luzon Ave", EXIT, 9000);
+        assertFalse(exited.isWithinGeofence());
+        assertEquals("SB_LUZON_AVE", exited.getCurrentGeofence());
+        assertEquals(9000, exited.getTransitionTimeMillis());
+
+        // Stopping forgets being inside, not the last geofence
+        DrivingState stopped = entered.withEngineRunning(false);
+        assertFalse(stopped.isWithinGeofence());
+        assertEquals("SB_LUZON_AVE", stopped.getCurrentGeofence());
+        assertEquals(entered.getTransitionCount(), stopped.getTransitionCount());
+    }
+
+    @Test
+    public void restoredGeofence_isNotATransition() {
+        DrivingStateStore store = new DrivingStateStore();
+        store.setEngineRunning(true);
+
+        DrivingState restored = store.restoreGeofence("SB_LUZON_AVE", "Luzon Ave", true, DWELL, 5000);
+        assertEquals("SB_LUZON_AVE", restored.getCurrentGeofence());
+        assertEquals("Luzon Ave", restored.getCurrentGeofenceName());
+        assertTrue(restored.isWithinGeofence());
+        assertEquals(DWELL, restored.getLastTransition());
+        assertEquals(5000, restored.getTransitionTimeMillis());
+        assertEquals(0, restored.getTransitionCount());
+        assertEquals(2, restored.getVersion());
+
+        // Inside is only meaningful while the engine runs
+        assertFalse(DrivingState.INITIAL.withRestoredGeofence("SB_LUZON_AVE", "Luzon Ave", true, DWELL, 5000).isWithinGeofence());
+    }
+
+    @Test
+    public void listeners_seeEveryChange() {
+        DrivingStateStore store = new DrivingStateStore();
+        final List<String> changes = new ArrayList<>();
+        DrivingStateStore.Listener listener = new DrivingStateStore.Listener() {
+            @Override
+            public void onStateChanged(DrivingState previous, DrivingState current) {
+                changes.add(previous.getVersion() + "->" + current.getVersion());
+            }
+        };
+
+        store.addListener(listener);
+        store.addListener(listener);
+        store.setEngineRunning(true);
+        DrivingState current = store.onTransition("NB_BATASAN", "Batasan", ENTER, 5000);
+        store.removeListener(listener);
+        store.setEngineRunning(false);
+
+        assertEquals(2, changes.size());
+        assertEquals("0->1", changes.get(0));
+        assertEquals("1->2", changes.get(1));
+        assertEquals(2, current.getVersion());
+        assertFalse(store.get().isEngineRunning());
+    }
+
+    @Test
+    public void concurrentUpdates_areNotLost() throws InterruptedException {
+        final DrivingStateStore store = new DrivingStateStore();
+        final AtomicInteger notified = new AtomicInteger();
+        store.addListener(new DrivingStateStore.Listener() {
+            @Override
+            public void onStateChanged(DrivingState previous, DrivingState current) {
+                assertEquals(previous.getVersion() + 1, current.getVersion());
+                notified.incrementAndGet();
+            }
+        });
+
+        final int threads = 4;
+        final int updates = 10000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final boolean receiver = t % 2 == 0;
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < updates; i++) {
+                        if (receiver) {
+                            store.onTransition("SB_SAN_SIMON", "San Simon", (i & 1) == 0 ? ENTER : EXIT, i);
+                        } else {
+                            store.setEngineRunning((i & 1) == 0);
+                        }
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(threads * updates, store.get().getVersion());
+        assertEquals(threads / 2 * updates, store.get().getTransitionCount());
+        assertEquals(threads * updates, notified.get());
+    }
+}
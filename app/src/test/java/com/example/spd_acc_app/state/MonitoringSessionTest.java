@@ -0,0 +1,119 @@
+package com.example.spd_acc_app.state;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for MonitoringSession: round trip, atomic replacement and rejection of damaged files.
+ */
+public class MonitoringSessionTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static MonitoringSession sample() {
+        MonitoringSession session = new MonitoringSession();
+        session.setSavedAt(1600000000000L, 1599990000000L);
+        session.setDirection(1);
+        session.setLastFix(1599999990000L, 14.665477, 121.070501, 12.5f, 182f, 4f);
+        session.setGeofence("SB_LUZON_AVE", true, 4, 1599999980000L);
+        session.setRegisteredIds(Arrays.asList("SB_LUZON_AVE", "SB_TANDANG_SORA", "SB_CENTRAL"));
+        return session;
+    }
+
+    @Test
+    public void writeAndRead_roundTrips() throws IOException {
+        File file = new File(mFolder.getRoot(), "session.bin");
+        sample().writeTo(file);
+
+        MonitoringSession read = MonitoringSession.readFrom(file);
+        assertNotNull(read);
+        assertEquals(1600000000000L, read.getSavedAtMillis());
+        assertEquals(1, read.getDirection());
+        assertTrue(read.hasFix());
+        assertEquals(1599999990000L, read.getFixTime());
+        assertEquals(14.665477, read.getLatitude(), 0);
+        assertEquals(121.070501, read.getLongitude(), 0);
+        assertEquals(12.5f, read.getSpeed(), 0);
+        assertEquals(182f, read.getBearing(), 0);
+        assertEquals(4f, read.getAccuracy(), 0);
+        assertEquals("SB_LUZON_AVE", read.getGeofenceId());
+        assertTrue(read.isWithinGeofence());
+        assertEquals(4, read.getTransition());
+        assertEquals(1599999980000L, read.getTransitionTimeMillis());
+        assertEquals(Arrays.asList("SB_LUZON_AVE", "SB_TANDANG_SORA", "SB_CENTRAL"), read.getRegisteredIds());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void emptySession_roundTrips() throws IOException {
+        File file = new File(mFolder.getRoot(), "session.bin");
+        new MonitoringSession().writeTo(file);
+
+        MonitoringSession read = MonitoringSession.readFrom(file);
+        assertNotNull(read);
+        assertEquals(-1, read.getDirection());
+        assertFalse(read.hasFix());
+        assertNull(read.getGeofenceId());
+        assertFalse(read.isWithinGeofence());
+        assertTrue(read.getRegisteredIds().isEmpty());
+    }
+
+    @Test
+    public void rewrite_replacesPreviousSession() throws IOException {
+        File file = new File(mFolder.getRoot(), "session.bin");
+        MonitoringSession session = sample();
+        session.writeTo(file);
+
+        session.setRegisteredIds(Arrays.asList("NB_BATASAN"));
+        session.setGeofence(null, true, 0, 0);
+        session.writeTo(file);
+
+        MonitoringSession read = MonitoringSession.readFrom(file);
+        assertEquals(Arrays.asList("NB_BATASAN"), read.getRegisteredIds());
+        assertNull(read.getGeofenceId());
+        assertFalse(read.isWithinGeofence());
+    }
+
+    @Test
+    public void damagedFiles_areRejected() throws IOException {
+        File file = new File(mFolder.getRoot(), "session.bin");
+        assertNull(MonitoringSession.readFrom(file));
+
+        sample().writeTo(file);
+        long length = file.length();
+
+        // A flipped bit
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(30);
+        int value = raf.read();
+        raf.seek(30);
+        raf.write(value ^ 1);
+        raf.close();
+        assertNull(MonitoringSession.readFrom(file));
+
+        // Truncated
+        sample().writeTo(file);
+        raf = new RandomAccessFile(file, "rw");
+        raf.setLength(length - 10);
+        raf.close();
+        assertNull(MonitoringSession.readFrom(file));
+    }
+
+    @Test
+    public void isSameBoot_toleratesClockJitter() {
+        MonitoringSession session = sample();
+
+        assertTrue(session.isSameBoot(1599990000000L + 500));
+        assertTrue(session.isSameBoot(1599990000000L - MonitoringSession.BOOT_TOLERANCE));
+        assertFalse(session.isSameBoot(1600000500000L));
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.spd_acc_app.trip;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for TripRecorder and TripLogReader, including recovery from a torn last record.
+ */
+public class TripRecorderTest {
+
+    private static final int SMALL_SEGMENT = TripLogFormat.HEADER_SIZE + 10 * TripLogFormat.RECORD_SIZE;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void zeroRecord_isNotComplete() {
+        assertNotEquals(0, TripLogFormat.checksum(ByteBuffer.allocate(TripLogFormat.RECORD_SIZE), 0));
+    }
+
+    @Test
+    public void appendAndRead_roundTrips() throws IOException {
+        File dir = mFolder.newFolder();
+        TripRecorder recorder = TripRecorder.open(dir, TripRecorder.DEFAULT_SEGMENT_BYTES);
+        for (int i = 0; i < 100; i++) {
+            append(recorder, i);
+        }
+        recorder.close();
+
+        TripLogReader reader = TripLogReader.open(dir);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(reader.next());
+            assertRecord(reader, i);
+        }
+        assertFalse(reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void reopen_appendsAfterLastRecord() throws IOException {
+        File dir = mFolder.newFolder();
+        TripRecorder recorder = TripRecorder.open(dir, SMALL_SEGMENT);
+        append(recorder, 0);
+        append(recorder, 1);
+        recorder.close();
+
+        recorder = TripRecorder.open(dir, SMALL_SEGMENT);
+        assertEquals(2, recorder.getRecordCount());
+        append(recorder, 2);
+        recorder.close();
+
+        assertEquals(3, count(dir));
+    }
+
+    @Test
+    public void tornRecord_isDroppedAndOverwritten() throws IOException {
+        File dir = mFolder.newFolder();
+        TripRecorder recorder = TripRecorder.open(dir, SMALL_SEGMENT);
+        for (int i = 0; i < 5; i++) {
+            append(recorder, i);
+        }
+        recorder.close();
+
+        // Simulate a kill between the field writes and the checksum of the fifth record
+        RandomAccessFile file = new RandomAccessFile(TripLogFormat.segmentFile(dir, 0), "rw");
+        file.seek(TripLogFormat.HEADER_SIZE + 4L * TripLogFormat.RECORD_SIZE + TripLogFormat.OFFSET_CHECKSUM);
+        file.writeInt(0);
+        file.close();
+
+        assertEquals(4, count(dir));
+
+        recorder = TripRecorder.open(dir, SMALL_SEGMENT);
+        assertEquals(4, recorder.getRecordCount());
+        append(recorder, 4);
+        append(recorder, 5);
+        recorder.close();
+
+        TripLogReader reader = TripLogReader.open(dir);
+        for (int i = 0; i < 6; i++) {
+            assertTrue(reader.next());
+            assertRecord(reader, i);
+        }
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void fullSegment_rollsOver() throws IOException {
+        File dir = mFolder.newFolder();
+        TripRecorder recorder = TripRecorder.open(dir, SMALL_SEGMENT);
+        for (int i = 0; i < 25; i++) {
+            append(recorder, i);
+        }
+        assertEquals(2, recorder.getSegmentIndex());
+        assertEquals(5, recorder.getRecordCount());
+        recorder.close();
+
+        assertEquals(SMALL_SEGMENT, TripLogFormat.segmentFile(dir, 0).length());
+
+        TripLogReader reader = TripLogReader.open(dir);
+        for (int i = 0; i < 25; i++) {
+            assertTrue(reader.next());
+            assertEquals(i / 10, reader.getSegmentIndex());
+            assertRecord(reader, i);
+        }
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void corruptHeader_startsNewSegment() throws IOException {
+        File dir = mFolder.newFolder();
+        TripRecorder recorder = TripRecorder.open(dir, SMALL_SEGMENT);
+        append(recorder, 0);
+        recorder.close();
+
+        RandomAccessFile file = new RandomAccessFile(TripLogFormat.segmentFile(dir, 0), "rw");
+        file.writeInt(0);
+        file.close();
+
+        recorder = TripRecorder.open(dir, SMALL_SEGMENT);
+        assertEquals(1, recorder.getSegmentIndex());
+        append(recorder, 1);
+        recorder.close();
+
+        TripLogReader reader = TripLogReader.open(dir);
+        assertTrue(reader.next());
+        assertRecord(reader, 1);
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void millionRecords_readBackInOrder() throws IOException {
+        File dir = mFolder.newFolder();
+        int records = 1000000;
+        TripRecorder recorder = TripRecorder.open(dir, TripRecorder.DEFAULT_SEGMENT_BYTES);
+        for (int i = 0; i < records; i++) {
+            append(recorder, i);
+        }
+        recorder.close();
+
+        TripLogReader reader = TripLogReader.open(dir);
+        int count = 0;
+        long timeSum = 0;
+        while (reader.next()) {
+            timeSum += reader.getTime();
+            count++;
+        }
+
+        assertEquals(records, count);
+        assertEquals(1000L * records * (records - 1) / 2, timeSum);
+    }
+
+    private static void append(TripRecorder recorder, int i) throws IOException {
+        recorder.append(i * 1000L, 14.7 - i * 1e-5, 121.08 + i * 1e-6, i % 30, i % 360, 5, -0.5f * (i % 4), i % 8);
+    }
+
+    private static void assertRecord(TripLogReader reader, int i) {
+        assertEquals(i * 1000L, reader.getTime());
+        assertEquals(14.7 - i * 1e-5, reader.getLatitude(), 0);
+        assertEquals(121.08 + i * 1e-6, reader.getLongitude(), 0);
+        assertEquals(i % 30, reader.getSpeed(), 0);
+        assertEquals(i % 360, reader.getBearing(), 0);
+        assertEquals(5, reader.getAccuracy(), 0);
+        assertEquals(-0.5f * (i % 4), reader.getAcceleration(), 0);
+        assertEquals(i % 8, reader.getFlags());
+    }
+
+    private static int count(File dir) throws IOException {
+        TripLogReader reader = TripLogReader.open(dir);
+        int count = 0;
+        while (reader.next()) {
+            count++;
+        }
+        reader.close();
+        return count;
+    }
+}
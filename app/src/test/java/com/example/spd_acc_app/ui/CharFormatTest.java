@@ -0,0 +1,72 @@
+package com.example.spd_acc_app.ui;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for CharFormat.
+ */
+public class CharFormatTest {
+
+    @Test
+    public void appendFixed_roundsAndPads() {
+        assertEquals("0.00", fixed(0, 2));
+        assertEquals("3.14", fixed(3.14159, 2));
+        assertEquals("2.50", fixed(2.4999999, 2));
+        assertEquals("10.0", fixed(9.96, 1));
+        assertEquals("14.500000", fixed(14.5, 6));
+        assertEquals("121.000001", fixed(121.000001, 6));
+        assertEquals("42", fixed(41.5, 0));
+    }
+
+    @Test
+    public void appendFixed_negativeValues() {
+        assertEquals("-1.47", fixed(-1.47, 2));
+        assertEquals("-0.01", fixed(-0.009, 2));
+        // No negative zero
+        assertEquals("0.00", fixed(-0.001, 2));
+    }
+
+    @Test
+    public void appendFixed_outOfRangeIsDash() {
+        assertEquals("-", fixed(Double.NaN, 2));
+        assertEquals("-", fixed(Double.POSITIVE_INFINITY, 2));
+        assertEquals("-", fixed(1e13, 2));
+        assertEquals("9999999999999.00", fixed(9999999999999.0, 2));
+    }
+
+    @Test
+    public void appendFixed_agreesWithBigDecimal() {
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(8));
+            int decimals = random.nextInt(CharFormat.MAX_DECIMALS - 2);
+
+            String expected = new BigDecimal(value).setScale(decimals, RoundingMode.HALF_UP).toPlainString();
+            if (expected.startsWith("-") && expected.replaceAll("[-0.]", "").isEmpty()) {
+                expected = expected.substring(1);
+            }
+            assertEquals(value + " / " + decimals, expected, fixed(value, decimals));
+        }
+    }
+
+    @Test
+    public void append_writesAtOffset() {
+        char[] buffer = new char[16];
+        int end = CharFormat.append(" km/h", buffer, CharFormat.appendFixed(60, 1, buffer, 0));
+
+        assertEquals("60.0 km/h", new String(buffer, 0, end));
+    }
+
+    private static String fixed(double value, int decimals) {
+        char[] buffer = new char[CharFormat.MAX_FIXED_LENGTH + 2];
+        int end = CharFormat.appendFixed(value, decimals, buffer, 1);
+        assertTrue(end - 1 <= CharFormat.MAX_FIXED_LENGTH);
+        return new String(buffer, 1, end - 1);
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.spd_acc_app.ui;
+
+import com.example.spd_acc_app.geofence.GeofenceCatalog;
+import com.example.spd_acc_app.geofence.TestCatalogs;
+import com.example.spd_acc_app.pipeline.DrivingPipeline;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for DisplaySnapshot formatting.
+ */
+public class DisplaySnapshotTest {
+
+    private static final double METRES_PER_DEGREE = 6371008.8 * Math.PI / 180.0;
+
+    @Test
+    public void set_formatsPipelineState() {
+        GeofenceCatalog catalog = TestCatalogs.load();
+        DrivingPipeline pipeline = new DrivingPipeline(catalog, 3000, 50, new NoOpListener());
+        double lat = catalog.getLatitude(0) + 500 / METRES_PER_DEGREE;
+        double lon = catalog.getLongitude(0);
+
+        pipeline.onFix(0, lat, lon, 10, true, 180, true, 5);
+        pipeline.onFix(1000, lat - 10 / METRES_PER_DEGREE, lon, 10, true, 180, true, 5);
+
+        DisplaySnapshot snapshot = new DisplaySnapshot();
+        snapshot.set(pipeline, 1000, 14.5, 121.25, catalog.indexOf("SB_SAN_SIMON"));
+
+        assertEquals(1000, snapshot.getTimeMillis());
+        assertEquals("36.00km/h", snapshot.toString(DisplaySnapshot.TEXT_SPEED));
+        assertEquals("14.500000", snapshot.toString(DisplaySnapshot.TEXT_LATITUDE));
+        assertEquals("121.250000", snapshot.toString(DisplaySnapshot.TEXT_LONGITUDE));
+        assertEquals("SOUTHBOUND", snapshot.toString(DisplaySnapshot.TEXT_DIRECTION));
+        assertEquals("San Simon", snapshot.toString(DisplaySnapshot.TEXT_LAST_GEOFENCE));
+        assertEquals("false", snapshot.toString(DisplaySnapshot.TEXT_IN_GEOFENCE));
+        assertEquals(0, snapshot.getLimitFlags());
+    }
+
+    @Test
+    public void set_withoutGeofence_showsDash() {
+        GeofenceCatalog catalog = TestCatalogs.load();
+        DrivingPipeline pipeline = new DrivingPipeline(catalog, 3000, 50, new NoOpListener());
+
+        DisplaySnapshot snapshot = new DisplaySnapshot();
+        snapshot.set(pipeline, 0, 0, 0, -1);
+
+        assertEquals("-", snapshot.toString(DisplaySnapshot.TEXT_LAST_GEOFENCE));
+        assertEquals("0.00 m/s\u00B2 || 0.00 m/s\u00B2", snapshot.toString(DisplaySnapshot.TEXT_ACCELERATION));
+    }
+
+    @Test
+    public void set_beforeTrajectory_claimsNoDirection() {
+        DrivingPipeline pipeline = new DrivingPipeline(TestCatalogs.load(), 3000, 50, new NoOpListener());
+
+        DisplaySnapshot snapshot = new DisplaySnapshot();
+        snapshot.set(pipeline, 0, 0, 0, -1);
+
+        assertEquals(DrivingPipeline.NO_DIRECTION, pipeline.getDirection());
+        assertEquals("UNKNOWN", snapshot.toString(DisplaySnapshot.TEXT_DIRECTION));
+    }
+
+    @Test
+    public void set_overwritesShorterTexts() {
+        GeofenceCatalog catalog = TestCatalogs.load();
+        DrivingPipeline pipeline = new DrivingPipeline(catalog, 3000, 50, new NoOpListener());
+        DisplaySnapshot snapshot = new DisplaySnapshot();
+
+        snapshot.set(pipeline, 0, -14.123456789, 121, catalog.indexOf("NB_ZUZUARREGUI_ST"));
+        snapshot.set(pipeline, 0, 1, 121, catalog.indexOf("SB_SAN_SIMON"));
+
+        assertEquals("1.000000", snapshot.toString(DisplaySnapshot.TEXT_LATITUDE));
+        assertEquals("San Simon", snapshot.toString(DisplaySnapshot.TEXT_LAST_GEOFENCE));
+    }
+
+    /**
+     * The steady-state per-fix path (pipeline, formatting, hand-over and diff rendering) must not allocate: on low-end
+     * devices every per-fix allocation adds up to GC pauses over a long drive.
+     */
+    @Test
+    public void tick_steadyStateAllocatesNothing() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+
+        GeofenceCatalog catalog = TestCatalogs.load();
+        DrivingPipeline pipeline = new DrivingPipeline(catalog, 3000, 50, new NoOpListener());
+        SnapshotExchange exchange = new SnapshotExchange();
+        TelemetryRenderer renderer = new TelemetryRenderer(new NoOpTarget(), new String[] {"N", "S", "A", "SA"}, 0, 1);
+        int lastGeofence = catalog.indexOf("SB_SAN_SIMON");
+        long thread = Thread.currentThread().getId();
+
+        // Warm up until the JIT has compiled the path, then measure
+        long time = tick(pipeline, exchange, renderer, lastGeofence, 0, 20000);
+        long before = allocations.getThreadAllocatedBytes(thread);
+        tick(pipeline, exchange, renderer, lastGeofence, time, 10000);
+        long allocated = allocations.getThreadAllocatedBytes(thread) - before;
+
+        // Tolerates the measurement itself, not a single allocation per tick
+        assertTrue("Allocated " + allocated + " bytes in 10000 ticks", allocated < 10000);
+    }
+
+    private static long tick(DrivingPipeline pipeline, SnapshotExchange exchange, TelemetryRenderer renderer, int lastGeofence, long time, int ticks) {
+        GeofenceCatalog catalog = pipeline.getCatalog();
+        double lon = catalog.getLongitude(0);
+        for (int i = 0; i < ticks; i++) {
+            // Back and forth 2 km past the first fence at about 36 km/h
+            int step = (int) ((time / 1000) % 400);
+            double along = step < 200 ? step : 400 - step;
+            double lat = catalog.getLatitude(0) + (1000 - 10 * along) / METRES_PER_DEGREE;
+
+            pipeline.onFix(time, lat, lon, 10 + (i & 3), true, step < 200 ? 180 : 0, true, 5);
+            exchange.getBack().set(pipeline, time, lat, lon, lastGeofence);
+            exchange.publish();
+            renderer.render(exchange.acquire());
+            time += 1000;
+        }
+        return time;
+    }
+
+    private static class NoOpListener implements DrivingPipeline.Listener {
+        @Override
+        public void onDirectionChanged(int direction, long timeMillis) {
+        }
+
+        @Override
+        public void onGeofenceTransition(int fence, int transition, long timeMillis) {
+        }
+
+        @Override
+        public void onLimitChanged(int limitFlags, long timeMillis) {
+        }
+
+        @Override
+        public void onTurnAlert(String label, long timeMillis) {
+        }
+    }
+
+    private static class NoOpTarget implements TelemetryRenderer.Target {
+        @Override
+        public void setText(int slot, char[] text, int length) {
+        }
+
+        @Override
+        public void setTextColor(int slot, int color) {
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.spd_acc_app.ui;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for SnapshotExchange.
+ */
+public class SnapshotExchangeTest {
+
+    @Test
+    public void acquire_returnsLatestPublished() {
+        SnapshotExchange exchange = new SnapshotExchange();
+        assertNull(exchange.acquire());
+
+        exchange.getBack().setText(DisplaySnapshot.TEXT_SPEED, "1");
+        assertTrue(exchange.publish());
+        exchange.getBack().setText(DisplaySnapshot.TEXT_SPEED, "2");
+        // Not acquired yet: the consumer is already scheduled
+        assertFalse(exchange.publish());
+
+        assertEquals("2", exchange.acquire().toString(DisplaySnapshot.TEXT_SPEED));
+        assertNull(exchange.acquire());
+    }
+
+    @Test
+    public void sidesNeverShareASnapshot() {
+        SnapshotExchange exchange = new SnapshotExchange();
+        DisplaySnapshot front = null;
+
+        for (int i = 0; i < 100; i++) {
+            DisplaySnapshot back = exchange.getBack();
+            assertNotSame(front, back);
+            back.setText(DisplaySnapshot.TEXT_SPEED, String.valueOf(i));
+            exchange.publish();
+
+            if (i % 3 == 0) {
+                front = exchange.acquire();
+                assertEquals(String.valueOf(i), front.toString(DisplaySnapshot.TEXT_SPEED));
+            }
+        }
+    }
+
+    @Test
+    public void concurrentHandOver_neverTearsASnapshot() throws InterruptedException {
+        final SnapshotExchange exchange = new SnapshotExchange();
+        final int count = 200000;
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= count; i++) {
+                    DisplaySnapshot back = exchange.getBack();
+                    back.setLimitFlags(i);
+                    back.setText(DisplaySnapshot.TEXT_SPEED, String.valueOf(i));
+                    exchange.publish();
+                }
+            }
+        });
+        producer.start();
+
+        int last = 0;
+        while (last < count) {
+            DisplaySnapshot snapshot = exchange.acquire();
+            if (snapshot != null) {
+                assertTrue(snapshot.getLimitFlags() > last);
+                assertEquals(String.valueOf(snapshot.getLimitFlags()), snapshot.toString(DisplaySnapshot.TEXT_SPEED));
+                last = snapshot.getLimitFlags();
+            }
+        }
+        producer.join();
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.spd_acc_app.ui;
+
+import com.example.spd_acc_app.pipeline.DrivingPipeline;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for TelemetryRenderer diffing.
+ */
+public class TelemetryRendererTest {
+
+    private static final int NORMAL = 0xff000000;
+    private static final int ALERT = 0xffff0000;
+    private static final String[] STATUS = {"NORMAL", "SPEED", "ACCELERATION", "SPEED_ACCELERATION"};
+
+    @Test
+    public void render_firstFrameWritesEverything() {
+        RecordingTarget target = new RecordingTarget();
+        TelemetryRenderer renderer = new TelemetryRenderer(target, STATUS, NORMAL, ALERT);
+
+        renderer.render(snapshot("10.00km/h", "14.5", 0));
+
+        assertEquals(TelemetryRenderer.SLOT_COUNT + 2, target.mWrites.size());
+        assertTrue(target.mWrites.contains("text " + TelemetryRenderer.SLOT_STATUS + " NORMAL"));
+        assertTrue(target.mWrites.contains("color " + TelemetryRenderer.SLOT_SPEED + " " + NORMAL));
+    }
+
+    @Test
+    public void render_writesOnlyChangedViews() {
+        RecordingTarget target = new RecordingTarget();
+        TelemetryRenderer renderer = new TelemetryRenderer(target, STATUS, NORMAL, ALERT);
+        renderer.render(snapshot("10.00km/h", "14.5", 0));
+        target.mWrites.clear();
+
+        renderer.render(snapshot("10.00km/h", "14.5", 0));
+        assertTrue(target.mWrites.isEmpty());
+
+        renderer.render(snapshot("12.00km/h", "14.5", 0));
+        assertEquals(1, target.mWrites.size());
+        assertEquals("text " + TelemetryRenderer.SLOT_SPEED + " 12.00km/h", target.mWrites.get(0));
+    }
+
+    @Test
+    public void render_limitChangesStatusAndColour() {
+        RecordingTarget target = new RecordingTarget();
+        TelemetryRenderer renderer = new TelemetryRenderer(target, STATUS, NORMAL, ALERT);
+        renderer.render(snapshot("10.00km/h", "14.5", 0));
+        target.mWrites.clear();
+
+        renderer.render(snapshot("10.00km/h", "14.5", DrivingPipeline.LIMIT_SPEED));
+
+        assertEquals(2, target.mWrites.size());
+        assertTrue(target.mWrites.contains("text " + TelemetryRenderer.SLOT_STATUS + " SPEED"));
+        assertTrue(target.mWrites.contains("color " + TelemetryRenderer.SLOT_SPEED + " " + ALERT));
+    }
+
+    @Test
+    public void reset_rewritesEverything() {
+        RecordingTarget target = new RecordingTarget();
+        TelemetryRenderer renderer = new TelemetryRenderer(target, STATUS, NORMAL, ALERT);
+        renderer.render(snapshot("10.00km/h", "14.5", 0));
+        target.mWrites.clear();
+
+        renderer.reset();
+        renderer.render(snapshot("10.00km/h", "14.5", 0));
+
+        assertEquals(TelemetryRenderer.SLOT_COUNT + 2, target.mWrites.size());
+        assertEquals(2 * (TelemetryRenderer.SLOT_COUNT + 2), renderer.getWriteCount());
+    }
+
+    private static DisplaySnapshot snapshot(String speed, String latitude, int limitFlags) {
+        DisplaySnapshot snapshot = new DisplaySnapshot();
+        snapshot.setText(DisplaySnapshot.TEXT_SPEED, speed);
+        snapshot.setText(DisplaySnapshot.TEXT_LATITUDE, latitude);
+        snapshot.setText(DisplaySnapshot.TEXT_LONGITUDE, "121.0");
+        snapshot.setText(DisplaySnapshot.TEXT_ACCELERATION, "0.00 m/s\u00B2 || 0.00 m/s\u00B2");
+        snapshot.setText(DisplaySnapshot.TEXT_DIRECTION, "SOUTHBOUND");
+        snapshot.setText(DisplaySnapshot.TEXT_LAST_GEOFENCE, "-");
+        snapshot.setText(DisplaySnapshot.TEXT_IN_GEOFENCE, "false");
+        snapshot.setLimitFlags(limitFlags);
+        return snapshot;
+    }
+
+    private static final class RecordingTarget implements TelemetryRenderer.Target {
+        final List<String> mWrites = new ArrayList<>();
+
+        @Override
+        public void setText(int slot, char[] text, int length) {
+            mWrites.add("text " + slot + " " + new String(text, 0, length));
+        }
+
+        @Override
+        public void setTextColor(int slot, int color) {
+            mWrites.add("color " + slot + " " + color);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.spd_acc_app.benchmark;
+
+import com.example.spd_acc_app.geofence.GeofenceCatalog;
+import com.example.spd_acc_app.replay.SyntheticDrive;
+import com.example.spd_acc_app.replay.Trace;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * BenchmarkData
+ *
+ * Type: Class (static helpers only)
+ *
+ * Inputs shared by the benchmarks: the GeofenceCatalog built from the app's strings.xml (path passed by the build as
+ * the spd_acc_app.strings system property) and a noisy synthetic 1 Hz drive through all of its fences.
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * loadStrings(): Every string resource of the app, by name
+     */
+    static Map<String, String> loadStrings() {
+        Map<String, String> strings = new HashMap<>();
+        try {
+            NodeList nodes = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                    .parse(new File(System.getProperty("spd_acc_app.strings", "../app/src/main/res/values/strings.xml")))
+                    .getElementsByTagName("string");
+
+            for (int i = 0; i < nodes.getLength(); i++) {
+                Element element = (Element) nodes.item(i);
+                strings.put(element.getAttribute("name"), element.getTextContent());
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot read strings.xml", e);
+        }
+        return strings;
+    }
+
+    /**
+     * loadCatalog(): Builds the catalog the app would build from its string resources
+     */
+    static GeofenceCatalog loadCatalog() {
+        final Map<String, String> strings = loadStrings();
+
+        return GeofenceCatalog.load(new GeofenceCatalog.ValueSource() {
+            @Override
+            public String get(String name) {
+                String value = strings.get(name);
+                if (value == null) {
+                    throw new IllegalArgumentException("No string resource " + name);
+                }
+                return value;
+            }
+        });
+    }
+
+    /**
+     * roundTrip(): A southbound then northbound drive through the centre of every fence, with GPS-like noise
+     * @param catalog - Fence definitions
+     * @param speed - Speed in m/s
+     */
+    static Trace roundTrip(GeofenceCatalog catalog, double speed) {
+        Trace trace = new Trace(1024);
+        Random random = new Random(42);
+        long time = SyntheticDrive.drive(trace, catalog, GeofenceCatalog.DIRECTION_SOUTHBOUND, 0, speed, random);
+        SyntheticDrive.drive(trace, catalog, GeofenceCatalog.DIRECTION_NORTHBOUND, time + 1000, speed, random);
+        return trace;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.spd_acc_app.benchmark;
+
+import com.example.spd_acc_app.geofence.GeofenceCatalog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+
+/**
+ * CatalogLookupBenchmark
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Cost of resolving the turn point of a geofence ID, once per fix:
+ *  !> parsePerCall                             - Baseline: the pre-catalog path, an ID comparison chain over the
+ *                                                string resources plus Double.parseDouble() of the turn coordinates
+ *  !> catalog                                  - GeofenceCatalog.indexOf() and the precomputed turn coordinates
+ *
+ * Properties:
+ *  !> mStrings                                 - String resources by name
+ *  !> mKeys                                    - Resource key prefix of every fence, in catalog order
+ *  !> mCatalog                                 - Catalog built from the same resources
+ *  !> mIds                                     - Geofence IDs looked up in turn
+ *  !> mNext                                    - Index of the next ID
+ */
+@State(Scope.Thread)
+public class CatalogLookupBenchmark {
+
+    private Map<String, String> mStrings;
+    private String[] mKeys;
+    private GeofenceCatalog mCatalog;
+    private String[] mIds;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        mStrings = BenchmarkData.loadStrings();
+        mCatalog = BenchmarkData.loadCatalog();
+        mKeys = new String[mCatalog.size()];
+        mIds = new String[mCatalog.size()];
+
+        for (int i = 0; i < mCatalog.size(); i++) {
+            mIds[i] = mCatalog.getId(i);
+            for (Map.Entry<String, String> entry : mStrings.entrySet()) {
+                if (entry.getKey().endsWith("_ID") && entry.getValue().equals(mIds[i])) {
+                    mKeys[i] = entry.getKey().substring(0, entry.getKey().length() - "_ID".length());
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public double parsePerCall() {
+        String id = next();
+        for (String key : mKeys) {
+            if (id.equals(mStrings.get(key + "_ID"))) {
+                return Double.parseDouble(mStrings.get(key + "_TRN_LAT")) + Double.parseDouble(mStrings.get(key + "_TRN_LON"));
+            }
+        }
+        return 0;
+    }
+
+    @Benchmark
+    public double catalog() {
+        int index = mCatalog.indexOf(next());
+        return mCatalog.getTurnLatitude(index) + mCatalog.getTurnLongitude(index);
+    }
+
+    private String next() {
+        String id = mIds[mNext];
+        mNext = (mNext + 1) % mIds.length;
+        return id;
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.spd_acc_app.benchmark;
+
+import com.example.spd_acc_app.location.GeoMath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * GeoMathBenchmark
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Cost of one distance between two points up to 1 km apart around Commonwealth Ave, as measured per fix against a
+ * fence or turn:
+ *  !> ellipsoidal                              - Baseline: iterative WGS84 inverse, the algorithm of Location.distanceTo()
+ *  !> haversine                                - GeoMath.haversine()
+ *  !> equirectangular                          - GeoMath.equirectangular(), cosine computed per call
+ *  !> cachedCosine                             - GeoMath.distanceSquared() with the fixed point's cosine cached, plus sqrt
+ *  !> radiusCheck                              - GeoMath.isWithin() against a 100 m radius, no sqrt
+ *
+ * Properties:
+ *  !> mLat1 / mLon1 / mCos1                    - Fixed points and their cached cosines
+ *  !> mLat2 / mLon2                            - Moving points
+ *  !> mNext                                    - Index of the next pair
+ *
+ *  !> Constants
+ *      !> PAIRS                                - Number of precomputed pairs (power of two)
+ */
+@State(Scope.Thread)
+public class GeoMathBenchmark {
+
+    private static final int PAIRS = 1024;
+
+    private final double[] mLat1 = new double[PAIRS];
+    private final double[] mLon1 = new double[PAIRS];
+    private final double[] mCos1 = new double[PAIRS];
+    private final double[] mLat2 = new double[PAIRS];
+    private final double[] mLon2 = new double[PAIRS];
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(2607);
+        for (int i = 0; i < PAIRS; i++) {
+            mLat1[i] = 14.65 + random.nextDouble() * 0.05;
+            mLon1[i] = 121.05 + random.nextDouble() * 0.04;
+            mCos1[i] = GeoMath.cosLatitude(mLat1[i]);
+
+            double distance = random.nextDouble() * 1000;
+            double bearing = random.nextDouble() * 2 * Math.PI;
+            mLat2[i] = mLat1[i] + distance * Math.cos(bearing) / GeoMath.METRES_PER_DEGREE;
+            mLon2[i] = mLon1[i] + distance * Math.sin(bearing) / (GeoMath.METRES_PER_DEGREE * mCos1[i]);
+        }
+    }
+
+    @Benchmark
+    public double ellipsoidal() {
+        int i = next();
+        return vincenty(mLat1[i], mLon1[i], mLat2[i], mLon2[i]);
+    }
+
+    @Benchmark
+    public double haversine() {
+        int i = next();
+        return GeoMath.haversine(mLat1[i], mLon1[i], mLat2[i], mLon2[i]);
+    }
+
+    @Benchmark
+    public double equirectangular() {
+        int i = next();
+        return GeoMath.equirectangular(mLat1[i], mLon1[i], mLat2[i], mLon2[i]);
+    }
+
+    @Benchmark
+    public double cachedCosine() {
+        int i = next();
+        return Math.sqrt(GeoMath.distanceSquared(mLat1[i], mLon1[i], mCos1[i], mLat2[i], mLon2[i]));
+    }
+
+    @Benchmark
+    public boolean radiusCheck() {
+        int i = next();
+        return GeoMath.isWithin(mLat1[i], mLon1[i], mCos1[i], mLat2[i], mLon2[i], 100);
+    }
+
+    private int next() {
+        int i = mNext;
+        mNext = (i + 1) & (PAIRS - 1);
+        return i;
+    }
+
+    /**
+     * vincenty(): WGS84 inverse distance in metres, iterated like Location.distanceTo() (at most 20 iterations)
+     */
+    private static double vincenty(double latitude1, double longitude1, double latitude2, double longitude2) {
+        final double a = 6378137.0;
+        final double f = 1 / 298.257223563;
+        final double b = (1 - f) * a;
+
+        double l = Math.toRadians(longitude2 - longitude1);
+        double u1 = Math.atan((1 - f) * Math.tan(Math.toRadians(latitude1)));
+        double u2 = Math.atan((1 - f) * Math.tan(Math.toRadians(latitude2)));
+        double sinU1 = Math.sin(u1);
+        double cosU1 = Math.cos(u1);
+        double sinU2 = Math.sin(u2);
+        double cosU2 = Math.cos(u2);
+
+        double lambda = l;
+        double sinSigma = 0;
+        double cosSigma = 0;
+        double sigma = 0;
+        double cos2Alpha = 0;
+        double cos2SigmaM = 0;
+        for (int iteration = 0; iteration < 20; iteration++) {
+            double sinLambda = Math.sin(lambda);
+            double cosLambda = Math.cos(lambda);
+            double t1 = cosU2 * sinLambda;
+            double t2 = cosU1 * sinU2 - sinU1 * cosU2 * cosLambda;
+            sinSigma = Math.sqrt(t1 * t1 + t2 * t2);
+            if (sinSigma == 0) {
+                return 0;
+            }
+            cosSigma = sinU1 * sinU2 + cosU1 * cosU2 * cosLambda;
+            sigma = Math.atan2(sinSigma, cosSigma);
+            double sinAlpha = cosU1 * cosU2 * sinLambda / sinSigma;
+            cos2Alpha = 1 - sinAlpha * sinAlpha;
+            cos2SigmaM = cos2Alpha == 0 ? 0 : cosSigma - 2 * sinU1 * sinU2 / cos2Alpha;
+            double c = f / 16 * cos2Alpha * (4 + f * (4 - 3 * cos2Alpha));
+            double previous = lambda;
+            lambda = l + (1 - c) * f * sinAlpha
+                    * (sigma + c * sinSigma * (cos2SigmaM + c * cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)));
+            if (Math.abs(lambda - previous) < 1e-12) {
+                break;
+            }
+        }
+
+        double uSquared = cos2Alpha * (a * a - b * b) / (b * b);
+        double bigA = 1 + uSquared / 16384 * (4096 + uSquared * (-768 + uSquared * (320 - 175 * uSquared)));
+        double bigB = uSquared / 1024 * (256 + uSquared * (-128 + uSquared * (74 - 47 * uSquared)));
+        double deltaSigma = bigB * sinSigma * (cos2SigmaM + bigB / 4 * (cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)
+                - bigB / 6 * cos2SigmaM * (-3 + 4 * sinSigma * sinSigma) * (-3 + 4 * cos2SigmaM * cos2SigmaM)));
+        return b * bigA * (sigma - deltaSigma);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.spd_acc_app.benchmark;
+
+import com.example.spd_acc_app.geofence.GeofenceCatalog;
+import com.example.spd_acc_app.geofence.GeofenceDatabase;
+import com.example.spd_acc_app.geofence.GeofenceDatabaseBuilder;
+import com.example.spd_acc_app.location.GeoMath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * GeofenceDatabaseBenchmark
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Cost of finding the fences within 300 m of a fix in databases of growing size (fences 200 m apart on a square
+ * grid, 0.01 degree tiles), read from a direct buffer as a mapped asset would be:
+ *  !> findNear                                 - GeofenceDatabase.findNear(); should not depend on mFences
+ *  !> linearScan                               - Baseline: GeoMath.isWithin() against every fence
+ *
+ * Properties:
+ *  !> mFences                                  - Database size
+ *  !> mDatabase                                - Database under test
+ *  !> mLatitudes / mLongitudes / mRadii        - The same fences as arrays, for the baseline
+ *  !> mQueryLat / mQueryLon / mQueryCos        - Precomputed fixes inside the grid
+ *  !> mFound                                   - Output of findNear()
+ *  !> mNext                                    - Index of the next fix
+ *
+ *  !> Constants
+ *      !> QUERIES                              - Number of precomputed fixes (power of two)
+ *      !> DISTANCE                             - Search distance in metres
+ */
+@State(Scope.Thread)
+public class GeofenceDatabaseBenchmark {
+
+    private static final int QUERIES = 1024;
+    private static final double DISTANCE = 300;
+
+    @Param({"100", "1000", "10000"})
+    public int mFences;
+
+    private GeofenceDatabase mDatabase;
+    private double[] mLatitudes;
+    private double[] mLongitudes;
+    private float[] mRadii;
+    private final double[] mQueryLat = new double[QUERIES];
+    private final double[] mQueryLon = new double[QUERIES];
+    private final double[] mQueryCos = new double[QUERIES];
+    private final int[] mFound = new int[64];
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        GeofenceDatabaseBuilder builder = new GeofenceDatabaseBuilder();
+        int side = (int) Math.ceil(Math.sqrt(mFences));
+        double step = 200 / GeoMath.METRES_PER_DEGREE;
+
+        for (int i = 0; i < mFences; i++) {
+            double latitude = 14.6 + (i / side) * step;
+            double longitude = 121.0 + (i % side) * step;
+            builder.add("F" + i, GeofenceCatalog.DIRECTION_SOUTHBOUND, i, "Fence " + i, latitude, longitude, 98, latitude, longitude);
+        }
+
+        byte[] bytes = builder.build(GeofenceDatabaseBuilder.DEFAULT_TILE_DEGREES);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        mDatabase = new GeofenceDatabase(buffer);
+
+        mLatitudes = new double[mFences];
+        mLongitudes = new double[mFences];
+        mRadii = new float[mFences];
+        for (int i = 0; i < mFences; i++) {
+            mLatitudes[i] = mDatabase.getLatitude(i);
+            mLongitudes[i] = mDatabase.getLongitude(i);
+            mRadii[i] = mDatabase.getRadius(i);
+        }
+
+        Random random = new Random(2607);
+        double extent = (side - 1) * step;
+        for (int i = 0; i < QUERIES; i++) {
+            mQueryLat[i] = 14.6 + random.nextDouble() * extent;
+            mQueryLon[i] = 121.0 + random.nextDouble() * extent;
+            mQueryCos[i] = GeoMath.cosLatitude(mQueryLat[i]);
+        }
+    }
+
+    @Benchmark
+    public int findNear() {
+        int i = next();
+        return mDatabase.findNear(mQueryLat[i], mQueryLon[i], DISTANCE, mFound);
+    }
+
+    @Benchmark
+    public int linearScan() {
+        int i = next();
+        int found = 0;
+        for (int fence = 0; fence < mLatitudes.length; fence++) {
+            if (GeoMath.isWithin(mQueryLat[i], mQueryLon[i], mQueryCos[i], mLatitudes[fence], mLongitudes[fence], DISTANCE + mRadii[fence])) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private int next() {
+        int i = mNext;
+        mNext = (i + 1) & (QUERIES - 1);
+        return i;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.spd_acc_app.benchmark;
+
+import com.example.spd_acc_app.metrics.Metrics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * MetricsBenchmark
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Overhead per recorded event, which has to stay well under 100 ns to instrument the per-fix path:
+ *  !> recordSince                              - Metrics.recordSince(), nanoTime() read included
+ *  !> record                                   - Metrics.record() of a precomputed duration
+ *  !> increment                                - Metrics.increment()
+ *
+ * Properties:
+ *  !> mMetrics                                 - Instance under test
+ *  !> mValue                                   - Varying duration, so that different buckets are hit
+ */
+@State(Scope.Thread)
+public class MetricsBenchmark {
+
+    private final Metrics mMetrics = new Metrics();
+    private long mValue;
+
+    @Benchmark
+    public void recordSince() {
+        mMetrics.recordSince(Metrics.STAGE_FIX, System.nanoTime() - 1000);
+    }
+
+    @Benchmark
+    public void record() {
+        mValue = (mValue + 7919) & 0xFFFFF;
+        mMetrics.record(Metrics.STAGE_FIX, mValue);
+    }
+
+    @Benchmark
+    public void increment() {
+        mMetrics.increment(Metrics.COUNTER_FIXES_PROCESSED);
+    }
+}
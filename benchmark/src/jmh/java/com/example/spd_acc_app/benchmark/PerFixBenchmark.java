@@ -0,0 +1,169 @@
+package com.example.spd_acc_app.benchmark;
+
+import com.example.spd_acc_app.geofence.GeofenceCatalog;
+import com.example.spd_acc_app.geofence.GeofenceNames;
+import com.example.spd_acc_app.geofence.RouteCorridor;
+import com.example.spd_acc_app.location.FixRingBuffer;
+import com.example.spd_acc_app.location.SpeedKalmanFilter;
+import com.example.spd_acc_app.pipeline.DrivingPipeline;
+import com.example.spd_acc_app.pipeline.TrajectoryClassifier;
+import com.example.spd_acc_app.replay.Trace;
+import com.example.spd_acc_app.rules.LimitRules;
+import com.example.spd_acc_app.rules.LimitStatus;
+import com.example.spd_acc_app.ui.DisplaySnapshot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.TimeZone;
+
+/**
+ * PerFixBenchmark
+ *
+ * Type: Class
+ * Superclass: N/A
+ * Interfaces: N/A
+ *
+ * Throughput and allocation (with the gc profiler) of the work done for every location fix. Each invocation
+ * processes the next fix of a noisy synthetic round trip along Commonwealth Ave, wrapping around at its end:
+ *  !> pipeline                                 - The whole DrivingPipeline.onFix() path
+ *  !> directionAndAcceleration                 - Kalman update, fix history, trajectory and raw acceleration math
+ *  !> checkLimits                              - Speed/acceleration threshold decision from the compiled LimitRules
+ *  !> routeMatch                               - Incremental map matching and along-route distance to the next turn
+ *  !> geofenceDisplayName                      - Geofence ID to display name formatting (now precomputed per catalog)
+ *  !> displaySnapshot                          - Formatting the display texts of a fix into a reused DisplaySnapshot
+ *
+ * Properties:
+ *  !> mCatalog / mTrace                        - Inputs, see BenchmarkData
+ *  !> mPipeline / mSpeedFilter / mFixHistory / mTrajectory - Stateful objects under test
+ *  !> mRules                                   - Default limit table
+ *  !> mCorridors                               - Route corridor per direction, 100 m wide each side
+ *  !> mSnapshot                                - Reused display snapshot
+ *  !> mFix                                     - Index of the next fix of mTrace
+ *  !> mEvents                                  - Pipeline events received (keeps the listener from being optimised away)
+ */
+@State(Scope.Thread)
+public class PerFixBenchmark {
+
+    private static final double TURN_RADIUS = 50;
+    private static final long DWELL_MILLIS = 3000;
+
+    private GeofenceCatalog mCatalog;
+    private Trace mTrace;
+    private DrivingPipeline mPipeline;
+    private SpeedKalmanFilter mSpeedFilter;
+    private FixRingBuffer mFixHistory;
+    private TrajectoryClassifier mTrajectory;
+    private LimitRules mRules;
+    private final RouteCorridor[] mCorridors = new RouteCorridor[2];
+    private final DisplaySnapshot mSnapshot = new DisplaySnapshot();
+    private int mFix;
+    private int mEvents;
+
+    @Setup
+    public void setUp() {
+        mCatalog = BenchmarkData.loadCatalog();
+        mTrace = BenchmarkData.roundTrip(mCatalog, 50 / 3.6);
+        mSpeedFilter = new SpeedKalmanFilter();
+        mFixHistory = new FixRingBuffer(64, 10000);
+        mTrajectory = new TrajectoryClassifier();
+        mRules = LimitRules.defaults(mCatalog, TimeZone.getDefault());
+        mCorridors[GeofenceCatalog.DIRECTION_SOUTHBOUND] = mCatalog.createCorridor(GeofenceCatalog.DIRECTION_SOUTHBOUND, 100);
+        mCorridors[GeofenceCatalog.DIRECTION_NORTHBOUND] = mCatalog.createCorridor(GeofenceCatalog.DIRECTION_NORTHBOUND, 100);
+        mPipeline = new DrivingPipeline(mCatalog, DWELL_MILLIS, TURN_RADIUS, new DrivingPipeline.Listener() {
+            @Override
+            public void onDirectionChanged(int direction, long timeMillis) {
+                mEvents++;
+            }
+
+            @Override
+            public void onGeofenceTransition(int fence, int transition, long timeMillis) {
+                mEvents++;
+            }
+
+            @Override
+            public void onLimitChanged(int limitFlags, long timeMillis) {
+                mEvents++;
+            }
+
+            @Override
+            public void onTurnAlert(String label, long timeMillis) {
+                mEvents++;
+            }
+        });
+    }
+
+    @Benchmark
+    public boolean pipeline() {
+        int i = nextFix();
+        if (i == 0) {
+            // Wrapped around: time would go backwards
+            mPipeline.reset();
+        }
+        return mPipeline.onFix(mTrace.getTime(i), mTrace.getLatitude(i), mTrace.getLongitude(i), mTrace.getSpeed(i), mTrace.hasSpeed(i), mTrace.getBearing(i), mTrace.hasBearing(i), mTrace.getAccuracy(i));
+    }
+
+    @Benchmark
+    public double directionAndAcceleration() {
+        int i = nextFix();
+        if (i == 0) {
+            mSpeedFilter.reset();
+            mFixHistory.clear();
+            mTrajectory.reset();
+        }
+
+        long time = mTrace.getTime(i);
+        double latitude = mTrace.getLatitude(i);
+        float speed = mTrace.getSpeed(i);
+        mSpeedFilter.update(time, latitude, mTrace.getLongitude(i), speed, true, mTrace.getAccuracy(i));
+
+        double result = mSpeedFilter.getAcceleration();
+        if (!mFixHistory.isEmpty()) {
+            int direction = mTrajectory.update(time, latitude, mTrace.getLongitude(i), mSpeedFilter.getSpeed(), mTrace.getBearing(i), mTrace.hasBearing(i));
+            double rawAcceleration = (speed - mFixHistory.getSpeed(0)) / ((time - mFixHistory.getTime(0)) / 1000.0);
+            result += direction + rawAcceleration;
+        }
+
+        mFixHistory.append(time, latitude, mTrace.getLongitude(i), speed, mTrace.getBearing(i), mTrace.getAccuracy(i), mSpeedFilter.getAcceleration());
+        return result;
+    }
+
+    @Benchmark
+    public int checkLimits() {
+        int i = nextFix();
+        // Alternate inside/outside so both threshold sets are exercised
+        LimitStatus status = mRules.evaluate((i & 1) == 0 ? i % mCatalog.size() : -1, LimitRules.VEHICLE_CAR, mTrace.getTime(i), mTrace.getSpeed(i) * 3.6 + (i & 31), (i % 7) * 0.5 - 1.5);
+        return status.getFlags();
+    }
+
+    @Benchmark
+    public double routeMatch() {
+        int i = nextFix();
+        RouteCorridor corridor = mCorridors[i < mTrace.size() / 2 ? GeofenceCatalog.DIRECTION_SOUTHBOUND : GeofenceCatalog.DIRECTION_NORTHBOUND];
+        if (!corridor.match(mTrace.getLatitude(i), mTrace.getLongitude(i))) {
+            return Double.NaN;
+        }
+        int turn = corridor.getNextTurn();
+        return turn < 0 ? Double.POSITIVE_INFINITY : corridor.getDistanceToTurn(turn);
+    }
+
+    @Benchmark
+    public String geofenceDisplayName() {
+        return GeofenceNames.displayName(mCatalog.getId(nextFix() % mCatalog.size()));
+    }
+
+    @Benchmark
+    public int displaySnapshot() {
+        int i = nextFix();
+        mSnapshot.set(mPipeline, mTrace.getTime(i), mTrace.getLatitude(i), mTrace.getLongitude(i), i % mCatalog.size());
+        return mSnapshot.getLength(DisplaySnapshot.TEXT_ACCELERATION);
+    }
+
+    private int nextFix() {
+        int i = mFix;
+        mFix = i + 1 == mTrace.size() ? 0 : i + 1;
+        return i;
+    }
+}